@@ -33,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.concurrent.DebuggableScheduledThreadPoolExecutor;
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.db.*;
@@ -74,11 +75,23 @@ public class BatchlogManager implements BatchlogManagerMBean
     // Single-thread executor service for scheduling and serializing log replay.
     private final ScheduledExecutorService batchlogTasks;
 
+    // the store of the batches when batchlog_storage is segments, null when they are stored in system.batches
+    private volatile BatchlogStore segmentStore;
+
     public BatchlogManager()
     {
         ScheduledThreadPoolExecutor executor = new DebuggableScheduledThreadPoolExecutor("BatchlogTasks");
         executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         batchlogTasks = executor;
+
+        if (DatabaseDescriptor.getBatchlogStorage() == Config.BatchlogStorage.segments)
+            segmentStore = BatchlogStore.open(DatabaseDescriptor.getBatchlogDirectory(), DatabaseDescriptor.getBatchlogSegmentSize());
+    }
+
+    @VisibleForTesting
+    void setSegmentStore(BatchlogStore segmentStore)
+    {
+        this.segmentStore = segmentStore;
     }
 
     public void start()
@@ -103,10 +116,18 @@ public class BatchlogManager implements BatchlogManagerMBean
     {
         batchlogTasks.shutdown();
         batchlogTasks.awaitTermination(60, TimeUnit.SECONDS);
+
+        if (segmentStore != null)
+            segmentStore.close();
     }
 
     public static void remove(UUID id)
     {
+        // batches stored in the table before switching to segments are still removed from it
+        BatchlogStore segmentStore = instance.segmentStore;
+        if (segmentStore != null && segmentStore.remove(id))
+            return;
+
         new Mutation(PartitionUpdate.fullPartitionDelete(SystemKeyspace.Batches,
                                                          UUIDType.instance.decompose(id),
                                                          FBUtilities.timestampMicros(),
@@ -121,6 +142,14 @@ public class BatchlogManager implements BatchlogManagerMBean
 
     public static void store(Batch batch, boolean durableWrites)
     {
+        BatchlogStore segmentStore = instance.segmentStore;
+        if (segmentStore != null)
+        {
+            // like the commit log, sync each batch in batch mode, and periodically - on replay - otherwise
+            segmentStore.append(batch, durableWrites && DatabaseDescriptor.getCommitLogSync() == Config.CommitLogSync.batch);
+            return;
+        }
+
         RowUpdateBuilder builder =
             new RowUpdateBuilder(SystemKeyspace.Batches, batch.creationTime, batch.id)
                 .clustering()
@@ -151,10 +180,10 @@ public class BatchlogManager implements BatchlogManagerMBean
     {
         String query = String.format("SELECT count(*) FROM %s.%s", SystemKeyspace.NAME, SystemKeyspace.BATCHES);
         UntypedResultSet results = executeInternal(query);
-        if (results == null || results.isEmpty())
-            return 0;
+        int count = results == null || results.isEmpty() ? 0 : (int) results.one().getLong("count");
 
-        return (int) results.one().getLong("count");
+        BatchlogStore segmentStore = this.segmentStore;
+        return segmentStore == null ? count : count + segmentStore.countLiveBatches();
     }
 
     public long getTotalBatchesReplayed()
@@ -204,8 +233,19 @@ public class BatchlogManager implements BatchlogManagerMBean
                                      SystemKeyspace.NAME,
                                      SystemKeyspace.BATCHES);
         UntypedResultSet batches = executeInternalWithPaging(query, pageSize, lastReplayedUuid, limitUuid);
-        processBatchlogEntries(batches, pageSize, rateLimiter);
+        processBatchlogEntries(Iterables.transform(batches, row -> new BatchlogStore.StoredBatch(row.getUUID("id"),
+                                                                                                 row.getInt("version"),
+                                                                                                 row.getList("mutations", BytesType.instance))),
+                               pageSize,
+                               rateLimiter);
         lastReplayedUuid = limitUuid;
+
+        BatchlogStore segmentStore = this.segmentStore;
+        if (segmentStore != null)
+        {
+            segmentStore.sync();
+            processBatchlogEntries(segmentStore.replayable(UUIDGen.unixTimestamp(limitUuid)), pageSize, rateLimiter);
+        }
         logger.trace("Finished replayFailedBatches");
     }
 
@@ -219,7 +259,7 @@ public class BatchlogManager implements BatchlogManagerMBean
         return (int) Math.max(1, Math.min(DEFAULT_PAGE_SIZE, 4 * 1024 * 1024 / averageRowSize));
     }
 
-    private void processBatchlogEntries(UntypedResultSet batches, int pageSize, RateLimiter rateLimiter)
+    private void processBatchlogEntries(Iterable<BatchlogStore.StoredBatch> batches, int pageSize, RateLimiter rateLimiter)
     {
         int positionInPage = 0;
         ArrayList<ReplayingBatch> unfinishedBatches = new ArrayList<>(pageSize);
@@ -228,13 +268,12 @@ public class BatchlogManager implements BatchlogManagerMBean
         Set<UUID> replayedBatches = new HashSet<>();
 
         // Sending out batches for replay without waiting for them, so that one stuck batch doesn't affect others
-        for (UntypedResultSet.Row row : batches)
+        for (BatchlogStore.StoredBatch storedBatch : batches)
         {
-            UUID id = row.getUUID("id");
-            int version = row.getInt("version");
+            UUID id = storedBatch.id;
             try
             {
-                ReplayingBatch batch = new ReplayingBatch(id, version, row.getList("mutations", BytesType.instance));
+                ReplayingBatch batch = new ReplayingBatch(id, storedBatch.version, storedBatch.mutations);
                 if (batch.replay(rateLimiter, hintedNodes) > 0)
                 {
                     unfinishedBatches.add(batch);
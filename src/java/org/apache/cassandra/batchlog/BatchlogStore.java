@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.batchlog;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.UUIDSerializer;
+
+import static org.apache.cassandra.utils.FBUtilities.updateChecksumInt;
+
+/**
+ * An append-only store of logged batches, an alternative to the system.batches table (batchlog_storage: segments).
+ *
+ * Batches are appended to the current segment file, which is replaced by a new one once it reaches its maximum size.
+ * Removing an acknowledged batch only forgets it in memory, and a segment file is deleted as a whole once none of
+ * its batches is left to replay, so that, unlike with the table, the hot path doesn't generate any tombstones.
+ *
+ * The position of each live batch in its segment is kept in memory, so that replaying the batchlog only reads the
+ * batches left to replay, and never the ones that were removed. As removals aren't persisted, all the batches of the
+ * segments found at startup are considered live, and get replayed again - which is safe, as replaying a batch is
+ * idempotent.
+ *
+ * Each batch is written as a record made of its size and the CRC of its size, followed by the messaging version
+ * of its mutations, the batch id, creation time and mutations, and the CRC of those.
+ */
+public final class BatchlogStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(BatchlogStore.class);
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("batchlog-(\\d+)\\.log");
+
+    private final File directory;
+    private final long maxSegmentSize;
+
+    // the segments that hold live batches, oldest first, plus the current one
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Location> liveBatches = new ConcurrentHashMap<>();
+
+    private long lastSegmentId;
+    private Segment current;
+
+    private BatchlogStore(File directory, long maxSegmentSize)
+    {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Opens the store of the given directory, loading the batches of the segments it holds.
+     */
+    static BatchlogStore open(File directory, long maxSegmentSize)
+    {
+        FileUtils.createDirectory(directory);
+        BatchlogStore store = new BatchlogStore(directory, maxSegmentSize);
+        store.load();
+        return store;
+    }
+
+    private void load()
+    {
+        SortedMap<Long, File> files = new TreeMap<>();
+        File[] listed = directory.listFiles();
+        for (File file : listed == null ? new File[0] : listed)
+        {
+            Matcher matcher = SEGMENT_NAME_PATTERN.matcher(file.getName());
+            if (matcher.matches())
+                files.put(Long.parseLong(matcher.group(1)), file);
+        }
+
+        for (Map.Entry<Long, File> entry : files.entrySet())
+        {
+            lastSegmentId = entry.getKey();
+            Segment segment = new Segment(entry.getValue());
+            segment.sealed = true;
+            segment.length = entry.getValue().length();
+
+            int count = 0;
+            for (Map.Entry<Long, UUID> batch : segment.readIds().entrySet())
+            {
+                if (liveBatches.put(batch.getValue(), new Location(segment, batch.getKey())) == null)
+                {
+                    segment.live.incrementAndGet();
+                    count++;
+                }
+            }
+
+            if (count == 0)
+            {
+                segment.delete();
+                continue;
+            }
+
+            segments.add(segment);
+            logger.info("Loaded {} batches to replay from batchlog segment {}", count, segment.file);
+        }
+    }
+
+    /**
+     * Appends a batch to the current segment.
+     *
+     * @param sync whether to sync the segment to disk before returning
+     */
+    synchronized void append(Batch batch, boolean sync)
+    {
+        ByteBuffer record = serialize(batch);
+        if (current == null || (current.length > 0 && current.length + record.remaining() > maxSegmentSize))
+            switchSegment();
+
+        long position = current.append(record, sync);
+        current.live.incrementAndGet();
+        Location previous = liveBatches.put(batch.id, new Location(current, position));
+        if (previous != null)
+            release(previous.segment);
+    }
+
+    /**
+     * Forgets an acknowledged (or replayed) batch, deleting its segment if it was the last live batch of a segment
+     * that is no longer being written to.
+     *
+     * @return whether the batch was in the store
+     */
+    boolean remove(UUID id)
+    {
+        Location location = liveBatches.remove(id);
+        if (location == null)
+            return false;
+
+        release(location.segment);
+        return true;
+    }
+
+    private void release(Segment segment)
+    {
+        if (segment.live.decrementAndGet() == 0 && segment.sealed)
+            delete(segment);
+    }
+
+    private void delete(Segment segment)
+    {
+        if (segment.delete())
+            segments.remove(segment);
+    }
+
+    private void switchSegment()
+    {
+        if (current != null)
+        {
+            current.seal();
+            if (current.live.get() == 0)
+                delete(current);
+        }
+
+        current = new Segment(new File(directory, "batchlog-" + ++lastSegmentId + ".log"));
+        current.open();
+        segments.add(current);
+    }
+
+    /**
+     * @return the live batches created at or before the given time, in milliseconds, from the oldest segment to the
+     * most recent one. The batches of a segment are only read once the previous segments have been iterated.
+     */
+    Iterable<StoredBatch> replayable(long maxCreationTime)
+    {
+        Map<Segment, SortedSet<Long>> positions = new HashMap<>();
+        for (Map.Entry<UUID, Location> entry : liveBatches.entrySet())
+        {
+            if (UUIDGen.unixTimestamp(entry.getKey()) <= maxCreationTime)
+                positions.computeIfAbsent(entry.getValue().segment, segment -> new TreeSet<>()).add(entry.getValue().position);
+        }
+
+        List<Segment> toRead = new ArrayList<>(positions.size());
+        for (Segment segment : segments)
+            if (positions.containsKey(segment))
+                toRead.add(segment);
+
+        // the batches removed since their positions were collected are skipped
+        return Iterables.concat(Iterables.transform(toRead, segment -> Iterables.filter(segment.read(positions.get(segment)),
+                                                                                       batch -> isLive(batch.id, segment))));
+    }
+
+    private boolean isLive(UUID id, Segment segment)
+    {
+        Location location = liveBatches.get(id);
+        return location != null && location.segment == segment;
+    }
+
+    int countLiveBatches()
+    {
+        return liveBatches.size();
+    }
+
+    @VisibleForTesting
+    int countSegments()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Syncs the current segment to disk.
+     */
+    synchronized void sync()
+    {
+        if (current != null)
+            current.sync();
+    }
+
+    synchronized void close()
+    {
+        if (current != null)
+        {
+            current.seal();
+            current = null;
+        }
+    }
+
+    private static ByteBuffer serialize(Batch batch)
+    {
+        try (DataOutputBuffer payload = new DataOutputBuffer())
+        {
+            payload.writeInt(MessagingService.current_version);
+            UUIDSerializer.serializer.serialize(batch.id, payload, MessagingService.current_version);
+            payload.writeLong(batch.creationTime);
+            payload.writeUnsignedVInt(batch.size());
+            for (ByteBuffer mutation : batch.encodedMutations)
+                ByteBufferUtil.writeWithVIntLength(mutation, payload);
+            for (Mutation mutation : batch.decodedMutations)
+            {
+                payload.writeUnsignedVInt(Mutation.serializer.serializedSize(mutation, MessagingService.current_version));
+                Mutation.serializer.serialize(mutation, payload, MessagingService.current_version);
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer record = ByteBuffer.allocate(payload.getLength() + 12);
+            record.putInt(payload.getLength());
+            updateChecksumInt(crc, payload.getLength());
+            record.putInt((int) crc.getValue());
+            crc.reset();
+            crc.update(payload.getData(), 0, payload.getLength());
+            record.put(payload.getData(), 0, payload.getLength());
+            record.putInt((int) crc.getValue());
+            record.flip();
+            return record;
+        }
+        catch (IOException e)
+        {
+            // shouldn't happen
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A stored batch, with its mutations still encoded.
+     */
+    static final class StoredBatch
+    {
+        final UUID id;
+        final int version;
+        final List<ByteBuffer> mutations;
+
+        StoredBatch(UUID id, int version, List<ByteBuffer> mutations)
+        {
+            this.id = id;
+            this.version = version;
+            this.mutations = mutations;
+        }
+    }
+
+    // where a live batch is stored
+    private static final class Location
+    {
+        private final Segment segment;
+        private final long position;
+
+        private Location(Segment segment, long position)
+        {
+            this.segment = segment;
+            this.position = position;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final File file;
+        private final AtomicInteger live = new AtomicInteger();
+        private final AtomicBoolean isDeleted = new AtomicBoolean();
+
+        private FileChannel channel;
+        private volatile long length;
+        private volatile boolean sealed;
+
+        private Segment(File file)
+        {
+            this.file = file;
+        }
+
+        private void open()
+        {
+            try
+            {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+        }
+
+        // returns the position the record was appended at
+        private long append(ByteBuffer record, boolean sync)
+        {
+            try
+            {
+                long position = length;
+                int size = record.remaining();
+                while (record.hasRemaining())
+                    channel.write(record);
+                if (sync)
+                    channel.force(false);
+                length += size;
+                return position;
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+        }
+
+        private void sync()
+        {
+            try
+            {
+                channel.force(false);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+        }
+
+        private void seal()
+        {
+            try
+            {
+                channel.force(false);
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, file);
+            }
+            sealed = true;
+        }
+
+        // synchronized with opening the segment for reading
+        private synchronized boolean delete()
+        {
+            if (!isDeleted.compareAndSet(false, true))
+                return false;
+
+            FileUtils.deleteWithConfirm(file);
+            return true;
+        }
+
+        /*
+         * Reads the ids of all the batches of the segment, by position. A torn record, left by a crash while it was
+         * being appended, ends the segment.
+         */
+        private SortedMap<Long, UUID> readIds()
+        {
+            SortedMap<Long, UUID> ids = new TreeMap<>();
+            try (RandomAccessReader reader = RandomAccessReader.open(file))
+            {
+                while (reader.getFilePointer() + 12 <= length)
+                {
+                    long position = reader.getFilePointer();
+                    StoredBatch batch = readRecord(reader, position);
+                    if (batch != null)
+                        ids.put(position, batch.id);
+                }
+            }
+            catch (EOFException e)
+            {
+                // the end of the segment is ignored, as logged by readRecord
+            }
+            catch (IOException e)
+            {
+                throw new FSReadError(e, file);
+            }
+            return ids;
+        }
+
+        /*
+         * Reads the batches at the given positions, which are known to be the ones of valid records.
+         */
+        private List<StoredBatch> read(SortedSet<Long> positions)
+        {
+            List<StoredBatch> batches = new ArrayList<>(positions.size());
+            RandomAccessReader segmentReader;
+            synchronized (this)
+            {
+                if (isDeleted.get())
+                    return batches;
+                segmentReader = RandomAccessReader.open(file);
+            }
+
+            try (RandomAccessReader reader = segmentReader)
+            {
+                for (long position : positions)
+                {
+                    reader.seek(position);
+                    StoredBatch batch = readRecord(reader, position);
+                    if (batch != null)
+                        batches.add(batch);
+                }
+            }
+            catch (EOFException e)
+            {
+                // the batches left are lost, as logged by readRecord
+            }
+            catch (IOException e)
+            {
+                throw new FSReadError(e, file);
+            }
+            return batches;
+        }
+
+        /*
+         * Reads the record at the current position of the reader, skipping it and returning null if its digest doesn't
+         * match. A corrupted size can't be skipped and ends the segment, throwing an EOFException.
+         */
+        private StoredBatch readRecord(RandomAccessReader reader, long position) throws IOException
+        {
+            CRC32 crc = new CRC32();
+            int size = reader.readInt();
+            updateChecksumInt(crc, size);
+            if ((int) crc.getValue() != reader.readInt() || size < 0 || position + 12 + size > length)
+            {
+                logger.warn("Ignoring the end of batchlog segment {} from position {}: the batch size is corrupted", file, position);
+                throw new EOFException();
+            }
+
+            byte[] payload = new byte[size];
+            reader.readFully(payload);
+            crc.reset();
+            crc.update(payload, 0, size);
+            if ((int) crc.getValue() != reader.readInt())
+            {
+                logger.warn("Skipping a batch of batchlog segment {} at position {}: digest mismatch", file, position);
+                return null;
+            }
+            return deserialize(payload);
+        }
+
+        private static StoredBatch deserialize(byte[] payload) throws IOException
+        {
+            try (DataInputBuffer in = new DataInputBuffer(payload))
+            {
+                int version = in.readInt();
+                UUID id = UUIDSerializer.serializer.deserialize(in, version);
+                in.readLong(); // creation time; like for the batches table, replay relies on the time of the batch id
+                int count = (int) in.readUnsignedVInt();
+                List<ByteBuffer> mutations = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    mutations.add(ByteBufferUtil.readWithVIntLength(in));
+                return new StoredBatch(id, version, mutations);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return file.getName();
+        }
+    }
+}
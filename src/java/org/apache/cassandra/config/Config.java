@@ -109,6 +109,12 @@ public class Config
     public Integer concurrent_writes = 32;
     public Integer concurrent_counter_writes = 32;
     public Integer concurrent_materialized_view_writes = 32;
+    public Integer concurrent_materialized_view_builders = 1;
+    /**
+     * Whether base table writes are acknowledged before their materialized view updates are propagated, see
+     * {@link org.apache.cassandra.db.view.ViewUpdatePipeline}.
+     */
+    public boolean async_materialized_view_updates = false;
 
     @Deprecated
     public Integer concurrent_replicates = null;
@@ -152,6 +158,11 @@ public class Config
     public Integer native_transport_max_frame_size_in_mb = 256;
     public volatile Long native_transport_max_concurrent_connections = -1L;
     public volatile Long native_transport_max_concurrent_connections_per_ip = -1L;
+    public volatile Long native_transport_max_concurrent_requests_per_connection = -1L;
+    public volatile Long native_transport_max_concurrent_requests_per_ip = -1L;
+    public volatile Long native_transport_max_concurrent_requests_in_bytes_per_connection = -1L;
+    public volatile Long native_transport_max_concurrent_requests_in_bytes_per_ip = null;
+    public boolean native_transport_multi_frame_compression_enabled = false;
 
     @Deprecated
     public Integer thrift_max_message_length_in_mb = 16;
@@ -171,6 +182,15 @@ public class Config
     public Integer column_index_cache_size_in_kb = 2;
     public volatile int batch_size_warn_threshold_in_kb = 5;
     public volatile int batch_size_fail_threshold_in_kb = 50;
+    public volatile int read_repair_chunk_size_in_kb = 1024;
+    public volatile int read_repair_max_in_flight_per_table_in_mb = 64;
+    public volatile boolean aggregate_pushdown_enabled = true;
+    public volatile int aggregate_pushdown_concurrency = 32;
+    public volatile int max_concurrent_range_requests_per_query = 128;
+    public volatile int max_concurrent_range_requests = 1024;
+    public volatile Integer parallel_range_read_max_splits;
+    public volatile long parallel_range_read_min_partitions = 10000;
+    public volatile int parallel_range_read_buffer_size_in_kb = 1024;
     public Integer unlogged_batch_across_partitions_warn_threshold = 10;
     public Integer concurrent_compactors;
     public volatile Integer compaction_throughput_mb_per_sec = 16;
@@ -213,6 +233,8 @@ public class Config
     public Integer dynamic_snitch_update_interval_in_ms = 100;
     public Integer dynamic_snitch_reset_interval_in_ms = 600000;
     public Double dynamic_snitch_badness_threshold = 0.1;
+    public Double dynamic_snitch_pending_request_weight = 0.05;
+    public Integer dynamic_snitch_max_pending_requests = 256;
 
     public String request_scheduler;
     public RequestSchedulerId request_scheduler_id;
@@ -230,7 +252,11 @@ public class Config
 
     public int hinted_handoff_throttle_in_kb = 1024;
     public int batchlog_replay_throttle_in_kb = 1024;
+    public BatchlogStorage batchlog_storage = BatchlogStorage.table;
+    public String batchlog_directory;
+    public int batchlog_segment_size_in_mb = 32;
     public int max_hints_delivery_threads = 2;
+    public int max_hints_dispatch_files_per_host = 2;
     public int hints_flush_period_in_ms = 10000;
     public int max_hints_file_size_in_mb = 128;
     public ParameterizedClass hints_compression;
@@ -284,6 +310,12 @@ public class Config
     public int tracetype_query_ttl = (int) TimeUnit.DAYS.toSeconds(1);
     public int tracetype_repair_ttl = (int) TimeUnit.DAYS.toSeconds(7);
 
+    // Continuous tracking of the heaviest partitions of every table, disabled unless the sample rate is positive.
+    public volatile double top_partitions_sample_rate = 0.0;
+    public int top_partitions_sketch_width = 4096;
+    public int top_partitions_capacity = 16;
+    public long top_partitions_decay_interval_in_ms = 60000;
+
     /*
      * Strategy to use for coalescing messages in OutboundTcpConnection.
      * Can be fixed, movingaverage, timehorizon, disabled. Setting is case and leading/trailing
@@ -366,6 +398,12 @@ public class Config
         isClientMode = clientMode;
     }
 
+    public enum BatchlogStorage
+    {
+        table,
+        segments
+    }
+
     public enum CommitLogSync
     {
         periodic,
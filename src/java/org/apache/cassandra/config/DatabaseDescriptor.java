@@ -463,6 +463,9 @@ public class DatabaseDescriptor
         if (conf.native_transport_max_frame_size_in_mb <= 0)
             throw new ConfigurationException("native_transport_max_frame_size_in_mb must be positive, but was " + conf.native_transport_max_frame_size_in_mb, false);
 
+        if (conf.native_transport_max_concurrent_requests_in_bytes_per_ip == null)
+            conf.native_transport_max_concurrent_requests_in_bytes_per_ip = Runtime.getRuntime().maxMemory() / 40;
+
         // fail early instead of OOMing (see CASSANDRA-8116)
         if (ThriftServer.HSHA.equals(conf.rpc_server_type) && conf.rpc_max_threads == Integer.MAX_VALUE)
             throw new ConfigurationException("The hsha rpc_server_type is not compatible with an rpc_max_threads " +
@@ -550,6 +553,14 @@ public class DatabaseDescriptor
             conf.hints_directory += File.separator + "hints";
         }
 
+        if (conf.batchlog_storage == Config.BatchlogStorage.segments && conf.batchlog_directory == null)
+        {
+            conf.batchlog_directory = System.getProperty("cassandra.storagedir", null);
+            if (conf.batchlog_directory == null)
+                throw new ConfigurationException("batchlog_directory is missing and -Dcassandra.storagedir is not set", false);
+            conf.batchlog_directory += File.separator + "batchlog";
+        }
+
         if (conf.cdc_raw_directory == null)
         {
             conf.cdc_raw_directory = System.getProperty("cassandra.storagedir", null);
@@ -685,6 +696,9 @@ public class DatabaseDescriptor
         if (conf.concurrent_compactors <= 0)
             throw new ConfigurationException("concurrent_compactors should be strictly greater than 0, but was " + conf.concurrent_compactors, false);
 
+        if (conf.concurrent_materialized_view_builders <= 0)
+            throw new ConfigurationException("concurrent_materialized_view_builders should be strictly greater than 0, but was " + conf.concurrent_materialized_view_builders, false);
+
         if (conf.num_tokens == null)
             conf.num_tokens = 1;
         else if (conf.num_tokens > MAX_NUM_TOKENS)
@@ -826,6 +840,45 @@ public class DatabaseDescriptor
 
         if (conf.max_value_size_in_mb == null || conf.max_value_size_in_mb <= 0)
             throw new ConfigurationException("max_value_size_in_mb must be positive", false);
+
+        if (conf.aggregate_pushdown_concurrency <= 0)
+            throw new ConfigurationException("aggregate_pushdown_concurrency must be positive, but was " + conf.aggregate_pushdown_concurrency, false);
+
+        if (conf.max_concurrent_range_requests_per_query <= 0)
+            throw new ConfigurationException("max_concurrent_range_requests_per_query must be positive, but was " + conf.max_concurrent_range_requests_per_query, false);
+
+        if (conf.max_concurrent_range_requests <= 0)
+            throw new ConfigurationException("max_concurrent_range_requests must be positive, but was " + conf.max_concurrent_range_requests, false);
+
+        if (conf.batchlog_segment_size_in_mb <= 0)
+            throw new ConfigurationException("batchlog_segment_size_in_mb must be positive, but was " + conf.batchlog_segment_size_in_mb, false);
+
+        if (conf.max_hints_dispatch_files_per_host <= 0)
+            throw new ConfigurationException("max_hints_dispatch_files_per_host must be positive, but was " + conf.max_hints_dispatch_files_per_host, false);
+
+        if (conf.parallel_range_read_max_splits == null)
+            conf.parallel_range_read_max_splits = Math.min(8, FBUtilities.getAvailableProcessors());
+
+        if (conf.parallel_range_read_max_splits <= 0)
+            throw new ConfigurationException("parallel_range_read_max_splits must be positive, but was " + conf.parallel_range_read_max_splits, false);
+
+        if (conf.parallel_range_read_min_partitions < 0)
+            throw new ConfigurationException("parallel_range_read_min_partitions must not be negative, but was " + conf.parallel_range_read_min_partitions, false);
+
+        if (conf.parallel_range_read_buffer_size_in_kb <= 0)
+            throw new ConfigurationException("parallel_range_read_buffer_size_in_kb must be positive, but was " + conf.parallel_range_read_buffer_size_in_kb, false);
+
+        if (conf.top_partitions_sample_rate < 0 || conf.top_partitions_sample_rate > 1)
+            throw new ConfigurationException("top_partitions_sample_rate must be between 0 and 1, but was " + conf.top_partitions_sample_rate, false);
+
+        if (conf.top_partitions_sketch_width <= 0)
+            throw new ConfigurationException("top_partitions_sketch_width must be positive, but was " + conf.top_partitions_sketch_width, false);
+
+        if (conf.top_partitions_capacity < 0)
+            throw new ConfigurationException("top_partitions_capacity must not be negative, but was " + conf.top_partitions_capacity, false);
+
+        if (conf.top_partitions_decay_interval_in_ms <= 0)
+            throw new ConfigurationException("top_partitions_decay_interval_in_ms must be positive, but was " + conf.top_partitions_decay_interval_in_ms, false);
     }
 
     private static FileStore guessFileStore(String dir) throws IOException
@@ -1107,6 +1160,96 @@ public class DatabaseDescriptor
         return conf.unlogged_batch_across_partitions_warn_threshold;
     }
 
+    public static int getReadRepairChunkSize()
+    {
+        return conf.read_repair_chunk_size_in_kb * 1024;
+    }
+
+    public static void setReadRepairChunkSizeInKB(int size)
+    {
+        conf.read_repair_chunk_size_in_kb = size;
+    }
+
+    public static long getReadRepairMaxInFlightPerTable()
+    {
+        return (long) conf.read_repair_max_in_flight_per_table_in_mb * 1024 * 1024;
+    }
+
+    public static void setReadRepairMaxInFlightPerTableInMB(int size)
+    {
+        conf.read_repair_max_in_flight_per_table_in_mb = size;
+    }
+
+    public static boolean isAggregatePushdownEnabled()
+    {
+        return conf.aggregate_pushdown_enabled;
+    }
+
+    public static void setAggregatePushdownEnabled(boolean enabled)
+    {
+        conf.aggregate_pushdown_enabled = enabled;
+    }
+
+    public static int getAggregatePushdownConcurrency()
+    {
+        return conf.aggregate_pushdown_concurrency;
+    }
+
+    public static void setAggregatePushdownConcurrency(int concurrency)
+    {
+        conf.aggregate_pushdown_concurrency = concurrency;
+    }
+
+    public static int getMaxConcurrentRangeRequestsPerQuery()
+    {
+        return conf.max_concurrent_range_requests_per_query;
+    }
+
+    public static void setMaxConcurrentRangeRequestsPerQuery(int max)
+    {
+        conf.max_concurrent_range_requests_per_query = max;
+    }
+
+    public static int getMaxConcurrentRangeRequests()
+    {
+        return conf.max_concurrent_range_requests;
+    }
+
+    public static void setMaxConcurrentRangeRequests(int max)
+    {
+        conf.max_concurrent_range_requests = max;
+    }
+
+    public static int getParallelRangeReadMaxSplits()
+    {
+        return conf.parallel_range_read_max_splits;
+    }
+
+    public static void setParallelRangeReadMaxSplits(int max)
+    {
+        conf.parallel_range_read_max_splits = max;
+    }
+
+    public static long getParallelRangeReadMinPartitions()
+    {
+        return conf.parallel_range_read_min_partitions;
+    }
+
+    public static void setParallelRangeReadMinPartitions(long min)
+    {
+        conf.parallel_range_read_min_partitions = min;
+    }
+
+    public static int getParallelRangeReadBufferSizeInKb()
+    {
+        return conf.parallel_range_read_buffer_size_in_kb;
+    }
+
+    public static void setParallelRangeReadBufferSizeInKb(int size)
+    {
+        conf.parallel_range_read_buffer_size_in_kb = size;
+    }
+
     public static void setBatchSizeWarnThresholdInKB(int threshold)
     {
         conf.batch_size_warn_threshold_in_kb = threshold;
@@ -1297,15 +1440,18 @@ public class DatabaseDescriptor
                 return getReadRpcTimeout();
             case RANGE_SLICE:
             case PAGED_RANGE:
+            case AGGREGATE:
                 return getRangeRpcTimeout();
             case TRUNCATE:
                 return getTruncateRpcTimeout();
             case READ_REPAIR:
             case MUTATION:
+            case MUTATION_GROUP:
             case PAXOS_COMMIT:
             case PAXOS_PREPARE:
             case PAXOS_PROPOSE:
             case HINT:
+            case HINTS_BATCH:
             case BATCH_STORE:
             case BATCH_REMOVE:
                 return getWriteRpcTimeout();
@@ -1359,6 +1505,17 @@ public class DatabaseDescriptor
         return conf.concurrent_materialized_view_writes;
     }
 
+    public static boolean isAsyncViewUpdates()
+    {
+        return conf.async_materialized_view_updates;
+    }
+
+    @VisibleForTesting
+    public static void setAsyncViewUpdates(boolean asyncViewUpdates)
+    {
+        conf.async_materialized_view_updates = asyncViewUpdates;
+    }
+
     public static int getFlushWriters()
     {
             return conf.memtable_flush_writers;
@@ -1369,6 +1526,11 @@ public class DatabaseDescriptor
         return conf.concurrent_compactors;
     }
 
+    public static int getConcurrentViewBuilders()
+    {
+        return conf.concurrent_materialized_view_builders;
+    }
+
     public static int getCompactionThroughputMbPerSec()
     {
         return conf.compaction_throughput_mb_per_sec;
@@ -1641,6 +1803,51 @@ public class DatabaseDescriptor
         conf.native_transport_max_concurrent_connections_per_ip = native_transport_max_concurrent_connections_per_ip;
     }
 
+    public static long getNativeTransportMaxConcurrentRequestsPerConnection()
+    {
+        return conf.native_transport_max_concurrent_requests_per_connection;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsPerConnection(long maxConcurrentRequests)
+    {
+        conf.native_transport_max_concurrent_requests_per_connection = maxConcurrentRequests;
+    }
+
+    public static long getNativeTransportMaxConcurrentRequestsPerIp()
+    {
+        return conf.native_transport_max_concurrent_requests_per_ip;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsPerIp(long maxConcurrentRequests)
+    {
+        conf.native_transport_max_concurrent_requests_per_ip = maxConcurrentRequests;
+    }
+
+    public static long getNativeTransportMaxConcurrentRequestsInBytesPerConnection()
+    {
+        return conf.native_transport_max_concurrent_requests_in_bytes_per_connection;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsInBytesPerConnection(long maxConcurrentBytes)
+    {
+        conf.native_transport_max_concurrent_requests_in_bytes_per_connection = maxConcurrentBytes;
+    }
+
+    public static long getNativeTransportMaxConcurrentRequestsInBytesPerIp()
+    {
+        return conf.native_transport_max_concurrent_requests_in_bytes_per_ip;
+    }
+
+    public static void setNativeTransportMaxConcurrentRequestsInBytesPerIp(long maxConcurrentBytes)
+    {
+        conf.native_transport_max_concurrent_requests_in_bytes_per_ip = maxConcurrentBytes;
+    }
+
+    public static boolean isNativeTransportMultiFrameCompressionEnabled()
+    {
+        return conf.native_transport_multi_frame_compression_enabled;
+    }
+
     public static double getCommitLogSyncBatchWindow()
     {
         return conf.commitlog_sync_batch_window_in_ms;
@@ -1780,6 +1987,21 @@ public class DatabaseDescriptor
         return new File(conf.hints_directory);
     }
 
+    public static Config.BatchlogStorage getBatchlogStorage()
+    {
+        return conf.batchlog_storage;
+    }
+
+    public static File getBatchlogDirectory()
+    {
+        return new File(conf.batchlog_directory);
+    }
+
+    public static long getBatchlogSegmentSize()
+    {
+        return conf.batchlog_segment_size_in_mb * 1024L * 1024L;
+    }
+
     public static File getSerializedCachePath(CacheService.CacheType cacheType, String version, String extension)
     {
         String name = cacheType.toString()
@@ -1815,6 +2037,26 @@ public class DatabaseDescriptor
         conf.dynamic_snitch_badness_threshold = dynamicBadnessThreshold;
     }
 
+    public static double getDynamicPendingRequestWeight()
+    {
+        return conf.dynamic_snitch_pending_request_weight;
+    }
+
+    public static void setDynamicPendingRequestWeight(Double dynamicPendingRequestWeight)
+    {
+        conf.dynamic_snitch_pending_request_weight = dynamicPendingRequestWeight;
+    }
+
+    public static int getDynamicMaxPendingRequests()
+    {
+        return conf.dynamic_snitch_max_pending_requests;
+    }
+
+    public static void setDynamicMaxPendingRequests(Integer dynamicMaxPendingRequests)
+    {
+        conf.dynamic_snitch_max_pending_requests = dynamicMaxPendingRequests;
+    }
+
     public static ServerEncryptionOptions getServerEncryptionOptions()
     {
         return conf.server_encryption_options;
@@ -1845,6 +2087,16 @@ public class DatabaseDescriptor
         return conf.max_hints_delivery_threads;
     }
 
+    public static int getMaxHintsDispatchFilesPerHost()
+    {
+        return conf.max_hints_dispatch_files_per_host;
+    }
+
+    public static void setMaxHintsDispatchFilesPerHost(int filesPerHost)
+    {
+        conf.max_hints_dispatch_files_per_host = filesPerHost;
+    }
+
     public static int getHintsFlushPeriodInMS()
     {
         return conf.hints_flush_period_in_ms;
@@ -2107,6 +2359,31 @@ public class DatabaseDescriptor
         return conf.tracetype_query_ttl;
     }
 
+    public static double getTopPartitionsSampleRate()
+    {
+        return conf.top_partitions_sample_rate;
+    }
+
+    public static void setTopPartitionsSampleRate(double rate)
+    {
+        conf.top_partitions_sample_rate = rate;
+    }
+
+    public static int getTopPartitionsSketchWidth()
+    {
+        return conf.top_partitions_sketch_width;
+    }
+
+    public static int getTopPartitionsCapacity()
+    {
+        return conf.top_partitions_capacity;
+    }
+
+    public static long getTopPartitionsDecayIntervalInMs()
+    {
+        return conf.top_partitions_decay_interval_in_ms;
+    }
+
     public static String getOtcCoalescingStrategy()
     {
         return conf.otc_coalescing_strategy;
@@ -23,6 +23,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
@@ -66,6 +68,14 @@ public class QueryProcessor implements QueryHandler
     private static final ConcurrentLinkedHashMap<MD5Digest, ParsedStatement.Prepared> preparedStatements;
     private static final ConcurrentLinkedHashMap<Integer, ParsedStatement.Prepared> thriftPreparedStatements;
 
+    // Ids which are neither cached nor stored, so that clients using unknown ids (e.g. prepared on another node) don't
+    // make every request read the prepared statements table.
+    private static final int UNKNOWN_PREPARED_STATEMENTS_CAPACITY = 10000;
+    private static final ConcurrentLinkedHashMap<MD5Digest, Boolean> unknownPreparedStatements;
+    // Statements are only prepared again from the table while no schema change removes prepared statements, so that a
+    // statement read from the table before its removal can't be cached again once the caches have been cleaned.
+    private static final ReadWriteLock storedStatementsLock = new ReentrantReadWriteLock();
+
     // A map for prepared statements used internally (which we don't want to mix with user statement, in particular we don't
     // bother with expiration on those.
     private static final ConcurrentMap<String, ParsedStatement.Prepared> internalStatements = new ConcurrentHashMap<>();
@@ -96,6 +106,10 @@ public class QueryProcessor implements QueryHandler
                                    })
                                    .build();
 
+        unknownPreparedStatements = new ConcurrentLinkedHashMap.Builder<MD5Digest, Boolean>()
+                                    .maximumWeightedCapacity(UNKNOWN_PREPARED_STATEMENTS_CAPACITY)
+                                    .build();
+
         ScheduledExecutors.scheduledTasks.scheduleAtFixedRate(() -> {
             long count = lastMinuteEvictionsCount.getAndSet(0);
             if (count > 0)
@@ -124,6 +138,14 @@ public class QueryProcessor implements QueryHandler
         return preparedStatements.size() + thriftPreparedStatements.size();
     }
 
+    /**
+     * The weight, in bytes, of the prepared statements held by the caches.
+     */
+    public static long preparedStatementsWeight()
+    {
+        return preparedStatements.weightedSize() + thriftPreparedStatements.weightedSize();
+    }
+
     // Work around initialization dependency
     private static enum InternalStateInstance
     {
@@ -139,24 +161,40 @@ public class QueryProcessor implements QueryHandler
         }
     }
 
-    public static void preloadPreparedStatement()
+    /**
+     * Prepares again a statement which isn't in the cache (because it was evicted, or prepared before a restart)
+     * from its persisted query string, so that clients don't have to.
+     */
+    private static ParsedStatement.Prepared loadPreparedStatement(MD5Digest id)
     {
-        ClientState clientState = ClientState.forInternalCalls();
-        int count = 0;
-        for (Pair<String, String> useKeyspaceAndCQL : SystemKeyspace.loadPreparedStatements())
+        storedStatementsLock.readLock().lock();
+        try
         {
+            Pair<String, String> keyspaceAndCQL = SystemKeyspace.loadPreparedStatement(id);
+            if (keyspaceAndCQL == null)
+                return null;
+
             try
             {
-                clientState.setKeyspace(useKeyspaceAndCQL.left);
-                prepare(useKeyspaceAndCQL.right, clientState, false);
-                count++;
+                ClientState clientState = ClientState.forInternalCalls();
+                if (keyspaceAndCQL.left != null)
+                    clientState.setKeyspace(keyspaceAndCQL.left);
+                prepare(keyspaceAndCQL.right, clientState, false);
+                metrics.preparedStatementsLoaded.inc();
+                return preparedStatements.get(id);
             }
             catch (RequestValidationException e)
             {
-                logger.warn("prepared statement recreation error: {}", useKeyspaceAndCQL.right, e);
+                // the schema has changed in a way that makes the statement invalid, so clients will have to fail preparing it
+                logger.debug("Could not prepare again stored statement {}, removing it", keyspaceAndCQL.right, e);
+                SystemKeyspace.removePreparedStatement(id);
+                return null;
             }
         }
-        logger.info("Preloaded {} prepared statements", count);
+        finally
+        {
+            storedStatementsLock.readLock().unlock();
+        }
     }
 
     @VisibleForTesting
@@ -164,6 +202,7 @@ public class QueryProcessor implements QueryHandler
     {
         preparedStatements.clear();
         thriftPreparedStatements.clear();
+        unknownPreparedStatements.clear();
     }
 
     private static QueryState internalQueryState()
@@ -178,7 +217,14 @@ public class QueryProcessor implements QueryHandler
 
     public ParsedStatement.Prepared getPrepared(MD5Digest id)
     {
-        return preparedStatements.get(id);
+        ParsedStatement.Prepared prepared = preparedStatements.get(id);
+        if (prepared != null || unknownPreparedStatements.containsKey(id))
+            return prepared;
+
+        prepared = loadPreparedStatement(id);
+        if (prepared == null)
+            unknownPreparedStatements.put(id, Boolean.TRUE);
+        return prepared;
     }
 
     public ParsedStatement.Prepared getPreparedForThrift(Integer id)
@@ -472,11 +518,49 @@ public class QueryProcessor implements QueryHandler
                                                                 queryString.substring(0, 200)));
             MD5Digest statementId = computeId(queryString, keyspace);
             preparedStatements.put(statementId, prepared);
-            SystemKeyspace.writePreparedStatement(keyspace, statementId, queryString);
+            unknownPreparedStatements.remove(statementId);
+            SystemKeyspace.writePreparedStatement(keyspace, statementId, queryString,
+                                                  referencedTables(prepared.statement), referencedFunctions(prepared.statement));
             return new ResultMessage.Prepared(statementId, prepared);
         }
     }
 
+    /**
+     * The tables read or written by a statement, as "keyspace.table" strings.
+     */
+    private static Set<String> referencedTables(CQLStatement statement)
+    {
+        if (statement instanceof ModificationStatement)
+        {
+            ModificationStatement modificationStatement = (ModificationStatement) statement;
+            return Collections.singleton(modificationStatement.keyspace() + '.' + modificationStatement.columnFamily());
+        }
+        if (statement instanceof SelectStatement)
+        {
+            SelectStatement selectStatement = (SelectStatement) statement;
+            return Collections.singleton(selectStatement.keyspace() + '.' + selectStatement.columnFamily());
+        }
+        if (statement instanceof BatchStatement)
+        {
+            Set<String> tables = new HashSet<>();
+            for (ModificationStatement stmt : ((BatchStatement) statement).getStatements())
+                tables.addAll(referencedTables(stmt));
+            return tables;
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * The functions used by a statement, as "keyspace.function" strings.
+     */
+    private static Set<String> referencedFunctions(CQLStatement statement)
+    {
+        Set<String> functions = new HashSet<>();
+        for (Function function : statement.getFunctions())
+            functions.add(function.name().keyspace + '.' + function.name().name);
+        return functions;
+    }
+
     public ResultMessage processPrepared(CQLStatement statement,
                                          QueryState state,
                                          QueryOptions options,
@@ -584,44 +668,45 @@ public class QueryProcessor implements QueryHandler
     {
         private static void removeInvalidPreparedStatements(String ksName, String cfName)
         {
-            removeInvalidPreparedStatements(internalStatements.values().iterator(), ksName, cfName);
-            removeInvalidPersistentPreparedStatements(preparedStatements.entrySet().iterator(), ksName, cfName);
-            removeInvalidPreparedStatements(thriftPreparedStatements.values().iterator(), ksName, cfName);
+            // Stored statements are removed first, as they would otherwise be prepared again against the new schema
+            // once removed from the cache, and clients would not be told to prepare them again (and so to refresh
+            // their result metadata). This includes statements which aren't cached anymore. Statements being prepared
+            // again from the table are waited for, so that they are either removed below or not found anymore.
+            storedStatementsLock.writeLock().lock();
+            try
+            {
+                SystemKeyspace.removePreparedStatementsForTable(ksName, cfName);
+                removeInvalidPreparedStatements(internalStatements.values().iterator(), ksName, cfName);
+                removeInvalidPreparedStatements(preparedStatements.values().iterator(), ksName, cfName);
+                removeInvalidPreparedStatements(thriftPreparedStatements.values().iterator(), ksName, cfName);
+            }
+            finally
+            {
+                storedStatementsLock.writeLock().unlock();
+            }
         }
 
         private static void removeInvalidPreparedStatementsForFunction(String ksName, String functionName)
         {
             Predicate<Function> matchesFunction = f -> ksName.equals(f.name().keyspace) && functionName.equals(f.name().name);
 
-            for (Iterator<Map.Entry<MD5Digest, ParsedStatement.Prepared>> iter = preparedStatements.entrySet().iterator();
-                 iter.hasNext();)
+            storedStatementsLock.writeLock().lock();
+            try
             {
-                Map.Entry<MD5Digest, ParsedStatement.Prepared> pstmt = iter.next();
-                if (Iterables.any(pstmt.getValue().statement.getFunctions(), matchesFunction))
-                {
-                    SystemKeyspace.removePreparedStatement(pstmt.getKey());
-                    iter.remove();
-                }
-            }
-
+                SystemKeyspace.removePreparedStatementsForFunction(ksName, functionName);
 
-            Iterators.removeIf(internalStatements.values().iterator(),
-                               statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
+                Iterators.removeIf(preparedStatements.values().iterator(),
+                                   statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
 
-            Iterators.removeIf(thriftPreparedStatements.values().iterator(),
-                               statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
-        }
+                Iterators.removeIf(internalStatements.values().iterator(),
+                                   statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
 
-        private static void removeInvalidPersistentPreparedStatements(Iterator<Map.Entry<MD5Digest, ParsedStatement.Prepared>> iterator,
-                                                                      String ksName, String cfName)
-        {
-            while (iterator.hasNext())
+                Iterators.removeIf(thriftPreparedStatements.values().iterator(),
+                                   statement -> Iterables.any(statement.statement.getFunctions(), matchesFunction));
+            }
+            finally
             {
-                Map.Entry<MD5Digest, ParsedStatement.Prepared> entry = iterator.next();
-                if (shouldInvalidate(ksName, cfName, entry.getValue().statement)) {
-                    SystemKeyspace.removePreparedStatement(entry.getKey());
-                    iterator.remove();
-                }
+                storedStatementsLock.writeLock().unlock();
             }
         }
 
@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.*;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import org.apache.cassandra.transport.*;
 import org.apache.cassandra.db.marshal.AbstractType;
@@ -37,8 +38,52 @@ public class ResultSet
 {
     public static final Codec codec = new Codec();
 
+    private static final int MIN_ENCODED_CHUNK_SIZE = 1024;
+    private static final int MAX_ENCODED_CHUNK_SIZE = 64 * 1024;
+
     public final ResultMetadata metadata;
-    public final List<List<ByteBuffer>> rows;
+    // null once encodeRows() has been called, until the encoded rows are decoded back by rows()
+    private List<List<ByteBuffer>> decodedRows;
+
+    /**
+     * The rows of this result set. They are decoded on first access if they were encoded as they were added, so
+     * {@link #size()} should be preferred to count them.
+     */
+    public final List<List<ByteBuffer>> rows = new AbstractList<List<ByteBuffer>>()
+    {
+        public List<ByteBuffer> get(int index)
+        {
+            return rows().get(index);
+        }
+
+        public int size()
+        {
+            return ResultSet.this.size();
+        }
+
+        public List<ByteBuffer> set(int index, List<ByteBuffer> row)
+        {
+            return rows().set(index, row);
+        }
+
+        public void add(int index, List<ByteBuffer> row)
+        {
+            rows().add(index, row);
+        }
+
+        public List<ByteBuffer> remove(int index)
+        {
+            return rows().remove(index);
+        }
+    };
+
+    // Once encodeRows() has been called, rows are written in the native protocol format into these (pooled) chunks as
+    // they are added, rather than being kept in decodedRows. A row is never split across two chunks.
+    private List<ByteBuf> encodedChunks;
+    private int encodedRowCount;
+    private int encodedRowsSize;
+    // whether the encoded rows have been handed over to the native protocol (see takeEncodedRows())
+    private boolean encodedRowsTaken;
 
     public ResultSet(List<ColumnSpecification> metadata)
     {
@@ -48,12 +93,43 @@ public class ResultSet
     public ResultSet(ResultMetadata metadata, List<List<ByteBuffer>> rows)
     {
         this.metadata = metadata;
-        this.rows = rows;
+        this.decodedRows = rows;
+    }
+
+    /**
+     * Makes this (empty) result set serialize the rows added to it straight away, in the native protocol format and
+     * into pooled buffers, instead of keeping them as lists of values. A result that is sent to a client is then never
+     * held twice in memory (as values and then as the frame body), and its encoded size doesn't have to be computed
+     * value by value.
+     * <p>
+     * This is transparent to callers: the rows are decoded back if they are accessed through {@link #rows()}, so it
+     * should only be used for results that will most likely be sent as is.
+     */
+    public void encodeRows()
+    {
+        assert decodedRows.isEmpty();
+        decodedRows = null;
+        encodedChunks = new ArrayList<>();
+    }
+
+    /**
+     * Whether rows are encoded as they are added, in which case the lists passed to {@link #addRow} are not retained.
+     */
+    public boolean isEncodingRows()
+    {
+        return decodedRows == null;
+    }
+
+    public List<List<ByteBuffer>> rows()
+    {
+        if (decodedRows == null)
+            decodeRows();
+        return decodedRows;
     }
 
     public int size()
     {
-        return rows.size();
+        return decodedRows == null ? encodedRowCount : decodedRows.size();
     }
 
     public boolean isEmpty()
@@ -64,37 +140,139 @@ public class ResultSet
     public void addRow(List<ByteBuffer> row)
     {
         assert row.size() == metadata.valueCount();
-        rows.add(row);
+        if (decodedRows == null)
+            encodeRow(row);
+        else
+            decodedRows.add(row);
     }
 
     public void addColumnValue(ByteBuffer value)
     {
-        if (rows.isEmpty() || lastRow().size() == metadata.valueCount())
-            rows.add(new ArrayList<ByteBuffer>(metadata.valueCount()));
+        if (rows().isEmpty() || lastRow().size() == metadata.valueCount())
+            decodedRows.add(new ArrayList<ByteBuffer>(metadata.valueCount()));
 
         lastRow().add(value);
     }
 
     private List<ByteBuffer> lastRow()
     {
-        return rows.get(rows.size() - 1);
+        return decodedRows.get(decodedRows.size() - 1);
     }
 
     public void reverse()
     {
-        Collections.reverse(rows);
+        Collections.reverse(rows());
     }
 
     public void trim(int limit)
     {
-        int toRemove = rows.size() - limit;
+        int toRemove = size() - limit;
         if (toRemove > 0)
         {
+            List<List<ByteBuffer>> rows = rows();
             for (int i = 0; i < toRemove; i++)
                 rows.remove(rows.size() - 1);
         }
     }
 
+    private void encodeRow(List<ByteBuffer> row)
+    {
+        // Note that we do only want to serialize only the first columnCount values, even if the row
+        // as more: see comment on ResultMetadata.names field.
+        int size = 0;
+        for (int i = 0; i < metadata.columnCount; i++)
+            size += CBUtil.sizeOfValue(row.get(i));
+
+        ByteBuf chunk = encodedChunks.isEmpty() ? null : encodedChunks.get(encodedChunks.size() - 1);
+        if (chunk == null || chunk.writableBytes() < size)
+        {
+            // Start small so that tiny results don't pin a large buffer, and grow up to a fixed chunk size so that
+            // large ones never need to be re-allocated and copied
+            int chunkSize = chunk == null ? MIN_ENCODED_CHUNK_SIZE : Math.min(chunk.capacity() * 2, MAX_ENCODED_CHUNK_SIZE);
+            chunk = CBUtil.allocator.buffer(Math.max(chunkSize, size));
+            encodedChunks.add(chunk);
+        }
+
+        for (int i = 0; i < metadata.columnCount; i++)
+            CBUtil.writeValue(row.get(i), chunk);
+        encodedRowCount++;
+        encodedRowsSize += size;
+    }
+
+    private void decodeRows()
+    {
+        if (encodedChunks == null)
+            throw new IllegalStateException("The encoded rows of this result set have already been written out");
+
+        List<List<ByteBuffer>> decoded = new ArrayList<>(encodedRowCount);
+        for (ByteBuf chunk : encodedChunks)
+        {
+            while (chunk.isReadable())
+            {
+                List<ByteBuffer> row = new ArrayList<>(metadata.columnCount);
+                for (int i = 0; i < metadata.columnCount; i++)
+                    row.add(CBUtil.readValue(chunk));
+                decoded.add(row);
+            }
+            chunk.release();
+        }
+        encodedChunks = null;
+        decodedRows = decoded;
+    }
+
+    /**
+     * Releases the rows encoded so far, if any, for a result set that is abandoned.
+     */
+    public void release()
+    {
+        if (encodedChunks == null)
+            return;
+
+        for (ByteBuf chunk : encodedChunks)
+            chunk.release();
+        encodedChunks = null;
+    }
+
+    /**
+     * The size of the rows that have been encoded as they were added (see {@link #encodeRows()}), 0 if there isn't any.
+     */
+    public int encodedRowsSize()
+    {
+        return encodedChunks == null ? 0 : encodedRowsSize;
+    }
+
+    /**
+     * Hands the rows encoded so far over to the caller, which becomes responsible for releasing them, and for sending
+     * them right after this result set: from then on, it is only encoded up to its row count.
+     */
+    public ByteBuf takeEncodedRows()
+    {
+        if (encodedChunks == null)
+            throw new IllegalStateException("The encoded rows of this result set have already been written out");
+
+        ByteBuf encoded = encodedChunks.size() == 1
+                        ? encodedChunks.get(0)
+                        : Unpooled.wrappedBuffer(Math.max(2, encodedChunks.size()), encodedChunks.toArray(new ByteBuf[encodedChunks.size()]));
+        encodedChunks = null;
+        encodedRowsTaken = true;
+        return encoded;
+    }
+
+    private void writeEncodedRows(ByteBuf dest)
+    {
+        if (encodedRowsTaken)
+            return;
+        if (encodedChunks == null)
+            throw new IllegalStateException("The encoded rows of this result set have already been written out");
+
+        for (ByteBuf chunk : encodedChunks)
+        {
+            dest.writeBytes(chunk);
+            chunk.release();
+        }
+        encodedChunks = null;
+    }
+
     public CqlResult toThriftResult()
     {
         assert metadata.names != null;
@@ -115,6 +293,7 @@ public class ResultSet
 
         }
 
+        List<List<ByteBuffer>> rows = rows();
         List<CqlRow> cqlRows = new ArrayList<CqlRow>(rows.size());
         for (List<ByteBuffer> row : rows)
         {
@@ -140,7 +319,7 @@ public class ResultSet
         {
             StringBuilder sb = new StringBuilder();
             sb.append(metadata).append('\n');
-            for (List<ByteBuffer> row : rows)
+            for (List<ByteBuffer> row : rows())
             {
                 for (int i = 0; i < row.size(); i++)
                 {
@@ -194,8 +373,14 @@ public class ResultSet
         public void encode(ResultSet rs, ByteBuf dest, int version)
         {
             ResultMetadata.codec.encode(rs.metadata, dest, version);
-            dest.writeInt(rs.rows.size());
-            for (List<ByteBuffer> row : rs.rows)
+            dest.writeInt(rs.size());
+            if (rs.decodedRows == null)
+            {
+                rs.writeEncodedRows(dest);
+                return;
+            }
+
+            for (List<ByteBuffer> row : rs.decodedRows)
             {
                 // Note that we do only want to serialize only the first columnCount values, even if the row
                 // as more: see comment on ResultMetadata.names field.
@@ -207,7 +392,10 @@ public class ResultSet
         public int encodedSize(ResultSet rs, int version)
         {
             int size = ResultMetadata.codec.encodedSize(rs.metadata, version) + 4;
-            for (List<ByteBuffer> row : rs.rows)
+            if (rs.decodedRows == null)
+                return size + rs.encodedRowsSize();
+
+            for (List<ByteBuffer> row : rs.decodedRows)
             {
                 for (int i = 0; i < rs.metadata.columnCount; i++)
                     size += CBUtil.sizeOfValue(row.get(i));
@@ -82,14 +82,14 @@ public abstract class UntypedResultSet implements Iterable<UntypedResultSet.Row>
         {
             if (cqlRows.size() != 1)
                 throw new IllegalStateException("One row required, " + cqlRows.size() + " found");
-            return new Row(cqlRows.metadata.requestNames(), cqlRows.rows.get(0));
+            return new Row(cqlRows.metadata.requestNames(), cqlRows.rows().get(0));
         }
 
         public Iterator<Row> iterator()
         {
             return new AbstractIterator<Row>()
             {
-                Iterator<List<ByteBuffer>> iter = cqlRows.rows.iterator();
+                Iterator<List<ByteBuffer>> iter = cqlRows.rows().iterator();
 
                 protected Row computeNext()
                 {
@@ -190,7 +190,7 @@ public abstract class UntypedResultSet implements Iterable<UntypedResultSet.Row>
                         try (ReadExecutionController executionController = pager.executionController();
                              PartitionIterator iter = pager.fetchPageInternal(pageSize, executionController))
                         {
-                            currentPage = select.process(iter, nowInSec).rows.iterator();
+                            currentPage = select.process(iter, nowInSec).rows().iterator();
                         }
                     }
                     return new Row(metadata, currentPage.next());
@@ -559,6 +559,15 @@ public final class StatementRestrictions
         filterRestrictions.add(expression);
     }
 
+    /**
+     * Checks if the restrictions translate into a {@code RowFilter}, otherwise {@link #getRowFilter} always returns
+     * {@link RowFilter#NONE}.
+     */
+    public boolean hasRowFilterRestrictions()
+    {
+        return !filterRestrictions.isEmpty();
+    }
+
     public RowFilter getRowFilter(SecondaryIndexManager indexManager, QueryOptions options)
     {
         if (filterRestrictions.isEmpty())
@@ -240,7 +240,16 @@ public abstract class Selection
 
     public ResultSetBuilder resultSetBuilder(QueryOptions options, boolean isJons) throws InvalidRequestException
     {
-        return new ResultSetBuilder(options, isJons);
+        return resultSetBuilder(options, isJons, false);
+    }
+
+    /**
+     * @param encodeRows whether the rows should be serialized in the native protocol format as they are built
+     * (see {@link ResultSet#encodeRows()}).
+     */
+    public ResultSetBuilder resultSetBuilder(QueryOptions options, boolean isJons, boolean encodeRows) throws InvalidRequestException
+    {
+        return new ResultSetBuilder(options, isJons, encodeRows);
     }
 
     public abstract boolean isAggregate();
@@ -308,9 +317,11 @@ public abstract class Selection
 
         private final boolean isJson;
 
-        private ResultSetBuilder(QueryOptions options, boolean isJson) throws InvalidRequestException
+        private ResultSetBuilder(QueryOptions options, boolean isJson, boolean encodeRows) throws InvalidRequestException
         {
             this.resultSet = new ResultSet(getResultMetadata(isJson).copy(), new ArrayList<List<ByteBuffer>>());
+            if (encodeRows)
+                resultSet.encodeRows();
             this.protocolVersion = options.getProtocolVersion();
             this.selectors = newSelectors(options);
             this.timestamps = collectTimestamps ? new long[columns.size()] : null;
@@ -373,7 +384,12 @@ public abstract class Selection
                     selectors.reset();
                 }
             }
-            current = new ArrayList<>(columns.size());
+
+            // encoded rows are copied as they are added, so the same list can then be reused for every row
+            if (current != null && resultSet.isEncodingRows())
+                current.clear();
+            else
+                current = new ArrayList<>(columns.size());
         }
 
         public ResultSet build() throws InvalidRequestException
@@ -391,6 +407,14 @@ public abstract class Selection
             return resultSet;
         }
 
+        /**
+         * Releases what the result set being built holds, if it is abandoned before being built.
+         */
+        public void abort()
+        {
+            resultSet.release();
+        }
+
         private List<ByteBuffer> getOutputRow()
         {
             List<ByteBuffer> outputRow = selectors.getOutputRow(protocolVersion);
@@ -36,6 +36,7 @@ import org.apache.cassandra.cql3.selection.Selection;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.filter.*;
 import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.monitoring.SlowQueryLog;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.rows.RowIterator;
 import org.apache.cassandra.db.view.View;
@@ -425,13 +426,53 @@ public abstract class ModificationStatement implements CQLStatement
         else
             cl.validateForWrite(cfm.ksName);
 
+        long startNanos = System.nanoTime();
         Collection<? extends IMutation> mutations = getMutations(options, false, options.getTimestamp(queryState));
-        if (!mutations.isEmpty())
-            StorageProxy.mutateWithTriggers(mutations, cl, false);
-
+        long preparedNanos = System.nanoTime();
+        boolean failed = true;
+        try
+        {
+            if (!mutations.isEmpty())
+                StorageProxy.mutateWithTriggers(mutations, cl, false);
+            failed = false;
+        }
+        finally
+        {
+            // failed and timed out writes are often the slowest ones, so they are recorded too
+            long endNanos = System.nanoTime();
+            String type = failed ? "failed write" : "write";
+            SlowQueryLog.instance.maybeRecord(endNanos - startNanos, () ->
+                new SlowQueryLog.SlowQuery(type,
+                                           keyspace(),
+                                           columnFamily(),
+                                           toCQLShape(),
+                                           mutations.size() == 1 ? mutations.iterator().next().key().getToken().toString() : null,
+                                           SlowQueryLog.SlowQuery.UNKNOWN,
+                                           SlowQueryLog.SlowQuery.UNKNOWN,
+                                           SlowQueryLog.SlowQuery.phases(new String[]{ "prepare", "write" }, startNanos, preparedNanos, endNanos)));
+        }
         return null;
     }
 
+    /**
+     * The shape of this statement for the slow query log: the kind of statement and the columns it updates, without
+     * any of the values it is executed with.
+     */
+    private String toCQLShape()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(type).append(' ').append(keyspace()).append('.').append(columnFamily()).append(" (");
+        boolean first = true;
+        for (ColumnDefinition column : updatedColumns)
+        {
+            if (!first)
+                sb.append(", ");
+            sb.append(column.name);
+            first = false;
+        }
+        return sb.append(')').toString();
+    }
+
     public ResultMessage executeWithCondition(QueryState queryState, QueryOptions options)
     throws RequestExecutionException, RequestValidationException
     {
@@ -514,8 +555,8 @@ public abstract class ModificationStatement implements CQLStatement
         for (int i = 0; i < right.size(); i++)
         {
             List<ByteBuffer> row = new ArrayList<ByteBuffer>(size);
-            row.addAll(left.rows.get(0));
-            row.addAll(right.rows.get(i));
+            row.addAll(left.rows().get(0));
+            row.addAll(right.rows().get(i));
             rows.add(row);
         }
         return new ResultSet(new ResultSet.ResultMetadata(specs), rows);
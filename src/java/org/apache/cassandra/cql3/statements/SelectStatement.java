@@ -27,10 +27,12 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.auth.Permission;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.*;
 import org.apache.cassandra.cql3.functions.Function;
 import org.apache.cassandra.cql3.restrictions.StatementRestrictions;
 import org.apache.cassandra.cql3.selection.RawSelector;
+import org.apache.cassandra.cql3.selection.Selectable;
 import org.apache.cassandra.cql3.selection.Selection;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.filter.*;
@@ -50,8 +52,10 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageProxy;
 import org.apache.cassandra.service.pager.PagingState;
 import org.apache.cassandra.service.pager.QueryPager;
+import org.apache.cassandra.thrift.ThriftClientState;
 import org.apache.cassandra.thrift.ThriftValidation;
 import org.apache.cassandra.transport.messages.ResultMessage;
 import org.apache.cassandra.utils.ByteBufferUtil;
@@ -95,6 +99,14 @@ public class SelectStatement implements CQLStatement
 
     private final ColumnFilter queriedColumns;
 
+    /**
+     * The aggregates to compute on the replicas of each queried range (see {@link AggregateCommand}), or {@code null}
+     * if this statement can't have its aggregates computed that way.
+     */
+    private final List<AggregateCommand.Aggregate> pushableAggregates;
+
+    private final ExecutionPlan plan;
+
     // Used by forSelection below
     private static final Parameters defaultParameters = new Parameters(Collections.<ColumnDefinition.Raw, Boolean>emptyMap(), false, false, false);
 
@@ -106,7 +118,8 @@ public class SelectStatement implements CQLStatement
                            boolean isReversed,
                            Comparator<List<ByteBuffer>> orderingComparator,
                            Term limit,
-                           Term perPartitionLimit)
+                           Term perPartitionLimit,
+                           List<AggregateCommand.Aggregate> pushableAggregates)
     {
         this.cfm = cfm;
         this.boundTerms = boundTerms;
@@ -117,7 +130,9 @@ public class SelectStatement implements CQLStatement
         this.parameters = parameters;
         this.limit = limit;
         this.perPartitionLimit = perPartitionLimit;
+        this.pushableAggregates = pushableAggregates;
         this.queriedColumns = gatherQueriedColumns();
+        this.plan = new ExecutionPlan();
     }
 
     public Iterable<Function> getFunctions()
@@ -178,6 +193,7 @@ public class SelectStatement implements CQLStatement
                                    false,
                                    null,
                                    null,
+                                   null,
                                    null);
     }
 
@@ -225,13 +241,27 @@ public class SelectStatement implements CQLStatement
         int userPerPartitionLimit = getPerPartitionLimit(options);
         ReadQuery query = getQuery(options, nowInSec, userLimit, userPerPartitionLimit);
 
+        if (canPushDownAggregates(cl) && query instanceof PartitionRangeReadCommand)
+        {
+            ResultMessage.Rows rows = executeWithPushedDownAggregates((PartitionRangeReadCommand) query, options, state.getClientState());
+            if (rows != null)
+                return rows;
+        }
+
         int pageSize = getPageSize(options);
 
+        // Results returned to native protocol clients are serialized as they are built rather than once complete, unless
+        // they have to be re-ordered first. Internal and thrift queries consume their rows as values, so there is no
+        // point for them.
+        boolean encodeRows = !state.getClientState().isInternal
+                             && !(state.getClientState() instanceof ThriftClientState)
+                             && !needsPostQueryOrdering();
+
         if (pageSize <= 0 || query.limits().count() <= pageSize)
-            return execute(query, options, state, nowInSec, userLimit);
+            return execute(query, options, state, nowInSec, userLimit, encodeRows);
 
         QueryPager pager = query.getPager(options.getPagingState(), options.getProtocolVersion());
-        return execute(Pager.forDistributedQuery(pager, cl, state.getClientState()), options, pageSize, nowInSec, userLimit);
+        return execute(Pager.forDistributedQuery(pager, cl, state.getClientState()), options, pageSize, nowInSec, userLimit, encodeRows);
     }
 
     private int getPageSize(QueryOptions options)
@@ -254,7 +284,7 @@ public class SelectStatement implements CQLStatement
 
     public ReadQuery getQuery(QueryOptions options, int nowInSec, int userLimit, int perPartitionLimit) throws RequestValidationException
     {
-        DataLimits limit = getDataLimits(userLimit, perPartitionLimit);
+        DataLimits limit = plan.dataLimits(userLimit, perPartitionLimit);
         if (restrictions.isKeyRange() || restrictions.usesSecondaryIndexing())
             return getRangeCommand(options, limit, nowInSec);
 
@@ -265,11 +295,12 @@ public class SelectStatement implements CQLStatement
                                        QueryOptions options,
                                        QueryState state,
                                        int nowInSec,
-                                       int userLimit) throws RequestValidationException, RequestExecutionException
+                                       int userLimit,
+                                       boolean encodeRows) throws RequestValidationException, RequestExecutionException
     {
         try (PartitionIterator data = query.execute(options.getConsistency(), state.getClientState()))
         {
-            return processResults(data, options, nowInSec, userLimit);
+            return processResults(data, options, nowInSec, userLimit, encodeRows);
         }
     }
 
@@ -344,10 +375,11 @@ public class SelectStatement implements CQLStatement
                                        QueryOptions options,
                                        int pageSize,
                                        int nowInSec,
-                                       int userLimit) throws RequestValidationException, RequestExecutionException
+                                       int userLimit,
+                                       boolean encodeRows) throws RequestValidationException, RequestExecutionException
     {
         if (selection.isAggregate())
-            return pageAggregateQuery(pager, options, pageSize, nowInSec);
+            return pageAggregateQuery(pager, options, pageSize, nowInSec, encodeRows);
 
         // We can't properly do post-query ordering if we page (see #6722)
         checkFalse(needsPostQueryOrdering(),
@@ -357,7 +389,7 @@ public class SelectStatement implements CQLStatement
         ResultMessage.Rows msg;
         try (PartitionIterator page = pager.fetchPage(pageSize))
         {
-            msg = processResults(page, options, nowInSec, userLimit);
+            msg = processResults(page, options, nowInSec, userLimit, encodeRows);
         }
 
         // Please note that the isExhausted state of the pager only gets updated when we've closed the page, so this
@@ -368,8 +400,47 @@ public class SelectStatement implements CQLStatement
         return msg;
     }
 
-    private ResultMessage.Rows pageAggregateQuery(Pager pager, QueryOptions options, int pageSize, int nowInSec)
+    /**
+     * Whether the aggregates of this statement can be computed by the replicas of each queried range, which is
+     * the case if a single replica has to be queried per range.
+     */
+    private boolean canPushDownAggregates(ConsistencyLevel cl)
+    {
+        return pushableAggregates != null
+               && (cl == ConsistencyLevel.ONE || cl == ConsistencyLevel.LOCAL_ONE)
+               && DatabaseDescriptor.isAggregatePushdownEnabled();
+    }
+
+    /**
+     * Executes an aggregation query by having each queried range aggregated by one of its replicas, and merging
+     * their partial aggregates.
+     *
+     * @return the aggregation result, or {@code null} if some replicas can't compute the partial aggregates, in
+     * which case the query should be executed normally.
+     */
+    private ResultMessage.Rows executeWithPushedDownAggregates(PartitionRangeReadCommand command, QueryOptions options, ClientState clientState)
     throws RequestValidationException, RequestExecutionException
+    {
+        AggregateCommand aggregateCommand = new AggregateCommand(command,
+                                                                 pushableAggregates,
+                                                                 selectsStaticOnlyPartitions(),
+                                                                 options.getProtocolVersion());
+
+        List<List<ByteBuffer>> partials = StorageProxy.aggregateRanges(aggregateCommand,
+                                                                          options.getConsistency(),
+                                                                          clientState,
+                                                                          getPageSize(options));
+        if (partials == null)
+            return null;
+
+        warnAboutAggregation();
+
+        List<List<ByteBuffer>> rows = new ArrayList<>(1);
+        rows.add(aggregateCommand.merge(partials));
+        return new ResultMessage.Rows(new ResultSet(selection.getResultMetadata(parameters.isJson).copy(), rows));
+    }
+
+    private void warnAboutAggregation()
     {
         if (!restrictions.hasPartitionKeyRestrictions())
         {
@@ -381,30 +452,45 @@ public class SelectStatement implements CQLStatement
             logger.warn("Aggregation query used on multiple partition keys (IN restriction)");
             ClientWarn.instance.warn("Aggregation query used on multiple partition keys (IN restriction)");
         }
+    }
+
+    private ResultMessage.Rows pageAggregateQuery(Pager pager, QueryOptions options, int pageSize, int nowInSec, boolean encodeRows)
+    throws RequestValidationException, RequestExecutionException
+    {
+        warnAboutAggregation();
 
-        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, parameters.isJson);
-        while (!pager.isExhausted())
+        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, parameters.isJson, encodeRows);
+        try
         {
-            try (PartitionIterator iter = pager.fetchPage(pageSize))
+            while (!pager.isExhausted())
             {
-                while (iter.hasNext())
+                try (PartitionIterator iter = pager.fetchPage(pageSize))
                 {
-                    try (RowIterator partition = iter.next())
+                    while (iter.hasNext())
                     {
-                        processPartition(partition, options, result, nowInSec);
+                        try (RowIterator partition = iter.next())
+                        {
+                            processPartition(partition, options, result, nowInSec);
+                        }
                     }
                 }
             }
+            return new ResultMessage.Rows(result.build());
+        }
+        catch (Throwable t)
+        {
+            result.abort();
+            throw t;
         }
-        return new ResultMessage.Rows(result.build());
     }
 
     private ResultMessage.Rows processResults(PartitionIterator partitions,
                                               QueryOptions options,
                                               int nowInSec,
-                                              int userLimit) throws RequestValidationException
+                                              int userLimit,
+                                              boolean encodeRows) throws RequestValidationException
     {
-        ResultSet rset = process(partitions, options, nowInSec, userLimit);
+        ResultSet rset = process(partitions, options, nowInSec, userLimit, encodeRows);
         return new ResultMessage.Rows(rset);
     }
 
@@ -426,20 +512,20 @@ public class SelectStatement implements CQLStatement
             {
                 try (PartitionIterator data = query.executeInternal(executionController))
                 {
-                    return processResults(data, options, nowInSec, userLimit);
+                    return processResults(data, options, nowInSec, userLimit, false);
                 }
             }
             else
             {
                 QueryPager pager = query.getPager(options.getPagingState(), options.getProtocolVersion());
-                return execute(Pager.forInternalQuery(pager, executionController), options, pageSize, nowInSec, userLimit);
+                return execute(Pager.forInternalQuery(pager, executionController), options, pageSize, nowInSec, userLimit, false);
             }
         }
     }
 
     public ResultSet process(PartitionIterator partitions, int nowInSec) throws InvalidRequestException
     {
-        return process(partitions, QueryOptions.DEFAULT, nowInSec, getLimit(QueryOptions.DEFAULT));
+        return process(partitions, QueryOptions.DEFAULT, nowInSec, getLimit(QueryOptions.DEFAULT), false);
     }
 
     public String keyspace()
@@ -567,6 +653,14 @@ public class SelectStatement implements CQLStatement
 
     private ClusteringIndexFilter makeClusteringIndexFilter(QueryOptions options)
     throws InvalidRequestException
+    {
+        return plan.hasConstantClusteringIndexFilter
+             ? plan.clusteringIndexFilter
+             : computeClusteringIndexFilter(options);
+    }
+
+    private ClusteringIndexFilter computeClusteringIndexFilter(QueryOptions options)
+    throws InvalidRequestException
     {
         if (parameters.isDistinct)
         {
@@ -721,27 +815,73 @@ public class SelectStatement implements CQLStatement
      */
     public RowFilter getRowFilter(QueryOptions options) throws InvalidRequestException
     {
+        if (!restrictions.hasRowFilterRestrictions())
+            return RowFilter.NONE;
+
         ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(columnFamily());
         SecondaryIndexManager secondaryIndexManager = cfs.indexManager;
         RowFilter filter = restrictions.getRowFilter(secondaryIndexManager, options);
         return filter;
     }
 
+    /**
+     * The parts of the read commands of this statement that are computed once when the statement is prepared: the
+     * limits used without LIMIT nor PER PARTITION LIMIT, and the clustering index filter when it doesn't depend on the
+     * bound values. The partition keys, the clustering index filter of the clustering restrictions and the row filter
+     * are still computed from the bound values on every execution (the queried columns are computed by the
+     * constructor).
+     */
+    private final class ExecutionPlan
+    {
+        // the limits used when neither a LIMIT nor a PER PARTITION LIMIT are set (or bound)
+        private final DataLimits noLimits;
+
+        // whether the clustering index filter is the same for all executions, in which case it is clusteringIndexFilter,
+        // which is null if the statement selects nothing
+        private final boolean hasConstantClusteringIndexFilter;
+        private final ClusteringIndexFilter clusteringIndexFilter;
+
+        private ExecutionPlan()
+        {
+            noLimits = getDataLimits(DataLimits.NO_LIMIT, DataLimits.NO_LIMIT);
+            hasConstantClusteringIndexFilter = parameters.isDistinct || !restrictions.hasClusteringColumnsRestriction();
+            clusteringIndexFilter = hasConstantClusteringIndexFilter
+                                  ? computeClusteringIndexFilter(QueryOptions.forInternalCalls(Collections.emptyList()))
+                                  : null;
+        }
+
+        private DataLimits dataLimits(int userLimit, int perPartitionLimit)
+        {
+            return userLimit == DataLimits.NO_LIMIT && perPartitionLimit == DataLimits.NO_LIMIT
+                 ? noLimits
+                 : getDataLimits(userLimit, perPartitionLimit);
+        }
+    }
+
     private ResultSet process(PartitionIterator partitions,
                               QueryOptions options,
                               int nowInSec,
-                              int userLimit) throws InvalidRequestException
+                              int userLimit,
+                              boolean encodeRows) throws InvalidRequestException
     {
-        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, parameters.isJson);
-        while (partitions.hasNext())
+        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, parameters.isJson, encodeRows);
+        ResultSet cqlRows;
+        try
         {
-            try (RowIterator partition = partitions.next())
+            while (partitions.hasNext())
             {
-                processPartition(partition, options, result, nowInSec);
+                try (RowIterator partition = partitions.next())
+                {
+                    processPartition(partition, options, result, nowInSec);
+                }
             }
+            cqlRows = result.build();
+        }
+        catch (Throwable t)
+        {
+            result.abort();
+            throw t;
         }
-
-        ResultSet cqlRows = result.build();
 
         orderResults(cqlRows);
 
@@ -766,18 +906,39 @@ public class SelectStatement implements CQLStatement
     // Used by ModificationStatement for CAS operations
     void processPartition(RowIterator partition, QueryOptions options, Selection.ResultSetBuilder result, int nowInSec)
     throws InvalidRequestException
+    {
+        processPartition(cfm, selection, selectsStaticOnlyPartitions(), partition, options, result, nowInSec);
+    }
+
+    /**
+     * Whether the partitions without any row (but with a static row) are part of the result.
+     */
+    private boolean selectsStaticOnlyPartitions()
+    {
+        // If there is no rows, and there's no restriction on clustering/regular columns,
+        // then provided the select was a full partition selection (either by partition key and/or by static column),
+        // we want to include static columns and we're done.
+        return !restrictions.hasClusteringColumnsRestriction() || cfm.isStaticCompactTable();
+    }
+
+    // Also used by AggregateCommand to compute partial aggregates on replicas
+    public static void processPartition(CFMetaData cfm,
+                                        Selection selection,
+                                        boolean selectsStaticOnlyPartitions,
+                                        RowIterator partition,
+                                        QueryOptions options,
+                                        Selection.ResultSetBuilder result,
+                                        int nowInSec)
+    throws InvalidRequestException
     {
         int protocolVersion = options.getProtocolVersion();
 
         ByteBuffer[] keyComponents = getComponents(cfm, partition.partitionKey());
 
         Row staticRow = partition.staticRow();
-        // If there is no rows, and there's no restriction on clustering/regular columns,
-        // then provided the select was a full partition selection (either by partition key and/or by static column),
-        // we want to include static columns and we're done.
         if (!partition.hasNext())
         {
-            if (!staticRow.isEmpty() && (!restrictions.hasClusteringColumnsRestriction() || cfm.isStaticCompactTable()))
+            if (!staticRow.isEmpty() && selectsStaticOnlyPartitions)
             {
                 result.newRow();
                 for (ColumnDefinition def : selection.getColumns())
@@ -857,7 +1018,7 @@ public class SelectStatement implements CQLStatement
         if (cqlRows.size() == 0 || !needsPostQueryOrdering())
             return;
 
-        Collections.sort(cqlRows.rows, orderingComparator);
+        Collections.sort(cqlRows.rows(), orderingComparator);
     }
 
     public static class RawStatement extends CFStatement
@@ -922,6 +1083,8 @@ public class SelectStatement implements CQLStatement
 
             checkNeedsFiltering(restrictions);
 
+            List<AggregateCommand.Aggregate> pushableAggregates = getPushableAggregates(cfm, selection, restrictions);
+
             SelectStatement stmt = new SelectStatement(cfm,
                                                         boundNames.size(),
                                                         parameters,
@@ -930,11 +1093,42 @@ public class SelectStatement implements CQLStatement
                                                         isReversed,
                                                         orderingComparator,
                                                         prepareLimit(boundNames, limit, keyspace(), limitReceiver()),
-                                                        prepareLimit(boundNames, perPartitionLimit, keyspace(), perPartitionLimitReceiver()));
+                                                        prepareLimit(boundNames, perPartitionLimit, keyspace(), perPartitionLimitReceiver()),
+                                                        pushableAggregates);
 
             return new ParsedStatement.Prepared(stmt, boundNames, boundNames.getPartitionKeyBindIndexes(cfm));
         }
 
+        /**
+         * Returns the aggregates to compute on the replicas of each queried range, or {@code null} if they should be
+         * computed by the coordinator on the queried rows.
+         * <p>
+         * This is only possible for the queries on a range of partitions (which aren't reconciled by the
+         * coordinator other than by concatenating them) selecting only aggregates whose partial results can be
+         * merged.
+         */
+        private List<AggregateCommand.Aggregate> getPushableAggregates(CFMetaData cfm,
+                                                                       Selection selection,
+                                                                       StatementRestrictions restrictions)
+        {
+            if (!selection.isAggregate()
+                || parameters.isDistinct
+                || parameters.isJson
+                || !restrictions.isKeyRange()
+                || restrictions.usesSecondaryIndexing())
+                return null;
+
+            List<AggregateCommand.Aggregate> aggregates = new ArrayList<>(selectClause.size());
+            for (Selectable selectable : RawSelector.toSelectables(selectClause, cfm))
+            {
+                AggregateCommand.Aggregate aggregate = AggregateCommand.Aggregate.forSelectable(selectable);
+                if (aggregate == null)
+                    return null;
+                aggregates.add(aggregate);
+            }
+            return aggregates;
+        }
+
         /**
          * Prepares the restrictions.
          *
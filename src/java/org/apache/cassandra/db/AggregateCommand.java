@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.VariableSpecifications;
+import org.apache.cassandra.cql3.functions.AggregateFcts;
+import org.apache.cassandra.cql3.functions.AggregateFunction;
+import org.apache.cassandra.cql3.functions.Function;
+import org.apache.cassandra.cql3.functions.FunctionName;
+import org.apache.cassandra.cql3.selection.RawSelector;
+import org.apache.cassandra.cql3.selection.Selectable;
+import org.apache.cassandra.cql3.selection.Selection;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.db.partitions.PartitionIterator;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterators;
+import org.apache.cassandra.db.rows.RowIterator;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.pager.QueryPager;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.apache.cassandra.db.TypeSizes.sizeof;
+import static org.apache.cassandra.db.TypeSizes.sizeofUnsignedVInt;
+
+/**
+ * Computes the aggregates selected by a range query on the replica owning the queried range, so that only the
+ * partial aggregates of that range are sent back to the coordinator instead of all the rows it contains.
+ * <p>
+ * Only the native aggregates whose partial results can be combined by another aggregate are supported (see
+ * {@link Aggregate#forSelectable}): the coordinator merges the partial aggregates of each range with
+ * {@link #merge}.
+ */
+public final class AggregateCommand
+{
+    public static final Serializer serializer = new Serializer();
+    public static final IVersionedSerializer<List<ByteBuffer>> responseSerializer = new ResponseSerializer();
+
+    public final PartitionRangeReadCommand command;
+    public final List<Aggregate> aggregates;
+    // see SelectStatement#selectsStaticOnlyPartitions
+    public final boolean selectsStaticOnlyPartitions;
+    public final int protocolVersion;
+
+    public AggregateCommand(PartitionRangeReadCommand command,
+                            List<Aggregate> aggregates,
+                            boolean selectsStaticOnlyPartitions,
+                            int protocolVersion)
+    {
+        this.command = command;
+        this.aggregates = aggregates;
+        this.selectsStaticOnlyPartitions = selectsStaticOnlyPartitions;
+        this.protocolVersion = protocolVersion;
+    }
+
+    public CFMetaData metadata()
+    {
+        return command.metadata();
+    }
+
+    public AggregateCommand forSubRange(AbstractBounds<PartitionPosition> range)
+    {
+        return new AggregateCommand(command.forSubRange(range), aggregates, selectsStaticOnlyPartitions, protocolVersion);
+    }
+
+    public MessageOut<AggregateCommand> createMessage()
+    {
+        return new MessageOut<>(MessagingService.Verb.AGGREGATE, this, serializer);
+    }
+
+    /**
+     * Reads the queried range locally and computes the partial aggregates of its rows.
+     *
+     * @return the value of each of the aggregates, in order
+     */
+    public List<ByteBuffer> executeLocally()
+    {
+        Selection selection = selection();
+        QueryOptions options = QueryOptions.forProtocolVersion(protocolVersion);
+        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, false);
+
+        try (ReadExecutionController executionController = command.executionController();
+             PartitionIterator partitions = UnfilteredPartitionIterators.filter(command.executeLocally(executionController), command.nowInSec()))
+        {
+            addPartitions(partitions, selection, options, result);
+        }
+        return result.build().rows().get(0);
+    }
+
+    /**
+     * Reads the queried range page by page through the regular read path, computing the partial aggregates of its
+     * rows on this node. This is used when the replica of the range couldn't compute them in time.
+     *
+     * @return the value of each of the aggregates, in order
+     */
+    public List<ByteBuffer> executePaged(ConsistencyLevel consistencyLevel, ClientState clientState, int pageSize)
+    throws RequestExecutionException
+    {
+        Selection selection = selection();
+        QueryOptions options = QueryOptions.forProtocolVersion(protocolVersion);
+        Selection.ResultSetBuilder result = selection.resultSetBuilder(options, false);
+
+        QueryPager pager = command.getPager(null, protocolVersion);
+        while (!pager.isExhausted())
+        {
+            try (PartitionIterator page = pager.fetchPage(pageSize, consistencyLevel, clientState))
+            {
+                addPartitions(page, selection, options, result);
+            }
+        }
+        return result.build().rows().get(0);
+    }
+
+    private Selection selection()
+    {
+        List<RawSelector> selectors = new ArrayList<>(aggregates.size());
+        for (Aggregate aggregate : aggregates)
+            selectors.add(aggregate.toRawSelector());
+
+        return Selection.fromSelectors(metadata(), selectors, VariableSpecifications.empty());
+    }
+
+    private void addPartitions(PartitionIterator partitions, Selection selection, QueryOptions options, Selection.ResultSetBuilder result)
+    {
+        while (partitions.hasNext())
+        {
+            try (RowIterator partition = partitions.next())
+            {
+                SelectStatement.processPartition(metadata(), selection, selectsStaticOnlyPartitions, partition, options, result, command.nowInSec());
+            }
+        }
+    }
+
+    /**
+     * Merges the partial aggregates computed for each of the queried ranges.
+     *
+     * @param partials the result of {@link #executeLocally} for each range
+     * @return the value of each of the aggregates over all the ranges
+     */
+    public List<ByteBuffer> merge(List<List<ByteBuffer>> partials)
+    {
+        List<ByteBuffer> merged = new ArrayList<>(aggregates.size());
+        for (int i = 0; i < aggregates.size(); i++)
+        {
+            AggregateFunction.Aggregate aggregate = aggregates.get(i).mergeFunction().newAggregate();
+            for (List<ByteBuffer> partial : partials)
+                aggregate.addInput(protocolVersion, Collections.singletonList(partial.get(i)));
+            merged.add(aggregate.compute(protocolVersion));
+        }
+        return merged;
+    }
+
+    public String toString()
+    {
+        return String.format("AggregateCommand(%s on %s)", aggregates, command);
+    }
+
+    /**
+     * A native aggregate of either all the rows ({@code count(*)}) or of a single simple column.
+     */
+    public static final class Aggregate
+    {
+        private static final FunctionName COUNT = FunctionName.nativeFunction("count");
+        private static final FunctionName SUM = FunctionName.nativeFunction("sum");
+        private static final FunctionName MIN = FunctionName.nativeFunction("min");
+        private static final FunctionName MAX = FunctionName.nativeFunction("max");
+
+        public final AggregateFunction function;
+        // null for count(*)
+        public final ColumnDefinition column;
+
+        private Aggregate(AggregateFunction function, ColumnDefinition column)
+        {
+            this.function = function;
+            this.column = column;
+        }
+
+        /**
+         * Returns the aggregate computed by the specified selectable, or {@code null} if it is not an aggregate
+         * which can be computed separately for each range.
+         */
+        public static Aggregate forSelectable(Selectable selectable)
+        {
+            if (!(selectable instanceof Selectable.WithFunction))
+                return null;
+
+            Selectable.WithFunction withFunction = (Selectable.WithFunction) selectable;
+            Function function = withFunction.function;
+            if (!function.isAggregate() || !function.isNative())
+                return null;
+
+            if (function == AggregateFcts.countRowsFunction)
+                return new Aggregate(AggregateFcts.countRowsFunction, null);
+
+            if (withFunction.args.size() != 1 || !(withFunction.args.get(0) instanceof ColumnDefinition))
+                return null;
+
+            ColumnDefinition column = (ColumnDefinition) withFunction.args.get(0);
+            if (column.isComplex())
+                return null;
+
+            FunctionName name = function.name();
+            // Floating point additions are not associative, so summing the partial sums could give a (slightly)
+            // different result than summing all the values in order.
+            if (name.equals(SUM) && (function.returnType() instanceof FloatType || function.returnType() instanceof DoubleType))
+                return null;
+
+            if (name.equals(COUNT) || name.equals(SUM) || name.equals(MIN) || name.equals(MAX))
+                return new Aggregate((AggregateFunction) function, column);
+
+            return null;
+        }
+
+        private static Aggregate resolve(CFMetaData metadata, FunctionName name, ColumnDefinition column)
+        {
+            Selectable selectable = rawSelectable(name, column).prepare(metadata);
+            return new Aggregate((AggregateFunction) ((Selectable.WithFunction) selectable).function, column);
+        }
+
+        private static Selectable.Raw rawSelectable(FunctionName name, ColumnDefinition column)
+        {
+            List<Selectable.Raw> args = column == null
+                                      ? Collections.emptyList()
+                                      : Collections.singletonList(ColumnDefinition.Raw.forColumn(column));
+            return new Selectable.WithFunction.Raw(name, args);
+        }
+
+        private RawSelector toRawSelector()
+        {
+            return new RawSelector(rawSelectable(function.name(), column), null);
+        }
+
+        /**
+         * The aggregate used to merge the partial results of this one: counts are summed, while the partial sums,
+         * minimums and maximums are aggregated again by the same function.
+         */
+        private AggregateFunction mergeFunction()
+        {
+            return function == AggregateFcts.countRowsFunction || function.name().equals(COUNT)
+                 ? AggregateFcts.sumFunctionForLong
+                 : function;
+        }
+
+        public String toString()
+        {
+            return function.name() + "(" + (column == null ? "*" : column.name.toString()) + ")";
+        }
+    }
+
+    public static final class Serializer implements IVersionedSerializer<AggregateCommand>
+    {
+        public void serialize(AggregateCommand command, DataOutputPlus out, int version) throws IOException
+        {
+            assert version >= MessagingService.VERSION_310 : version;
+
+            ReadCommand.serializer.serialize(command.command, out, version);
+            out.writeUnsignedVInt(command.aggregates.size());
+            for (Aggregate aggregate : command.aggregates)
+            {
+                out.writeUTF(aggregate.function.name().keyspace);
+                out.writeUTF(aggregate.function.name().name);
+                out.writeBoolean(aggregate.column != null);
+                if (aggregate.column != null)
+                    ByteBufferUtil.writeWithShortLength(aggregate.column.name.bytes, out);
+            }
+            out.writeBoolean(command.selectsStaticOnlyPartitions);
+            out.writeUnsignedVInt(command.protocolVersion);
+        }
+
+        public AggregateCommand deserialize(DataInputPlus in, int version) throws IOException
+        {
+            PartitionRangeReadCommand command = (PartitionRangeReadCommand) ReadCommand.serializer.deserialize(in, version);
+            CFMetaData metadata = command.metadata();
+
+            int size = (int) in.readUnsignedVInt();
+            List<Aggregate> aggregates = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                FunctionName name = new FunctionName(in.readUTF(), in.readUTF());
+                ColumnDefinition column = null;
+                if (in.readBoolean())
+                {
+                    ByteBuffer columnName = ByteBufferUtil.readWithShortLength(in);
+                    column = metadata.getColumnDefinition(columnName);
+                    if (column == null)
+                        throw new RuntimeException("Unknown (or dropped) column " + UTF8Type.instance.getString(columnName) + " during deserialization");
+                }
+                aggregates.add(Aggregate.resolve(metadata, name, column));
+            }
+            boolean selectsStaticOnlyPartitions = in.readBoolean();
+            int protocolVersion = (int) in.readUnsignedVInt();
+            return new AggregateCommand(command, aggregates, selectsStaticOnlyPartitions, protocolVersion);
+        }
+
+        public long serializedSize(AggregateCommand command, int version)
+        {
+            long size = ReadCommand.serializer.serializedSize(command.command, version);
+            size += sizeofUnsignedVInt(command.aggregates.size());
+            for (Aggregate aggregate : command.aggregates)
+            {
+                size += sizeof(aggregate.function.name().keyspace);
+                size += sizeof(aggregate.function.name().name);
+                size += sizeof(aggregate.column != null);
+                if (aggregate.column != null)
+                    size += ByteBufferUtil.serializedSizeWithShortLength(aggregate.column.name.bytes);
+            }
+            size += sizeof(command.selectsStaticOnlyPartitions);
+            size += sizeofUnsignedVInt(command.protocolVersion);
+            return size;
+        }
+    }
+
+    private static final class ResponseSerializer implements IVersionedSerializer<List<ByteBuffer>>
+    {
+        public void serialize(List<ByteBuffer> values, DataOutputPlus out, int version) throws IOException
+        {
+            out.writeUnsignedVInt(values.size());
+            for (ByteBuffer value : values)
+            {
+                out.writeBoolean(value != null);
+                if (value != null)
+                    ByteBufferUtil.writeWithVIntLength(value, out);
+            }
+        }
+
+        public List<ByteBuffer> deserialize(DataInputPlus in, int version) throws IOException
+        {
+            int size = (int) in.readUnsignedVInt();
+            List<ByteBuffer> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                values.add(in.readBoolean() ? ByteBufferUtil.readWithVIntLength(in) : null);
+            return values;
+        }
+
+        public long serializedSize(List<ByteBuffer> values, int version)
+        {
+            long size = sizeofUnsignedVInt(values.size());
+            for (ByteBuffer value : values)
+            {
+                size += sizeof(value != null);
+                if (value != null)
+                    size += ByteBufferUtil.serializedSizeWithVIntLength(value);
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.cassandra.net.IVerbHandler;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.tracing.Tracing;
+
+public class AggregateVerbHandler implements IVerbHandler<AggregateCommand>
+{
+    public void doVerb(MessageIn<AggregateCommand> message, int id)
+    {
+        if (StorageService.instance.isBootstrapMode())
+        {
+            throw new RuntimeException("Cannot service reads while bootstrapping!");
+        }
+
+        AggregateCommand command = message.payload;
+        command.command.setMonitoringTime(message.constructionTime, message.getTimeout());
+
+        List<ByteBuffer> partial = command.executeLocally();
+
+        if (!command.command.complete())
+        {
+            Tracing.trace("Discarding partial aggregates to {} (timed out)", message.from);
+            MessagingService.instance().incrementDroppedMessages(message, System.currentTimeMillis() - message.constructionTime.timestamp);
+            // let the coordinator read the range itself right away rather than wait for the timeout
+            if (message.doCallbackOnFailure())
+            {
+                MessageOut failure = new MessageOut(MessagingService.Verb.INTERNAL_RESPONSE)
+                                     .withParameter(MessagingService.FAILURE_RESPONSE_PARAM, MessagingService.ONE_BYTE);
+                MessagingService.instance().sendReply(failure, id, message.from);
+            }
+            return;
+        }
+
+        Tracing.trace("Enqueuing partial aggregates to {}", message.from);
+        MessageOut<List<ByteBuffer>> reply = new MessageOut<>(MessagingService.Verb.REQUEST_RESPONSE, partial, AggregateCommand.responseSerializer);
+        MessagingService.instance().sendReply(reply, id, message.from);
+    }
+}
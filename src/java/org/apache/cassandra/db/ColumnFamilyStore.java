@@ -1345,6 +1345,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         DecoratedKey key = update.partitionKey();
         invalidateCachedPartition(key);
         metric.samplers.get(Sampler.WRITES).addSample(key.getKey(), key.hashCode(), 1);
+        metric.topPartitions.get(TableMetrics.TopPartitionType.WRITES).add(key.getKey(), 1);
+        metric.topPartitions.get(TableMetrics.TopPartitionType.BYTES_WRITTEN).add(key.getKey(), update.dataSize());
         StorageHook.instance.reportWrite(metadata.cfId, update);
         metric.writeLatency.addNano(System.nanoTime() - start);
         if(timeDelta < Long.MAX_VALUE)
@@ -1729,6 +1731,14 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 samplerResults.cardinality, result});
     }
 
+    public Map<String, Long> getTopPartitions(String type, int count)
+    {
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<ByteBuffer, Long> entry : metric.topPartitions.get(TableMetrics.TopPartitionType.valueOf(type)).top(count).entrySet())
+            top.put(metadata.getKeyValidator().getString(entry.getKey()), entry.getValue());
+        return top;
+    }
+
     public boolean isCompactionDiskSpaceCheckEnabled()
     {
         return compactionSpaceCheck;
@@ -170,6 +170,13 @@ public interface ColumnFamilyStoreMBean
      */
     public CompositeData finishLocalSampling(String sampler, int count) throws OpenDataException;
 
+    /**
+     * @param type one of READS, WRITES, BYTES_WRITTEN or TOMBSTONES
+     * @return the <i>count</i> heaviest partitions of the table for the given type, heaviest first, with their
+     * estimated weight over the recent workload, or nothing unless top_partitions_sample_rate is positive
+     */
+    public Map<String, Long> getTopPartitions(String type, int count);
+
     /*
         Is Compaction space check enabled
      */
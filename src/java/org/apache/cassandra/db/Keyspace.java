@@ -39,6 +39,7 @@ import org.apache.cassandra.db.lifecycle.SSTableSet;
 import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.view.ViewManager;
+import org.apache.cassandra.db.view.ViewUpdatePipeline;
 import org.apache.cassandra.exceptions.WriteTimeoutException;
 import org.apache.cassandra.index.Index;
 import org.apache.cassandra.index.SecondaryIndexManager;
@@ -433,6 +434,10 @@ public class Keyspace
         boolean requiresViewUpdate = updateIndexes && viewManager.updatesAffectView(Collections.singleton(mutation), false);
         final CompletableFuture<?> mark = future == null ? new CompletableFuture<>() : future;
 
+        // commit log replay keeps generating the view updates synchronously, under the locks
+        if (requiresViewUpdate && !isClReplay && DatabaseDescriptor.isAsyncViewUpdates())
+            return ViewUpdatePipeline.instance.submit(this, mutation, writeCommitLog, mark);
+
         if (requiresViewUpdate)
         {
             mutation.viewLockAcquireStart.compareAndSet(0L, System.currentTimeMillis());
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+
+import static org.apache.cassandra.db.TypeSizes.sizeofUnsignedVInt;
+
+/**
+ * Mutations of an unlogged batch that are all sent to the same replica in a single message, and acknowledged
+ * by a single response once all of them have been applied.
+ */
+public final class MutationGroup
+{
+    public static final Serializer serializer = new Serializer();
+
+    public final List<Mutation> mutations;
+
+    public MutationGroup(List<Mutation> mutations)
+    {
+        this.mutations = mutations;
+    }
+
+    public MessageOut<MutationGroup> createMessage()
+    {
+        return new MessageOut<>(MessagingService.Verb.MUTATION_GROUP, this, serializer);
+    }
+
+    public String toString()
+    {
+        return "MutationGroup(" + mutations + ')';
+    }
+
+    public static final class Serializer implements IVersionedSerializer<MutationGroup>
+    {
+        public void serialize(MutationGroup group, DataOutputPlus out, int version) throws IOException
+        {
+            assert version >= MessagingService.VERSION_310 : version;
+
+            out.writeUnsignedVInt(group.mutations.size());
+            for (Mutation mutation : group.mutations)
+                Mutation.serializer.serialize(mutation, out, version);
+        }
+
+        public MutationGroup deserialize(DataInputPlus in, int version) throws IOException
+        {
+            int count = (int) in.readUnsignedVInt();
+            List<Mutation> mutations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                mutations.add(Mutation.serializer.deserialize(in, version));
+            return new MutationGroup(mutations);
+        }
+
+        public long serializedSize(MutationGroup group, int version)
+        {
+            long size = sizeofUnsignedVInt(group.mutations.size());
+            for (Mutation mutation : group.mutations)
+                size += Mutation.serializer.serializedSize(mutation, version);
+            return size;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.cassandra.exceptions.WriteTimeoutException;
+import org.apache.cassandra.net.IVerbHandler;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.tracing.Tracing;
+
+public class MutationGroupVerbHandler implements IVerbHandler<MutationGroup>
+{
+    private void reply(int id, InetAddress replyTo)
+    {
+        Tracing.trace("Enqueuing response to {}", replyTo);
+        MessagingService.instance().sendReply(WriteResponse.createMessage(), id, replyTo);
+    }
+
+    private void failed()
+    {
+        Tracing.trace("Payload application resulted in WriteTimeout, not replying");
+    }
+
+    public void doVerb(MessageIn<MutationGroup> message, int id)
+    {
+        List<Mutation> mutations = message.payload.mutations;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[mutations.size()];
+        try
+        {
+            for (int i = 0; i < futures.length; i++)
+                futures[i] = mutations.get(i).applyFuture();
+        }
+        catch (WriteTimeoutException wto)
+        {
+            // the coordinator will time out and hint the whole group, which is fine as mutations are idempotent
+            failed();
+            return;
+        }
+
+        CompletableFuture.allOf(futures).thenAccept(o -> reply(id, message.from)).exceptionally(wto -> {
+            failed();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+
+import org.apache.cassandra.concurrent.LocalAwareExecutorService;
+import org.apache.cassandra.concurrent.SEPExecutor;
+import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.filter.ClusteringIndexFilter;
+import org.apache.cassandra.db.partitions.AbstractUnfilteredPartitionIterator;
+import org.apache.cassandra.db.partitions.ImmutableBTreePartition;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.concurrent.SimpleCondition;
+
+/**
+ * Executes a local partition range read by splitting its range in token sub-ranges which are read concurrently on
+ * the idle threads of the read stage, and returning their results in token order.
+ * <p>
+ * This is only worth it when reading the range is expensive compared to what it returns, that is when its rows
+ * are filtered by a {@code RowFilter} (ALLOW FILTERING). Reads using a secondary index are not split, as index
+ * searchers are free to query their index beyond the data range of the command they execute. Each sub-range is read
+ * with the limits of the whole command, which are enforced again on the merged result.
+ * <p>
+ * The sub-ranges are read ahead into memory, each up to {@code parallel_range_read_buffer_size_in_kb}: the rest of a
+ * sub-range that doesn't fit is read by the thread consuming the results once it reaches it, without buffering it.
+ * The thread executing the read doesn't block on the read stage either: it reads any sub-range no other thread has
+ * started reading itself. Closing the results stops the sub-ranges being read.
+ */
+final class ParallelRangeRead
+{
+    private ParallelRangeRead()
+    {
+    }
+
+    /**
+     * Returns the number of sub-ranges the provided command should be split into, which depends on the number of
+     * threads of the read stage that are idle.
+     */
+    static int splits(PartitionRangeReadCommand command, ColumnFamilyStore cfs)
+    {
+        int maxSplits = DatabaseDescriptor.getParallelRangeReadMaxSplits();
+        if (maxSplits <= 1
+            || command.isForThrift()
+            || command.rowFilter().isEmpty()
+            || command.index.isPresent()
+            || !cfs.getPartitioner().splitter().isPresent()
+            || cfs.estimateKeys() < DatabaseDescriptor.getParallelRangeReadMinPartitions())
+            return 1;
+
+        LocalAwareExecutorService stage = StageManager.getStage(Stage.READ);
+        if (!(stage instanceof SEPExecutor))
+            return 1;
+
+        SEPExecutor readStage = (SEPExecutor) stage;
+        // the thread executing the command (which is usually a busy read stage thread) reads its share too
+        long idle = readStage.maxWorkers - readStage.getActiveCount() - readStage.getPendingTasks();
+        return (int) Math.max(1, Math.min(maxSplits, idle + 1));
+    }
+
+    /**
+     * Splits the provided range in halves, recursively, until getting at most {@code splits} sub-ranges, or until
+     * they can't be split anymore.
+     */
+    @VisibleForTesting
+    static List<AbstractBounds<PartitionPosition>> split(AbstractBounds<PartitionPosition> range, int splits, IPartitioner partitioner)
+    {
+        List<AbstractBounds<PartitionPosition>> ranges = Collections.singletonList(range);
+        while (ranges.size() * 2 <= splits)
+        {
+            List<AbstractBounds<PartitionPosition>> halves = new ArrayList<>(ranges.size() * 2);
+            for (AbstractBounds<PartitionPosition> toSplit : ranges)
+            {
+                Pair<AbstractBounds<PartitionPosition>, AbstractBounds<PartitionPosition>> split = splitInHalves(toSplit, partitioner);
+                if (split == null)
+                {
+                    halves.add(toSplit);
+                }
+                else
+                {
+                    halves.add(split.left);
+                    halves.add(split.right);
+                }
+            }
+
+            if (halves.size() == ranges.size())
+                break;
+            ranges = halves;
+        }
+        return ranges;
+    }
+
+    private static Pair<AbstractBounds<PartitionPosition>, AbstractBounds<PartitionPosition>> splitInHalves(AbstractBounds<PartitionPosition> range,
+                                                                                                          IPartitioner partitioner)
+    {
+        Token midpoint = partitioner.midpoint(range.left.getToken(), range.right.getToken());
+        if (midpoint.isMinimum())
+            return null;
+
+        // all the keys of the midpoint token go in the first half
+        PartitionPosition position = midpoint.maxKeyBound();
+        if (!range.contains(position) || position.equals(range.left) || position.equals(range.right))
+            return null;
+
+        return range.split(position);
+    }
+
+    /**
+     * Reads the provided sub-range commands concurrently.
+     *
+     * @return the results of the sub-ranges, in the order of the commands, which is expected to be token order.
+     */
+    @SuppressWarnings("resource") // the sub-ranges are released when the returned iterator is closed
+    static UnfilteredPartitionIterator execute(PartitionRangeReadCommand command, List<PartitionRangeReadCommand> subRanges)
+    {
+        Tracing.trace("Reading range in {} concurrent sub-ranges", subRanges.size());
+
+        long bufferSize = DatabaseDescriptor.getParallelRangeReadBufferSizeInKb() * 1024L;
+        List<SubRangeRead> reads = new ArrayList<>(subRanges.size());
+        for (PartitionRangeReadCommand subRange : subRanges)
+        {
+            setMonitoringTime(command, subRange);
+            reads.add(new SubRangeRead(subRange, bufferSize));
+        }
+
+        // The first sub-range is read by the current thread (when the returned iterator is first used)
+        for (int i = 1; i < reads.size(); i++)
+            StageManager.getStage(Stage.READ).execute(reads.get(i));
+
+        return new MergedSubRanges(command, reads);
+    }
+
+    private static void setMonitoringTime(PartitionRangeReadCommand command, PartitionRangeReadCommand subRange)
+    {
+        if (command.constructionTime() != null)
+            subRange.setMonitoringTime(command.constructionTime(), command.timeout());
+    }
+
+    private static final class SubRangeRead implements Runnable
+    {
+        private final PartitionRangeReadCommand command;
+        private final long bufferSize;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final SimpleCondition done = new SimpleCondition();
+        private volatile boolean stopped;
+
+        private volatile List<ImmutableBTreePartition> partitions;
+        // the command reading the rest of the sub-range if it didn't fit in the buffer, null otherwise
+        private volatile PartitionRangeReadCommand remainder;
+        private volatile Throwable failure;
+
+        private SubRangeRead(PartitionRangeReadCommand command, long bufferSize)
+        {
+            this.command = command;
+            this.bufferSize = bufferSize;
+        }
+
+        public void run()
+        {
+            if (!claimed.compareAndSet(false, true))
+                return;
+
+            try
+            {
+                partitions = read();
+            }
+            catch (Throwable t)
+            {
+                failure = t;
+            }
+            finally
+            {
+                done.signalAll();
+            }
+        }
+
+        private List<ImmutableBTreePartition> read()
+        {
+            List<ImmutableBTreePartition> partitions = new ArrayList<>();
+            long size = 0;
+            try (ReadExecutionController executionController = command.executionController();
+                 UnfilteredPartitionIterator iterator = command.executeLocally(executionController))
+            {
+                while (!stopped && iterator.hasNext())
+                {
+                    ImmutableBTreePartition partition;
+                    try (UnfilteredRowIterator rows = iterator.next())
+                    {
+                        partition = ImmutableBTreePartition.create(rows);
+                    }
+                    partitions.add(partition);
+
+                    size += dataSize(partition);
+                    if (size >= bufferSize)
+                    {
+                        remainder = remainder(partition.partitionKey());
+                        break;
+                    }
+                }
+            }
+            return partitions;
+        }
+
+        private static long dataSize(ImmutableBTreePartition partition)
+        {
+            long size = partition.staticRow().dataSize();
+            for (Row row : partition)
+                size += row.dataSize();
+            return size;
+        }
+
+        private PartitionRangeReadCommand remainder(DecoratedKey lastKey)
+        {
+            AbstractBounds<PartitionPosition> range = command.dataRange().keyRange();
+            if (lastKey.equals(range.right))
+                return null;
+
+            PartitionRangeReadCommand remainder = command.forSubRange(range.split(lastKey).right);
+            setMonitoringTime(command, remainder);
+            return remainder;
+        }
+
+        /**
+         * Waits for the sub-range to be read, reading it with the current thread if no other thread started to.
+         */
+        private List<ImmutableBTreePartition> get()
+        {
+            run();
+            try
+            {
+                done.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+
+            if (failure != null)
+                throw Throwables.propagate(failure);
+            return partitions;
+        }
+
+        /**
+         * Stops reading the sub-range, or prevents it from being read if no thread started reading it yet.
+         */
+        private void cancel()
+        {
+            claimed.set(true);
+            stopped = true;
+        }
+    }
+
+    private static final class MergedSubRanges extends AbstractUnfilteredPartitionIterator
+    {
+        private final PartitionRangeReadCommand command;
+        private final Iterator<SubRangeRead> reads;
+        private Iterator<ImmutableBTreePartition> current = Collections.emptyIterator();
+
+        // the rest of the sub-range being returned if it didn't fit in its buffer, read without buffering
+        private PartitionRangeReadCommand remainder;
+        private ReadExecutionController remainderController;
+        private UnfilteredPartitionIterator remainderIterator;
+
+        private MergedSubRanges(PartitionRangeReadCommand command, List<SubRangeRead> reads)
+        {
+            this.command = command;
+            this.reads = reads.iterator();
+        }
+
+        public boolean isForThrift()
+        {
+            return command.isForThrift();
+        }
+
+        public CFMetaData metadata()
+        {
+            return command.metadata();
+        }
+
+        @SuppressWarnings("resource") // closed once exhausted or with this iterator
+        public boolean hasNext()
+        {
+            while (true)
+            {
+                if (current.hasNext())
+                    return true;
+
+                if (remainder != null && remainderIterator == null)
+                {
+                    remainderController = remainder.executionController();
+                    remainderIterator = remainder.executeLocally(remainderController);
+                }
+
+                if (remainderIterator != null)
+                {
+                    if (remainderIterator.hasNext())
+                        return true;
+                    closeRemainder();
+                }
+
+                if (!reads.hasNext())
+                    return false;
+
+                SubRangeRead read = reads.next();
+                current = read.get().iterator();
+                remainder = read.remainder;
+                // a sub-range that timed out returns partial results, so the whole command has to be dropped
+                if (read.command.isAborted())
+                    command.abort();
+            }
+        }
+
+        public UnfilteredRowIterator next()
+        {
+            if (!current.hasNext())
+                return remainderIterator.next();
+
+            ImmutableBTreePartition partition = current.next();
+            ClusteringIndexFilter filter = command.clusteringIndexFilter(partition.partitionKey());
+            return partition.unfilteredIterator(command.columnFilter(), Slices.ALL, filter.isReversed());
+        }
+
+        private void closeRemainder()
+        {
+            try (ReadExecutionController controller = remainderController;
+                 UnfilteredPartitionIterator iterator = remainderIterator)
+            {
+                if (remainder.isAborted())
+                    command.abort();
+            }
+            finally
+            {
+                remainder = null;
+                remainderController = null;
+                remainderIterator = null;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            while (reads.hasNext())
+                reads.next().cancel();
+
+            if (remainderIterator != null)
+                closeRemainder();
+        }
+    }
+}
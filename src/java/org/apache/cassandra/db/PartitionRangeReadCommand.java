@@ -30,6 +30,7 @@ import org.apache.cassandra.db.filter.*;
 import org.apache.cassandra.db.lifecycle.View;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.rows.BaseRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.dht.AbstractBounds;
 import org.apache.cassandra.exceptions.RequestExecutionException;
@@ -167,6 +168,46 @@ public class PartitionRangeReadCommand extends ReadCommand
             return new PartitionRangeQueryPager(this, pagingState, protocolVersion);
     }
 
+    /**
+     * Executes this command locally, splitting its range in sub-ranges read concurrently if it is expensive to read
+     * and some read threads are idle (see {@link ParallelRangeRead}).
+     */
+    @Override
+    @SuppressWarnings("resource") // the sub-range reads are closed with the returned iterator
+    public UnfilteredPartitionIterator executeLocally(ReadExecutionController executionController)
+    {
+        ColumnFamilyStore cfs = Keyspace.openAndGetStore(metadata());
+        int splits = ParallelRangeRead.splits(this, cfs);
+        List<AbstractBounds<PartitionPosition>> ranges = splits <= 1
+                                                       ? null
+                                                       : ParallelRangeRead.split(dataRange().keyRange(), splits, cfs.getPartitioner());
+        if (ranges == null || ranges.size() == 1)
+            return executeSerially(executionController);
+
+        final long startTimeNanos = System.nanoTime();
+        List<PartitionRangeReadCommand> subRanges = new ArrayList<>(ranges.size());
+        for (AbstractBounds<PartitionPosition> range : ranges)
+            subRanges.add(new SubRangeReadCommand(this, range));
+
+        class RecordLatency extends Transformation<UnfilteredRowIterator>
+        {
+            @Override
+            protected void onClose()
+            {
+                recordLatency(cfs.metric, System.nanoTime() - startTimeNanos);
+            }
+        }
+
+        // Each sub-range enforces the limits on its own, but they have to be enforced on the whole range too
+        UnfilteredPartitionIterator merged = Transformation.apply(ParallelRangeRead.execute(this, subRanges), new RecordLatency());
+        return limits().filter(merged, nowInSec());
+    }
+
+    private UnfilteredPartitionIterator executeSerially(ReadExecutionController executionController)
+    {
+        return super.executeLocally(executionController);
+    }
+
     protected void recordLatency(TableMetrics metric, long latencyNanos)
     {
         metric.rangeLatency.addNano(latencyNanos);
@@ -309,6 +350,44 @@ public class PartitionRangeReadCommand extends ReadCommand
         return DataRange.serializer.serializedSize(dataRange(), version, metadata());
     }
 
+    /**
+     * A sub-range of a command read concurrently with the other sub-ranges of that command. It is always read
+     * serially, and its latency is recorded as part of the latency of the whole command.
+     */
+    private static class SubRangeReadCommand extends PartitionRangeReadCommand
+    {
+        private SubRangeReadCommand(PartitionRangeReadCommand command, AbstractBounds<PartitionPosition> range)
+        {
+            super(command.isDigestQuery(),
+                  command.digestVersion(),
+                  command.isForThrift(),
+                  command.metadata(),
+                  command.nowInSec(),
+                  command.columnFilter(),
+                  command.rowFilter(),
+                  command.limits(),
+                  command.dataRange().forSubRange(range),
+                  command.index);
+        }
+
+        @Override
+        public PartitionRangeReadCommand forSubRange(AbstractBounds<PartitionPosition> range)
+        {
+            return new SubRangeReadCommand(this, range);
+        }
+
+        @Override
+        public UnfilteredPartitionIterator executeLocally(ReadExecutionController executionController)
+        {
+            return ((PartitionRangeReadCommand) this).executeSerially(executionController);
+        }
+
+        @Override
+        protected void recordLatency(TableMetrics metric, long latencyNanos)
+        {
+        }
+    }
+
     private static class Deserializer extends SelectionDeserializer
     {
         public ReadCommand deserialize(DataInputPlus in, int version, boolean isDigest, int digestVersion, boolean isForThrift, CFMetaData metadata, int nowInSec, ColumnFilter columnFilter, RowFilter rowFilter, DataLimits limits, Optional<IndexMetadata> index)
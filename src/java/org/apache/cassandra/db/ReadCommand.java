@@ -29,6 +29,7 @@ import org.apache.cassandra.config.*;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.db.filter.*;
 import org.apache.cassandra.db.monitoring.MonitorableImpl;
+import org.apache.cassandra.db.monitoring.SlowQueryLog;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.transform.StoppingTransformation;
@@ -396,11 +397,12 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
         UnfilteredPartitionIterator resultIterator = searcher == null
                                          ? queryStorage(cfs, executionController)
                                          : searcher.search(executionController);
+        long openedNanos = System.nanoTime();
 
         try
         {
             resultIterator = withStateTracking(resultIterator);
-            resultIterator = withMetricsRecording(withoutPurgeableTombstones(resultIterator, cfs), cfs.metric, startTimeNanos);
+            resultIterator = withMetricsRecording(withoutPurgeableTombstones(resultIterator, cfs), cfs.metric, startTimeNanos, openedNanos, executionController);
 
             // If we've used a 2ndary index, we know the result already satisfy the primary expression used, so
             // no point in checking it again.
@@ -437,7 +439,11 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
      * Wraps the provided iterator so that metrics on what is scanned by the command are recorded.
      * This also log warning/trow TombstoneOverwhelmingException if appropriate.
      */
-    private UnfilteredPartitionIterator withMetricsRecording(UnfilteredPartitionIterator iter, final TableMetrics metric, final long startTimeNanos)
+    private UnfilteredPartitionIterator withMetricsRecording(UnfilteredPartitionIterator iter,
+                                                             final TableMetrics metric,
+                                                             final long startTimeNanos,
+                                                             final long openedNanos,
+                                                             final ReadExecutionController executionController)
     {
         class MetricRecording extends Transformation<UnfilteredRowIterator>
         {
@@ -448,6 +454,7 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
 
             private int liveRows = 0;
             private int tombstones = 0;
+            private int tombstonesBeforePartition = 0;
 
             private DecoratedKey currentKey;
 
@@ -455,6 +462,7 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
             public UnfilteredRowIterator applyToPartition(UnfilteredRowIterator iter)
             {
                 currentKey = iter.partitionKey();
+                tombstonesBeforePartition = tombstones;
                 return Transformation.apply(iter, this);
             }
 
@@ -496,10 +504,17 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
                 }
             }
 
+            @Override
+            public void onPartitionClose()
+            {
+                metric.topPartitions.get(TableMetrics.TopPartitionType.TOMBSTONES).add(currentKey.getKey(), tombstones - tombstonesBeforePartition);
+            }
+
             @Override
             public void onClose()
             {
-                recordLatency(metric, System.nanoTime() - startTimeNanos);
+                long endNanos = System.nanoTime();
+                recordLatency(metric, endNanos - startTimeNanos);
 
                 metric.tombstoneScannedHistogram.update(tombstones);
                 metric.liveScannedHistogram.update(liveRows);
@@ -513,6 +528,16 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
                 }
 
                 Tracing.trace("Read {} live and {} tombstone cells{}", liveRows, tombstones, (warnTombstones ? " (see tombstone_warn_threshold)" : ""));
+
+                SlowQueryLog.instance.maybeRecord(endNanos - startTimeNanos, () ->
+                    new SlowQueryLog.SlowQuery(isAborted() ? "aborted read" : "read",
+                                               metadata().ksName,
+                                               metadata().cfName,
+                                               toCQLShape(),
+                                               slowQueryToken(),
+                                               kind == Kind.SINGLE_PARTITION ? executionController.sstablesIterated() : SlowQueryLog.SlowQuery.UNKNOWN,
+                                               tombstones,
+                                               SlowQueryLog.SlowQuery.phases(new String[]{ "open", "iterate" }, startTimeNanos, openedNanos, endNanos)));
             }
         };
 
@@ -617,6 +642,28 @@ public abstract class ReadCommand extends MonitorableImpl implements ReadQuery
         return sb.toString();
     }
 
+    /**
+     * The shape of this command for the slow query log: its CQL string without any of the values it is executed with.
+     */
+    String toCQLShape()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ").append(columnFilter());
+        sb.append(" FROM ").append(metadata().ksName).append('.').append(metadata.cfName);
+        sb.append(kind == Kind.SINGLE_PARTITION ? " WHERE partition key = ?" : " WHERE token range");
+        for (RowFilter.Expression expression : rowFilter())
+            sb.append(" AND ").append(expression.column().name).append(' ').append(expression.operator()).append(" ?");
+        return sb.toString();
+    }
+
+    /**
+     * @return the token of the partition this command reads for the slow query log, or null if it reads a range
+     */
+    protected String slowQueryToken()
+    {
+        return null;
+    }
+
     // Monitorable interface
     public String name()
     {
@@ -31,6 +31,9 @@ public class ReadExecutionController implements AutoCloseable
     private final ReadExecutionController indexController;
     private final OpOrder.Group writeOp;
 
+    // the number of sstables the read went through, for the slow query log
+    private int sstablesIterated;
+
     private ReadExecutionController(OpOrder.Group baseOp, CFMetaData baseMetadata, ReadExecutionController indexController, OpOrder.Group writeOp)
     {
         // We can have baseOp == null, but only when empty() is called, in which case the controller will never really be used
@@ -52,6 +55,16 @@ public class ReadExecutionController implements AutoCloseable
         return writeOp;
     }
 
+    void addSSTablesIterated(int sstables)
+    {
+        sstablesIterated += sstables;
+    }
+
+    public int sstablesIterated()
+    {
+        return sstablesIterated;
+    }
+
     public boolean validForReadOn(ColumnFamilyStore cfs)
     {
         return baseOp != null && cfs.metadata.cfId.equals(baseMetadata.cfId);
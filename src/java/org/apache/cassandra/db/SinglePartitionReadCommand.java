@@ -488,7 +488,7 @@ public class SinglePartitionReadCommand extends ReadCommand
         assert executionController != null && executionController.validForReadOn(cfs);
         Tracing.trace("Executing single-partition query on {}", cfs.name);
 
-        return queryMemtableAndDiskInternal(cfs);
+        return queryMemtableAndDiskInternal(cfs, executionController);
     }
 
     @Override
@@ -497,7 +497,7 @@ public class SinglePartitionReadCommand extends ReadCommand
         return oldestUnrepairedTombstone;
     }
 
-    private UnfilteredRowIterator queryMemtableAndDiskInternal(ColumnFamilyStore cfs)
+    private UnfilteredRowIterator queryMemtableAndDiskInternal(ColumnFamilyStore cfs, ReadExecutionController executionController)
     {
         /*
          * We have 2 main strategies:
@@ -511,7 +511,7 @@ public class SinglePartitionReadCommand extends ReadCommand
          *      of shards so have the same problem).
          */
         if (clusteringIndexFilter() instanceof ClusteringIndexNamesFilter && queryNeitherCountersNorCollections())
-            return queryMemtableAndSSTablesInTimestampOrder(cfs, (ClusteringIndexNamesFilter)clusteringIndexFilter());
+            return queryMemtableAndSSTablesInTimestampOrder(cfs, (ClusteringIndexNamesFilter)clusteringIndexFilter(), executionController);
 
         Tracing.trace("Acquiring sstable references");
         ColumnFamilyStore.ViewFragment view = cfs.select(View.select(SSTableSet.LIVE, partitionKey()));
@@ -611,7 +611,7 @@ public class SinglePartitionReadCommand extends ReadCommand
                 return EmptyIterators.unfilteredRow(cfs.metadata, partitionKey(), filter.isReversed());
 
             StorageHook.instance.reportRead(cfs.metadata.cfId, partitionKey());
-            return withStateTracking(withSSTablesIterated(iterators, cfs.metric));
+            return withStateTracking(withSSTablesIterated(iterators, cfs.metric, executionController));
         }
         catch (RuntimeException | Error e)
         {
@@ -657,7 +657,8 @@ public class SinglePartitionReadCommand extends ReadCommand
      * would cause all iterators to be initialized and hence all sstables to be accessed.
      */
     private UnfilteredRowIterator withSSTablesIterated(List<UnfilteredRowIterator> iterators,
-                                                       TableMetrics metrics)
+                                                       TableMetrics metrics,
+                                                       ReadExecutionController executionController)
     {
         @SuppressWarnings("resource") //  Closed through the closing of the result of the caller method.
         UnfilteredRowIterator merged = UnfilteredRowIterators.merge(iterators, nowInSec());
@@ -666,6 +667,7 @@ public class SinglePartitionReadCommand extends ReadCommand
         {
             DecoratedKey key = merged.partitionKey();
             metrics.samplers.get(TableMetrics.Sampler.READS).addSample(key.getKey(), key.hashCode(), 1);
+            metrics.topPartitions.get(TableMetrics.TopPartitionType.READS).add(key.getKey(), 1);
         }
 
         class UpdateSstablesIterated extends Transformation
@@ -678,6 +680,7 @@ public class SinglePartitionReadCommand extends ReadCommand
                                                     .count();
 
                metrics.updateSSTableIterated(sstablesIterated);
+               executionController.addSSTablesIterated(sstablesIterated);
                Tracing.trace("Merged data from memtables and {} sstables", sstablesIterated);
            }
         };
@@ -703,7 +706,7 @@ public class SinglePartitionReadCommand extends ReadCommand
      * no collection or counters are included).
      * This method assumes the filter is a {@code ClusteringIndexNamesFilter}.
      */
-    private UnfilteredRowIterator queryMemtableAndSSTablesInTimestampOrder(ColumnFamilyStore cfs, ClusteringIndexNamesFilter filter)
+    private UnfilteredRowIterator queryMemtableAndSSTablesInTimestampOrder(ColumnFamilyStore cfs, ClusteringIndexNamesFilter filter, ReadExecutionController executionController)
     {
         Tracing.trace("Acquiring sstable references");
         ColumnFamilyStore.ViewFragment view = cfs.select(View.select(SSTableSet.LIVE, partitionKey()));
@@ -781,12 +784,14 @@ public class SinglePartitionReadCommand extends ReadCommand
         }
 
         cfs.metric.updateSSTableIterated(sstablesIterated);
+        executionController.addSSTablesIterated(sstablesIterated);
 
         if (result == null || result.isEmpty())
             return EmptyIterators.unfilteredRow(metadata(), partitionKey(), false);
 
         DecoratedKey key = result.partitionKey();
         cfs.metric.samplers.get(TableMetrics.Sampler.READS).addSample(key.getKey(), key.hashCode(), 1);
+        cfs.metric.topPartitions.get(TableMetrics.TopPartitionType.READS).add(key.getKey(), 1);
         StorageHook.instance.reportRead(cfs.metadata.cfId, partitionKey());
 
         // "hoist up" the requested data into a more recent sstable
@@ -917,6 +922,12 @@ public class SinglePartitionReadCommand extends ReadCommand
         return new MessageOut<>(MessagingService.Verb.READ, this, readSerializer);
     }
 
+    @Override
+    protected String slowQueryToken()
+    {
+        return partitionKey().getToken().toString();
+    }
+
     protected void appendCQLWhereClause(StringBuilder sb)
     {
         sb.append(" WHERE ");
@@ -95,9 +95,10 @@ public final class SystemKeyspace
     public static final String SSTABLE_ACTIVITY = "sstable_activity";
     public static final String SIZE_ESTIMATES = "size_estimates";
     public static final String AVAILABLE_RANGES = "available_ranges";
-    public static final String VIEWS_BUILDS_IN_PROGRESS = "views_builds_in_progress";
+    public static final String VIEW_BUILDS_IN_PROGRESS = "view_builds_in_progress";
     public static final String BUILT_VIEWS = "built_views";
     public static final String PREPARED_STATEMENTS = "prepared_statements";
+    public static final String PREPARED_STATEMENTS_REFERENCES = "prepared_statements_references";
 
     @Deprecated public static final String LEGACY_HINTS = "hints";
     @Deprecated public static final String LEGACY_BATCHLOG = "batchlog";
@@ -108,6 +109,7 @@ public final class SystemKeyspace
     @Deprecated public static final String LEGACY_USERTYPES = "schema_usertypes";
     @Deprecated public static final String LEGACY_FUNCTIONS = "schema_functions";
     @Deprecated public static final String LEGACY_AGGREGATES = "schema_aggregates";
+    @Deprecated public static final String LEGACY_VIEWS_BUILDS_IN_PROGRESS = "views_builds_in_progress";
 
     public static final CFMetaData Batches =
         compile(BATCHES,
@@ -247,15 +249,18 @@ public final class SystemKeyspace
                 + "ranges set<blob>,"
                 + "PRIMARY KEY ((keyspace_name)))");
 
-    private static final CFMetaData ViewsBuildsInProgress =
-        compile(VIEWS_BUILDS_IN_PROGRESS,
-                "views builds current progress",
+    private static final CFMetaData ViewBuildsInProgress =
+        compile(VIEW_BUILDS_IN_PROGRESS,
+                "views builds current progress, per token range",
                 "CREATE TABLE %s ("
                 + "keyspace_name text,"
                 + "view_name text,"
+                + "start_token varchar,"
+                + "end_token varchar,"
                 + "last_token varchar,"
-                + "generation_number int,"
-                + "PRIMARY KEY ((keyspace_name), view_name))");
+                + "keys_built bigint,"
+                + "generation_number int static,"
+                + "PRIMARY KEY ((keyspace_name, view_name), start_token, end_token))");
 
     private static final CFMetaData BuiltViews =
         compile(BUILT_VIEWS,
@@ -273,8 +278,31 @@ public final class SystemKeyspace
                 + "prepared_id blob,"
                 + "logged_keyspace text,"
                 + "query_string text,"
+                + "tables set<text>,"
+                + "functions set<text>,"
                 + "PRIMARY KEY ((prepared_id)))");
 
+    private static final CFMetaData PreparedStatementsReferences =
+        compile(PREPARED_STATEMENTS_REFERENCES,
+                "tables and functions referenced by the prepared statements",
+                "CREATE TABLE %s ("
+                + "keyspace_name text,"
+                + "kind text,"
+                + "name text,"
+                + "prepared_id blob,"
+                + "PRIMARY KEY ((keyspace_name), kind, name, prepared_id))");
+
+    @Deprecated
+    private static final CFMetaData LegacyViewsBuildsInProgress =
+        compile(LEGACY_VIEWS_BUILDS_IN_PROGRESS,
+                "*DEPRECATED* views builds current progress",
+                "CREATE TABLE %s ("
+                + "keyspace_name text,"
+                + "view_name text,"
+                + "last_token varchar,"
+                + "generation_number int,"
+                + "PRIMARY KEY ((keyspace_name), view_name))");
+
     @Deprecated
     public static final CFMetaData LegacyHints =
         compile(LEGACY_HINTS,
@@ -441,11 +469,13 @@ public final class SystemKeyspace
                          SSTableActivity,
                          SizeEstimates,
                          AvailableRanges,
-                         ViewsBuildsInProgress,
+                         ViewBuildsInProgress,
                          BuiltViews,
+                         LegacyViewsBuildsInProgress,
                          LegacyHints,
                          LegacyBatchlog,
                          PreparedStatements,
+                         PreparedStatementsReferences,
                          LegacyKeyspaces,
                          LegacyColumnfamilies,
                          LegacyColumns,
@@ -567,21 +597,32 @@ public final class SystemKeyspace
 
     public static void setViewRemoved(String keyspaceName, String viewName)
     {
-        String buildReq = "DELETE FROM %S.%s WHERE keyspace_name = ? AND view_name = ?";
-        executeInternal(String.format(buildReq, NAME, VIEWS_BUILDS_IN_PROGRESS), keyspaceName, viewName);
-        forceBlockingFlush(VIEWS_BUILDS_IN_PROGRESS);
+        clearViewBuildProgress(keyspaceName, viewName);
 
         String builtReq = "DELETE FROM %s.\"%s\" WHERE keyspace_name = ? AND view_name = ?";
         executeInternal(String.format(builtReq, NAME, BUILT_VIEWS), keyspaceName, viewName);
         forceBlockingFlush(BUILT_VIEWS);
     }
 
-    public static void beginViewBuild(String ksname, String viewName, int generationNumber)
+    /**
+     * Records the start of the build of a view, which is split in the provided token ranges.
+     *
+     * @param generationNumber the highest generation of the base table sstables the build is run on.
+     */
+    public static void beginViewBuild(String ksname, String viewName, int generationNumber, Collection<Range<Token>> ranges)
     {
-        executeInternal(String.format("INSERT INTO system.%s (keyspace_name, view_name, generation_number) VALUES (?, ?, ?)", VIEWS_BUILDS_IN_PROGRESS),
-                        ksname,
-                        viewName,
-                        generationNumber);
+        Token.TokenFactory factory = ViewBuildsInProgress.partitioner.getTokenFactory();
+        String req = "INSERT INTO system.%s (keyspace_name, view_name, start_token, end_token, keys_built, generation_number) VALUES (?, ?, ?, ?, 0, ?)";
+        for (Range<Token> range : ranges)
+        {
+            executeInternal(String.format(req, VIEW_BUILDS_IN_PROGRESS),
+                            ksname,
+                            viewName,
+                            factory.toString(range.left),
+                            factory.toString(range.right),
+                            generationNumber);
+        }
+        forceBlockingFlush(VIEW_BUILDS_IN_PROGRESS);
     }
 
     public static void finishViewBuildStatus(String ksname, String viewName)
@@ -592,8 +633,17 @@ public final class SystemKeyspace
         // Also, if writing to the built_view succeeds, but the view_builds_in_progress deletion fails, we will be able
         // to skip the view build next boot.
         setViewBuilt(ksname, viewName, false);
-        executeInternal(String.format("DELETE FROM system.%s WHERE keyspace_name = ? AND view_name = ?", VIEWS_BUILDS_IN_PROGRESS), ksname, viewName);
-        forceBlockingFlush(VIEWS_BUILDS_IN_PROGRESS);
+        clearViewBuildProgress(ksname, viewName);
+    }
+
+    private static void clearViewBuildProgress(String ksname, String viewName)
+    {
+        executeInternal(String.format("DELETE FROM system.%s WHERE keyspace_name = ? AND view_name = ?", VIEW_BUILDS_IN_PROGRESS), ksname, viewName);
+        forceBlockingFlush(VIEW_BUILDS_IN_PROGRESS);
+
+        // builds started before the build of views was split in token ranges are restarted from scratch
+        executeInternal(String.format("DELETE FROM system.%s WHERE keyspace_name = ? AND view_name = ?", LEGACY_VIEWS_BUILDS_IN_PROGRESS), ksname, viewName);
+        forceBlockingFlush(LEGACY_VIEWS_BUILDS_IN_PROGRESS);
     }
 
     public static void setViewBuiltReplicated(String ksname, String viewName)
@@ -601,33 +651,61 @@ public final class SystemKeyspace
         setViewBuilt(ksname, viewName, true);
     }
 
-    public static void updateViewBuildStatus(String ksname, String viewName, Token token)
+    /**
+     * Checkpoints the build of a view on one of its token ranges: every key of the range up to {@code lastToken}
+     * (inclusive) has been built.
+     */
+    public static void updateViewBuildStatus(String ksname, String viewName, Range<Token> range, Token lastToken, long keysBuilt)
     {
-        String req = "INSERT INTO system.%s (keyspace_name, view_name, last_token) VALUES (?, ?, ?)";
-        Token.TokenFactory factory = ViewsBuildsInProgress.partitioner.getTokenFactory();
-        executeInternal(String.format(req, VIEWS_BUILDS_IN_PROGRESS), ksname, viewName, factory.toString(token));
+        String req = "INSERT INTO system.%s (keyspace_name, view_name, start_token, end_token, last_token, keys_built) VALUES (?, ?, ?, ?, ?, ?)";
+        Token.TokenFactory factory = ViewBuildsInProgress.partitioner.getTokenFactory();
+        executeInternal(String.format(req, VIEW_BUILDS_IN_PROGRESS),
+                        ksname,
+                        viewName,
+                        factory.toString(range.left),
+                        factory.toString(range.right),
+                        factory.toString(lastToken),
+                        keysBuilt);
     }
 
-    public static Pair<Integer, Token> getViewBuildStatus(String ksname, String viewName)
+    /**
+     * @return the generation number recorded when the build of the view started, or {@code null} if the build
+     * hasn't started.
+     */
+    public static Integer getViewBuildGeneration(String ksname, String viewName)
     {
-        String req = "SELECT generation_number, last_token FROM system.%s WHERE keyspace_name = ? AND view_name = ?";
-        UntypedResultSet queryResultSet = executeInternal(String.format(req, VIEWS_BUILDS_IN_PROGRESS), ksname, viewName);
+        String req = "SELECT generation_number FROM system.%s WHERE keyspace_name = ? AND view_name = ? LIMIT 1";
+        UntypedResultSet queryResultSet = executeInternal(String.format(req, VIEW_BUILDS_IN_PROGRESS), ksname, viewName);
         if (queryResultSet == null || queryResultSet.isEmpty())
             return null;
 
         UntypedResultSet.Row row = queryResultSet.one();
+        return row.has("generation_number") ? row.getInt("generation_number") : null;
+    }
 
-        Integer generation = null;
-        Token lastKey = null;
-        if (row.has("generation_number"))
-            generation = row.getInt("generation_number");
-        if (row.has("last_key"))
+    /**
+     * @return the token ranges the build of the view is split in, with the last token built and the number of keys
+     * built for each of them. The last token is {@code null} if nothing has been built in the range yet.
+     */
+    public static Map<Range<Token>, Pair<Token, Long>> getViewBuildStatus(String ksname, String viewName)
+    {
+        String req = "SELECT start_token, end_token, last_token, keys_built FROM system.%s WHERE keyspace_name = ? AND view_name = ?";
+        UntypedResultSet queryResultSet = executeInternal(String.format(req, VIEW_BUILDS_IN_PROGRESS), ksname, viewName);
+
+        Token.TokenFactory factory = ViewBuildsInProgress.partitioner.getTokenFactory();
+        Map<Range<Token>, Pair<Token, Long>> status = new LinkedHashMap<>();
+        for (UntypedResultSet.Row row : queryResultSet)
         {
-            Token.TokenFactory factory = ViewsBuildsInProgress.partitioner.getTokenFactory();
-            lastKey = factory.fromString(row.getString("last_key"));
+            if (!row.has("start_token") || !row.has("end_token"))
+                continue;
+
+            Range<Token> range = new Range<>(factory.fromString(row.getString("start_token")),
+                                             factory.fromString(row.getString("end_token")));
+            Token lastToken = row.has("last_token") ? factory.fromString(row.getString("last_token")) : null;
+            long keysBuilt = row.has("keys_built") ? row.getLong("keys_built") : 0;
+            status.put(range, Pair.create(lastToken, keysBuilt));
         }
-
-        return Pair.create(generation, lastKey);
+        return status;
     }
 
     public static synchronized void saveTruncationRecord(ColumnFamilyStore cfs, long truncatedAt, CommitLogPosition position)
@@ -1423,31 +1501,140 @@ public final class SystemKeyspace
         }
     }
 
-    public static void writePreparedStatement(String loggedKeyspace, MD5Digest key, String cql)
+    /**
+     * Stores a prepared statement along with the tables and functions it references, as "keyspace.name" strings, so that
+     * it can be removed when their schema changes even if it isn't cached anymore. The references are also indexed by
+     * keyspace in {@link #PREPARED_STATEMENTS_REFERENCES}, so that schema changes don't have to scan every statement.
+     */
+    public static void writePreparedStatement(String loggedKeyspace, MD5Digest key, String cql, Set<String> tables, Set<String> functions)
     {
+        // the references are written first, so that a stored statement is always found by the schema changes
+        for (String table : tables)
+            writePreparedStatementReference("table", table, key);
+        for (String function : functions)
+            writePreparedStatementReference("function", function, key);
+
         executeInternal(String.format("INSERT INTO %s.%s"
-                                      + " (logged_keyspace, prepared_id, query_string) VALUES (?, ?, ?)",
+                                      + " (logged_keyspace, prepared_id, query_string, tables, functions) VALUES (?, ?, ?, ?, ?)",
                                       NAME, PREPARED_STATEMENTS),
-                        loggedKeyspace, key.byteBuffer(), cql);
+                        loggedKeyspace, key.byteBuffer(), cql, tables, functions);
         logger.debug("stored prepared statement for logged keyspace '{}': '{}'", loggedKeyspace, cql);
     }
 
+    private static void writePreparedStatementReference(String kind, String reference, MD5Digest key)
+    {
+        Pair<String, String> name = splitReference(reference);
+        executeInternal(String.format("INSERT INTO %s.%s (keyspace_name, kind, name, prepared_id) VALUES (?, ?, ?, ?)",
+                                      NAME, PREPARED_STATEMENTS_REFERENCES),
+                        name.left, kind, name.right, key.byteBuffer());
+    }
+
+    private static Pair<String, String> splitReference(String reference)
+    {
+        // keyspace names can't contain dots
+        int dot = reference.indexOf('.');
+        return Pair.create(reference.substring(0, dot), reference.substring(dot + 1));
+    }
+
+    /**
+     * Removes the stored prepared statements referencing the given table, or anything in the keyspace if
+     * {@code cfName} is null.
+     */
+    public static void removePreparedStatementsForTable(String ksName, String cfName)
+    {
+        if (cfName == null)
+        {
+            removePreparedStatements(String.format("SELECT prepared_id FROM %s.%s WHERE keyspace_name = ?",
+                                                   NAME, PREPARED_STATEMENTS_REFERENCES),
+                                     ksName);
+            executeInternal(String.format("DELETE FROM %s.%s WHERE keyspace_name = ?", NAME, PREPARED_STATEMENTS_REFERENCES), ksName);
+        }
+        else
+        {
+            removePreparedStatements("table", ksName, cfName);
+        }
+    }
+
+    /**
+     * Removes the stored prepared statements referencing any overload of the given function.
+     */
+    public static void removePreparedStatementsForFunction(String ksName, String functionName)
+    {
+        removePreparedStatements("function", ksName, functionName);
+    }
+
+    private static void removePreparedStatements(String kind, String ksName, String name)
+    {
+        removePreparedStatements(String.format("SELECT prepared_id FROM %s.%s WHERE keyspace_name = ? AND kind = ? AND name = ?",
+                                               NAME, PREPARED_STATEMENTS_REFERENCES),
+                                 ksName, kind, name);
+    }
+
+    private static void removePreparedStatements(String referencesQuery, Object... values)
+    {
+        List<ByteBuffer> removed = new ArrayList<>();
+        for (UntypedResultSet.Row row : executeInternal(referencesQuery, values))
+            removed.add(row.getBytes("prepared_id"));
+
+        for (ByteBuffer key : removed)
+            removePreparedStatement(MD5Digest.wrap(ByteBufferUtil.getArray(key)));
+    }
+
+    /**
+     * Removes a stored prepared statement and the index of its references.
+     */
     public static void removePreparedStatement(MD5Digest key)
     {
+        String query = String.format("SELECT tables, functions FROM %s.%s WHERE prepared_id = ?", NAME, PREPARED_STATEMENTS);
+        UntypedResultSet resultSet = executeInternal(query, key.byteBuffer());
+
         executeInternal(String.format("DELETE FROM %s.%s"
                                       + " WHERE prepared_id = ?",
                                       NAME, PREPARED_STATEMENTS),
                         key.byteBuffer());
+
+        if (resultSet.isEmpty())
+            return;
+
+        UntypedResultSet.Row row = resultSet.one();
+        if (row.has("tables"))
+            removePreparedStatementReferences("table", row.getSet("tables", UTF8Type.instance), key);
+        if (row.has("functions"))
+            removePreparedStatementReferences("function", row.getSet("functions", UTF8Type.instance), key);
     }
 
-    public static List<Pair<String, String>> loadPreparedStatements()
+    private static void removePreparedStatementReferences(String kind, Set<String> references, MD5Digest key)
     {
-        String query = String.format("SELECT logged_keyspace, query_string FROM %s.%s", NAME, PREPARED_STATEMENTS);
-        UntypedResultSet resultSet = executeOnceInternal(query);
-        List<Pair<String, String>> r = new ArrayList<>();
-        for (UntypedResultSet.Row row : resultSet)
-            r.add(Pair.create(row.has("logged_keyspace") ? row.getString("logged_keyspace") : null,
-                              row.getString("query_string")));
-        return r;
+        for (String reference : references)
+        {
+            Pair<String, String> name = splitReference(reference);
+            executeInternal(String.format("DELETE FROM %s.%s WHERE keyspace_name = ? AND kind = ? AND name = ? AND prepared_id = ?",
+                                          NAME, PREPARED_STATEMENTS_REFERENCES),
+                            name.left, kind, name.right, key.byteBuffer());
+        }
+    }
+
+    /**
+     * Returns the logged keyspace and the query string of the provided prepared statement, or {@code null} if
+     * it isn't stored.
+     */
+    public static Pair<String, String> loadPreparedStatement(MD5Digest key)
+    {
+        String query = String.format("SELECT logged_keyspace, query_string, tables, functions FROM %s.%s WHERE prepared_id = ?",
+                                     NAME, PREPARED_STATEMENTS);
+        UntypedResultSet resultSet = executeInternal(query, key.byteBuffer());
+        if (resultSet.isEmpty())
+            return null;
+
+        UntypedResultSet.Row row = resultSet.one();
+        // Statements stored without references were either written by previous versions, which didn't index them (so
+        // schema changes wouldn't have removed them), or don't reference anything and are cheap for clients to prepare.
+        if (!row.has("tables") && !row.has("functions"))
+        {
+            removePreparedStatement(key);
+            return null;
+        }
+        return Pair.create(row.has("logged_keyspace") ? row.getString("logged_keyspace") : null,
+                           row.getString("query_string"));
     }
 }
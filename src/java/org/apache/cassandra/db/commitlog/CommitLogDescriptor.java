@@ -219,7 +219,7 @@ public class CommitLogDescriptor
             case VERSION_22:
                 return MessagingService.VERSION_22;
             case VERSION_30:
-                return MessagingService.VERSION_30;
+                return MessagingService.VERSION_310;
             default:
                 throw new IllegalStateException("Unknown commitlog version " + version);
         }
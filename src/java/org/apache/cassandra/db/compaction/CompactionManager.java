@@ -47,7 +47,7 @@ import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.SSTableSet;
 import org.apache.cassandra.db.lifecycle.View;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
-import org.apache.cassandra.db.view.ViewBuilder;
+import org.apache.cassandra.db.view.ViewBuilderTask;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
@@ -114,9 +114,10 @@ public class CompactionManager implements CompactionManagerMBean
 
     private final CompactionExecutor executor = new CompactionExecutor();
     private final CompactionExecutor validationExecutor = new ValidationExecutor();
+    private final CompactionExecutor viewBuildExecutor = new ViewBuildExecutor();
     private final static CompactionExecutor cacheCleanupExecutor = new CacheCleanupExecutor();
 
-    private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor);
+    private final CompactionMetrics metrics = new CompactionMetrics(executor, validationExecutor, viewBuildExecutor);
     private final Multiset<ColumnFamilyStore> compactingCF = ConcurrentHashMultiset.create();
 
     private final RateLimiter compactionRateLimiter = RateLimiter.create(Double.MAX_VALUE);
@@ -195,7 +196,7 @@ public class CompactionManager implements CompactionManagerMBean
     }
 
     /**
-     * Shutdowns both compaction and validation executors, cancels running compaction / validation,
+     * Shutdowns the compaction, validation and view build executors, cancels running compaction / validation,
      * and waits for tasks to complete if tasks were not cancelable.
      */
     public void forceShutdown()
@@ -203,6 +204,7 @@ public class CompactionManager implements CompactionManagerMBean
         // shutdown executors to prevent further submission
         executor.shutdown();
         validationExecutor.shutdown();
+        viewBuildExecutor.shutdown();
 
         // interrupt compactions and validations
         for (Holder compactionHolder : CompactionMetrics.getCompactions())
@@ -213,7 +215,7 @@ public class CompactionManager implements CompactionManagerMBean
         // wait for tasks to terminate
         // compaction tasks are interrupted above, so it shuold be fairy quick
         // until not interrupted tasks to complete.
-        for (ExecutorService exec : Arrays.asList(executor, validationExecutor))
+        for (ExecutorService exec : Arrays.asList(executor, validationExecutor, viewBuildExecutor))
         {
             try
             {
@@ -1579,30 +1581,30 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
-    public Future<?> submitViewBuilder(final ViewBuilder builder)
+    public Future<?> submitViewBuilder(final ViewBuilderTask task)
     {
         Runnable runnable = new Runnable()
         {
             public void run()
             {
-                metrics.beginCompaction(builder);
+                metrics.beginCompaction(task);
                 try
                 {
-                    builder.run();
+                    task.run();
                 }
                 finally
                 {
-                    metrics.finishCompaction(builder);
+                    metrics.finishCompaction(task);
                 }
             }
         };
-        if (executor.isShutdown())
+        if (viewBuildExecutor.isShutdown())
         {
-            logger.info("Compaction executor has shut down, not submitting index build");
+            logger.info("View build executor has shut down, not submitting view build");
             return null;
         }
 
-        return executor.submit(runnable);
+        return viewBuildExecutor.submit(runnable);
     }
     public int getActiveCompactions()
     {
@@ -1672,6 +1674,14 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    private static class ViewBuildExecutor extends CompactionExecutor
+    {
+        public ViewBuildExecutor()
+        {
+            super(DatabaseDescriptor.getConcurrentViewBuilders(), "ViewBuildExecutor");
+        }
+    }
+
     private static class CacheCleanupExecutor extends CompactionExecutor
     {
         public CacheCleanupExecutor()
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.Config;
+
+/**
+ * A bounded, in-memory log of the most recent slow queries executed on this node, see {@link SlowQuery} for what is
+ * recorded about them. Local reads are recorded once they took longer than the threshold, including the ones aborted
+ * by the {@link MonitoringTask}, and so are writes as seen by their coordinator, including the failed and timed out
+ * ones. The log is only exposed through JMX and nodetool, it is never written to disk.
+ */
+public class SlowQueryLog implements SlowQueryLogMBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    public static final String MBEAN_NAME = "org.apache.cassandra.db:type=SlowQueryLog";
+
+    /**
+     * The number of queries kept in the log, older queries are evicted by new ones.
+     */
+    private static final int LOG_SIZE = Integer.parseInt(System.getProperty(Config.PROPERTY_PREFIX + "slow_query_log_size", "100"));
+
+    /**
+     * The latency from which queries are recorded, use 0 to disable the log.
+     */
+    private static final long THRESHOLD_MS = Long.parseLong(System.getProperty(Config.PROPERTY_PREFIX + "slow_query_log_threshold_ms", "500"));
+
+    /**
+     * The fraction of the slow queries which are recorded, to bound the overhead of the log when many queries are slow.
+     */
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty(Config.PROPERTY_PREFIX + "slow_query_log_sample_rate", "1.0"));
+
+    public static final SlowQueryLog instance = register(new SlowQueryLog(LOG_SIZE, THRESHOLD_MS, SAMPLE_RATE));
+
+    private final SlowQuery[] queries;
+    private int next;
+    private int size;
+
+    private volatile long thresholdNanos;
+    private volatile double sampleRate;
+
+    @VisibleForTesting
+    SlowQueryLog(int logSize, long thresholdInMs, double sampleRate)
+    {
+        this.queries = new SlowQuery[Math.max(0, logSize)];
+        setThresholdInMs(thresholdInMs);
+        setSampleRate(sampleRate);
+    }
+
+    private static SlowQueryLog register(SlowQueryLog log)
+    {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            mbs.registerMBean(log, new ObjectName(MBEAN_NAME));
+        }
+        catch (Exception e)
+        {
+            logger.warn("Failed to register the slow query log MBean", e);
+        }
+        return log;
+    }
+
+    /**
+     * @return whether a query that took the provided time is slow enough to be recorded, before sampling.
+     */
+    public boolean isSlow(long latencyNanos)
+    {
+        long threshold = thresholdNanos;
+        return threshold > 0 && latencyNanos >= threshold && queries.length > 0;
+    }
+
+    /**
+     * Records the query built by the provided supplier if the query is slow enough and gets sampled, so that
+     * queries that are not recorded cost nothing but a comparison.
+     */
+    public void maybeRecord(long latencyNanos, Supplier<SlowQuery> query)
+    {
+        if (!isSlow(latencyNanos))
+            return;
+
+        double rate = sampleRate;
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate)
+            return;
+
+        record(query.get());
+    }
+
+    private synchronized void record(SlowQuery query)
+    {
+        queries[next] = query;
+        next = (next + 1) % queries.length;
+        size = Math.min(size + 1, queries.length);
+    }
+
+    /**
+     * @return the queries currently in the log, most recent first.
+     */
+    public synchronized List<SlowQuery> recent()
+    {
+        List<SlowQuery> recent = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++)
+            recent.add(queries[(next - i + queries.length) % queries.length]);
+        return recent;
+    }
+
+    public List<Map<String, String>> getSlowQueries()
+    {
+        List<Map<String, String>> slowQueries = new ArrayList<>();
+        for (SlowQuery query : recent())
+            slowQueries.add(query.toMap());
+        return slowQueries;
+    }
+
+    public synchronized void clear()
+    {
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = null;
+        next = 0;
+        size = 0;
+    }
+
+    public long getThresholdInMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public void setThresholdInMs(long thresholdInMs)
+    {
+        if (thresholdInMs < 0)
+            throw new IllegalArgumentException("Slow query threshold must not be negative, but was " + thresholdInMs);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdInMs);
+    }
+
+    public double getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate)
+    {
+        if (sampleRate < 0 || sampleRate > 1)
+            throw new IllegalArgumentException("Slow query sample rate must be between 0 and 1, but was " + sampleRate);
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * A query recorded in the log.
+     *
+     * The query is described by its shape, without the values it was executed with, and the token of the partition
+     * it targeted if any. The number of sstables and tombstones it went through are recorded when known, and its
+     * latency is split into the phases of its execution.
+     */
+    public static final class SlowQuery
+    {
+        public static final int UNKNOWN = -1;
+
+        public final long timestamp;
+        public final String type;
+        public final String keyspace;
+        public final String table;
+        public final String query;
+        public final String token;
+        public final int sstables;
+        public final int tombstones;
+        public final Map<String, Long> phasesMicros;
+
+        public SlowQuery(String type,
+                         String keyspace,
+                         String table,
+                         String query,
+                         String token,
+                         int sstables,
+                         int tombstones,
+                         Map<String, Long> phasesMicros)
+        {
+            this.timestamp = System.currentTimeMillis();
+            this.type = type;
+            this.keyspace = keyspace;
+            this.table = table;
+            this.query = query;
+            this.token = token;
+            this.sstables = sstables;
+            this.tombstones = tombstones;
+            this.phasesMicros = Collections.unmodifiableMap(phasesMicros);
+        }
+
+        /**
+         * @return the phases of a query, in execution order, from the ordered times in nanoseconds at which they ended,
+         * starting with the time at which the query started.
+         */
+        public static Map<String, Long> phases(String[] names, long... nanoTimes)
+        {
+            assert nanoTimes.length == names.length + 1;
+            Map<String, Long> phases = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++)
+                phases.put(names[i], TimeUnit.NANOSECONDS.toMicros(nanoTimes[i + 1] - nanoTimes[i]));
+            return phases;
+        }
+
+        public long totalMicros()
+        {
+            long total = 0;
+            for (long phase : phasesMicros.values())
+                total += phase;
+            return total;
+        }
+
+        public Map<String, String> toMap()
+        {
+            Map<String, String> map = new LinkedHashMap<>();
+            map.put("time", new Date(timestamp).toString());
+            map.put("type", type);
+            map.put("keyspace", keyspace == null ? "" : keyspace);
+            map.put("table", table == null ? "" : table);
+            map.put("query", query);
+            map.put("token", token == null ? "" : token);
+            map.put("sstables", sstables == UNKNOWN ? "" : Integer.toString(sstables));
+            map.put("tombstones", tombstones == UNKNOWN ? "" : Integer.toString(tombstones));
+            map.put("latency_us", Long.toString(totalMicros()));
+
+            StringBuilder phases = new StringBuilder();
+            for (Map.Entry<String, Long> phase : phasesMicros.entrySet())
+            {
+                if (phases.length() > 0)
+                    phases.append(", ");
+                phases.append(phase.getKey()).append('=').append(phase.getValue()).append("us");
+            }
+            map.put("phases", phases.toString());
+            return map;
+        }
+    }
+}
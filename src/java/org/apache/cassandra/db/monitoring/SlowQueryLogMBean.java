@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.monitoring;
+
+import java.util.List;
+import java.util.Map;
+
+public interface SlowQueryLogMBean
+{
+    /**
+     * @return the slow queries currently in the log, most recent first, each as a map of column name to value
+     */
+    public List<Map<String, String>> getSlowQueries();
+
+    /**
+     * Removes all the queries from the log.
+     */
+    public void clear();
+
+    /**
+     * @return the latency, in milliseconds, from which queries are recorded, or 0 if the log is disabled
+     */
+    public long getThresholdInMs();
+
+    public void setThresholdInMs(long thresholdInMs);
+
+    /**
+     * @return the fraction, between 0 and 1, of slow queries that are recorded
+     */
+    public double getSampleRate();
+
+    public void setSampleRate(double sampleRate);
+}
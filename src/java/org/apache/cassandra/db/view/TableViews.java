@@ -145,6 +145,62 @@ public class TableViews extends AbstractCollection<View>
             StorageProxy.mutateMV(update.partitionKey().getKey(), mutations, writeCommitLog, baseComplete);
     }
 
+    /**
+     * Reads, with a single query, the existing base rows required to generate the view updates of all the provided
+     * updates. This is used by {@link ViewUpdatePipeline} to read the base partition once for many mutations.
+     *
+     * @param updates updates on the base table represented by this object, all on the same partition.
+     * @param nowInSec the current time in seconds.
+     * @return the existing rows affected by {@code updates}, or {@code null} if none of the updates can affect the views.
+     */
+    public PartitionUpdate readExistingRows(List<PartitionUpdate> updates, int nowInSec)
+    {
+        PartitionUpdate update = PartitionUpdate.merge(updates);
+        assert update.metadata().cfId.equals(baseTableMetadata.cfId);
+
+        Collection<View> views = updatedViews(update);
+        if (views.isEmpty())
+            return null;
+
+        SinglePartitionReadCommand command = readExistingRowsCommand(update, views, nowInSec);
+        if (command == null)
+            return null;
+
+        long start = System.nanoTime();
+        PartitionUpdate existings;
+        try (ReadExecutionController orderGroup = command.executionController();
+             UnfilteredRowIterator iter = UnfilteredPartitionIterators.getOnlyElement(command.executeLocally(orderGroup), command))
+        {
+            // keep everything that was read, including the cells only fetched for their liveness, as the view update
+            // generation relies on them like it does when reading the existing rows for a single update
+            existings = PartitionUpdate.fromIterator(iter, ColumnFilter.all(baseTableMetadata));
+        }
+        Keyspace.openAndGetStore(update.metadata()).metric.viewReadTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return existings;
+    }
+
+    /**
+     * Generates the mutations to apply to the views for an update on the base table, given the existing base rows as
+     * returned by {@link #readExistingRows} and merged with any update applied since.
+     *
+     * @param update an update on the base table represented by this object.
+     * @param existings the existing rows affected by {@code update}.
+     * @param nowInSec the current time in seconds.
+     * @return the mutations to apply to the views. This can be empty.
+     */
+    public Collection<Mutation> generateViewUpdates(PartitionUpdate update, PartitionUpdate existings, int nowInSec)
+    {
+        Collection<View> views = updatedViews(update);
+        if (views.isEmpty() || !mayAffectViews(update, views))
+            return Collections.emptyList();
+
+        try (UnfilteredRowIterator updates = update.unfilteredIterator();
+             UnfilteredRowIterator existingRows = existings.unfilteredIterator())
+        {
+            return generateViewUpdates(views, updates, existingRows, nowInSec);
+        }
+    }
+
     /**
      * Given some updates on the base table of this object and the existing values for the rows affected by that update, generates the
      * mutation to be applied to the provided views.
@@ -371,6 +427,19 @@ public class TableViews extends AbstractCollection<View>
         return SinglePartitionReadCommand.create(metadata, nowInSec, queriedColumns, rowFilter, DataLimits.NONE, key, clusteringFilter);
     }
 
+    private boolean mayAffectViews(PartitionUpdate update, Collection<View> views)
+    {
+        if (!update.deletionInfo().isLive())
+            return true;
+
+        for (Row row : update)
+        {
+            if (affectsAnyViews(update.partitionKey(), row, views))
+                return true;
+        }
+        return false;
+    }
+
     private boolean affectsAnyViews(DecoratedKey partitionKey, Row update, Collection<View> views)
     {
         for (View view : views)
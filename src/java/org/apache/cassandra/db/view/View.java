@@ -29,7 +29,6 @@ import org.apache.cassandra.cql3.statements.ParsedStatement;
 import org.apache.cassandra.cql3.statements.SelectStatement;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.config.*;
-import org.apache.cassandra.db.compaction.CompactionManager;
 import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.schema.KeyspaceMetadata;
 import org.apache.cassandra.service.ClientState;
@@ -210,7 +209,15 @@ public class View
         }
 
         this.builder = new ViewBuilder(baseCfs, this);
-        CompactionManager.instance.submitViewBuilder(builder);
+        builder.start();
+    }
+
+    /**
+     * @return the progress of the build of this view on each of its token ranges, see {@link ViewBuilder#getProgress}.
+     */
+    public synchronized List<Map<String, String>> getBuildProgress()
+    {
+        return builder == null ? Collections.emptyList() : builder.getProgress();
     }
 
     @Nullable
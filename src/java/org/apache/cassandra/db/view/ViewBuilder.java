@@ -18,85 +18,67 @@
 
 package org.apache.cassandra.db.view;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.concurrent.ScheduledExecutors;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.*;
-import org.apache.cassandra.db.compaction.CompactionInfo;
 import org.apache.cassandra.db.compaction.CompactionManager;
-import org.apache.cassandra.db.compaction.OperationType;
 import org.apache.cassandra.db.lifecycle.SSTableSet;
-import org.apache.cassandra.db.partitions.*;
-import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
 import org.apache.cassandra.dht.Token;
-import org.apache.cassandra.io.sstable.ReducingKeyIterator;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.repair.SystemDistributedKeyspace;
-import org.apache.cassandra.service.StorageProxy;
 import org.apache.cassandra.service.StorageService;
-import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.Pair;
-import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.utils.concurrent.Refs;
 
-public class ViewBuilder extends CompactionInfo.Holder
+/**
+ * Builds a view from the existing data of its base table.
+ *
+ * The build is split in token ranges, which are built in parallel by {@link ViewBuilderTask}s on the dedicated view
+ * build executor of {@link CompactionManager} (sized by {@code concurrent_materialized_view_builders}), so that view builds neither
+ * wait for nor delay compactions. The progress of every range is checkpointed in
+ * {@link SystemKeyspace#VIEW_BUILDS_IN_PROGRESS}, so that a build interrupted by a restart resumes where each of its
+ * ranges stopped.
+ */
+public class ViewBuilder
 {
-    private final ColumnFamilyStore baseCfs;
-    private final View view;
-    private final UUID compactionId;
-    private volatile Token prevToken = null;
-
     private static final Logger logger = LoggerFactory.getLogger(ViewBuilder.class);
 
+    private final ColumnFamilyStore baseCfs;
+    private final View view;
+    private final List<ViewBuilderTask> tasks = new ArrayList<>();
+    private final AtomicInteger remainingTasks = new AtomicInteger();
+    private volatile boolean failed = false;
     private volatile boolean isStopped = false;
 
     public ViewBuilder(ColumnFamilyStore baseCfs, View view)
     {
         this.baseCfs = baseCfs;
         this.view = view;
-        compactionId = UUIDGen.getTimeUUID();
     }
 
-    private void buildKey(DecoratedKey key)
+    /**
+     * Starts the build asynchronously, resuming it if it was interrupted.
+     */
+    public void start()
     {
-        ReadQuery selectQuery = view.getReadQuery();
-        if (!selectQuery.selectsKey(key))
-            return;
-
-        int nowInSec = FBUtilities.nowInSeconds();
-        SinglePartitionReadCommand command = view.getSelectStatement().internalReadForView(key, nowInSec);
-
-        // We're rebuilding everything from what's on disk, so we read everything, consider that as new updates
-        // and pretend that there is nothing pre-existing.
-        UnfilteredRowIterator empty = UnfilteredRowIterators.noRowsIterator(baseCfs.metadata, key, Rows.EMPTY_STATIC_ROW, DeletionTime.LIVE, false);
-
-        Collection<Mutation> mutations;
-        try (ReadExecutionController orderGroup = command.executionController();
-             UnfilteredRowIterator data = UnfilteredPartitionIterators.getOnlyElement(command.executeLocally(orderGroup), command))
-        {
-            mutations = baseCfs.keyspace.viewManager.forTable(baseCfs.metadata).generateViewUpdates(Collections.singleton(view), data, empty, nowInSec);
-        }
-
-        if (!mutations.isEmpty())
-        {
-            AtomicLong noBase = new AtomicLong(Long.MAX_VALUE);
-            StorageProxy.mutateMV(key.getKey(), mutations, true, noBase);
-        }
+        ScheduledExecutors.nonPeriodicTasks.execute(this::submitTasks);
     }
 
-    public void run()
+    private synchronized void submitTasks()
     {
+        if (isStopped)
+            return;
+
         logger.trace("Running view builder for {}.{}", baseCfs.metadata.ksName, view.name);
         UUID localHostId = SystemKeyspace.getLocalHostId();
         String ksname = baseCfs.metadata.ksName, viewName = view.name;
@@ -108,84 +90,115 @@ public class ViewBuilder extends CompactionInfo.Holder
             return;
         }
 
-        Iterable<Range<Token>> ranges = StorageService.instance.getLocalRanges(baseCfs.metadata.ksName);
-        final Pair<Integer, Token> buildStatus = SystemKeyspace.getViewBuildStatus(ksname, viewName);
-        Token lastToken;
-        Function<org.apache.cassandra.db.lifecycle.View, Iterable<SSTableReader>> function;
-        if (buildStatus == null)
+        try
         {
-            baseCfs.forceBlockingFlush();
-            function = org.apache.cassandra.db.lifecycle.View.selectFunction(SSTableSet.CANONICAL);
-            int generation = Integer.MIN_VALUE;
-
-            try (Refs<SSTableReader> temp = baseCfs.selectAndReference(function).refs)
+            Integer generation = SystemKeyspace.getViewBuildGeneration(ksname, viewName);
+            Map<Range<Token>, Pair<Token, Long>> status;
+            if (generation == null)
             {
-                for (SSTableReader reader : temp)
+                baseCfs.forceBlockingFlush();
+                generation = Integer.MIN_VALUE;
+                try (Refs<SSTableReader> sstables = baseCfs.selectAndReference(org.apache.cassandra.db.lifecycle.View.selectFunction(SSTableSet.CANONICAL)).refs)
                 {
-                    generation = Math.max(reader.descriptor.generation, generation);
+                    for (SSTableReader reader : sstables)
+                        generation = Math.max(reader.descriptor.generation, generation);
                 }
-            }
 
-            SystemKeyspace.beginViewBuild(ksname, viewName, generation);
-            lastToken = null;
-        }
-        else
-        {
-            function = new Function<org.apache.cassandra.db.lifecycle.View, Iterable<SSTableReader>>()
+                status = new LinkedHashMap<>();
+                for (Range<Token> range : splitRing())
+                    status.put(range, Pair.create(null, 0L));
+                SystemKeyspace.beginViewBuild(ksname, viewName, generation, status.keySet());
+            }
+            else
             {
-                @Nullable
-                public Iterable<SSTableReader> apply(org.apache.cassandra.db.lifecycle.View view)
-                {
-                    Iterable<SSTableReader> readers = org.apache.cassandra.db.lifecycle.View.selectFunction(SSTableSet.CANONICAL).apply(view);
-                    if (readers != null)
-                        return Iterables.filter(readers, ssTableReader -> ssTableReader.descriptor.generation <= buildStatus.left);
-                    return null;
-                }
-            };
-            lastToken = buildStatus.right;
-        }
+                status = SystemKeyspace.getViewBuildStatus(ksname, viewName);
+            }
 
-        prevToken = lastToken;
-        try (Refs<SSTableReader> sstables = baseCfs.selectAndReference(function).refs;
-             ReducingKeyIterator iter = new ReducingKeyIterator(sstables))
-        {
             SystemDistributedKeyspace.startViewBuild(ksname, viewName, localHostId);
-            while (!isStopped && iter.hasNext())
+
+            tasks.clear();
+            for (Map.Entry<Range<Token>, Pair<Token, Long>> entry : status.entrySet())
             {
-                DecoratedKey key = iter.next();
-                Token token = key.getToken();
-                if (lastToken == null || lastToken.compareTo(token) < 0)
-                {
-                    for (Range<Token> range : ranges)
-                    {
-                        if (range.contains(token))
-                        {
-                            buildKey(key);
-
-                            if (prevToken == null || prevToken.compareTo(token) != 0)
-                            {
-                                SystemKeyspace.updateViewBuildStatus(ksname, viewName, key.getToken());
-                                prevToken = token;
-                            }
-                        }
-                    }
-                    lastToken = null;
-                }
+                Range<Token> range = entry.getKey();
+                Token lastToken = entry.getValue().left;
+                if (lastToken == null || !lastToken.equals(range.right))
+                    tasks.add(new ViewBuilderTask(this, baseCfs, view, range, generation, lastToken, entry.getValue().right));
             }
+            failed = false;
+            remainingTasks.set(tasks.size());
+            logger.debug("Building view {}.{} in {} token ranges", ksname, viewName, tasks.size());
 
-            if (!isStopped)
+            if (tasks.isEmpty())
             {
-                SystemKeyspace.finishViewBuildStatus(ksname, viewName);
-                updateDistributed(ksname, viewName, localHostId);
+                finish(ksname, viewName, localHostId);
+                return;
             }
+
+            for (ViewBuilderTask task : tasks)
+                CompactionManager.instance.submitViewBuilder(task);
         }
         catch (Exception e)
         {
-            ScheduledExecutors.nonPeriodicTasks.schedule(() -> CompactionManager.instance.submitViewBuilder(this),
-                                                         5,
-                                                         TimeUnit.MINUTES);
-            logger.warn("Materialized View failed to complete, sleeping 5 minutes before restarting", e);
+            retryLater(e);
+        }
+    }
+
+    /**
+     * Splits the ring in about as many ranges as there are view builder threads, each owning the same share of the
+     * local ranges, or in a single range if the partitioner doesn't support splitting.
+     */
+    private List<Range<Token>> splitRing()
+    {
+        Optional<Splitter> splitter = baseCfs.getPartitioner().splitter();
+        if (!splitter.isPresent())
+        {
+            Token minimum = baseCfs.getPartitioner().getMinimumToken();
+            return Collections.singletonList(new Range<>(minimum, minimum));
+        }
+
+        List<Range<Token>> localRanges = Range.normalize(StorageService.instance.getLocalRanges(baseCfs.metadata.ksName));
+        return splitter.get().splitRing(DatabaseDescriptor.getConcurrentViewBuilders(), localRanges);
+    }
+
+    void onTaskCompleted(ViewBuilderTask task, Throwable error)
+    {
+        if (error != null)
+        {
+            failed = true;
+            logger.warn("Failed to build the token range {} of materialized view {}.{}", task.range, baseCfs.metadata.ksName, view.name, error);
+        }
+
+        if (remainingTasks.decrementAndGet() > 0 || isStopped)
+            return;
+
+        if (failed)
+        {
+            retryLater(null);
+            return;
+        }
+
+        // tasks stopped through the compaction manager leave the build unfinished until it is restarted
+        synchronized (this)
+        {
+            for (ViewBuilderTask t : tasks)
+            {
+                if (!t.isDone())
+                    return;
+            }
         }
+        finish(baseCfs.metadata.ksName, view.name, SystemKeyspace.getLocalHostId());
+    }
+
+    private void finish(String ksname, String viewName, UUID localHostId)
+    {
+        SystemKeyspace.finishViewBuildStatus(ksname, viewName);
+        updateDistributed(ksname, viewName, localHostId);
+    }
+
+    private void retryLater(Exception e)
+    {
+        ScheduledExecutors.nonPeriodicTasks.schedule(this::submitTasks, 5, TimeUnit.MINUTES);
+        logger.warn("Materialized View failed to complete, sleeping 5 minutes before restarting", e);
     }
 
     private void updateDistributed(String ksname, String viewName, UUID localHostId)
@@ -197,37 +210,36 @@ public class ViewBuilder extends CompactionInfo.Holder
         }
         catch (Exception e)
         {
-            ScheduledExecutors.nonPeriodicTasks.schedule(() -> CompactionManager.instance.submitViewBuilder(this),
-                                                         5,
-                                                         TimeUnit.MINUTES);
+            ScheduledExecutors.nonPeriodicTasks.schedule(this::submitTasks, 5, TimeUnit.MINUTES);
             logger.warn("Failed to updated the distributed status of view, sleeping 5 minutes before retrying", e);
         }
     }
 
-    public CompactionInfo getCompactionInfo()
+    /**
+     * @return the progress of the running build on each of its token ranges, with the number of keys built, the
+     * average throughput since the build was (re)started (up to when it stopped for the ranges no longer building)
+     * and whether the range is done.
+     */
+    public synchronized List<Map<String, String>> getProgress()
     {
-        long rangesLeft = 0, rangesTotal = 0;
-        Token lastToken = prevToken;
-
-        // This approximation is not very accurate, but since we do not have a method which allows us to calculate the
-        // percentage of a range covered by a second range, this is the best approximation that we can calculate.
-        // Instead, we just count the total number of ranges that haven't been seen by the node (we use the order of
-        // the tokens to determine whether they have been seen yet or not), and the total number of ranges that a node
-        // has.
-        for (Range<Token> range : StorageService.instance.getLocalRanges(baseCfs.keyspace.getName()))
+        List<Map<String, String>> progress = new ArrayList<>(tasks.size());
+        for (ViewBuilderTask task : tasks)
         {
-            rangesLeft++;
-            rangesTotal++;
-            // This will reset rangesLeft, so that the number of ranges left will be less than the total ranges at the
-            // end of the method.
-            if (lastToken == null || range.contains(lastToken))
-                rangesLeft = 0;
+            progress.add(ImmutableMap.of("range", task.range.toString(),
+                                         "keys_built", Long.toString(task.keysBuilt()),
+                                         "keys_per_second", Double.toString(task.keysPerSecond()),
+                                         "status", task.isDone() ? "DONE" : (isStopped ? "STOPPED" : "BUILDING")));
         }
-        return new CompactionInfo(baseCfs.metadata, OperationType.VIEW_BUILD, rangesLeft, rangesTotal, "ranges", compactionId);
+        return progress;
     }
 
     public void stop()
     {
         isStopped = true;
+        synchronized (this)
+        {
+            for (ViewBuilderTask task : tasks)
+                task.stop();
+        }
     }
 }
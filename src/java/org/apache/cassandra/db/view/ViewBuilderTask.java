@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.view;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.db.lifecycle.SSTableSet;
+import org.apache.cassandra.db.partitions.*;
+import org.apache.cassandra.db.rows.*;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.ReducingKeyIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.concurrent.Refs;
+
+/**
+ * Builds a view for the keys of its base table in a token range, as part of a {@link ViewBuilder}.
+ */
+public class ViewBuilderTask extends CompactionInfo.Holder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ViewBuilderTask.class);
+
+    // the number of keys built between two checkpoints of the progress of the range
+    private static final int CHECKPOINT_INTERVAL = Integer.getInteger(Config.PROPERTY_PREFIX + "view_build_checkpoint_interval", 1000);
+
+    private final ViewBuilder builder;
+    private final ColumnFamilyStore baseCfs;
+    private final View view;
+    final Range<Token> range;
+    private final int generation;
+    private final UUID compactionId;
+
+    // every key up to this token (inclusive) has been built
+    private volatile Token lastToken;
+    private final AtomicLong keysBuilt;
+    private final AtomicLong keysBuiltSinceStart = new AtomicLong();
+    private volatile long startNanos;
+    // when the build of the range stopped, to freeze its throughput once it is no longer building
+    private volatile long endNanos;
+    private volatile ReducingKeyIterator iter;
+    private volatile boolean isDone = false;
+
+    ViewBuilderTask(ViewBuilder builder, ColumnFamilyStore baseCfs, View view, Range<Token> range, int generation, Token lastToken, long keysBuilt)
+    {
+        this.builder = builder;
+        this.baseCfs = baseCfs;
+        this.view = view;
+        this.range = range;
+        this.generation = generation;
+        this.lastToken = lastToken;
+        this.keysBuilt = new AtomicLong(keysBuilt);
+        this.compactionId = UUIDGen.getTimeUUID();
+    }
+
+    private void buildKey(DecoratedKey key)
+    {
+        ReadQuery selectQuery = view.getReadQuery();
+        if (!selectQuery.selectsKey(key))
+            return;
+
+        int nowInSec = FBUtilities.nowInSeconds();
+        SinglePartitionReadCommand command = view.getSelectStatement().internalReadForView(key, nowInSec);
+
+        // We're rebuilding everything from what's on disk, so we read everything, consider that as new updates
+        // and pretend that there is nothing pre-existing.
+        UnfilteredRowIterator empty = UnfilteredRowIterators.noRowsIterator(baseCfs.metadata, key, Rows.EMPTY_STATIC_ROW, DeletionTime.LIVE, false);
+
+        Collection<Mutation> mutations;
+        try (ReadExecutionController orderGroup = command.executionController();
+             UnfilteredRowIterator data = UnfilteredPartitionIterators.getOnlyElement(command.executeLocally(orderGroup), command))
+        {
+            mutations = baseCfs.keyspace.viewManager.forTable(baseCfs.metadata).generateViewUpdates(Collections.singleton(view), data, empty, nowInSec);
+        }
+
+        if (!mutations.isEmpty())
+        {
+            AtomicLong noBase = new AtomicLong(Long.MAX_VALUE);
+            StorageProxy.mutateMV(key.getKey(), mutations, true, noBase);
+        }
+    }
+
+    public void run()
+    {
+        Throwable error = null;
+        try
+        {
+            build();
+        }
+        catch (Throwable t)
+        {
+            error = t;
+        }
+        finally
+        {
+            builder.onTaskCompleted(this, error);
+        }
+    }
+
+    private void build()
+    {
+        startNanos = System.nanoTime();
+        try
+        {
+            buildRange();
+        }
+        finally
+        {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    private void buildRange()
+    {
+        String ksname = baseCfs.metadata.ksName, viewName = view.name;
+        Collection<Range<Token>> localRanges = StorageService.instance.getLocalRanges(ksname);
+
+        // only the sstables that existed when the build started, the following writes update the view themselves
+        Function<org.apache.cassandra.db.lifecycle.View, Iterable<SSTableReader>> function = v ->
+            Iterables.filter(org.apache.cassandra.db.lifecycle.View.selectFunction(SSTableSet.CANONICAL).apply(v),
+                             sstable -> sstable.descriptor.generation <= generation
+                                        && range.intersects(new Bounds<>(sstable.first.getToken(), sstable.last.getToken())));
+        // the sstable indexes are only read from the start of the range, or from where a previous build stopped
+        Token start = range.isWrapAround() && !range.right.isMinimum() ? null : lastToken == null ? range.left : lastToken;
+        try (Refs<SSTableReader> refs = baseCfs.selectAndReference(function).refs;
+             ReducingKeyIterator keys = new ReducingKeyIterator(refs, start))
+        {
+            iter = keys;
+            Token prevToken = lastToken;
+            int sinceCheckpoint = 0;
+            while (!isStopRequested() && keys.hasNext())
+            {
+                DecoratedKey key = keys.next();
+                Token token = key.getToken();
+                // keys come in token order, so there is nothing left to build past the end of the range
+                if (!range.isWrapAround() && token.compareTo(range.right) > 0)
+                    break;
+                if (!range.contains(token) || (lastToken != null && token.compareTo(lastToken) <= 0))
+                    continue;
+
+                // keys sharing a token are all built before the token is checkpointed
+                if (prevToken != null && !token.equals(prevToken) && sinceCheckpoint >= CHECKPOINT_INTERVAL)
+                {
+                    SystemKeyspace.updateViewBuildStatus(ksname, viewName, range, prevToken, keysBuilt.get());
+                    sinceCheckpoint = 0;
+                }
+
+                if (Range.isInRanges(token, localRanges))
+                {
+                    buildKey(key);
+                    keysBuilt.incrementAndGet();
+                    keysBuiltSinceStart.incrementAndGet();
+                    sinceCheckpoint++;
+                }
+                prevToken = token;
+            }
+
+            if (!isStopRequested())
+            {
+                lastToken = range.right;
+                SystemKeyspace.updateViewBuildStatus(ksname, viewName, range, range.right, keysBuilt.get());
+                isDone = true;
+                logger.debug("Built the token range {} of materialized view {}.{}, {} keys", range, ksname, viewName, keysBuilt.get());
+            }
+        }
+    }
+
+    boolean isDone()
+    {
+        return isDone;
+    }
+
+    long keysBuilt()
+    {
+        return keysBuilt.get();
+    }
+
+    /**
+     * @return the average throughput of the range since its build was (re)started, up to when it stopped if it is no
+     * longer building.
+     */
+    double keysPerSecond()
+    {
+        long end = endNanos;
+        long elapsedNanos = (end == 0 ? System.nanoTime() : end) - startNanos;
+        return startNanos == 0 || elapsedNanos <= 0 ? 0 : keysBuiltSinceStart.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public CompactionInfo getCompactionInfo()
+    {
+        ReducingKeyIterator keys = iter;
+        return keys == null
+             ? new CompactionInfo(baseCfs.metadata, OperationType.VIEW_BUILD, 0, 0, "bytes", compactionId)
+             : new CompactionInfo(baseCfs.metadata, OperationType.VIEW_BUILD, keys.getBytesRead(), keys.getTotalBytes(), "bytes", compactionId);
+    }
+}
@@ -93,6 +93,11 @@ public class ViewManager
         return viewsByName.values();
     }
 
+    public View getByName(String viewName)
+    {
+        return viewsByName.get(viewName);
+    }
+
     public void update(String viewName)
     {
         View view = viewsByName.get(viewName);
@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.view;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.batchlog.Batch;
+import org.apache.cassandra.batchlog.BatchlogManager;
+import org.apache.cassandra.concurrent.JMXEnabledThreadPoolExecutor;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.exceptions.WriteTimeoutException;
+import org.apache.cassandra.index.transactions.UpdateTransaction;
+import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.JVMStabilityInspector;
+import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * Applies the base table mutations that require view updates when {@code async_materialized_view_updates} is enabled,
+ * in place of the per-partition locks taken by {@link Keyspace#apply}.
+ *
+ * Mutations are queued on a stripe chosen by their partition key, and each stripe is drained by a single thread at a
+ * time, which serializes the mutations on a given partition like the locks do. The queued mutations on a partition
+ * are applied together: the existing base rows are read once for all of them and each view update is generated from
+ * the previous mutations merged in memory. A mutation is acknowledged as soon as it is written to the commit log and
+ * memtables, and the view updates of the mutations on a partition are then propagated with a single call to
+ * {@link StorageProxy#mutateMV}, which writes them to the local batchlog before sending them to the view replicas.
+ *
+ * Like the locks, the pipeline pushes back on writes when it can't keep up: at most
+ * {@code cassandra.view_update_max_pending} mutations are queued, beyond which the submitting threads wait for room,
+ * and mutations which couldn't be applied within the write timeout are failed with a {@link WriteTimeoutException}.
+ *
+ * Views are eventually consistent with their base table, as they are without this pipeline:
+ * <ul>
+ *   <li>a base write is durable once acknowledged, but its view updates may not have been applied yet, so a read
+ *   on a view right after a write on the base table may not see it;</li>
+ *   <li>the write order group of a batch is kept until its view updates are in the batchlog, so the memtables, and
+ *   thus the commit log segments, holding the base writes cannot be flushed before that. If the node dies in
+ *   between, commit log replay regenerates the view updates from the replayed base writes;</li>
+ *   <li>once in the batchlog, the view updates are replayed until every paired view replica has applied them.</li>
+ * </ul>
+ */
+public class ViewUpdatePipeline
+{
+    private static final Logger logger = LoggerFactory.getLogger(ViewUpdatePipeline.class);
+
+    private static final int MAX_BATCH_SIZE = Integer.getInteger(Config.PROPERTY_PREFIX + "view_update_batch_size", 128);
+    private static final int MAX_PENDING = Integer.getInteger(Config.PROPERTY_PREFIX + "view_update_max_pending", 8192);
+
+    public static final ViewUpdatePipeline instance = new ViewUpdatePipeline(DatabaseDescriptor.getConcurrentViewWriters());
+
+    private final JMXEnabledThreadPoolExecutor executor;
+    private final Stripe[] stripes;
+    // one permit per mutation which can be queued
+    private final Semaphore permits = new Semaphore(MAX_PENDING);
+
+    private ViewUpdatePipeline(int threads)
+    {
+        executor = new JMXEnabledThreadPoolExecutor(threads,
+                                                    1,
+                                                    TimeUnit.MINUTES,
+                                                    new LinkedBlockingQueue<>(),
+                                                    new NamedThreadFactory("ViewUpdatePipeline"),
+                                                    "internal");
+        // many more stripes than threads, so that a busy partition delays few others
+        stripes = new Stripe[threads * 16];
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * Queues a mutation on a table with views to be applied by the pipeline, waiting for room in the queues if needed.
+     *
+     * @return {@code future}, completed once the mutation is applied to the base table, or completed exceptionally
+     * with a {@link WriteTimeoutException} if it couldn't be applied within the write timeout.
+     */
+    public CompletableFuture<?> submit(Keyspace keyspace, Mutation mutation, boolean writeCommitLog, CompletableFuture<?> future)
+    {
+        long timeout = DatabaseDescriptor.getWriteRpcTimeout() - (System.currentTimeMillis() - mutation.createdAt);
+        if (!Uninterruptibles.tryAcquireUninterruptibly(permits, Math.max(timeout, 0), TimeUnit.MILLISECONDS))
+        {
+            Tracing.trace("Too many pending materialized view updates");
+            future.completeExceptionally(new WriteTimeoutException(WriteType.VIEW, ConsistencyLevel.LOCAL_ONE, 0, 1));
+            return future;
+        }
+
+        Stripe stripe = stripes[(mutation.key().hashCode() & Integer.MAX_VALUE) % stripes.length];
+        stripe.queue.add(new Task(keyspace, mutation, writeCommitLog, future));
+        stripe.schedule();
+        return future;
+    }
+
+    @VisibleForTesting
+    public int pendingMutations()
+    {
+        return MAX_PENDING - permits.availablePermits();
+    }
+
+    private final class Stripe implements Runnable
+    {
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private void schedule()
+        {
+            if (scheduled.compareAndSet(false, true))
+                executor.execute(this);
+        }
+
+        public void run()
+        {
+            List<Task> batch = new ArrayList<>();
+            Task task;
+            while (batch.size() < MAX_BATCH_SIZE && (task = queue.poll()) != null)
+                batch.add(task);
+
+            try
+            {
+                // mutations on the same partition are applied together, in the order they were queued
+                Map<Pair<String, DecoratedKey>, List<Task>> byPartition = new LinkedHashMap<>();
+                for (Task t : batch)
+                    byPartition.computeIfAbsent(Pair.create(t.keyspace.getName(), t.mutation.key()), k -> new ArrayList<>()).add(t);
+
+                for (List<Task> tasks : byPartition.values())
+                    apply(tasks);
+            }
+            finally
+            {
+                permits.release(batch.size());
+                scheduled.set(false);
+                // give other stripes a chance rather than draining this one in a loop
+                if (!queue.isEmpty())
+                    schedule();
+            }
+        }
+    }
+
+    private static void apply(List<Task> tasks)
+    {
+        long startMillis = System.currentTimeMillis();
+        tasks = failTimedOut(tasks, startMillis);
+        if (tasks.isEmpty())
+            return;
+
+        Keyspace keyspace = tasks.get(0).keyspace;
+        DecoratedKey key = tasks.get(0).mutation.key();
+        int nowInSec = FBUtilities.nowInSeconds();
+
+        try (OpOrder.Group opGroup = Keyspace.writeOrder.start())
+        {
+            Map<UUID, PartitionUpdate> existings;
+            try
+            {
+                existings = readExistingRows(keyspace, tasks, nowInSec);
+            }
+            catch (Throwable t)
+            {
+                JVMStabilityInspector.inspectThrowable(t);
+                logger.error(String.format("Unknown exception caught while attempting to read the existing rows of %s for its materialized views", keyspace.getName()), t);
+                for (Task task : tasks)
+                    task.future.completeExceptionally(t);
+                return;
+            }
+
+            List<Mutation> viewMutations = new ArrayList<>();
+            boolean writeCommitLog = false;
+            for (Task task : tasks)
+            {
+                try
+                {
+                    List<Mutation> taskViewMutations = new ArrayList<>();
+                    for (PartitionUpdate update : task.mutation.getPartitionUpdates())
+                    {
+                        PartitionUpdate existing = existings.get(update.metadata().cfId);
+                        if (existing != null)
+                            taskViewMutations.addAll(keyspace.viewManager.forTable(update.metadata()).generateViewUpdates(update, existing, nowInSec));
+                    }
+
+                    CommitLogPosition commitLogPosition = task.writeCommitLog ? CommitLog.instance.add(task.mutation) : null;
+                    for (PartitionUpdate update : task.mutation.getPartitionUpdates())
+                    {
+                        if (!keyspace.hasColumnFamilyStore(update.metadata().cfId))
+                        {
+                            logger.error("Attempting to mutate non-existant table {} ({}.{})", update.metadata().cfId, update.metadata().ksName, update.metadata().cfName);
+                            continue;
+                        }
+                        ColumnFamilyStore cfs = keyspace.getColumnFamilyStore(update.metadata().cfId);
+                        cfs.metric.viewLockAcquireTime.update(startMillis - task.queuedAt, TimeUnit.MILLISECONDS);
+                        UpdateTransaction indexTransaction = cfs.indexManager.newUpdateTransaction(update, opGroup, nowInSec);
+                        cfs.apply(update, indexTransaction, opGroup, commitLogPosition);
+
+                        // the following mutations on the partition see this one as existing
+                        PartitionUpdate existing = existings.get(update.metadata().cfId);
+                        if (existing != null)
+                            existings.put(update.metadata().cfId, PartitionUpdate.merge(Arrays.asList(existing, update)));
+                    }
+
+                    viewMutations.addAll(taskViewMutations);
+                    writeCommitLog |= task.writeCommitLog;
+                    task.future.complete(null);
+                }
+                catch (Throwable t)
+                {
+                    JVMStabilityInspector.inspectThrowable(t);
+                    logger.error(String.format("Unknown exception caught while attempting to apply a mutation on %s with materialized views", keyspace.getName()), t);
+                    task.future.completeExceptionally(t);
+                }
+            }
+
+            if (!viewMutations.isEmpty())
+                pushViewMutations(key, viewMutations, writeCommitLog);
+        }
+    }
+
+    /**
+     * Fails the mutations which waited for longer than the write timeout, as their coordinator already gave up on
+     * them, like the mutations which can't acquire the locks in time.
+     *
+     * @return the mutations to apply.
+     */
+    private static List<Task> failTimedOut(List<Task> tasks, long now)
+    {
+        List<Task> live = new ArrayList<>(tasks.size());
+        for (Task task : tasks)
+        {
+            if (now - task.mutation.createdAt > DatabaseDescriptor.getWriteRpcTimeout())
+            {
+                logger.trace("Mutation on {} timed out waiting to be applied", task.keyspace.getName());
+                task.future.completeExceptionally(new WriteTimeoutException(WriteType.VIEW, ConsistencyLevel.LOCAL_ONE, 0, 1));
+            }
+            else
+            {
+                live.add(task);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Reads the existing rows of every table of the mutations that has views, once for all the mutations.
+     */
+    private static Map<UUID, PartitionUpdate> readExistingRows(Keyspace keyspace, List<Task> tasks, int nowInSec)
+    {
+        Map<UUID, List<PartitionUpdate>> updatesByTable = new HashMap<>();
+        for (Task task : tasks)
+        {
+            for (PartitionUpdate update : task.mutation.getPartitionUpdates())
+                updatesByTable.computeIfAbsent(update.metadata().cfId, id -> new ArrayList<>()).add(update);
+        }
+
+        Map<UUID, PartitionUpdate> existings = new HashMap<>();
+        for (List<PartitionUpdate> updates : updatesByTable.values())
+        {
+            PartitionUpdate existing = keyspace.viewManager.forTable(updates.get(0).metadata()).readExistingRows(updates, nowInSec);
+            if (existing != null)
+                existings.put(updates.get(0).metadata().cfId, existing);
+        }
+        return existings;
+    }
+
+    private static void pushViewMutations(DecoratedKey key, List<Mutation> viewMutations, boolean writeCommitLog)
+    {
+        try
+        {
+            StorageProxy.mutateMV(key.getKey(), viewMutations, writeCommitLog, new AtomicLong(System.currentTimeMillis()));
+        }
+        catch (Throwable t)
+        {
+            // the base mutations have been acknowledged already, so keep the view updates in the batchlog to be
+            // replayed later rather than failing them
+            JVMStabilityInspector.inspectThrowable(t);
+            logger.warn("Could not propagate materialized view updates for key {}, storing them in the batchlog", key, t);
+            BatchlogManager.store(Batch.createLocal(UUIDGen.getTimeUUID(), FBUtilities.timestampMicros(), viewMutations), writeCommitLog);
+        }
+    }
+
+    private static final class Task
+    {
+        private final Keyspace keyspace;
+        private final Mutation mutation;
+        private final boolean writeCommitLog;
+        private final CompletableFuture<?> future;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private Task(Keyspace keyspace, Mutation mutation, boolean writeCommitLog, CompletableFuture<?> future)
+        {
+            this.keyspace = keyspace;
+            this.mutation = mutation;
+            this.writeCommitLog = writeCommitLog;
+            this.future = future;
+        }
+    }
+}
@@ -81,6 +81,28 @@ public abstract class Splitter
         return boundaries;
     }
 
+    /**
+     * Splits the whole ring in at most {@code parts} contiguous ranges, each owning about the same share of the
+     * provided local ranges. Unlike the local ranges, the returned ranges cover every token, so they remain usable
+     * if the local ranges change.
+     *
+     * @param localRanges sorted and normalized local ranges
+     */
+    public List<Range<Token>> splitRing(int parts, List<Range<Token>> localRanges)
+    {
+        List<Range<Token>> ranges = new ArrayList<>(parts);
+        Token left = partitioner.getMinimumToken();
+        for (Token right : splitOwnedRanges(parts, localRanges, false))
+        {
+            // a range with equal bounds would wrap around the whole ring
+            if (right.equals(left))
+                continue;
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        return ranges;
+    }
+
     private List<Token> splitOwnedRangesNoPartialRanges(List<Range<Token>> localRanges, BigInteger perPart, int parts)
     {
         List<Token> boundaries = new ArrayList<>(parts);
@@ -82,9 +82,20 @@ public final class Hint
      * Applies the contained mutation unless it's expired, filtering out any updates for truncated tables
      */
     void apply()
+    {
+        Mutation filtered = liveMutation();
+        if (filtered != null)
+            filtered.apply();
+    }
+
+    /**
+     * @return the contained mutation without the updates for truncated tables, or null if the hint is expired or
+     * there is nothing left to apply
+     */
+    Mutation liveMutation()
     {
         if (!isLive())
-            return;
+            return null;
 
         // filter out partition update for table that have been truncated since hint's creation
         Mutation filtered = mutation;
@@ -92,8 +103,7 @@ public final class Hint
             if (creationTime <= SystemKeyspace.getTruncatedAt(id))
                 filtered = filtered.without(id);
 
-        if (!filtered.isEmpty())
-            filtered.apply();
+        return filtered.isEmpty() ? null : filtered;
     }
 
     /**
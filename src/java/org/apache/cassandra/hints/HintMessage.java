@@ -115,7 +115,14 @@ public final class HintMessage
         public HintMessage deserialize(DataInputPlus in, int version) throws IOException
         {
             UUID hostId = UUIDSerializer.serializer.deserialize(in, version);
+            return deserializeHint(hostId, in, version);
+        }
 
+        /*
+         * Deserializes a size-prefixed hint, as serialized by HintMessage, EncodedHintMessage and HintsBatchMessage.
+         */
+        static HintMessage deserializeHint(UUID hostId, DataInputPlus in, int version) throws IOException
+        {
             long hintSize = in.readUnsignedVInt();
             TrackedDataInputPlus countingIn = new TrackedDataInputPlus(in);
             try
@@ -45,8 +45,22 @@ public final class HintVerbHandler implements IVerbHandler<HintMessage>
 
     public void doVerb(MessageIn<HintMessage> message, int id)
     {
-        UUID hostId = message.payload.hostId;
-        Hint hint = message.payload.hint;
+        Hint hint = accept(message.payload);
+        if (hint != null)
+            hint.apply();
+
+        reply(id, message.from);
+    }
+
+    /**
+     * Validates the hint of a message, and stores or re-addresses it if this node isn't the one to apply it.
+     *
+     * @return the hint, if it is to be applied by this node, null otherwise
+     */
+    static Hint accept(HintMessage message)
+    {
+        UUID hostId = message.hostId;
+        Hint hint = message.hint;
 
         // If we see an unknown table id, it means the table, or one of the tables in the mutation, had been dropped.
         // In that case there is nothing we can really do, or should do, other than log it go on.
@@ -56,9 +70,8 @@ public final class HintVerbHandler implements IVerbHandler<HintMessage>
         {
             logger.trace("Failed to decode and apply a hint for {} - table with id {} is unknown",
                          hostId,
-                         message.payload.unknownTableID);
-            reply(id, message.from);
-            return;
+                         message.unknownTableID);
+            return null;
         }
 
         // We must perform validation before applying the hint, and there is no other place to do it other than here.
@@ -69,8 +82,7 @@ public final class HintVerbHandler implements IVerbHandler<HintMessage>
         catch (MarshalException e)
         {
             logger.warn("Failed to validate a hint for {} - skipped", hostId);
-            reply(id, message.from);
-            return;
+            return null;
         }
 
         if (!hostId.equals(StorageService.instance.getLocalHostUUID()))
@@ -78,23 +90,22 @@ public final class HintVerbHandler implements IVerbHandler<HintMessage>
             // the node is not the final destination of the hint (must have gotten it from a decommissioning node),
             // so just store it locally, to be delivered later.
             HintsService.instance.write(hostId, hint);
+            return null;
         }
-        else if (!StorageProxy.instance.appliesLocally(hint.mutation))
+
+        if (!StorageProxy.instance.appliesLocally(hint.mutation))
         {
             // the topology has changed, and we are no longer a replica of the mutation - since we don't know which node(s)
             // it has been handed over to, re-address the hint to all replicas; see CASSANDRA-5902.
             HintsService.instance.writeForAllReplicas(hint);
-        }
-        else
-        {
-            // the common path - the node is both the destination and a valid replica for the hint.
-            hint.apply();
+            return null;
         }
 
-        reply(id, message.from);
+        // the common path - the node is both the destination and a valid replica for the hint.
+        return hint;
     }
 
-    private static void reply(int id, InetAddress to)
+    static void reply(int id, InetAddress to)
     {
         MessagingService.instance().sendReply(HintResponse.message, id, to);
     }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.hints;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.IVersionedSerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.UUIDSerializer;
+
+/**
+ * The message we use to dispatch a page of hints at once, acknowledged by a single {@link HintResponse} once all of
+ * the hints have been handled as if they were sent in individual {@link HintMessage}s.
+ *
+ * Is usually sent as an {@link EncodedHintsBatchMessage}, and only to VERSION_310 nodes.
+ */
+public final class HintsBatchMessage
+{
+    public static final IVersionedSerializer<HintsBatchMessage> serializer = new Serializer();
+
+    final UUID hostId;
+    final List<HintMessage> hints;
+
+    HintsBatchMessage(UUID hostId, List<HintMessage> hints)
+    {
+        this.hostId = hostId;
+        this.hints = hints;
+    }
+
+    public MessageOut<HintsBatchMessage> createMessageOut()
+    {
+        return new MessageOut<>(MessagingService.Verb.HINTS_BATCH, this, serializer);
+    }
+
+    public static class Serializer implements IVersionedSerializer<HintsBatchMessage>
+    {
+        public long serializedSize(HintsBatchMessage message, int version)
+        {
+            long size = UUIDSerializer.serializer.serializedSize(message.hostId, version);
+            size += TypeSizes.sizeofUnsignedVInt(message.hints.size());
+            for (HintMessage hint : message.hints)
+            {
+                long hintSize = Hint.serializer.serializedSize(hint.hint, version);
+                size += TypeSizes.sizeofUnsignedVInt(hintSize);
+                size += hintSize;
+            }
+            return size;
+        }
+
+        public void serialize(HintsBatchMessage message, DataOutputPlus out, int version) throws IOException
+        {
+            assert version >= MessagingService.VERSION_310 : version;
+
+            UUIDSerializer.serializer.serialize(message.hostId, out, version);
+            out.writeUnsignedVInt(message.hints.size());
+            for (HintMessage hint : message.hints)
+            {
+                Objects.requireNonNull(hint.hint); // we should never *send* a HintMessage with null hint
+
+                // as in HintMessage, the size of each hint lets the receiver skip those of dropped tables
+                out.writeUnsignedVInt(Hint.serializer.serializedSize(hint.hint, version));
+                Hint.serializer.serialize(hint.hint, out, version);
+            }
+        }
+
+        public HintsBatchMessage deserialize(DataInputPlus in, int version) throws IOException
+        {
+            UUID hostId = UUIDSerializer.serializer.deserialize(in, version);
+            int count = (int) in.readUnsignedVInt();
+            List<HintMessage> hints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                hints.add(HintMessage.Serializer.deserializeHint(hostId, in, version));
+            return new HintsBatchMessage(hostId, hints);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.hints;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.net.IVerbHandler;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.utils.Pair;
+
+/**
+ * Verb handler for batches of hints, handling each of them as {@link HintVerbHandler} would, and acknowledging the
+ * batch once all of them have been.
+ *
+ * The hints of a batch that are applied by this node are merged by partition first: a page of hints usually holds many
+ * hints for the same partitions, and applying them as a single mutation per partition saves on commit log appends
+ * and memtable updates. Merging them is safe, as hints are applied with their original timestamps.
+ */
+public final class HintsBatchVerbHandler implements IVerbHandler<HintsBatchMessage>
+{
+    public void doVerb(MessageIn<HintsBatchMessage> message, int id)
+    {
+        Map<Pair<String, DecoratedKey>, List<Mutation>> mutationsByPartition = new LinkedHashMap<>();
+        for (HintMessage hintMessage : message.payload.hints)
+        {
+            Hint hint = HintVerbHandler.accept(hintMessage);
+            Mutation mutation = hint == null ? null : hint.liveMutation();
+            if (mutation != null)
+                mutationsByPartition.computeIfAbsent(Pair.create(mutation.getKeyspaceName(), mutation.key()), k -> new ArrayList<>(1))
+                                    .add(mutation);
+        }
+
+        for (List<Mutation> mutations : mutationsByPartition.values())
+            Mutation.merge(mutations).apply();
+
+        HintVerbHandler.reply(id, message.from);
+    }
+}
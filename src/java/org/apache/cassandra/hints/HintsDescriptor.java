@@ -213,7 +213,7 @@ final class HintsDescriptor
         switch (hintsVersion)
         {
             case VERSION_30:
-                return MessagingService.VERSION_30;
+                return MessagingService.VERSION_310;
             default:
                 throw new AssertionError();
         }
@@ -19,14 +19,17 @@ package org.apache.cassandra.hints;
 
 import java.io.File;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
-import com.google.common.util.concurrent.RateLimiter;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +38,8 @@ import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.FSReadError;
 import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.concurrent.SimpleCondition;
 
 /**
  * A multi-threaded (by default) executor for dispatching hints.
@@ -49,6 +54,7 @@ final class HintsDispatchExecutor
     private final ExecutorService executor;
     private final AtomicBoolean isPaused;
     private final Map<UUID, Future> scheduledDispatches;
+    private final Map<UUID, DispatchProgress> dispatchProgress;
 
     HintsDispatchExecutor(File hintsDirectory, int maxThreads, AtomicBoolean isPaused)
     {
@@ -56,8 +62,9 @@ final class HintsDispatchExecutor
         this.isPaused = isPaused;
 
         scheduledDispatches = new ConcurrentHashMap<>();
-        executor = new JMXEnabledThreadPoolExecutor(1,
-                                                    maxThreads,
+        dispatchProgress = new ConcurrentHashMap<>();
+        // core threads time out, so all of maxThreads can be used without being kept around when there are no hints
+        executor = new JMXEnabledThreadPoolExecutor(maxThreads,
                                                     1,
                                                     TimeUnit.MINUTES,
                                                     new LinkedBlockingQueue<>(),
@@ -91,13 +98,28 @@ final class HintsDispatchExecutor
          * however there is nothing to win from it - so we don't.
          *
          * Additionally, having just one dispatch task per host id ensures that we'll never violate our per-destination
-         * rate limit, without having to share a ratelimiter between threads.
+         * rate limit, without having to share a ratelimiter between dispatch tasks - the files a task delivers
+         * concurrently share its rate limiter.
          *
          * It also simplifies reasoning about dispatch sessions.
          */
         return scheduledDispatches.computeIfAbsent(hostId, uuid -> executor.submit(new DispatchHintsTask(store, hostId)));
     }
 
+    /**
+     * @return the progress of the dispatch sessions in progress, by destination.
+     */
+    Map<String, String> getDispatchProgress()
+    {
+        Map<String, String> progress = new HashMap<>();
+        for (Map.Entry<UUID, DispatchProgress> entry : dispatchProgress.entrySet())
+        {
+            InetAddress address = StorageService.instance.getEndpointForHostId(entry.getKey());
+            progress.put(address == null ? entry.getKey().toString() : address.getHostAddress(), entry.getValue().toString());
+        }
+        return progress;
+    }
+
     Future transfer(HintsCatalog catalog, Supplier<UUID> hostIdSupplier)
     {
         return executor.submit(new TransferHintsTask(catalog, hostIdSupplier));
@@ -171,44 +193,128 @@ final class HintsDispatchExecutor
         }
     }
 
+    /**
+     * Progress of a dispatch session, from which the time it will take to deliver the remaining hints is estimated.
+     */
+    private static final class DispatchProgress
+    {
+        private final long startTime = System.nanoTime();
+        private final HintsDispatchThrottle throttle;
+        private final long totalBytes;
+        private final int totalFiles;
+        private final AtomicLong deliveredBytes = new AtomicLong();
+        private final AtomicInteger deliveredFiles = new AtomicInteger();
+
+        private DispatchProgress(HintsStore store, HintsDispatchThrottle throttle)
+        {
+            this.throttle = throttle;
+            this.totalBytes = store.pendingDispatchBytes();
+            this.totalFiles = store.pendingDispatchFiles();
+        }
+
+        void onDelivered(long bytes, boolean completedFile)
+        {
+            deliveredBytes.addAndGet(bytes);
+            if (completedFile)
+                deliveredFiles.incrementAndGet();
+        }
+
+        @Override
+        public String toString()
+        {
+            long elapsed = System.nanoTime() - startTime;
+            long delivered = deliveredBytes.get();
+            long remaining = Math.max(0, totalBytes - delivered);
+            String eta = delivered == 0
+                       ? "unknown"
+                       : TimeUnit.NANOSECONDS.toSeconds((long) (elapsed * ((double) remaining / delivered))) + "s";
+            return String.format("%d/%d files, %s/%s delivered at %s (throttled at %s), ETA %s",
+                                 deliveredFiles.get(),
+                                 totalFiles,
+                                 FBUtilities.prettyPrintMemory(delivered),
+                                 FBUtilities.prettyPrintMemory(totalBytes),
+                                 FBUtilities.prettyPrintMemoryPerSecond(delivered, elapsed),
+                                 throttle.rate() == Double.MAX_VALUE ? "unthrottled" : FBUtilities.prettyPrintMemoryPerSecond((long) throttle.rate()),
+                                 eta);
+        }
+    }
+
     private final class DispatchHintsTask implements Runnable
     {
         private final HintsStore store;
         private final UUID hostId;
-        private final RateLimiter rateLimiter;
+        private final HintsDispatchThrottle throttle;
+
+        // set when a file couldn't be delivered entirely, to stop the files delivered concurrently with it
+        private final AtomicBoolean isAborted = new AtomicBoolean();
+
+        private DispatchProgress progress;
 
         DispatchHintsTask(HintsStore store, UUID hostId)
         {
             this.store = store;
             this.hostId = hostId;
 
-            // rate limit is in bytes per second. Uses Double.MAX_VALUE if disabled (set to 0 in cassandra.yaml).
-            // max rate is scaled by the number of nodes in the cluster (CASSANDRA-5272).
-            // the goal is to bound maximum hints traffic going towards a particular node from the rest of the cluster,
-            // not total outgoing hints traffic from this node - this is why the rate limiter is not shared between
-            // all the dispatch tasks (as there will be at most one dispatch task for a particular host id at a time).
-            int nodesCount = Math.max(1, StorageService.instance.getTokenMetadata().getAllEndpoints().size() - 1);
-            int throttleInKB = DatabaseDescriptor.getHintedHandoffThrottleInKB() / nodesCount;
-            this.rateLimiter = RateLimiter.create(throttleInKB == 0 ? Double.MAX_VALUE : throttleInKB * 1024);
+            // rate limit is in bytes per second, and adapts to how the destination copes with the hints.
+            // the rate limiter is not shared between all the dispatch tasks, as there will be at most one dispatch
+            // task for a particular host id at a time; the files it delivers concurrently share it though.
+            int nodesCount = StorageService.instance.getTokenMetadata().getAllEndpoints().size();
+            this.throttle = HintsDispatchThrottle.create(DatabaseDescriptor.getHintedHandoffThrottleInKB(), nodesCount);
         }
 
         public void run()
         {
+            progress = new DispatchProgress(store, throttle);
+            dispatchProgress.put(hostId, progress);
             try
             {
                 dispatch();
             }
             finally
             {
+                dispatchProgress.remove(hostId, progress);
                 scheduledDispatches.remove(hostId);
             }
         }
 
+        /*
+         * Delivers up to max_hints_dispatch_files_per_host files at a time: this thread delivers files along with
+         * helpers submitted to the executor. The helpers that haven't started by the time this thread runs out of
+         * files are cancelled rather than waited for, as they could be queued behind this very task.
+         */
         private void dispatch()
+        {
+            int helpersCount = Math.min(DatabaseDescriptor.getMaxHintsDispatchFilesPerHost(), store.pendingDispatchFiles()) - 1;
+            List<DispatchHelper> helpers = new ArrayList<>(Math.max(0, helpersCount));
+            try
+            {
+                for (int i = 0; i < helpersCount; i++)
+                {
+                    DispatchHelper helper = new DispatchHelper();
+                    executor.execute(helper);
+                    helpers.add(helper);
+                }
+            }
+            catch (RejectedExecutionException e)
+            {
+                // shutting down
+            }
+
+            try
+            {
+                dispatchFiles();
+            }
+            finally
+            {
+                helpers.forEach(DispatchHelper::cancelOrAwait);
+            }
+        }
+
+        private void dispatchFiles()
         {
             while (true)
             {
-                if (isPaused.get())
+                if (isPaused.get() || isAborted.get())
                     break;
 
                 HintsDescriptor descriptor = store.poll();
@@ -218,7 +324,10 @@ final class HintsDispatchExecutor
                 try
                 {
                     if (!dispatch(descriptor))
+                    {
+                        isAborted.set(true);
                         break;
+                    }
                 }
                 catch (FSReadError e)
                 {
@@ -250,24 +359,27 @@ final class HintsDispatchExecutor
         {
             File file = new File(hintsDirectory, descriptor.fileName());
             Long offset = store.getDispatchOffset(descriptor).orElse(null);
+            long startOffset = offset == null ? 0L : offset;
 
-            try (HintsDispatcher dispatcher = HintsDispatcher.create(file, rateLimiter, address, descriptor.hostId, isPaused))
+            try (HintsDispatcher dispatcher = HintsDispatcher.create(file, throttle, address, descriptor.hostId, isPaused))
             {
                 if (offset != null)
                     dispatcher.seek(offset);
 
                 if (dispatcher.dispatch())
                 {
+                    progress.onDelivered(Math.max(0, file.length() - startOffset), true);
                     store.delete(descriptor);
                     store.cleanUp(descriptor);
-                    logger.info("Finished hinted handoff of file {} to endpoint {}", descriptor.fileName(), hostId);
+                    logger.info("Finished hinted handoff of file {} to endpoint {} ({})", descriptor.fileName(), hostId, progress);
                     return true;
                 }
                 else
                 {
+                    progress.onDelivered(Math.max(0, dispatcher.dispatchOffset() - startOffset), false);
                     store.markDispatchOffset(descriptor, dispatcher.dispatchOffset());
                     store.offerFirst(descriptor);
-                    logger.info("Finished hinted handoff of file {} to endpoint {}, partially", descriptor.fileName(), hostId);
+                    logger.info("Finished hinted handoff of file {} to endpoint {}, partially ({})", descriptor.fileName(), hostId, progress);
                     return false;
                 }
             }
@@ -278,7 +390,7 @@ final class HintsDispatchExecutor
         {
             File file = new File(hintsDirectory, descriptor.fileName());
 
-            try (HintsReader reader = HintsReader.open(file, rateLimiter))
+            try (HintsReader reader = HintsReader.open(file, throttle.rateLimiter()))
             {
                 reader.forEach(page -> page.hintsIterator().forEachRemaining(HintsService.instance::writeForAllReplicas));
                 store.delete(descriptor);
@@ -286,5 +398,44 @@ final class HintsDispatchExecutor
                 logger.info("Finished converting hints file {}", descriptor.fileName());
             }
         }
+
+        /*
+         * Delivers files of the dispatch session concurrently with the thread running it.
+         */
+        private final class DispatchHelper implements Runnable
+        {
+            private final AtomicBoolean isClaimed = new AtomicBoolean();
+            private final SimpleCondition isDone = new SimpleCondition();
+
+            public void run()
+            {
+                if (!isClaimed.compareAndSet(false, true))
+                    return;
+
+                try
+                {
+                    dispatchFiles();
+                }
+                finally
+                {
+                    isDone.signalAll();
+                }
+            }
+
+            void cancelOrAwait()
+            {
+                if (isClaimed.compareAndSet(false, true))
+                    return;
+
+                try
+                {
+                    isDone.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.hints;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Adapts the rate at which the hints of a dispatch session are read, and so sent, to how the destination node copes
+ * with them.
+ *
+ * The rate starts at its configured share of {@code hinted_handoff_throttle_in_kb}, and grows up to the whole
+ * throttle for as long as pages of hints are applied without the write latency of the destination degrading. It drops
+ * when that latency exceeds twice the lowest one observed, and even more when hints time out or fail, which is what
+ * happens when the destination drops them because it is overloaded.
+ *
+ * A throttle of 0 disables both the rate limiting and its adaptation.
+ */
+final class HintsDispatchThrottle
+{
+    private static final double INCREASE_FACTOR = 1.1;
+    private static final double LATENCY_DECREASE_FACTOR = 0.75;
+    private static final double FAILURE_DECREASE_FACTOR = 0.5;
+
+    // the rate never goes lower than this fraction of the initial rate
+    private static final int MIN_RATE_DIVISOR = 8;
+
+    private final RateLimiter rateLimiter;
+    private final double minRate;
+    private final double maxRate;
+
+    // lowest mean latency of the hints of a page seen so far, in nanoseconds
+    private long baseLatency = Long.MAX_VALUE;
+
+    /**
+     * @param initialRate the initial rate, in bytes per second, or 0 if unthrottled.
+     * @param maxRate the maximum rate, in bytes per second.
+     */
+    @VisibleForTesting
+    HintsDispatchThrottle(double initialRate, double maxRate)
+    {
+        this.rateLimiter = RateLimiter.create(initialRate == 0 ? Double.MAX_VALUE : initialRate);
+        this.minRate = initialRate / MIN_RATE_DIVISOR;
+        this.maxRate = Math.max(initialRate, maxRate);
+    }
+
+    /**
+     * Creates a throttle for the dispatch of hints to a node of a cluster of {@code nodesCount} nodes.
+     */
+    static HintsDispatchThrottle create(int throttleInKB, int nodesCount)
+    {
+        // the goal is to bound maximum hints traffic going towards a particular node from the rest of the cluster,
+        // assuming all the other nodes are dispatching hints to it (CASSANDRA-5272); the adaptation lets a node that
+        // keeps up have it all when that assumption doesn't hold
+        double throttle = throttleInKB * 1024.0;
+        return new HintsDispatchThrottle(throttle / Math.max(1, nodesCount - 1), throttle);
+    }
+
+    RateLimiter rateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * @return the current rate, in bytes per second.
+     */
+    double rate()
+    {
+        return rateLimiter.getRate();
+    }
+
+    private boolean isThrottled()
+    {
+        return minRate > 0;
+    }
+
+    /**
+     * Called when all the hints of a page have been applied by the destination.
+     *
+     * @param meanLatency the mean time the hints of the page took to be applied, in nanoseconds.
+     */
+    synchronized void onPageDelivered(long meanLatency)
+    {
+        if (!isThrottled())
+            return;
+
+        baseLatency = Math.min(baseLatency, meanLatency);
+        if (meanLatency > 2 * baseLatency)
+            setRate(rate() * LATENCY_DECREASE_FACTOR);
+        else
+            setRate(rate() * INCREASE_FACTOR);
+    }
+
+    /**
+     * Called when some hints of a page timed out or failed to be applied by the destination.
+     */
+    synchronized void onPageFailed()
+    {
+        if (isThrottled())
+            setRate(rate() * FAILURE_DECREASE_FACTOR);
+    }
+
+    private void setRate(double rate)
+    {
+        rateLimiter.setRate(Math.max(minRate, Math.min(maxRate, rate)));
+    }
+}
@@ -25,8 +25,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
-import com.google.common.util.concurrent.RateLimiter;
-
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.gms.FailureDetector;
 import org.apache.cassandra.net.IAsyncCallbackWithFailure;
@@ -37,8 +35,9 @@ import org.apache.cassandra.utils.concurrent.SimpleCondition;
 /**
  * Dispatches a single hints file to a specified node in a batched manner.
  *
- * Uses either {@link EncodedHintMessage} - when dispatching hints into a node with the same messaging version as the hints file,
- * or {@link HintMessage}, when conversion is required.
+ * Uses either {@link EncodedHintsBatchMessage} - when dispatching hints into a node with the same messaging version as the
+ * hints file, sending each page of hints in a single message, {@link EncodedHintMessage} - when that node doesn't support
+ * batches, or {@link HintMessage}, when conversion is required.
  */
 final class HintsDispatcher implements AutoCloseable
 {
@@ -49,10 +48,16 @@ final class HintsDispatcher implements AutoCloseable
     private final InetAddress address;
     private final int messagingVersion;
     private final AtomicBoolean isPaused;
+    private final HintsDispatchThrottle throttle;
 
     private long currentPageOffset;
 
-    private HintsDispatcher(HintsReader reader, UUID hostId, InetAddress address, int messagingVersion, AtomicBoolean isPaused)
+    private HintsDispatcher(HintsReader reader,
+                            UUID hostId,
+                            InetAddress address,
+                            int messagingVersion,
+                            AtomicBoolean isPaused,
+                            HintsDispatchThrottle throttle)
     {
         currentPageOffset = 0L;
 
@@ -61,12 +66,13 @@ final class HintsDispatcher implements AutoCloseable
         this.address = address;
         this.messagingVersion = messagingVersion;
         this.isPaused = isPaused;
+        this.throttle = throttle;
     }
 
-    static HintsDispatcher create(File file, RateLimiter rateLimiter, InetAddress address, UUID hostId, AtomicBoolean isPaused)
+    static HintsDispatcher create(File file, HintsDispatchThrottle throttle, InetAddress address, UUID hostId, AtomicBoolean isPaused)
     {
         int messagingVersion = MessagingService.instance().getVersion(address);
-        return new HintsDispatcher(HintsReader.open(file, rateLimiter), hostId, address, messagingVersion, isPaused);
+        return new HintsDispatcher(HintsReader.open(file, throttle.rateLimiter()), hostId, address, messagingVersion, isPaused, throttle);
     }
 
     public void close()
@@ -133,16 +139,31 @@ final class HintsDispatcher implements AutoCloseable
          * If that is not the case, we'll need to perform conversion to a newer (or an older) format, and decoding the hint
          * is an unavoidable intermediate step.
          */
-        Action action = reader.descriptor().messagingVersion() == messagingVersion
-                      ? sendHints(page.buffersIterator(), callbacks, this::sendEncodedHint)
-                      : sendHints(page.hintsIterator(), callbacks, this::sendHint);
+        Action action;
+        if (reader.descriptor().messagingVersion() != messagingVersion)
+            action = sendHints(page.hintsIterator(), callbacks, this::sendHint);
+        else if (messagingVersion >= MessagingService.VERSION_310)
+            action = sendHintsBatch(page.buffersIterator(), callbacks);
+        else
+            action = sendHints(page.buffersIterator(), callbacks, this::sendEncodedHint);
 
         if (action == Action.ABORT)
             return action;
 
+        // the outcome and latency of the hints of the page tell the throttle how the destination copes with them
+        long latency = 0;
         for (Callback cb : callbacks)
+        {
             if (cb.await() != Callback.Outcome.SUCCESS)
+            {
+                throttle.onPageFailed();
                 return Action.RETRY;
+            }
+            latency += cb.latency();
+        }
+
+        if (!callbacks.isEmpty())
+            throttle.onPageDelivered(latency / callbacks.size());
 
         return Action.CONTINUE;
     }
@@ -182,6 +203,29 @@ final class HintsDispatcher implements AutoCloseable
         return callback;
     }
 
+    /*
+     * Sending hints in raw mode, a page at a time.
+     */
+
+    private Action sendHintsBatch(Iterator<ByteBuffer> hints, Collection<Callback> callbacks)
+    {
+        List<ByteBuffer> batch = new ArrayList<>();
+        while (hints.hasNext())
+            batch.add(hints.next());
+
+        if (batch.isEmpty())
+            return Action.CONTINUE;
+
+        if (!isHostAlive() || isPaused())
+            return Action.ABORT;
+
+        Callback callback = new Callback();
+        EncodedHintsBatchMessage message = new EncodedHintsBatchMessage(hostId, batch, messagingVersion);
+        MessagingService.instance().sendRRWithFailure(message.createMessageOut(), address, callback);
+        callbacks.add(callback);
+        return Action.CONTINUE;
+    }
+
     private static final class Callback implements IAsyncCallbackWithFailure
     {
         enum Outcome { SUCCESS, TIMEOUT, FAILURE }
@@ -189,6 +233,7 @@ final class HintsDispatcher implements AutoCloseable
         private final long start = System.nanoTime();
         private final SimpleCondition condition = new SimpleCondition();
         private volatile Outcome outcome;
+        private volatile long latency;
 
         Outcome await()
         {
@@ -207,6 +252,14 @@ final class HintsDispatcher implements AutoCloseable
             return timedOut ? Outcome.TIMEOUT : outcome;
         }
 
+        /**
+         * @return the time the hint, or batch of hints, took to be applied, in nanoseconds, once it has been
+         */
+        long latency()
+        {
+            return latency;
+        }
+
         public void onFailure(InetAddress from)
         {
             outcome = Outcome.FAILURE;
@@ -215,6 +268,7 @@ final class HintsDispatcher implements AutoCloseable
 
         public void response(MessageIn msg)
         {
+            latency = System.nanoTime() - start;
             outcome = Outcome.SUCCESS;
             condition.signalAll();
         }
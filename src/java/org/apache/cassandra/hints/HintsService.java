@@ -22,6 +22,7 @@ import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -219,6 +220,11 @@ public final class HintsService implements HintsServiceMBean
         isDispatchPaused.set(false);
     }
 
+    public Map<String, String> getDispatchProgress()
+    {
+        return dispatchExecutor.getDispatchProgress();
+    }
+
     /**
      * Gracefully and blockingly shut down the service.
      *
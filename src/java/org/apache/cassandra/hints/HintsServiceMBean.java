@@ -17,6 +17,8 @@
  */
 package org.apache.cassandra.hints;
 
+import java.util.Map;
+
 public interface HintsServiceMBean
 {
     /**
@@ -29,6 +31,12 @@ public interface HintsServiceMBean
      */
     void resumeDispatch();
 
+    /**
+     * Returns the progress of the hints dispatch sessions in progress, by destination address: files and bytes
+     * delivered out of those pending when the session started, current and throttled rates, and estimated time left.
+     */
+    Map<String, String> getDispatchProgress();
+
     /**
      * Irrevocably deletes all the stored hints files (with the exception of those that are being dispatched right now,
      * or being written to).
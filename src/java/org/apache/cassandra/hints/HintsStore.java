@@ -136,6 +136,25 @@ final class HintsStore
         return !dispatchDequeue.isEmpty();
     }
 
+    int pendingDispatchFiles()
+    {
+        return dispatchDequeue.size();
+    }
+
+    /*
+     * Bytes left to dispatch in the files of the dispatch queue, taking the offsets of partially dispatched files into account.
+     */
+    long pendingDispatchBytes()
+    {
+        long bytes = 0;
+        for (HintsDescriptor descriptor : dispatchDequeue)
+        {
+            long length = new File(hintsDirectory, descriptor.fileName()).length();
+            bytes += Math.max(0, length - getDispatchOffset(descriptor).orElse(0L));
+        }
+        return bytes;
+    }
+
     Optional<Long> getDispatchOffset(HintsDescriptor descriptor)
     {
         return Optional.ofNullable(dispatchOffsets.get(descriptor));
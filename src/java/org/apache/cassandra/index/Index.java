@@ -20,13 +20,18 @@
  */
 package org.apache.cassandra.index;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.compaction.OperationType;
@@ -36,6 +41,7 @@ import org.apache.cassandra.db.partitions.PartitionIterator;
 import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
 import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.dht.*;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.apache.cassandra.index.internal.CollatedViewIndexBuilder;
 import org.apache.cassandra.index.transactions.IndexTransaction;
@@ -148,11 +154,21 @@ public interface Index
     interface IndexBuildingSupport
     {
         SecondaryIndexBuilder getIndexBuildTask(ColumnFamilyStore cfs, Set<Index> indexes, Collection<SSTableReader> sstables);
+
+        /**
+         * Returns the tasks building the indexes from the SSTables, which may run in parallel. By default, this is
+         * the single task returned by {@code getIndexBuildTask}.
+         */
+        default List<SecondaryIndexBuilder> getIndexBuildTasks(ColumnFamilyStore cfs, Set<Index> indexes, Collection<SSTableReader> sstables)
+        {
+            return Collections.singletonList(getIndexBuildTask(cfs, indexes, sstables));
+        }
     }
 
     /**
      * Default implementation of {@code IndexBuildingSupport} which uses a {@code ReducingKeyIterator} to obtain a
-     * collated view of the data in the SSTables.
+     * collated view of the data in the SSTables. The build is split in token ranges, built in parallel by at most half
+     * of the compaction threads so that it doesn't hold back compactions, if the partitioner supports it.
      */
     public static class CollatedViewIndexBuildingSupport implements IndexBuildingSupport
     {
@@ -160,6 +176,33 @@ public interface Index
         {
             return new CollatedViewIndexBuilder(cfs, indexes, new ReducingKeyIterator(sstables));
         }
+
+        public List<SecondaryIndexBuilder> getIndexBuildTasks(ColumnFamilyStore cfs, Set<Index> indexes, Collection<SSTableReader> sstables)
+        {
+            IPartitioner partitioner = cfs.getPartitioner();
+            Optional<Splitter> splitter = partitioner.splitter();
+            int parts = DatabaseDescriptor.getConcurrentCompactors() / 2;
+            if (!splitter.isPresent() || parts <= 1)
+                return Collections.singletonList(getIndexBuildTask(cfs, indexes, sstables));
+
+            Range<Token> ring = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+            List<SecondaryIndexBuilder> tasks = new ArrayList<>();
+            for (Range<Token> range : splitter.get().splitRing(parts, Collections.singletonList(ring)))
+            {
+                List<SSTableReader> intersecting = sstables.stream()
+                                                           .filter(s -> range.intersects(new Bounds<>(s.first.getToken(), s.last.getToken())))
+                                                           .collect(Collectors.toList());
+                // each task only reads the sstable indexes from the start of its range
+                if (!intersecting.isEmpty())
+                    tasks.add(new CollatedViewIndexBuilder(cfs, indexes, new ReducingKeyIterator(intersecting, startToken(range)), range));
+            }
+            return tasks;
+        }
+
+        private static Token startToken(Range<Token> range)
+        {
+            return range.isWrapAround() && !range.right.isMinimum() ? null : range.left;
+        }
     }
 
     /**
@@ -368,7 +368,7 @@ public class SecondaryIndexManager implements IndexRegistry
 
         List<Future<?>> futures = byType.entrySet()
                                         .stream()
-                                        .map((e) -> e.getKey().getIndexBuildTask(baseCfs, e.getValue(), sstables))
+                                        .flatMap((e) -> e.getKey().getIndexBuildTasks(baseCfs, e.getValue(), sstables).stream())
                                         .map(CompactionManager.instance::submitIndexBuild)
                                         .collect(Collectors.toList());
 
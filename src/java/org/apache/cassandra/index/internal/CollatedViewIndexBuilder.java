@@ -26,6 +26,8 @@ import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.compaction.CompactionInfo;
 import org.apache.cassandra.db.compaction.CompactionInterruptedException;
 import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.index.Index;
 import org.apache.cassandra.index.SecondaryIndexBuilder;
 import org.apache.cassandra.io.sstable.ReducingKeyIterator;
@@ -39,13 +41,23 @@ public class CollatedViewIndexBuilder extends SecondaryIndexBuilder
     private final ColumnFamilyStore cfs;
     private final Set<Index> indexers;
     private final ReducingKeyIterator iter;
+    private final Range<Token> range;
     private final UUID compactionId;
 
     public CollatedViewIndexBuilder(ColumnFamilyStore cfs, Set<Index> indexers, ReducingKeyIterator iter)
+    {
+        this(cfs, indexers, iter, null);
+    }
+
+    /**
+     * @param range the token range of the keys to index, or {@code null} to index every key of {@code iter}.
+     */
+    public CollatedViewIndexBuilder(ColumnFamilyStore cfs, Set<Index> indexers, ReducingKeyIterator iter, Range<Token> range)
     {
         this.cfs = cfs;
         this.indexers = indexers;
         this.iter = iter;
+        this.range = range;
         this.compactionId = UUIDGen.getTimeUUID();
     }
 
@@ -67,7 +79,11 @@ public class CollatedViewIndexBuilder extends SecondaryIndexBuilder
                 if (isStopRequested())
                     throw new CompactionInterruptedException(getCompactionInfo());
                 DecoratedKey key = iter.next();
-                Keyspace.indexPartition(key, cfs, indexers);
+                // keys come in token order, so there is nothing left to index past the end of the range
+                if (range != null && !range.isWrapAround() && key.getToken().compareTo(range.right) > 0)
+                    break;
+                if (range == null || range.contains(key.getToken()))
+                    Keyspace.indexPartition(key, cfs, indexers);
             }
         }
         finally
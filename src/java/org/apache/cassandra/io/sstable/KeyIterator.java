@@ -36,17 +36,23 @@ public class KeyIterator extends AbstractIterator<DecoratedKey> implements Close
     private final static class In
     {
         private final File path;
+        private final long startPosition;
         private RandomAccessReader in;
 
-        public In(File path)
+        public In(File path, long startPosition)
         {
             this.path = path;
+            this.startPosition = startPosition;
         }
 
         private void maybeInit()
         {
             if (in == null)
+            {
                 in = RandomAccessReader.open(path);
+                if (startPosition > 0)
+                    in.seek(startPosition);
+            }
         }
 
         public DataInputPlus get()
@@ -87,9 +93,17 @@ public class KeyIterator extends AbstractIterator<DecoratedKey> implements Close
     private long keyPosition;
 
     public KeyIterator(Descriptor desc, CFMetaData metadata)
+    {
+        this(desc, metadata, 0);
+    }
+
+    /**
+     * @param startPosition the position in the primary index of the first key to return
+     */
+    public KeyIterator(Descriptor desc, CFMetaData metadata, long startPosition)
     {
         this.desc = desc;
-        in = new In(new File(desc.filenameFor(Component.PRIMARY_INDEX)));
+        in = new In(new File(desc.filenameFor(Component.PRIMARY_INDEX)), startPosition);
         partitioner = metadata.partitioner;
     }
 
@@ -118,12 +132,12 @@ public class KeyIterator extends AbstractIterator<DecoratedKey> implements Close
 
     public long getBytesRead()
     {
-        return in.getFilePointer();
+        return in.getFilePointer() - in.startPosition;
     }
 
     public long getTotalBytes()
     {
-        return in.length();
+        return in.length() - in.startPosition;
     }
 
     public long getKeyPosition()
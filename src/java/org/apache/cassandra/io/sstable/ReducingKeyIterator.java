@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Iterator;
 
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.utils.CloseableIterator;
 import org.apache.cassandra.utils.IMergeIterator;
@@ -36,10 +37,22 @@ public class ReducingKeyIterator implements CloseableIterator<DecoratedKey>
     private IMergeIterator<DecoratedKey,DecoratedKey> mi;
 
     public ReducingKeyIterator(Collection<SSTableReader> sstables)
+    {
+        this(sstables, null);
+    }
+
+    /**
+     * @param start the token to start the iteration from, using the index summaries to skip the keys before it,
+     * or {@code null} to iterate over all the keys. Some keys before {@code start} may still be returned.
+     */
+    public ReducingKeyIterator(Collection<SSTableReader> sstables, Token start)
     {
         iters = new ArrayList<>(sstables.size());
         for (SSTableReader sstable : sstables)
-            iters.add(new KeyIterator(sstable.descriptor, sstable.metadata));
+        {
+            long startPosition = start == null || start.isMinimum() ? 0 : sstable.getIndexScanPosition(start.minKeyBound());
+            iters.add(new KeyIterator(sstable.descriptor, sstable.metadata, startPosition));
+        }
     }
 
     private void maybeInit()
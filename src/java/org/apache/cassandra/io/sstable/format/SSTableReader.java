@@ -713,20 +713,27 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         {
             // bf is enabled and fp chance matches the currently configured value.
             load(false, true);
-            loadBloomFilter(descriptor.version.hasOldBfHashOrder());
+            loadBloomFilter();
         }
     }
 
     /**
-     * Load bloom filter from Filter.db file.
+     * Load bloom filter from Filter.db file. Blocked bloom filters are memory-mapped rather than copied
+     * when the index is accessed through mmap.
      *
      * @throws IOException
      */
-    private void loadBloomFilter(boolean oldBfHashOrder) throws IOException
+    private void loadBloomFilter() throws IOException
     {
+        if (descriptor.version.hasBlockedBloomFilter() && DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap)
+        {
+            bf = FilterFactory.map(new File(descriptor.filenameFor(Component.FILTER)), descriptor.version);
+            return;
+        }
+
         try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(descriptor.filenameFor(Component.FILTER)))))
         {
-            bf = FilterFactory.deserialize(stream, true, oldBfHashOrder);
+            bf = FilterFactory.deserialize(stream, descriptor.version);
         }
     }
 
@@ -812,7 +819,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                     : estimateRowsFromIndex(primaryIndex); // statistics is supposed to be optional
 
             if (recreateBloomFilter)
-                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, true, descriptor.version.hasOldBfHashOrder());
+                bf = FilterFactory.getFilter(estimatedKeys, metadata.params.bloomFilterFpChance, descriptor.version);
 
             try (IndexSummaryBuilder summaryBuilder = summaryLoaded ? null : new IndexSummaryBuilder(estimatedKeys, metadata.params.minIndexInterval, samplingLevel))
             {
@@ -110,7 +110,7 @@ public class BigFormat implements SSTableFormat
     // we always incremented the major version.
     static class BigVersion extends Version
     {
-        public static final String current_version = "mb";
+        public static final String current_version = "mz";
         public static final String earliest_supported_version = "jb";
 
         // jb (2.0.1): switch from crc32 to adler32 for compression checksums
@@ -124,6 +124,8 @@ public class BigFormat implements SSTableFormat
         // ma (3.0.0): swap bf hash order
         //             store rows natively
         // mb (3.0.7, 3.7): commit log lower bound included
+        // mz (3.10): cache-line blocked bloom filter, memory-mapped from Filter.db. Deliberately far from the
+        //            latest version, as "mc" and the following ones are used by Apache Cassandra for other changes
         //
         // NOTE: when adding a new version, please add that to LegacySSTableTest, too.
 
@@ -143,6 +145,7 @@ public class BigFormat implements SSTableFormat
          * have no 'static' bits caused by using the same upper bits for both bloom filter and token distribution.
          */
         private final boolean hasOldBfHashOrder;
+        private final boolean hasBlockedBloomFilter;
         private final boolean hasCommitLogLowerBound;
 
         /**
@@ -176,6 +179,8 @@ public class BigFormat implements SSTableFormat
             newFileName = version.compareTo("la") >= 0;
 
             hasOldBfHashOrder = version.compareTo("ma") < 0;
+            // only this version, so that sstables of other versions never get their filter read as a blocked one
+            hasBlockedBloomFilter = version.equals("mz");
             hasCompactionAncestors = version.compareTo("ma") < 0;
             storeRows = version.compareTo("ma") >= 0;
             correspondingMessagingVersion = storeRows
@@ -235,6 +240,12 @@ public class BigFormat implements SSTableFormat
             return hasOldBfHashOrder;
         }
 
+        @Override
+        public boolean hasBlockedBloomFilter()
+        {
+            return hasBlockedBloomFilter;
+        }
+
         @Override
         public boolean hasCompactionAncestors()
         {
@@ -21,6 +21,8 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
@@ -28,6 +30,7 @@ import com.google.common.collect.Multimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.ScheduledExecutors;
 import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.WriteType;
@@ -40,7 +43,6 @@ import org.apache.cassandra.service.DatacenterSyncWriteResponseHandler;
 import org.apache.cassandra.service.DatacenterWriteResponseHandler;
 import org.apache.cassandra.service.WriteResponseHandler;
 import org.apache.cassandra.utils.FBUtilities;
-import org.cliffc.high_scale_lib.NonBlockingHashMap;
 
 /**
  * A abstract parent for all replication strategies.
@@ -55,8 +57,8 @@ public abstract class AbstractReplicationStrategy
     public final Map<String, String> configOptions;
     private final TokenMetadata tokenMetadata;
 
-    // track when the token range changes, signaling we need to invalidate our endpoint cache
-    private volatile long lastInvalidatedVersion = 0;
+    // the natural endpoints of each token of the ring, for the version of the ring they were computed for
+    private final AtomicReference<ReplicaMap> replicaMap = new AtomicReference<>();
 
     public IEndpointSnitch snitch;
 
@@ -72,28 +74,6 @@ public abstract class AbstractReplicationStrategy
         // lazy-initialize keyspace itself since we don't create them until after the replication strategies
     }
 
-    private final Map<Token, ArrayList<InetAddress>> cachedEndpoints = new NonBlockingHashMap<Token, ArrayList<InetAddress>>();
-
-    public ArrayList<InetAddress> getCachedEndpoints(Token t)
-    {
-        long lastVersion = tokenMetadata.getRingVersion();
-
-        if (lastVersion > lastInvalidatedVersion)
-        {
-            synchronized (this)
-            {
-                if (lastVersion > lastInvalidatedVersion)
-                {
-                    logger.trace("clearing cached endpoints");
-                    cachedEndpoints.clear();
-                    lastInvalidatedVersion = lastVersion;
-                }
-            }
-        }
-
-        return cachedEndpoints.get(t);
-    }
-
     /**
      * get the (possibly cached) endpoints that should store the given Token.
      * Note that while the endpoints are conceptually a Set (no duplicates will be included),
@@ -103,19 +83,78 @@ public abstract class AbstractReplicationStrategy
      */
     public ArrayList<InetAddress> getNaturalEndpoints(RingPosition searchPosition)
     {
-        Token searchToken = searchPosition.getToken();
-        Token keyToken = TokenMetadata.firstToken(tokenMetadata.sortedTokens(), searchToken);
-        ArrayList<InetAddress> endpoints = getCachedEndpoints(keyToken);
-        if (endpoints == null)
+        ReplicaMap replicas = replicaMap.get();
+        if (replicas == null || replicas.ringVersion != tokenMetadata.getRingVersion())
+            replicas = newReplicaMap(replicas);
+
+        return replicas.endpointsFor(searchPosition.getToken());
+    }
+
+    /*
+     * When the ring changes, the request threads look the endpoints of the new ring up in a new, empty, map, each
+     * computing the entries it misses, while the endpoints of all the tokens are computed in the background. So no
+     * request waits for the whole ring to be computed, and the entries are only computed concurrently for the short
+     * time it takes to fill the map.
+     */
+    private ReplicaMap newReplicaMap(ReplicaMap previous)
+    {
+        ReplicaMap replicas = new ReplicaMap(tokenMetadata.cachedOnlyTokenMap());
+        if (!replicaMap.compareAndSet(previous, replicas))
+            return replicas;
+
+        // the first map is only filled on demand, like the maps of the rings no request is made for
+        if (previous != null)
+            ScheduledExecutors.optionalTasks.execute(replicas::fill);
+        return replicas;
+    }
+
+    /**
+     * The natural endpoints of each token of a version of the ring, indexed by the position of the token in the ring,
+     * so that looking up the endpoints of a token is a binary search. The endpoints of a token are computed the first
+     * time they are looked up, if they haven't been yet by {@link #fill}.
+     */
+    private final class ReplicaMap
+    {
+        private final TokenMetadata tokenMetadata;
+        private final long ringVersion;
+        private final ArrayList<Token> sortedTokens;
+        private final AtomicReferenceArray<InetAddress[]> endpoints;
+
+        private ReplicaMap(TokenMetadata tokenMetadata)
+        {
+            this.tokenMetadata = tokenMetadata;
+            this.ringVersion = tokenMetadata.getRingVersion();
+            this.sortedTokens = tokenMetadata.sortedTokens();
+            this.endpoints = new AtomicReferenceArray<>(sortedTokens.size());
+        }
+
+        private ArrayList<InetAddress> endpointsFor(Token searchToken)
+        {
+            InetAddress[] replicas = endpointsAt(TokenMetadata.firstTokenIndex(sortedTokens, searchToken, false));
+            ArrayList<InetAddress> copy = new ArrayList<>(replicas.length);
+            Collections.addAll(copy, replicas);
+            return copy;
+        }
+
+        private InetAddress[] endpointsAt(int index)
         {
-            TokenMetadata tm = tokenMetadata.cachedOnlyTokenMap();
-            // if our cache got invalidated, it's possible there is a new token to account for too
-            keyToken = TokenMetadata.firstToken(tm.sortedTokens(), searchToken);
-            endpoints = new ArrayList<InetAddress>(calculateNaturalEndpoints(searchToken, tm));
-            cachedEndpoints.put(keyToken, endpoints);
+            InetAddress[] replicas = endpoints.get(index);
+            if (replicas == null)
+            {
+                List<InetAddress> computed = calculateNaturalEndpoints(sortedTokens.get(index), tokenMetadata);
+                replicas = computed.toArray(new InetAddress[computed.size()]);
+                endpoints.set(index, replicas);
+            }
+            return replicas;
         }
 
-        return new ArrayList<InetAddress>(endpoints);
+        private void fill()
+        {
+            logger.trace("computing natural endpoints for ring version {}", ringVersion);
+            // give up as soon as the ring changes again, the map won't be used anymore
+            for (int i = 0; i < sortedTokens.size() && replicaMap.get() == this; i++)
+                endpointsAt(i);
+        }
     }
 
     /**
@@ -35,13 +35,18 @@ import org.apache.cassandra.gms.ApplicationState;
 import org.apache.cassandra.gms.EndpointState;
 import org.apache.cassandra.gms.Gossiper;
 import org.apache.cassandra.gms.VersionedValue;
+import org.apache.cassandra.metrics.DynamicEndpointSnitchMetrics;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.FBUtilities;
 
 
 /**
- * A dynamic snitch that sorts endpoints by latency with an adapted phi failure detector
+ * A dynamic snitch that sorts endpoints by latency with an adapted phi failure detector.
+ *
+ * The latency scores are only recomputed every {@code dynamic_snitch_update_interval_in_ms}, so when sorting they are
+ * adjusted for the requests each endpoint has not answered yet, in the spirit of a least-outstanding-requests policy:
+ * this makes a replica that stops responding (a GC pause, an overloaded node) lose its reads right away.
  */
 public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILatencySubscriber, DynamicEndpointSnitchMBean
 {
@@ -53,6 +58,8 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
     private final int UPDATE_INTERVAL_IN_MS = DatabaseDescriptor.getDynamicUpdateInterval();
     private final int RESET_INTERVAL_IN_MS = DatabaseDescriptor.getDynamicResetInterval();
     private final double BADNESS_THRESHOLD = DatabaseDescriptor.getDynamicBadnessThreshold();
+    private final double PENDING_REQUEST_WEIGHT = DatabaseDescriptor.getDynamicPendingRequestWeight();
+    private final int MAX_PENDING_REQUESTS = DatabaseDescriptor.getDynamicMaxPendingRequests();
 
     // the score for a merged set of endpoints must be this much worse than the score for separate endpoints to
     // warrant not merging two ranges into a single range
@@ -150,9 +157,10 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
     public void sortByProximity(final InetAddress address, List<InetAddress> addresses)
     {
         assert address.equals(FBUtilities.getBroadcastAddress()); // we only know about ourself
+        DynamicEndpointSnitchMetrics.sorted.mark();
         if (BADNESS_THRESHOLD == 0)
         {
-            sortByProximityWithScore(address, addresses);
+            sortByProximityWithScore(address, addresses, scoresWithLoad(addresses));
         }
         else
         {
@@ -160,13 +168,11 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
         }
     }
 
-    private void sortByProximityWithScore(final InetAddress address, List<InetAddress> addresses)
+    private void sortByProximityWithScore(final InetAddress address, List<InetAddress> addresses, final Map<InetAddress, Double> scores)
     {
         // Scores can change concurrently from a call to this method. But Collections.sort() expects
         // its comparator to be "stable", that is 2 endpoint should compare the same way for the duration
-        // of the sort() call. As we copy the scores map on write, it is thus enough to alias the current
-        // version of it during this call.
-        final HashMap<InetAddress, Double> scores = this.scores;
+        // of the sort() call. The scores passed here are a snapshot taken for this sort only.
         Collections.sort(addresses, new Comparator<InetAddress>()
         {
             public int compare(InetAddress a1, InetAddress a2)
@@ -182,8 +188,8 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
             return;
 
         subsnitch.sortByProximity(address, addresses);
-        HashMap<InetAddress, Double> scores = this.scores; // Make sure the score don't change in the middle of the loop below
-                                                           // (which wouldn't really matter here but its cleaner that way).
+        Map<InetAddress, Double> scores = scoresWithLoad(addresses); // Make sure the score don't change in the middle of the loop below
+                                                                     // (which wouldn't really matter here but its cleaner that way).
         ArrayList<Double> subsnitchOrderedScores = new ArrayList<>(addresses.size());
         for (InetAddress inet : addresses)
         {
@@ -204,12 +210,47 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
         {
             if (subsnitchScore > (sortedScoreIterator.next() * (1.0 + BADNESS_THRESHOLD)))
             {
-                sortByProximityWithScore(address, addresses);
+                DynamicEndpointSnitchMetrics.scoreOverrides.mark();
+                sortByProximityWithScore(address, addresses, scores);
                 return;
             }
         }
     }
 
+    /**
+     * Returns the current scores of the provided endpoints, plus {@code PENDING_REQUEST_WEIGHT} for each request they
+     * have not answered yet. Endpoints with {@code MAX_PENDING_REQUESTS} or more are given an infinite score so they
+     * always sort last. Endpoints without a latency score (which don't answer, or haven't been queried yet) are only
+     * scored by their pending requests, and left out if they have none, as in {@link #getScores()}.
+     */
+    private Map<InetAddress, Double> scoresWithLoad(Collection<InetAddress> addresses)
+    {
+        HashMap<InetAddress, Double> scores = this.scores;
+        HashMap<InetAddress, Double> withLoad = new HashMap<>(addresses.size() * 2);
+        for (InetAddress address : addresses)
+        {
+            Double score = scores.get(address);
+            int pending = MessagingService.instance().getPendingRequests(address);
+            if (score == null)
+            {
+                if (pending == 0)
+                    continue;
+                score = 0.0;
+            }
+
+            if (pending >= MAX_PENDING_REQUESTS)
+            {
+                DynamicEndpointSnitchMetrics.overloadedReplicas.mark();
+                withLoad.put(address, Double.POSITIVE_INFINITY);
+            }
+            else
+            {
+                withLoad.put(address, score + pending * PENDING_REQUEST_WEIGHT);
+            }
+        }
+        return withLoad;
+    }
+
     // Compare endpoints given an immutable snapshot of the scores
     private int compareEndpoints(InetAddress target, InetAddress a1, InetAddress a2, Map<InetAddress, Double> scores)
     {
@@ -316,6 +357,14 @@ public class DynamicEndpointSnitch extends AbstractEndpointSnitch implements ILa
     {
         return BADNESS_THRESHOLD;
     }
+    public double getPendingRequestWeight()
+    {
+        return PENDING_REQUEST_WEIGHT;
+    }
+    public int getMaxPendingRequests()
+    {
+        return MAX_PENDING_REQUESTS;
+    }
 
     public String getSubsnitchClassName()
     {
@@ -27,6 +27,8 @@ public interface DynamicEndpointSnitchMBean {
     public int getUpdateInterval();
     public int getResetInterval();
     public double getBadnessThreshold();
+    public double getPendingRequestWeight();
+    public int getMaxPendingRequests();
     public String getSubsnitchClassName();
     public List<Double> dumpTimings(String hostname) throws UnknownHostException;
 
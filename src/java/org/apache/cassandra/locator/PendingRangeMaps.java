@@ -20,6 +20,7 @@
  */
 package org.apache.cassandra.locator;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
@@ -34,15 +35,13 @@ public class PendingRangeMaps implements Iterable<Map.Entry<Range<Token>, List<I
     private static final Logger logger = LoggerFactory.getLogger(PendingRangeMaps.class);
 
     /**
-     * We have for NavigableMap to be able to search for ranges containing a token efficiently.
+     * The pending ranges, kept sorted by the ascending order of their right token for iteration.
      *
-     * First two are for non-wrap-around ranges, and the last two are for wrap-around ranges.
+     * First map is for non-wrap-around ranges, and the second one is for wrap-around ranges.
      */
-    // ascendingMap will sort the ranges by the ascending order of right token
     final NavigableMap<Range<Token>, List<InetAddress>> ascendingMap;
     /**
-     * sorting end ascending, if ends are same, sorting begin descending, so that token (end, end) will
-     * come before (begin, end] with the same end, and (begin, end) will be selected in the tailMap.
+     * sorting end ascending, if ends are same, sorting begin descending.
      */
     static final Comparator<Range<Token>> ascendingComparator = new Comparator<Range<Token>>()
         {
@@ -57,33 +56,10 @@ public class PendingRangeMaps implements Iterable<Map.Entry<Range<Token>, List<I
             }
         };
 
-    // ascendingMap will sort the ranges by the descending order of left token
-    final NavigableMap<Range<Token>, List<InetAddress>> descendingMap;
-    /**
-     * sorting begin descending, if begins are same, sorting end descending, so that token (begin, begin) will
-     * come after (begin, end] with the same begin, and (begin, end) won't be selected in the tailMap.
-     */
-    static final Comparator<Range<Token>> descendingComparator = new Comparator<Range<Token>>()
-        {
-            @Override
-            public int compare(Range<Token> o1, Range<Token> o2)
-            {
-                int res = o2.left.compareTo(o1.left);
-                if (res != 0)
-                    return res;
-
-                // if left tokens are same, sort by the descending of the right tokens.
-                return o2.right.compareTo(o1.right);
-            }
-        };
-
-    // these two maps are for warp around ranges.
     final NavigableMap<Range<Token>, List<InetAddress>> ascendingMapForWrapAround;
     /**
-     * for wrap around range (begin, end], which begin > end.
-     * Sorting end ascending, if ends are same, sorting begin ascending,
-     * so that token (end, end) will come before (begin, end] with the same end, and (begin, end] will be selected in
-     * the tailMap.
+     * for wrap around range (begin, end], which begin >= end.
+     * Sorting end ascending, if ends are same, sorting begin ascending.
      */
     static final Comparator<Range<Token>> ascendingComparatorForWrapAround = new Comparator<Range<Token>>()
     {
@@ -98,109 +74,153 @@ public class PendingRangeMaps implements Iterable<Map.Entry<Range<Token>, List<I
         }
     };
 
-    final NavigableMap<Range<Token>, List<InetAddress>> descendingMapForWrapAround;
     /**
-     * for wrap around ranges, which begin > end.
-     * Sorting end ascending, so that token (begin, begin) will come after (begin, end] with the same begin,
-     * and (begin, end) won't be selected in the tailMap.
+     * Flattened view of the pending ranges used to answer {@link #pendingEndpointsFor(Token)}, built on first lookup
+     * after the last modification.
      */
-    static final Comparator<Range<Token>> descendingComparatorForWrapAround = new Comparator<Range<Token>>()
-    {
-        @Override
-        public int compare(Range<Token> o1, Range<Token> o2)
-        {
-            int res = o2.left.compareTo(o1.left);
-            if (res != 0)
-                return res;
-            return o1.right.compareTo(o2.right);
-        }
-    };
+    private volatile Lookup lookup;
 
     public PendingRangeMaps()
     {
         this.ascendingMap = new TreeMap<Range<Token>, List<InetAddress>>(ascendingComparator);
-        this.descendingMap = new TreeMap<Range<Token>, List<InetAddress>>(descendingComparator);
         this.ascendingMapForWrapAround = new TreeMap<Range<Token>, List<InetAddress>>(ascendingComparatorForWrapAround);
-        this.descendingMapForWrapAround = new TreeMap<Range<Token>, List<InetAddress>>(descendingComparatorForWrapAround);
     }
 
     static final void addToMap(Range<Token> range,
                                InetAddress address,
-                               NavigableMap<Range<Token>, List<InetAddress>> ascendingMap,
-                               NavigableMap<Range<Token>, List<InetAddress>> descendingMap)
+                               NavigableMap<Range<Token>, List<InetAddress>> map)
     {
-        List<InetAddress> addresses = ascendingMap.get(range);
+        List<InetAddress> addresses = map.get(range);
         if (addresses == null)
         {
             addresses = new ArrayList<InetAddress>(1);
-            ascendingMap.put(range, addresses);
-            descendingMap.put(range, addresses);
+            map.put(range, addresses);
         }
         addresses.add(address);
     }
 
-    public void addPendingRange(Range<Token> range, InetAddress address)
+    public synchronized void addPendingRange(Range<Token> range, InetAddress address)
     {
         if (Range.isWrapAround(range.left, range.right))
         {
-            addToMap(range, address, ascendingMapForWrapAround, descendingMapForWrapAround);
+            addToMap(range, address, ascendingMapForWrapAround);
         }
         else
         {
-            addToMap(range, address, ascendingMap, descendingMap);
+            addToMap(range, address, ascendingMap);
         }
+        lookup = null;
     }
 
-    static final void addIntersections(Set<InetAddress> endpointsToAdd,
-                                       NavigableMap<Range<Token>, List<InetAddress>> smallerMap,
-                                       NavigableMap<Range<Token>, List<InetAddress>> biggerMap)
+    public Collection<InetAddress> pendingEndpointsFor(Token token)
     {
-        // find the intersection of two sets
-        for (Range<Token> range : smallerMap.keySet())
-        {
-            List<InetAddress> addresses = biggerMap.get(range);
-            if (addresses != null)
-            {
-                endpointsToAdd.addAll(addresses);
-            }
-        }
+        Lookup current = lookup;
+        if (current == null)
+            current = buildLookup();
+        return current.endpointsFor(token);
     }
 
-    public Collection<InetAddress> pendingEndpointsFor(Token token)
+    private synchronized Lookup buildLookup()
     {
-        Set<InetAddress> endpoints = new HashSet<>();
-
-        Range searchRange = new Range(token, token);
+        if (lookup == null)
+            lookup = new Lookup(this);
+        return lookup;
+    }
 
-        // search for non-wrap-around maps
-        NavigableMap<Range<Token>, List<InetAddress>> ascendingTailMap = ascendingMap.tailMap(searchRange, true);
-        NavigableMap<Range<Token>, List<InetAddress>> descendingTailMap = descendingMap.tailMap(searchRange, false);
+    /**
+     * The bounds of all the pending ranges split the ring into intervals (bounds[i - 1], bounds[i]], inside which the
+     * set of pending endpoints doesn't change. We precompute that set for every interval, so that finding the
+     * pending endpoints of a token is a binary search over the bounds rather than a scan of the overlapping ranges.
+     *
+     * Interval i is (bounds[i - 1], bounds[i]] for 0 < i < bounds.length, interval 0 holds the tokens up to and
+     * including bounds[0], and interval bounds.length the tokens after the last bound.
+     */
+    private static final class Lookup
+    {
+        private final Token[] bounds;
+        private final List<List<InetAddress>> endpoints;
 
-        // add intersections of two maps
-        if (ascendingTailMap.size() < descendingTailMap.size())
-        {
-            addIntersections(endpoints, ascendingTailMap, descendingTailMap);
-        }
-        else
+        Lookup(PendingRangeMaps maps)
         {
-            addIntersections(endpoints, descendingTailMap, ascendingTailMap);
-        }
+            SortedSet<Token> sortedBounds = new TreeSet<>();
+            for (Map.Entry<Range<Token>, List<InetAddress>> entry : maps)
+            {
+                sortedBounds.add(entry.getKey().left);
+                sortedBounds.add(entry.getKey().right);
+            }
+            bounds = sortedBounds.toArray(new Token[sortedBounds.size()]);
 
-        // search for wrap-around sets
-        ascendingTailMap = ascendingMapForWrapAround.tailMap(searchRange, true);
-        descendingTailMap = descendingMapForWrapAround.tailMap(searchRange, false);
+            int intervals = bounds.length + 1;
+            List<List<InetAddress>> added = new ArrayList<>(Collections.nCopies(intervals, null));
+            List<List<InetAddress>> removed = new ArrayList<>(Collections.nCopies(intervals, null));
+            for (Map.Entry<Range<Token>, List<InetAddress>> entry : maps)
+            {
+                // (left, right] covers the intervals first..last, wrapping around the end of the ring if first > last
+                int first = Arrays.binarySearch(bounds, entry.getKey().left) + 1;
+                int last = Arrays.binarySearch(bounds, entry.getKey().right);
+                for (InetAddress address : entry.getValue())
+                {
+                    if (first <= last)
+                    {
+                        addTo(added, first, address);
+                        addTo(removed, last, address);
+                    }
+                    else
+                    {
+                        addTo(added, first, address);
+                        addTo(added, 0, address);
+                        addTo(removed, last, address);
+                    }
+                }
+            }
 
-        // add them since they are all necessary.
-        for (Map.Entry<Range<Token>, List<InetAddress>> entry : ascendingTailMap.entrySet())
-        {
-            endpoints.addAll(entry.getValue());
+            // sweep the intervals, keeping a count of the ranges each endpoint is pending for
+            endpoints = new ArrayList<>(intervals);
+            Map<InetAddress, Integer> counts = new HashMap<>();
+            List<InetAddress> current = ImmutableList.of();
+            for (int i = 0; i < intervals; i++)
+            {
+                boolean changed = false;
+                if (added.get(i) != null)
+                {
+                    for (InetAddress address : added.get(i))
+                        changed |= counts.merge(address, 1, Integer::sum) == 1;
+                }
+                if (changed)
+                    current = ImmutableList.copyOf(counts.keySet());
+                endpoints.add(current);
+
+                if (removed.get(i) != null)
+                {
+                    changed = false;
+                    for (InetAddress address : removed.get(i))
+                    {
+                        if (counts.merge(address, -1, Integer::sum) == 0)
+                        {
+                            counts.remove(address);
+                            changed = true;
+                        }
+                    }
+                    if (changed)
+                        current = ImmutableList.copyOf(counts.keySet());
+                }
+            }
         }
-        for (Map.Entry<Range<Token>, List<InetAddress>> entry : descendingTailMap.entrySet())
+
+        private static void addTo(List<List<InetAddress>> events, int index, InetAddress address)
         {
-            endpoints.addAll(entry.getValue());
+            if (events.get(index) == null)
+                events.set(index, new ArrayList<>(1));
+            events.get(index).add(address);
         }
 
-        return endpoints;
+        Collection<InetAddress> endpointsFor(Token token)
+        {
+            int index = Arrays.binarySearch(bounds, token);
+            if (index < 0)
+                index = -index - 1;
+            return endpoints.get(index);
+        }
     }
 
     public String printPendingRanges()
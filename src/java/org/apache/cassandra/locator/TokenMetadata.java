@@ -86,6 +86,8 @@ public class TokenMetadata
     private final Set<InetAddress> leavingEndpoints = new HashSet<>();
     // this is a cache of the calculation from {tokenToEndpointMap, bootstrapTokens, leavingEndpoints}
     private final ConcurrentMap<String, PendingRangeMaps> pendingRanges = new ConcurrentHashMap<String, PendingRangeMaps>();
+    // the inputs each keyspace's pending ranges were last calculated from, so unchanged ones aren't recalculated
+    private final ConcurrentMap<String, Pair<PendingRangesSource, PendingRangeMaps>> pendingRangesSources = new ConcurrentHashMap<>();
 
     // nodes which are migrating to the new tokens in the ring
     private final Set<Pair<Token, InetAddress>> movingEndpoints = new HashSet<>();
@@ -107,6 +109,8 @@ public class TokenMetadata
 
     // signals replication strategies that nodes have joined or left the ring and they need to recompute ownership
     private volatile long ringVersion = 0;
+    // bumped on any change to the normal, bootstrapping, leaving or moving nodes, which all pending ranges depend on
+    private volatile long pendingRangesVersion = 0;
 
     public TokenMetadata()
     {
@@ -216,6 +220,7 @@ public class TokenMetadata
 
             if (shouldSortTokens)
                 sortedTokens = sortTokens();
+            pendingRangesVersion++;
         }
         finally
         {
@@ -336,6 +341,7 @@ public class TokenMetadata
 
             for (Token token : tokens)
                 bootstrapTokens.put(token, endpoint);
+            pendingRangesVersion++;
         }
         finally
         {
@@ -352,6 +358,7 @@ public class TokenMetadata
         {
             for (Token token : tokens)
                 bootstrapTokens.remove(token);
+            pendingRangesVersion++;
         }
         finally
         {
@@ -367,6 +374,7 @@ public class TokenMetadata
         try
         {
             leavingEndpoints.add(endpoint);
+            pendingRangesVersion++;
         }
         finally
         {
@@ -388,6 +396,7 @@ public class TokenMetadata
         try
         {
             movingEndpoints.add(Pair.create(token, endpoint));
+            pendingRangesVersion++;
         }
         finally
         {
@@ -568,10 +577,13 @@ public class TokenMetadata
         lock.readLock().lock();
         try
         {
-            return new TokenMetadata(SortedBiMultiValMap.create(tokenToEndpointMap, null, inetaddressCmp),
-                                     HashBiMap.create(endpointToHostIdMap),
-                                     new Topology(topology),
-                                     partitioner);
+            TokenMetadata clone = new TokenMetadata(SortedBiMultiValMap.create(tokenToEndpointMap, null, inetaddressCmp),
+                                                    HashBiMap.create(endpointToHostIdMap),
+                                                    new Topology(topology),
+                                                    partitioner);
+            // the version of the ring the copy reflects, as ring changes are made with the write lock held
+            clone.ringVersion = ringVersion;
+            return clone;
         }
         finally
         {
@@ -584,18 +596,21 @@ public class TokenMetadata
      * uses a cached copy that is invalided when the ring changes, so in the common case
      * no extra locking is required.
      *
+     * The returned copy has the ring version of the ring it reflects, which is never older than the version of
+     * the ring when this is called (a copy cached concurrently with a ring change is ignored).
+     *
      * Callers must *NOT* mutate the returned metadata object.
      */
     public TokenMetadata cachedOnlyTokenMap()
     {
         TokenMetadata tm = cachedTokenMap.get();
-        if (tm != null)
+        if (tm != null && tm.ringVersion == ringVersion)
             return tm;
 
         // synchronize to prevent thundering herd (CASSANDRA-6345)
         synchronized (this)
         {
-            if ((tm = cachedTokenMap.get()) != null)
+            if ((tm = cachedTokenMap.get()) != null && tm.ringVersion == ringVersion)
                 return tm;
 
             tm = cloneOnlyTokenMap();
@@ -748,123 +763,154 @@ public class TokenMetadata
      * node could have. It might be that other bootstraps make our actual final ranges smaller,
      * but it does not matter as we can clean up the data afterwards.
      *
-     * NOTE: This is heavy and ineffective operation. This will be done only once when a node
-     * changes state in the cluster, so it should be manageable.
+     * NOTE: This is heavy and ineffective operation. As the result only depends on the nodes of the ring and on how
+     * the keyspace is replicated, it is skipped when neither changed since the last calculation for the keyspace, and
+     * shared between keyspaces replicated the same way.
      */
     public void calculatePendingRanges(AbstractReplicationStrategy strategy, String keyspaceName)
     {
         lock.readLock().lock();
         try
         {
-            PendingRangeMaps newPendingRanges = new PendingRangeMaps();
+            PendingRangesSource source = new PendingRangesSource(pendingRangesVersion, strategy);
 
-            if (bootstrapTokens.isEmpty() && leavingEndpoints.isEmpty() && movingEndpoints.isEmpty())
+            Pair<PendingRangesSource, PendingRangeMaps> previous = pendingRangesSources.get(keyspaceName);
+            if (previous != null && previous.left.equals(source) && pendingRanges.get(keyspaceName) == previous.right)
             {
                 if (logger.isTraceEnabled())
-                    logger.trace("No bootstrapping, leaving or moving nodes -> empty pending ranges for {}", keyspaceName);
-
-                pendingRanges.put(keyspaceName, newPendingRanges);
+                    logger.trace("Ring unchanged since the last calculation -> keeping pending ranges for {}", keyspaceName);
                 return;
             }
 
-            Multimap<InetAddress, Range<Token>> addressRanges = strategy.getAddressRanges();
-
-            // Copy of metadata reflecting the situation after all leave operations are finished.
-            TokenMetadata allLeftMetadata = cloneAfterAllLeft();
-
-            // get all ranges that will be affected by leaving nodes
-            Set<Range<Token>> affectedRanges = new HashSet<Range<Token>>();
-            for (InetAddress endpoint : leavingEndpoints)
-                affectedRanges.addAll(addressRanges.get(endpoint));
-
-            // for each of those ranges, find what new nodes will be responsible for the range when
-            // all leaving nodes are gone.
-            TokenMetadata metadata = cloneOnlyTokenMap(); // don't do this in the loop! #7758
-            for (Range<Token> range : affectedRanges)
+            PendingRangeMaps newPendingRanges = null;
+            for (Pair<PendingRangesSource, PendingRangeMaps> calculated : pendingRangesSources.values())
             {
-                Set<InetAddress> currentEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, metadata));
-                Set<InetAddress> newEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, allLeftMetadata));
-                for (InetAddress address : Sets.difference(newEndpoints, currentEndpoints))
+                if (calculated.left.equals(source))
                 {
-                    newPendingRanges.addPendingRange(range, address);
+                    newPendingRanges = calculated.right;
+                    break;
                 }
             }
 
-            // At this stage newPendingRanges has been updated according to leave operations. We can
-            // now continue the calculation by checking bootstrapping nodes.
+            if (newPendingRanges == null)
+                newPendingRanges = computePendingRanges(strategy, keyspaceName);
+
+            pendingRangesSources.put(keyspaceName, Pair.create(source, newPendingRanges));
+            pendingRanges.put(keyspaceName, newPendingRanges);
+
+            if (logger.isTraceEnabled())
+                logger.trace("Pending ranges:\n{}", (pendingRanges.isEmpty() ? "<empty>" : printPendingRanges()));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // must be called with the read lock held
+    private PendingRangeMaps computePendingRanges(AbstractReplicationStrategy strategy, String keyspaceName)
+    {
+        PendingRangeMaps newPendingRanges = new PendingRangeMaps();
+
+        if (bootstrapTokens.isEmpty() && leavingEndpoints.isEmpty() && movingEndpoints.isEmpty())
+        {
+            if (logger.isTraceEnabled())
+                logger.trace("No bootstrapping, leaving or moving nodes -> empty pending ranges for {}", keyspaceName);
+
+            return newPendingRanges;
+        }
+
+        TokenMetadata metadata = cloneOnlyTokenMap(); // don't do this in the loop! #7758
+        Multimap<InetAddress, Range<Token>> addressRanges = strategy.getAddressRanges(metadata);
+
+        // Copy of metadata reflecting the situation after all leave operations are finished.
+        TokenMetadata allLeftMetadata = cloneAfterAllLeft();
+
+        // get all ranges that will be affected by leaving nodes
+        Set<Range<Token>> affectedRanges = new HashSet<Range<Token>>();
+        for (InetAddress endpoint : leavingEndpoints)
+            affectedRanges.addAll(addressRanges.get(endpoint));
 
-            // For each of the bootstrapping nodes, simply add and remove them one by one to
-            // allLeftMetadata and check in between what their ranges would be.
-            Multimap<InetAddress, Token> bootstrapAddresses = bootstrapTokens.inverse();
-            for (InetAddress endpoint : bootstrapAddresses.keySet())
+        // for each of those ranges, find what new nodes will be responsible for the range when
+        // all leaving nodes are gone.
+        for (Range<Token> range : affectedRanges)
+        {
+            Set<InetAddress> currentEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, metadata));
+            Set<InetAddress> newEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, allLeftMetadata));
+            for (InetAddress address : Sets.difference(newEndpoints, currentEndpoints))
             {
-                Collection<Token> tokens = bootstrapAddresses.get(endpoint);
+                newPendingRanges.addPendingRange(range, address);
+            }
+        }
 
-                allLeftMetadata.updateNormalTokens(tokens, endpoint);
-                for (Range<Token> range : strategy.getAddressRanges(allLeftMetadata).get(endpoint))
-                {
-                    newPendingRanges.addPendingRange(range, endpoint);
-                }
-                allLeftMetadata.removeEndpoint(endpoint);
+        // At this stage newPendingRanges has been updated according to leave operations. We can
+        // now continue the calculation by checking bootstrapping nodes.
+
+        // For each of the bootstrapping nodes, simply add and remove them one by one to
+        // allLeftMetadata and check in between what their ranges would be.
+        Multimap<InetAddress, Token> bootstrapAddresses = bootstrapTokens.inverse();
+        for (InetAddress endpoint : bootstrapAddresses.keySet())
+        {
+            Collection<Token> tokens = bootstrapAddresses.get(endpoint);
+
+            allLeftMetadata.updateNormalTokens(tokens, endpoint);
+            for (Range<Token> range : strategy.getAddressRanges(allLeftMetadata).get(endpoint))
+            {
+                newPendingRanges.addPendingRange(range, endpoint);
             }
+            allLeftMetadata.removeEndpoint(endpoint);
+        }
 
-            // At this stage newPendingRanges has been updated according to leaving and bootstrapping nodes.
-            // We can now finish the calculation by checking moving nodes.
+        // At this stage newPendingRanges has been updated according to leaving and bootstrapping nodes.
+        // We can now finish the calculation by checking moving nodes.
 
-            // For each of the moving nodes, we do the same thing we did for bootstrapping:
-            // simply add and remove them one by one to allLeftMetadata and check in between what their ranges would be.
-            for (Pair<Token, InetAddress> moving : movingEndpoints)
+        // For each of the moving nodes, we do the same thing we did for bootstrapping:
+        // simply add and remove them one by one to allLeftMetadata and check in between what their ranges would be.
+        for (Pair<Token, InetAddress> moving : movingEndpoints)
+        {
+            //Calculate all the ranges which will could be affected. This will include the ranges before and after the move.
+            Set<Range<Token>> moveAffectedRanges = new HashSet<>();
+            InetAddress endpoint = moving.right; // address of the moving node
+            //Add ranges before the move
+            for (Range<Token> range : strategy.getAddressRanges(allLeftMetadata).get(endpoint))
             {
-                //Calculate all the ranges which will could be affected. This will include the ranges before and after the move.
-                Set<Range<Token>> moveAffectedRanges = new HashSet<>();
-                InetAddress endpoint = moving.right; // address of the moving node
-                //Add ranges before the move
-                for (Range<Token> range : strategy.getAddressRanges(allLeftMetadata).get(endpoint))
-                {
-                    moveAffectedRanges.add(range);
-                }
+                moveAffectedRanges.add(range);
+            }
 
-                allLeftMetadata.updateNormalToken(moving.left, endpoint);
-                //Add ranges after the move
-                for (Range<Token> range : strategy.getAddressRanges(allLeftMetadata).get(endpoint))
-                {
-                    moveAffectedRanges.add(range);
-                }
+            allLeftMetadata.updateNormalToken(moving.left, endpoint);
+            Multimap<InetAddress, Range<Token>> movedAddressRanges = strategy.getAddressRanges(allLeftMetadata);
+            //Add ranges after the move
+            for (Range<Token> range : movedAddressRanges.get(endpoint))
+            {
+                moveAffectedRanges.add(range);
+            }
 
-                for(Range<Token> range : moveAffectedRanges)
+            for(Range<Token> range : moveAffectedRanges)
+            {
+                Set<InetAddress> currentEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, metadata));
+                Set<InetAddress> newEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, allLeftMetadata));
+                Set<InetAddress> difference = Sets.difference(newEndpoints, currentEndpoints);
+                for(final InetAddress address : difference)
                 {
-                    Set<InetAddress> currentEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, metadata));
-                    Set<InetAddress> newEndpoints = ImmutableSet.copyOf(strategy.calculateNaturalEndpoints(range.right, allLeftMetadata));
-                    Set<InetAddress> difference = Sets.difference(newEndpoints, currentEndpoints);
-                    for(final InetAddress address : difference)
-                    {
-                        Collection<Range<Token>> newRanges = strategy.getAddressRanges(allLeftMetadata).get(address);
-                        Collection<Range<Token>> oldRanges = strategy.getAddressRanges(metadata).get(address);
-                        //We want to get rid of any ranges which the node is currently getting.
-                        newRanges.removeAll(oldRanges);
+                    Collection<Range<Token>> newRanges = new HashSet<>(movedAddressRanges.get(address));
+                    Collection<Range<Token>> oldRanges = addressRanges.get(address);
+                    //We want to get rid of any ranges which the node is currently getting.
+                    newRanges.removeAll(oldRanges);
 
-                        for(Range<Token> newRange : newRanges)
+                    for(Range<Token> newRange : newRanges)
+                    {
+                        for(Range<Token> pendingRange : newRange.subtractAll(oldRanges))
                         {
-                            for(Range<Token> pendingRange : newRange.subtractAll(oldRanges))
-                            {
-                                newPendingRanges.addPendingRange(pendingRange, address);
-                            }
+                            newPendingRanges.addPendingRange(pendingRange, address);
                         }
                     }
                 }
-
-                allLeftMetadata.removeEndpoint(endpoint);
             }
 
-            pendingRanges.put(keyspaceName, newPendingRanges);
-
-            if (logger.isTraceEnabled())
-                logger.trace("Pending ranges:\n{}", (pendingRanges.isEmpty() ? "<empty>" : printPendingRanges()));
-        }
-        finally
-        {
-            lock.readLock().unlock();
+            allLeftMetadata.removeEndpoint(endpoint);
         }
+
+        return newPendingRanges;
     }
 
     public Token getPredecessor(Token token)
@@ -1012,6 +1058,7 @@ public class TokenMetadata
             bootstrapTokens.clear();
             leavingEndpoints.clear();
             pendingRanges.clear();
+            pendingRangesSources.clear();
             movingEndpoints.clear();
             sortedTokens.clear();
             topology.clear();
@@ -1167,6 +1214,7 @@ public class TokenMetadata
     public void invalidateCachedRings()
     {
         ringVersion++;
+        pendingRangesVersion++;
         cachedTokenMap.set(null);
     }
 
@@ -1175,6 +1223,47 @@ public class TokenMetadata
         return partitioner.decorateKey(key);
     }
 
+    /**
+     * What the pending ranges of a keyspace are calculated from: the state of the ring and the way the keyspace is
+     * replicated. Two keyspaces with equal sources have the same pending ranges.
+     */
+    private static final class PendingRangesSource
+    {
+        private final long pendingRangesVersion;
+        private final Class<? extends AbstractReplicationStrategy> strategyClass;
+        private final Map<String, String> configOptions;
+        private final IEndpointSnitch snitch;
+
+        PendingRangesSource(long pendingRangesVersion, AbstractReplicationStrategy strategy)
+        {
+            this.pendingRangesVersion = pendingRangesVersion;
+            this.strategyClass = strategy.getClass();
+            this.configOptions = strategy.configOptions;
+            this.snitch = strategy.snitch;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof PendingRangesSource))
+                return false;
+
+            PendingRangesSource that = (PendingRangesSource) o;
+            return pendingRangesVersion == that.pendingRangesVersion
+                   && strategyClass == that.strategyClass
+                   && configOptions.equals(that.configOptions)
+                   && snitch == that.snitch;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(pendingRangesVersion, strategyClass, configOptions, snitch);
+        }
+    }
+
     /**
      * Tracks the assignment of racks and endpoints in each datacenter for all the "normal" endpoints
      * in this TokenMetadata. This allows faster calculation of endpoints in NetworkTopologyStrategy.
@@ -31,8 +31,10 @@ public class CQLMetrics
     public final Counter regularStatementsExecuted;
     public final Counter preparedStatementsExecuted;
     public final Counter preparedStatementsEvicted;
+    public final Counter preparedStatementsLoaded;
 
     public final Gauge<Integer> preparedStatementsCount;
+    public final Gauge<Long> preparedStatementsWeight;
     public final Gauge<Double> preparedStatementsRatio;
 
     public CQLMetrics()
@@ -40,6 +42,7 @@ public class CQLMetrics
         regularStatementsExecuted = Metrics.counter(factory.createMetricName("RegularStatementsExecuted"));
         preparedStatementsExecuted = Metrics.counter(factory.createMetricName("PreparedStatementsExecuted"));
         preparedStatementsEvicted = Metrics.counter(factory.createMetricName("PreparedStatementsEvicted"));
+        preparedStatementsLoaded = Metrics.counter(factory.createMetricName("PreparedStatementsLoaded"));
 
         preparedStatementsCount = Metrics.register(factory.createMetricName("PreparedStatementsCount"), new Gauge<Integer>()
         {
@@ -48,6 +51,13 @@ public class CQLMetrics
                 return QueryProcessor.preparedStatementsCount();
             }
         });
+        preparedStatementsWeight = Metrics.register(factory.createMetricName("PreparedStatementsWeight"), new Gauge<Long>()
+        {
+            public Long getValue()
+            {
+                return QueryProcessor.preparedStatementsWeight();
+            }
+        });
         preparedStatementsRatio = Metrics.register(factory.createMetricName("PreparedStatementsRatio"), new RatioGauge()
         {
             public Ratio getRatio()
@@ -21,7 +21,9 @@ package org.apache.cassandra.metrics;
 import java.util.concurrent.Callable;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
@@ -49,8 +51,23 @@ public class ClientMetrics
         });
     }
 
+    public <T> Gauge<T> addGauge(String name, Gauge<T> gauge)
+    {
+        return Metrics.register(factory.createMetricName(name), gauge);
+    }
+
     public Meter addMeter(String name)
     {
         return Metrics.meter(factory.createMetricName(name));
     }
+
+    public Histogram addHistogram(String name, String scope)
+    {
+        return Metrics.histogram(DefaultNameFactory.createMetricName("Client", name, scope), false);
+    }
+
+    public Timer addTimer(String name, String scope)
+    {
+        return Metrics.timer(DefaultNameFactory.createMetricName("Client", name, scope));
+    }
 }
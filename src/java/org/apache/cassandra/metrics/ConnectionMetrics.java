@@ -59,6 +59,8 @@ public class ConnectionMetrics
 
     /** Number of timeouts for specific IP */
     public final Meter timeouts;
+    /** Requests sent to this IP that have neither been answered nor timed out yet */
+    public final Gauge<Integer> pendingRequests;
 
     private final MetricNameFactory factory;
 
@@ -139,6 +141,13 @@ public class ConnectionMetrics
             }
         });
         timeouts = Metrics.meter(factory.createMetricName("Timeouts"));
+        pendingRequests = Metrics.register(factory.createMetricName("PendingRequests"), new Gauge<Integer>()
+        {
+            public Integer getValue()
+            {
+                return connectionPool.getPendingRequests();
+            }
+        });
     }
 
     public void release()
@@ -153,5 +162,6 @@ public class ConnectionMetrics
         Metrics.remove(factory.createMetricName("GossipMessageCompletedTasks"));
         Metrics.remove(factory.createMetricName("GossipMessageDroppedTasks"));
         Metrics.remove(factory.createMetricName("Timeouts"));
+        Metrics.remove(factory.createMetricName("PendingRequests"));
     }
 }
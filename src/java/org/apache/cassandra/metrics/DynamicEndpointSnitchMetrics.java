@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import com.codahale.metrics.Meter;
+
+import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
+
+/**
+ * Metrics related to the replica selection of the {@link org.apache.cassandra.locator.DynamicEndpointSnitch}.
+ */
+public class DynamicEndpointSnitchMetrics
+{
+    private static final MetricNameFactory factory = new DefaultNameFactory("DynamicEndpointSnitch");
+
+    /** Lists of replicas sorted by the snitch */
+    public static final Meter sorted = Metrics.meter(factory.createMetricName("Sorted"));
+    /** Sorts where the scores were bad enough to override the proximity order of the underlying snitch */
+    public static final Meter scoreOverrides = Metrics.meter(factory.createMetricName("ScoreOverrides"));
+    /** Replicas sorted last because they had too many pending requests */
+    public static final Meter overloadedReplicas = Metrics.meter(factory.createMetricName("OverloadedReplicas"));
+}
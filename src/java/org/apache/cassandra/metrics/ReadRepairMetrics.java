@@ -17,7 +17,10 @@
  */
 package org.apache.cassandra.metrics;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
+import org.apache.cassandra.config.DatabaseDescriptor;
 
 import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
 
@@ -31,4 +34,14 @@ public class ReadRepairMetrics
     public static final Meter repairedBlocking = Metrics.meter(factory.createMetricName("RepairedBlocking"));
     public static final Meter repairedBackground = Metrics.meter(factory.createMetricName("RepairedBackground"));
     public static final Meter attempted = Metrics.meter(factory.createMetricName("Attempted"));
+
+    /** Read repair mutations sent; a repaired partition may be split into several of them */
+    public static final Meter mutationsSent = Metrics.meter(factory.createMetricName("MutationsSent"));
+    /** Size of the read repair mutations sent and not yet acknowledged, over all tables */
+    public static final Counter bytesInFlight = Metrics.counter(factory.createMetricName("BytesInFlight"));
+    /** Number of times a read had to wait for its repairs to be acknowledged because its table was over its limit */
+    public static final Meter throttled = Metrics.meter(factory.createMetricName("Throttled"));
+    /** Size of the read repair mutations each table may have in flight before reads start to wait on them */
+    public static final Gauge<Long> maxBytesInFlightPerTable = Metrics.register(factory.createMetricName("MaxBytesInFlightPerTable"),
+                                                                                 DatabaseDescriptor::getReadRepairMaxInFlightPerTable);
 }
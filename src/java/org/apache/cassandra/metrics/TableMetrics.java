@@ -155,6 +155,9 @@ public class TableMetrics
     /** Dropped Mutations Count */
     public final Counter droppedMutations;
 
+    /** Size of the read repair mutations sent for this table and not yet acknowledged */
+    public final Counter readRepairBytesInFlight;
+
     private final MetricNameFactory factory;
     private final MetricNameFactory aliasFactory;
     private static final MetricNameFactory globalFactory = new AllTableMetricNameFactory("Table");
@@ -201,6 +204,8 @@ public class TableMetrics
     });
 
     public final Map<Sampler, TopKSampler<ByteBuffer>> samplers;
+    /** Heaviest partitions of the table, tracked all the time unlike the samplers */
+    public final Map<TopPartitionType, TopPartitionTracker> topPartitions;
     /**
      * stores metrics that will be rolled into a single global metric
      */
@@ -266,6 +271,9 @@ public class TableMetrics
         {
             samplers.put(sampler, new TopKSampler<>());
         }
+        topPartitions = new EnumMap<>(TopPartitionType.class);
+        for (TopPartitionType type : TopPartitionType.values())
+            topPartitions.put(type, new TopPartitionTracker());
 
         memtableColumnsCount = createTableGauge("MemtableColumnsCount", new Gauge<Long>()
         {
@@ -688,6 +696,7 @@ public class TableMetrics
         rowCacheHit = createTableCounter("RowCacheHit");
         rowCacheMiss = createTableCounter("RowCacheMiss");
         droppedMutations = createTableCounter("DroppedMutations");
+        readRepairBytesInFlight = createTableCounter("ReadRepairBytesInFlight");
 
         casPrepare = new LatencyMetrics(factory, "CasPrepare", cfs.keyspace.metric.casPrepare);
         casPropose = new LatencyMetrics(factory, "CasPropose", cfs.keyspace.metric.casPropose);
@@ -960,4 +969,9 @@ public class TableMetrics
     {
         READS, WRITES
     }
+
+    public enum TopPartitionType
+    {
+        READS, WRITES, BYTES_WRITTEN, TOMBSTONES
+    }
 }
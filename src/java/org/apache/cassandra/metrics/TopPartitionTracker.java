@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleSupplier;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.MurmurHash;
+
+/**
+ * Continuously tracks the heaviest partitions of a table for some weight (reads, writes, bytes written, tombstones...),
+ * unlike {@link org.apache.cassandra.utils.TopKSampler} which only samples during an explicit window.
+ *
+ * The weight of every partition is estimated with a count-min sketch, and the partitions with the largest estimates
+ * are kept as candidates for the top partitions, pruned back to their capacity once in a while. Both the sketch and
+ * the candidates are halved every decay interval, so that the tracker reflects the recent workload.
+ *
+ * Only a random sample of the additions is recorded, with a weight scaled by the inverse of the sample rate, so that
+ * the estimates stay unbiased while the concurrent writers of a hot partition rarely update the same counters. The
+ * tracking is disabled, and the sketch not even allocated, while the sample rate is 0. Adding a weight is lock-free,
+ * and only allocates when a partition enters the candidates.
+ */
+public class TopPartitionTracker
+{
+    private static final int DEPTH = 4;
+
+    private final int width;
+    private final int mask;
+    private final int capacity;
+    private final long decayIntervalMillis;
+    private final DoubleSupplier sampleRate;
+
+    // allocated when the first addition is recorded, as the tracking is usually disabled
+    private volatile AtomicLongArray sketch;
+    private final ConcurrentHashMap<ByteBuffer, Long> candidates = new ConcurrentHashMap<>();
+    // the smallest estimate of the kept candidates after the last pruning, below which partitions are not candidates
+    private volatile long admissionThreshold;
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private final AtomicLong lastDecayMillis;
+
+    public TopPartitionTracker()
+    {
+        this(DatabaseDescriptor.getTopPartitionsSketchWidth(),
+             DatabaseDescriptor.getTopPartitionsCapacity(),
+             DatabaseDescriptor.getTopPartitionsDecayIntervalInMs(),
+             DatabaseDescriptor::getTopPartitionsSampleRate);
+    }
+
+    @VisibleForTesting
+    TopPartitionTracker(int width, int capacity, long decayIntervalMillis, DoubleSupplier sampleRate)
+    {
+        this.width = Integer.highestOneBit(Math.max(1, width - 1) << 1);
+        this.mask = this.width - 1;
+        this.capacity = capacity;
+        this.decayIntervalMillis = decayIntervalMillis;
+        this.sampleRate = sampleRate;
+        this.lastDecayMillis = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Adds the provided weight to the partition with the provided key, if the addition is sampled.
+     */
+    public void add(ByteBuffer key, long weight)
+    {
+        if (capacity <= 0 || weight <= 0)
+            return;
+
+        double rate = sampleRate.getAsDouble();
+        if (rate <= 0)
+            return;
+
+        if (rate < 1)
+        {
+            if (ThreadLocalRandom.current().nextDouble() >= rate)
+                return;
+            weight = Math.max(1, Math.round(weight / rate));
+        }
+
+        AtomicLongArray sketch = sketch();
+        maybeDecay(System.currentTimeMillis());
+
+        long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), 0);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++)
+            estimate = Math.min(estimate, sketch.addAndGet(index(hash, i), weight));
+
+        if (estimate < admissionThreshold)
+            return;
+
+        // only copy the key, which may be a slice of a much larger buffer, when it first becomes a candidate
+        if (candidates.replace(key, estimate) == null)
+            candidates.put(ByteBufferUtil.clone(key), estimate);
+
+        if (candidates.size() > 2 * capacity)
+            prune();
+    }
+
+    private AtomicLongArray sketch()
+    {
+        AtomicLongArray current = sketch;
+        if (current != null)
+            return current;
+
+        synchronized (this)
+        {
+            if (sketch == null)
+                sketch = new AtomicLongArray(DEPTH * width);
+            return sketch;
+        }
+    }
+
+    private int index(long hash, int row)
+    {
+        // derives the hash of each row from two halves of a single hash, see Kirsch and Mitzenmacher
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+    private void prune()
+    {
+        if (!pruning.compareAndSet(false, true))
+            return;
+
+        try
+        {
+            List<Map.Entry<ByteBuffer, Long>> sorted = sortedCandidates();
+            if (sorted.size() <= capacity)
+                return;
+
+            admissionThreshold = sorted.get(capacity - 1).getValue();
+            for (Map.Entry<ByteBuffer, Long> entry : sorted.subList(capacity, sorted.size()))
+                candidates.remove(entry.getKey(), entry.getValue());
+        }
+        finally
+        {
+            pruning.set(false);
+        }
+    }
+
+    @VisibleForTesting
+    void maybeDecay(long nowMillis)
+    {
+        long last = lastDecayMillis.get();
+        long periods = (nowMillis - last) / decayIntervalMillis;
+        if (periods <= 0 || !lastDecayMillis.compareAndSet(last, last + periods * decayIntervalMillis))
+            return;
+
+        int shift = (int) Math.min(periods, 63);
+        AtomicLongArray sketch = this.sketch;
+        if (sketch != null)
+        {
+            // atomically, so as not to lose the weights added concurrently
+            for (int i = 0; i < sketch.length(); i++)
+                sketch.getAndUpdate(i, count -> count >> shift);
+        }
+
+        admissionThreshold >>= shift;
+        candidates.replaceAll((key, estimate) -> estimate >> shift);
+        candidates.values().removeIf(estimate -> estimate == 0);
+    }
+
+    private List<Map.Entry<ByteBuffer, Long>> sortedCandidates()
+    {
+        List<Map.Entry<ByteBuffer, Long>> sorted = new ArrayList<>(candidates.entrySet());
+        sorted.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+        return sorted;
+    }
+
+    /**
+     * @return the keys of the heaviest partitions with their estimated weight, heaviest first.
+     */
+    public Map<ByteBuffer, Long> top(int count)
+    {
+        maybeDecay(System.currentTimeMillis());
+
+        Map<ByteBuffer, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<ByteBuffer, Long> entry : sortedCandidates())
+        {
+            if (top.size() >= count)
+                break;
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+}
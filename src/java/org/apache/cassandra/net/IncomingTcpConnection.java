@@ -138,6 +138,14 @@ public class IncomingTcpConnection extends FastThreadLocalThread implements Clos
     {
         // handshake (true) endpoint versions
         DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        if (MessagingService.isForeignVersion(version))
+        {
+            // a node of another line of releases can't be spoken to in its own version: announcing VERSION_30 as our
+            // max version makes it reconnect with that version
+            out.writeInt(MessagingService.VERSION_30);
+            out.flush();
+            throw new IOException("Peer-used messaging version " + version + " is not supported, expecting a reconnection with " + MessagingService.VERSION_30);
+        }
         // if this version is < the MS version the other node is trying
         // to connect with, the other node will disconnect
         out.writeInt(MessagingService.current_version);
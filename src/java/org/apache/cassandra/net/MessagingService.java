@@ -60,6 +60,7 @@ import org.apache.cassandra.gms.GossipDigestAck2;
 import org.apache.cassandra.gms.GossipDigestSyn;
 import org.apache.cassandra.hints.HintMessage;
 import org.apache.cassandra.hints.HintResponse;
+import org.apache.cassandra.hints.HintsBatchMessage;
 import org.apache.cassandra.io.IVersionedSerializer;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
@@ -88,7 +89,18 @@ public final class MessagingService implements MessagingServiceMBean
     public static final int VERSION_21 = 8;
     public static final int VERSION_22 = 9;
     public static final int VERSION_30 = 10;
-    public static final int current_version = VERSION_30;
+    /**
+     * Switches read and repair digests from MD5 and SHA-256 to 128-bit Murmur3 (see {@link org.apache.cassandra.utils.Murmur3Digest}).
+     * Nothing else is serialized differently than with {@link #VERSION_30}, so files written with the latter
+     * (commit log segments, hints) are read as this version.
+     * <p>
+     * Apache Cassandra numbers its versions sequentially (11 for 3.0.14 and 3.11, 12 for 4.0), with serialization
+     * changes of its own, so this version is chosen far above them. The nodes announcing a version in between, which
+     * can't be spoken by this node, are talked to with {@link #VERSION_30}, the last version shared with them (see
+     * {@link #setVersion}).
+     */
+    public static final int VERSION_310 = 100;
+    public static final int current_version = VERSION_310;
 
     public static final String FAILURE_CALLBACK_PARAM = "CAL_BAC";
     public static final byte[] ONE_BYTE = new byte[1];
@@ -145,9 +157,9 @@ public final class MessagingService implements MessagingServiceMBean
         PAXOS_COMMIT,
         @Deprecated PAGED_RANGE,
         // remember to add new verbs at the end, since we serialize by ordinal
-        UNUSED_1,
-        UNUSED_2,
-        UNUSED_3,
+        MUTATION_GROUP, // several mutations for the same replica, only sent to VERSION_310 nodes
+        AGGREGATE, // partial aggregates of a token range, only sent to VERSION_310 nodes
+        HINTS_BATCH, // a page of hints, only sent to VERSION_310 nodes
         UNUSED_4,
         UNUSED_5,
         ;
@@ -158,9 +170,12 @@ public final class MessagingService implements MessagingServiceMBean
     public static final EnumMap<MessagingService.Verb, Stage> verbStages = new EnumMap<MessagingService.Verb, Stage>(MessagingService.Verb.class)
     {{
         put(Verb.MUTATION, Stage.MUTATION);
+        put(Verb.MUTATION_GROUP, Stage.MUTATION);
+        put(Verb.AGGREGATE, Stage.READ);
         put(Verb.COUNTER_MUTATION, Stage.COUNTER_MUTATION);
         put(Verb.READ_REPAIR, Stage.MUTATION);
         put(Verb.HINT, Stage.MUTATION);
+        put(Verb.HINTS_BATCH, Stage.MUTATION);
         put(Verb.TRUNCATE, Stage.MUTATION);
         put(Verb.PAXOS_PREPARE, Stage.MUTATION);
         put(Verb.PAXOS_PROPOSE, Stage.MUTATION);
@@ -199,9 +214,6 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.SNAPSHOT, Stage.MISC);
         put(Verb.ECHO, Stage.GOSSIP);
 
-        put(Verb.UNUSED_1, Stage.INTERNAL_RESPONSE);
-        put(Verb.UNUSED_2, Stage.INTERNAL_RESPONSE);
-        put(Verb.UNUSED_3, Stage.INTERNAL_RESPONSE);
     }};
 
     /**
@@ -219,6 +231,8 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.INTERNAL_RESPONSE, CallbackDeterminedSerializer.instance);
 
         put(Verb.MUTATION, Mutation.serializer);
+        put(Verb.MUTATION_GROUP, MutationGroup.serializer);
+        put(Verb.AGGREGATE, AggregateCommand.serializer);
         put(Verb.READ_REPAIR, Mutation.serializer);
         put(Verb.READ, ReadCommand.readSerializer);
         put(Verb.RANGE_SLICE, ReadCommand.rangeSliceSerializer);
@@ -238,6 +252,7 @@ public final class MessagingService implements MessagingServiceMBean
         put(Verb.PAXOS_PROPOSE, Commit.serializer);
         put(Verb.PAXOS_COMMIT, Commit.serializer);
         put(Verb.HINT, HintMessage.serializer);
+        put(Verb.HINTS_BATCH, HintsBatchMessage.serializer);
         put(Verb.BATCH_STORE, Batch.serializer);
         put(Verb.BATCH_REMOVE, UUIDSerializer.serializer);
     }};
@@ -248,10 +263,13 @@ public final class MessagingService implements MessagingServiceMBean
     public static final EnumMap<Verb, IVersionedSerializer<?>> callbackDeserializers = new EnumMap<Verb, IVersionedSerializer<?>>(Verb.class)
     {{
         put(Verb.MUTATION, WriteResponse.serializer);
+        put(Verb.MUTATION_GROUP, WriteResponse.serializer);
         put(Verb.HINT, HintResponse.serializer);
+        put(Verb.HINTS_BATCH, HintResponse.serializer);
         put(Verb.READ_REPAIR, WriteResponse.serializer);
         put(Verb.COUNTER_MUTATION, WriteResponse.serializer);
         put(Verb.RANGE_SLICE, ReadResponse.rangeSliceSerializer);
+        put(Verb.AGGREGATE, AggregateCommand.responseSerializer);
         put(Verb.PAGED_RANGE, ReadResponse.rangeSliceSerializer);
         put(Verb.READ, ReadResponse.serializer);
         put(Verb.TRUNCATE, TruncateResponse.serializer);
@@ -272,6 +290,9 @@ public final class MessagingService implements MessagingServiceMBean
     /* This records all the results mapped by message Id */
     private final ExpiringMap<Integer, CallbackInfo> callbacks;
 
+    /* Number of registered callbacks per target, that is requests still awaiting a response */
+    private final ConcurrentMap<InetAddress, AtomicInteger> pendingRequests = new NonBlockingHashMap<>();
+
     /**
      * a placeholder class that means "deserialize using the callback." We can't implement this without
      * special-case code in InboundTcpConnection because there is no way to pass the message id to IVersionedSerializer.
@@ -314,12 +335,15 @@ public final class MessagingService implements MessagingServiceMBean
      */
     public static final EnumSet<Verb> DROPPABLE_VERBS = EnumSet.of(Verb._TRACE,
                                                                    Verb.MUTATION,
+                                                                   Verb.MUTATION_GROUP,
                                                                    Verb.COUNTER_MUTATION,
                                                                    Verb.HINT,
+                                                                   Verb.HINTS_BATCH,
                                                                    Verb.READ_REPAIR,
                                                                    Verb.READ,
                                                                    Verb.RANGE_SLICE,
                                                                    Verb.PAGED_RANGE,
+                                                                   Verb.AGGREGATE,
                                                                    Verb.REQUEST_RESPONSE,
                                                                    Verb.BATCH_STORE,
                                                                    Verb.BATCH_REMOVE);
@@ -409,6 +433,7 @@ public final class MessagingService implements MessagingServiceMBean
             public Object apply(Pair<Integer, ExpiringMap.CacheableObject<CallbackInfo>> pair)
             {
                 final CallbackInfo expiredCallbackInfo = pair.right.value;
+                decrementPendingRequests(expiredCallbackInfo.target);
                 maybeAddLatency(expiredCallbackInfo.callback, expiredCallbackInfo.target, pair.right.timeout);
                 ConnectionMetrics.totalTimeouts.mark();
                 getConnectionPool(expiredCallbackInfo.target).incrementTimeout();
@@ -424,8 +449,8 @@ public final class MessagingService implements MessagingServiceMBean
 
                 if (expiredCallbackInfo.shouldHint())
                 {
-                    Mutation mutation = ((WriteCallbackInfo) expiredCallbackInfo).mutation();
-                    return StorageProxy.submitHint(mutation, expiredCallbackInfo.target, null);
+                    for (Mutation mutation : ((WriteCallbackInfo) expiredCallbackInfo).mutations())
+                        StorageProxy.submitHint(mutation, expiredCallbackInfo.target, null);
                 }
 
                 return null;
@@ -479,6 +504,7 @@ public final class MessagingService implements MessagingServiceMBean
     public void listen()
     {
         callbacks.reset(); // hack to allow tests to stop/restart MS
+        pendingRequests.clear();
         listen(FBUtilities.getLocalAddress());
         if (DatabaseDescriptor.shouldListenOnBroadcastAddress()
             && !FBUtilities.getLocalAddress().equals(FBUtilities.getBroadcastAddress()))
@@ -650,6 +676,7 @@ public final class MessagingService implements MessagingServiceMBean
         int messageId = nextId();
         CallbackInfo previous = callbacks.put(messageId, new CallbackInfo(to, cb, callbackDeserializers.get(message.verb), failureCallback), timeout);
         assert previous == null : String.format("Callback already exists for id %d! (%s)", messageId, previous);
+        incrementPendingRequests(to);
         return messageId;
     }
 
@@ -661,6 +688,7 @@ public final class MessagingService implements MessagingServiceMBean
                            boolean allowHints)
     {
         assert message.verb == Verb.MUTATION
+            || message.verb == Verb.MUTATION_GROUP
             || message.verb == Verb.COUNTER_MUTATION
             || message.verb == Verb.PAXOS_COMMIT;
         int messageId = nextId();
@@ -674,6 +702,7 @@ public final class MessagingService implements MessagingServiceMBean
                                                                     allowHints),
                                                                     timeout);
         assert previous == null : String.format("Callback already exists for id %d! (%s)", messageId, previous);
+        incrementPendingRequests(to);
         return messageId;
     }
 
@@ -729,7 +758,20 @@ public final class MessagingService implements MessagingServiceMBean
                       AbstractWriteResponseHandler<?> handler,
                       boolean allowHints)
     {
-        int id = addCallback(handler, message, to, message.getTimeout(), handler.consistencyLevel, allowHints);
+        return sendRR(message, to, handler, handler.consistencyLevel, allowHints);
+    }
+
+    /**
+     * Same as {@link #sendRR(MessageOut, InetAddress, AbstractWriteResponseHandler, boolean)}, for callbacks that
+     * are not response handlers themselves but relay to some.
+     */
+    public int sendRR(MessageOut<?> message,
+                      InetAddress to,
+                      IAsyncCallbackWithFailure<?> callback,
+                      ConsistencyLevel consistencyLevel,
+                      boolean allowHints)
+    {
+        int id = addCallback(callback, message, to, message.getTimeout(), consistencyLevel, allowHints);
         sendOneWay(message.withParameter(FAILURE_CALLBACK_PARAM, ONE_BYTE), id, to);
         return id;
     }
@@ -786,6 +828,7 @@ public final class MessagingService implements MessagingServiceMBean
     public void clearCallbacksUnsafe()
     {
         callbacks.reset();
+        pendingRequests.clear();
     }
 
     /**
@@ -841,6 +884,7 @@ public final class MessagingService implements MessagingServiceMBean
     public void setCallbackForTests(int messageId, CallbackInfo callback)
     {
         callbacks.put(messageId, callback);
+        incrementPendingRequests(callback.target);
     }
 
     public CallbackInfo getRegisteredCallback(int messageId)
@@ -850,7 +894,39 @@ public final class MessagingService implements MessagingServiceMBean
 
     public CallbackInfo removeRegisteredCallback(int messageId)
     {
-        return callbacks.remove(messageId);
+        CallbackInfo callback = callbacks.remove(messageId);
+        if (callback != null)
+            decrementPendingRequests(callback.target);
+        return callback;
+    }
+
+    /**
+     * @return the number of requests sent to the provided endpoint that have neither been answered nor timed out yet.
+     */
+    public int getPendingRequests(InetAddress endpoint)
+    {
+        AtomicInteger pending = pendingRequests.get(endpoint);
+        return pending == null ? 0 : pending.get();
+    }
+
+    private void incrementPendingRequests(InetAddress endpoint)
+    {
+        AtomicInteger pending = pendingRequests.get(endpoint);
+        if (pending == null)
+        {
+            AtomicInteger newPending = new AtomicInteger();
+            pending = pendingRequests.putIfAbsent(endpoint, newPending);
+            if (pending == null)
+                pending = newPending;
+        }
+        pending.incrementAndGet();
+    }
+
+    private void decrementPendingRequests(InetAddress endpoint)
+    {
+        AtomicInteger pending = pendingRequests.get(endpoint);
+        if (pending != null)
+            pending.decrementAndGet();
     }
 
     /**
@@ -889,6 +965,9 @@ public final class MessagingService implements MessagingServiceMBean
     {
         // We can't talk to someone from the future
         version = Math.min(version, current_version);
+        // nor to someone of another line of releases in its own versions
+        if (isForeignVersion(version))
+            version = VERSION_30;
 
         logger.trace("Setting version {} for {}", version, endpoint);
 
@@ -966,6 +1045,24 @@ public final class MessagingService implements MessagingServiceMBean
         return versions.containsKey(endpoint);
     }
 
+    /**
+     * @return whether the given version is one of another line of releases than this one (like Apache Cassandra
+     * 3.0.14, 3.11 or 4.0), which is newer than {@link #VERSION_30} but serializes messages differently than
+     * {@link #VERSION_310}.
+     */
+    public static boolean isForeignVersion(int version)
+    {
+        return version > VERSION_30 && version < VERSION_310;
+    }
+
+    /**
+     * @return whether the given version only differs from the current one in ways that don't affect schema exchange.
+     */
+    public static boolean is30Compatible(int version)
+    {
+        return version == VERSION_30 || version == VERSION_310;
+    }
+
     public void incrementDroppedMutations(Optional<IMutation> mutationOpt, long timeTaken)
     {
         if (mutationOpt.isPresent())
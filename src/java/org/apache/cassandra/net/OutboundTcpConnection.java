@@ -444,14 +444,16 @@ public class OutboundTcpConnection extends FastThreadLocalThread
                     MessagingService.instance().setVersion(poolReference.endPoint(), maxTargetVersion);
                 }
 
-                if (targetVersion > maxTargetVersion)
+                // the version to use, which is lower than the max version of the target if it is a foreign one
+                int usableVersion = MessagingService.instance().getVersion(poolReference.endPoint());
+                if (targetVersion > usableVersion)
                 {
-                    logger.trace("Target max version is {}; will reconnect with that version", maxTargetVersion);
+                    logger.trace("Target max version is {}; will reconnect with {}", maxTargetVersion, usableVersion);
                     disconnect();
                     return false;
                 }
 
-                if (targetVersion < maxTargetVersion && targetVersion < MessagingService.current_version)
+                if (targetVersion < usableVersion)
                 {
                     logger.trace("Detected higher max version {} (using {}); will reconnect when queued messages are done",
                                  maxTargetVersion, targetVersion);
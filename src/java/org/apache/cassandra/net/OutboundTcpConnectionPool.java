@@ -117,6 +117,11 @@ public class OutboundTcpConnectionPool
         metrics.timeouts.mark();
     }
 
+    public int getPendingRequests()
+    {
+        return MessagingService.instance().getPendingRequests(id);
+    }
+
     public Socket newSocket() throws IOException
     {
         return newSocket(endPoint());
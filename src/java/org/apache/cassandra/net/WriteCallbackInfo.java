@@ -19,9 +19,12 @@
 package org.apache.cassandra.net;
 
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.MutationGroup;
 import org.apache.cassandra.io.IVersionedSerializer;
 import org.apache.cassandra.service.StorageProxy;
 import org.apache.cassandra.service.paxos.Commit;
@@ -29,7 +32,7 @@ import org.apache.cassandra.utils.FBUtilities;
 
 public class WriteCallbackInfo extends CallbackInfo
 {
-    // either a Mutation, or a Paxos Commit (MessageOut)
+    // either a Mutation, a MutationGroup, or a Paxos Commit (MessageOut)
     private final Object mutation;
 
     public WriteCallbackInfo(InetAddress target,
@@ -56,6 +59,12 @@ public class WriteCallbackInfo extends CallbackInfo
         return getMutation(mutation);
     }
 
+    public Collection<Mutation> mutations()
+    {
+        return mutation instanceof MutationGroup ? ((MutationGroup) mutation).mutations
+                                                 : Collections.singleton(getMutation(mutation));
+    }
+
     private static Mutation getMutation(Object object)
     {
         assert object instanceof Commit || object instanceof Mutation : object;
@@ -121,7 +121,7 @@ public class RepairMessageVerbHandler implements IVerbHandler<RepairMessage>
                         return;
                     }
 
-                    Validator validator = new Validator(desc, message.from, validationRequest.gcBefore);
+                    Validator validator = new Validator(desc, message.from, validationRequest.gcBefore, validationRequest.digestVersion);
                     CompactionManager.instance.submitValidation(store, validator);
                     break;
 
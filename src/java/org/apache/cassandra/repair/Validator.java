@@ -42,6 +42,7 @@ import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTree;
 import org.apache.cassandra.utils.MerkleTree.RowHash;
 import org.apache.cassandra.utils.MerkleTrees;
+import org.apache.cassandra.utils.Murmur3Digest;
 
 /**
  * Handles the building of a merkle tree for a column family.
@@ -58,6 +59,7 @@ public class Validator implements Runnable
     public final RepairJobDesc desc;
     public final InetAddress initiator;
     public final int gcBefore;
+    public final int digestVersion;
 
     // null when all rows with the min token have been consumed
     private long validated;
@@ -70,10 +72,16 @@ public class Validator implements Runnable
     private DecoratedKey lastKey;
 
     public Validator(RepairJobDesc desc, InetAddress initiator, int gcBefore)
+    {
+        this(desc, initiator, gcBefore, MessagingService.current_version);
+    }
+
+    public Validator(RepairJobDesc desc, InetAddress initiator, int gcBefore, int digestVersion)
     {
         this.desc = desc;
         this.initiator = initiator;
         this.gcBefore = gcBefore;
+        this.digestVersion = digestVersion;
         validated = 0;
         range = null;
         ranges = null;
@@ -210,7 +218,9 @@ public class Validator implements Runnable
     {
         validated++;
         // MerkleTree uses XOR internally, so we want lots of output bits here
-        CountingDigest digest = new CountingDigest(FBUtilities.newMessageDigest("SHA-256"));
+        CountingDigest digest = new CountingDigest(digestVersion >= MessagingService.VERSION_310
+                                                   ? new Murmur3Digest()
+                                                   : FBUtilities.newMessageDigest("SHA-256"));
         UnfilteredRowIterators.digest(null, partition, digest, MessagingService.current_version);
         // only return new hash for merkle tree in case digest was updated - see CASSANDRA-8979
         return digest.count > 0
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.service;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.AggregateCommand;
+import org.apache.cassandra.net.IAsyncCallbackWithFailure;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.concurrent.SimpleCondition;
+
+/**
+ * Waits for the partial aggregates of a single token range, computed by a single replica
+ * (see {@link AggregateCommand}).
+ */
+public class AggregateCallback implements IAsyncCallbackWithFailure<List<ByteBuffer>>
+{
+    public final AggregateCommand command;
+    private final long start = System.nanoTime();
+    private final SimpleCondition condition = new SimpleCondition();
+
+    private volatile List<ByteBuffer> partial;
+    private volatile InetAddress failed;
+
+    public AggregateCallback(AggregateCommand command)
+    {
+        this.command = command;
+    }
+
+    public void response(MessageIn<List<ByteBuffer>> message)
+    {
+        response(message.payload);
+    }
+
+    public void response(List<ByteBuffer> partial)
+    {
+        this.partial = partial;
+        condition.signalAll();
+    }
+
+    public void onFailure(InetAddress from)
+    {
+        failed = from;
+        condition.signalAll();
+    }
+
+    public boolean isLatencyForSnitch()
+    {
+        return true;
+    }
+
+    /**
+     * Waits for the partial aggregates until the range RPC timeout expires.
+     *
+     * @return the partial aggregates, or {@code null} if the replica failed to compute them or didn't answer in time
+     */
+    public List<ByteBuffer> await()
+    {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(DatabaseDescriptor.getRangeRpcTimeout()) - (System.nanoTime() - start);
+        boolean signaled;
+        try
+        {
+            signaled = condition.await(timeout, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+
+        if (!signaled)
+        {
+            Tracing.trace("Timed out waiting for partial aggregates");
+            return null;
+        }
+
+        if (partial == null)
+            Tracing.trace("Failed to compute partial aggregates on {}", failed);
+        return partial;
+    }
+}
@@ -344,9 +344,6 @@ public class CassandraDaemon
 
         SystemKeyspace.finishStartup();
 
-        // Prepared statements
-        QueryProcessor.preloadPreparedStatement();
-
         // Metrics
         String metricsReporterConfigFile = System.getProperty("cassandra.metricsReporterConfigFile");
         if (metricsReporterConfigFile != null)
@@ -19,7 +19,11 @@ package org.apache.cassandra.service;
 
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.codahale.metrics.Counter;
 
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
@@ -35,6 +39,7 @@ import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.transform.MoreRows;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.exceptions.ReadTimeoutException;
+import org.apache.cassandra.metrics.ReadRepairMetrics;
 import org.apache.cassandra.net.*;
 import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.utils.FBUtilities;
@@ -93,13 +98,25 @@ public class DataResolver extends ResponseResolver
         return UnfilteredPartitionIterators.mergeAndFilter(results, command.nowInSec(), listener);
     }
 
+    /**
+     * Computes the repairs each source needs while the responses are merged, and sends them as soon as they grow
+     * over {@link DatabaseDescriptor#getReadRepairChunkSize()} rather than once a whole partition has been merged,
+     * so that the memory used is bounded even for large partitions. The repair mutations are sent asynchronously
+     * and only waited on when the table has more than {@link DatabaseDescriptor#getReadRepairMaxInFlightPerTable()}
+     * of them in flight, or once the merge is done.
+     */
     private class RepairMergeListener implements UnfilteredPartitionIterators.MergeListener
     {
         private final InetAddress[] sources;
+        private final Counter tableBytesInFlight;
+
+        // The index in repairResults of the oldest repair we may still have to wait on when throttled.
+        private int awaited;
 
         public RepairMergeListener(InetAddress[] sources)
         {
             this.sources = sources;
+            this.tableBytesInFlight = keyspace.getColumnFamilyStore(command.metadata().cfId).metric.readRepairBytesInFlight;
         }
 
         public UnfilteredRowIterators.MergeListener getRowMergeListener(DecoratedKey partitionKey, List<UnfilteredRowIterator> versions)
@@ -146,14 +163,58 @@ public class DataResolver extends ResponseResolver
             }
             catch (TimeoutException ex)
             {
-                // We got all responses, but timed out while repairing
-                int blockFor = consistency.blockFor(keyspace);
-                if (Tracing.isTracing())
-                    Tracing.trace("Timed out while read-repairing after receiving all {} data and digest responses", blockFor);
-                else
-                    logger.debug("Timeout while read-repairing after receiving all {} data and digest responses", blockFor);
+                throw repairTimeout();
+            }
+        }
+
+        private ReadTimeoutException repairTimeout()
+        {
+            // We got all responses, but timed out while repairing
+            int blockFor = consistency.blockFor(keyspace);
+            if (Tracing.isTracing())
+                Tracing.trace("Timed out while read-repairing after receiving all {} data and digest responses", blockFor);
+            else
+                logger.debug("Timeout while read-repairing after receiving all {} data and digest responses", blockFor);
+
+            return new ReadTimeoutException(consistency, blockFor-1, blockFor, true);
+        }
+
+        private void sendRepairMutation(InetAddress destination, PartitionUpdate update, long size)
+        {
+            maybeThrottle(size);
+
+            // use a separate verb here because we don't want these to be get the white glove hint-
+            // on-timeout behavior that a "real" mutation gets
+            Tracing.trace("Sending read-repair-mutation to {}", destination);
+            MessageOut<Mutation> msg = new Mutation(update).createMessage(MessagingService.Verb.READ_REPAIR);
+            RepairResponse response = new RepairResponse(tableBytesInFlight, size);
+            repairResults.add(response);
+            MessagingService.instance().sendRR(msg, destination, response, msg.getTimeout(), true);
+            ReadRepairMetrics.mutationsSent.mark();
+        }
 
-                throw new ReadTimeoutException(consistency, blockFor-1, blockFor, true);
+        /**
+         * Waits on our own earlier repairs while the table is over its in flight limit. We never wait on other reads'
+         * repairs, so a read with nothing in flight can always proceed.
+         */
+        private void maybeThrottle(long size)
+        {
+            long limit = DatabaseDescriptor.getReadRepairMaxInFlightPerTable();
+            if (tableBytesInFlight.getCount() + size <= limit || awaited >= repairResults.size())
+                return;
+
+            ReadRepairMetrics.throttled.mark();
+            Tracing.trace("Too many read-repair-mutations in flight, waiting for acknowledgements");
+            while (tableBytesInFlight.getCount() + size > limit && awaited < repairResults.size())
+            {
+                try
+                {
+                    repairResults.get(awaited++).get(DatabaseDescriptor.getWriteRpcTimeout(), TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException ex)
+                {
+                    throw repairTimeout();
+                }
             }
         }
 
@@ -163,6 +224,7 @@ public class DataResolver extends ResponseResolver
             private final PartitionColumns columns;
             private final boolean isReversed;
             private final PartitionUpdate[] repairs = new PartitionUpdate[sources.length];
+            private final long[] repairSizes = new long[sources.length];
 
             private final Row.Builder[] currentRows = new Row.Builder[sources.length];
             private final RowDiffListener diffListener;
@@ -262,7 +324,11 @@ public class DataResolver extends ResponseResolver
                 for (int i = 0; i < currentRows.length; i++)
                 {
                     if (currentRows[i] != null)
-                        update(i).add(currentRows[i].build());
+                    {
+                        Row row = currentRows[i].build();
+                        update(i).add(row);
+                        addedToRepair(i, row.dataSize());
+                    }
                 }
                 Arrays.fill(currentRows, null);
             }
@@ -358,27 +424,76 @@ public class DataResolver extends ResponseResolver
             private void closeOpenMarker(int i, ClusteringBound close)
             {
                 ClusteringBound open = markerToRepair[i];
-                update(i).add(new RangeTombstone(Slice.make(isReversed ? close : open, isReversed ? open : close), currentDeletion()));
+                DeletionTime deletion = currentDeletion();
+                update(i).add(new RangeTombstone(Slice.make(isReversed ? close : open, isReversed ? open : close), deletion));
                 markerToRepair[i] = null;
+                addedToRepair(i, open.dataSize() + close.dataSize() + deletion.dataSize());
+            }
+
+            private void addedToRepair(int i, long size)
+            {
+                repairSizes[i] += size;
+                if (repairSizes[i] >= DatabaseDescriptor.getReadRepairChunkSize())
+                    sendRepair(i);
+            }
+
+            private void sendRepair(int i)
+            {
+                sendRepairMutation(sources[i], repairs[i], repairSizes[i]);
+                repairs[i] = null;
+                repairSizes[i] = 0;
             }
 
             public void close()
             {
                 for (int i = 0; i < repairs.length; i++)
                 {
-                    if (repairs[i] == null)
-                        continue;
-
-                    // use a separate verb here because we don't want these to be get the white glove hint-
-                    // on-timeout behavior that a "real" mutation gets
-                    Tracing.trace("Sending read-repair-mutation to {}", sources[i]);
-                    MessageOut<Mutation> msg = new Mutation(repairs[i]).createMessage(MessagingService.Verb.READ_REPAIR);
-                    repairResults.add(MessagingService.instance().sendRR(msg, sources[i]));
+                    if (repairs[i] != null)
+                        sendRepair(i);
                 }
             }
         }
     }
 
+    /**
+     * Tracks the acknowledgement of a read repair mutation, accounting for its size while it is in flight.
+     */
+    private static class RepairResponse extends AsyncOneResponse<Object> implements IAsyncCallbackWithFailure<Object>
+    {
+        private final Counter tableBytesInFlight;
+        private final long size;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private RepairResponse(Counter tableBytesInFlight, long size)
+        {
+            this.tableBytesInFlight = tableBytesInFlight;
+            this.size = size;
+            tableBytesInFlight.inc(size);
+            ReadRepairMetrics.bytesInFlight.inc(size);
+        }
+
+        @Override
+        public void response(MessageIn<Object> response)
+        {
+            release();
+            super.response(response);
+        }
+
+        public void onFailure(InetAddress from)
+        {
+            release();
+        }
+
+        private void release()
+        {
+            if (released.compareAndSet(false, true))
+            {
+                tableBytesInFlight.dec(size);
+                ReadRepairMetrics.bytesInFlight.dec(size);
+            }
+        }
+    }
+
     private class ShortReadProtection extends Transformation<UnfilteredRowIterator>
     {
         private final InetAddress source;
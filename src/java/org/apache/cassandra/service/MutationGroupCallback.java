@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.IMutation;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.MutationGroup;
+import org.apache.cassandra.net.IAsyncCallbackWithFailure;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.tracing.Tracing;
+
+/**
+ * Collects the mutations of an unlogged batch that go to the same replica, so they can be sent as a single
+ * {@link MutationGroup}, and relays the response (or failure) for that message to the response handler of
+ * each of the mutations.
+ */
+public class MutationGroupCallback implements IAsyncCallbackWithFailure<IMutation>
+{
+    private final InetAddress destination;
+    private final List<Mutation> mutations = new ArrayList<>();
+    private final List<AbstractWriteResponseHandler<IMutation>> handlers = new ArrayList<>();
+
+    public MutationGroupCallback(InetAddress destination)
+    {
+        this.destination = destination;
+    }
+
+    public void add(Mutation mutation, AbstractWriteResponseHandler<IMutation> handler)
+    {
+        mutations.add(mutation);
+        handlers.add(handler);
+    }
+
+    public int size()
+    {
+        return mutations.size();
+    }
+
+    public void send()
+    {
+        // all the mutations of a batch share the same consistency level
+        ConsistencyLevel consistencyLevel = handlers.get(0).consistencyLevel;
+        if (mutations.size() == 1)
+        {
+            MessagingService.instance().sendRR(mutations.get(0).createMessage(), destination, handlers.get(0), true);
+            return;
+        }
+
+        Tracing.trace("Sending {} grouped mutations to {}", mutations.size(), destination);
+        MessageOut<MutationGroup> message = new MutationGroup(mutations).createMessage();
+        MessagingService.instance().sendRR(message, destination, this, consistencyLevel, true);
+    }
+
+    public void response(MessageIn<IMutation> msg)
+    {
+        for (AbstractWriteResponseHandler<IMutation> handler : handlers)
+            handler.response(msg);
+    }
+
+    public void onFailure(InetAddress from)
+    {
+        for (AbstractWriteResponseHandler<IMutation> handler : handlers)
+            handler.onFailure(from);
+    }
+
+    public boolean isLatencyForSnitch()
+    {
+        return false;
+    }
+}
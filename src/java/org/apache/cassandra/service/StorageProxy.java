@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.*;
@@ -103,6 +104,10 @@ public class StorageProxy implements StorageProxyMBean
 
     private static final double CONCURRENT_SUBREQUESTS_MARGIN = 0.10;
 
+    // number of range requests in flight for all the range queries coordinated by this node, kept under
+    // max_concurrent_range_requests by acquireRangeRequests
+    private static final AtomicInteger rangeRequestsInFlight = new AtomicInteger();
+
     private StorageProxy()
     {
     }
@@ -594,6 +599,12 @@ public class StorageProxy implements StorageProxyMBean
         long startTime = System.nanoTime();
         List<AbstractWriteResponseHandler<IMutation>> responseHandlers = new ArrayList<>(mutations.size());
 
+        // For batches, the mutations going to the same replica are sent to it as a single message
+        Map<InetAddress, MutationGroupCallback> groups = mutations.size() <= 1 ? null : new HashMap<>();
+        WritePerformer performer = groups == null
+                                 ? standardWritePerformer
+                                 : (mutation, targets, responseHandler, localDC, cl) -> sendToHintedEndpoints((Mutation) mutation, targets, responseHandler, localDC, Stage.MUTATION, groups);
+
         try
         {
             for (IMutation mutation : mutations)
@@ -605,10 +616,16 @@ public class StorageProxy implements StorageProxyMBean
                 else
                 {
                     WriteType wt = mutations.size() <= 1 ? WriteType.SIMPLE : WriteType.UNLOGGED_BATCH;
-                    responseHandlers.add(performWrite(mutation, consistency_level, localDataCenter, standardWritePerformer, null, wt));
+                    responseHandlers.add(performWrite(mutation, consistency_level, localDataCenter, performer, null, wt));
                 }
             }
 
+            if (groups != null)
+            {
+                for (MutationGroupCallback group : groups.values())
+                    group.send();
+            }
+
             // wait for writes.  throws TimeoutException if necessary
             for (AbstractWriteResponseHandler<IMutation> responseHandler : responseHandlers)
             {
@@ -1185,6 +1202,23 @@ public class StorageProxy implements StorageProxyMBean
                                              String localDataCenter,
                                              Stage stage)
     throws OverloadedException
+    {
+        sendToHintedEndpoints(mutation, targets, responseHandler, localDataCenter, stage, null);
+    }
+
+    /**
+     * Same as above, but if {@code groups} is not null, remote replicas of the local datacenter that understand
+     * {@link MutationGroup}s are not sent the mutation right away: it is added to the group for that replica instead,
+     * to be sent by the caller. Replicas in other datacenters are still sent the mutation through a single replica
+     * per datacenter.
+     */
+    private static void sendToHintedEndpoints(final Mutation mutation,
+                                              Iterable<InetAddress> targets,
+                                              AbstractWriteResponseHandler<IMutation> responseHandler,
+                                              String localDataCenter,
+                                              Stage stage,
+                                              Map<InetAddress, MutationGroupCallback> groups)
+    throws OverloadedException
     {
         // extra-datacenter replicas, grouped by dc
         Map<String, Collection<InetAddress>> dcGroups = null;
@@ -1207,14 +1241,25 @@ public class StorageProxy implements StorageProxyMBean
                 else
                 {
                     // belongs on a different server
-                    if (message == null)
-                        message = mutation.createMessage();
                     String dc = DatabaseDescriptor.getEndpointSnitch().getDatacenter(destination);
                     // direct writes to local DC or old Cassandra versions
                     // (1.1 knows how to forward old-style String message IDs; updated to int in 2.0)
                     if (localDataCenter.equals(dc))
                     {
-                        MessagingService.instance().sendRR(message, destination, responseHandler, true);
+                        // remote DCs keep being sent a single message relayed to their other replicas, rather than
+                        // a group per replica crossing the inter-DC link
+                        if (groups != null
+                            && MessagingService.instance().knowsVersion(destination)
+                            && MessagingService.instance().getVersion(destination) >= MessagingService.VERSION_310)
+                        {
+                            groups.computeIfAbsent(destination, MutationGroupCallback::new).add(mutation, responseHandler);
+                        }
+                        else
+                        {
+                            if (message == null)
+                                message = mutation.createMessage();
+                            MessagingService.instance().sendRR(message, destination, responseHandler, true);
+                        }
                     }
                     else
                     {
@@ -2022,10 +2067,13 @@ public class StorageProxy implements StorageProxyMBean
         private PartitionIterator sentQueryIterator;
 
         private int concurrencyFactor;
-        // The two following "metric" are maintained to improve the concurrencyFactor
+        // The following "metric" are maintained to improve the concurrencyFactor
         // when it was not good enough initially.
         private int liveReturned;
         private int rangesQueried;
+        private long roundStartTime;
+        // number of range requests of the current round, counted in rangeRequestsInFlight
+        private int roundRequests;
 
         public RangeCommandIterator(RangeIterator ranges, PartitionRangeReadCommand command, int concurrencyFactor, Keyspace keyspace, ConsistencyLevel consistency)
         {
@@ -2050,7 +2098,7 @@ public class StorageProxy implements StorageProxyMBean
                 if (sentQueryIterator != null)
                 {
                     liveReturned += counter.counted();
-                    sentQueryIterator.close();
+                    closeRound();
 
                     // It's not the first batch of queries and we're not done, so we we can use what has been
                     // returned so far to improve our rows-per-range estimate and update the concurrency accordingly
@@ -2064,20 +2112,32 @@ public class StorageProxy implements StorageProxyMBean
 
         private void updateConcurrencyFactor()
         {
-            if (liveReturned == 0)
+            long roundTime = System.nanoTime() - roundStartTime;
+            int remainingRows = command.limits().count() - liveReturned;
+            concurrencyFactor = nextConcurrencyFactor(concurrencyFactor,
+                                                      liveReturned,
+                                                      rangesQueried,
+                                                      remainingRows,
+                                                      totalRangeCount - rangesQueried,
+                                                      roundTime,
+                                                      TimeUnit.MILLISECONDS.toNanos(DatabaseDescriptor.getRangeRpcTimeout()));
+            logger.trace("Didn't get enough response rows; rows so far: {} over {} ranges; remaining rows: {}, new concurrent requests: {}",
+                         liveReturned, rangesQueried, remainingRows, concurrencyFactor);
+            Tracing.trace("Adjusted range request concurrency to {} ({} rows returned by {} ranges so far, last round took {} ms)",
+                          concurrencyFactor, liveReturned, rangesQueried, TimeUnit.NANOSECONDS.toMillis(roundTime));
+        }
+
+        private void closeRound()
+        {
+            try
             {
-                // we haven't actually gotten any results, so query all remaining ranges at once
-                concurrencyFactor = totalRangeCount - rangesQueried;
-                return;
+                sentQueryIterator.close();
+            }
+            finally
+            {
+                releaseRangeRequests(roundRequests);
+                roundRequests = 0;
             }
-
-            // Otherwise, compute how many rows per range we got on average and pick a concurrency factor
-            // that should allow us to fetch all remaining rows with the next batch of (concurrent) queries.
-            int remainingRows = command.limits().count() - liveReturned;
-            float rowsPerRange = (float)liveReturned / (float)rangesQueried;
-            concurrencyFactor = Math.max(1, Math.min(totalRangeCount - rangesQueried, Math.round(remainingRows / rowsPerRange)));
-            logger.trace("Didn't get enough response rows; actual rows per range: {}; remaining rows: {}, new concurrent requests: {}",
-                         rowsPerRange, (int) remainingRows, concurrencyFactor);
         }
 
         private SingleRangeResponse query(RangeForQuery toQuery)
@@ -2112,12 +2172,30 @@ public class StorageProxy implements StorageProxyMBean
 
         private PartitionIterator sendNextRequests()
         {
-            List<PartitionIterator> concurrentQueries = new ArrayList<>(concurrencyFactor);
-            for (int i = 0; i < concurrencyFactor && ranges.hasNext(); i++)
+            roundRequests = acquireRangeRequests(concurrencyFactor);
+            if (roundRequests < concurrencyFactor)
+                Tracing.trace("Range request concurrency limited to {} instead of {} by the {} range requests allowed in flight on this node",
+                              roundRequests, concurrencyFactor, DatabaseDescriptor.getMaxConcurrentRangeRequests());
+
+            roundStartTime = System.nanoTime();
+            List<PartitionIterator> concurrentQueries = new ArrayList<>(roundRequests);
+            try
+            {
+                for (int i = 0; i < roundRequests && ranges.hasNext(); i++)
+                {
+                    concurrentQueries.add(query(ranges.next()));
+                    ++rangesQueried;
+                }
+            }
+            catch (RuntimeException e)
             {
-                concurrentQueries.add(query(ranges.next()));
-                ++rangesQueried;
+                releaseRangeRequests(roundRequests);
+                roundRequests = 0;
+                throw e;
             }
+            // give back what this round didn't use, as there may be fewer ranges left than reserved
+            releaseRangeRequests(roundRequests - concurrentQueries.size());
+            roundRequests = concurrentQueries.size();
 
             Tracing.trace("Submitted {} concurrent range requests", concurrentQueries.size());
             // We want to count the results for the sake of updating the concurrency factor (see updateConcurrencyFactor) but we don't want to
@@ -2131,7 +2209,7 @@ public class StorageProxy implements StorageProxyMBean
             try
             {
                 if (sentQueryIterator != null)
-                    sentQueryIterator.close();
+                    closeRound();
             }
             finally
             {
@@ -2156,9 +2234,10 @@ public class StorageProxy implements StorageProxyMBean
         // underestimate how many rows we will get per-range in order to increase the likelihood that we'll
         // fetch enough rows in the first round
         resultsPerRange -= resultsPerRange * CONCURRENT_SUBREQUESTS_MARGIN;
+        int maxConcurrency = Math.min(ranges.rangeCount(), DatabaseDescriptor.getMaxConcurrentRangeRequestsPerQuery());
         int concurrencyFactor = resultsPerRange == 0.0
                               ? 1
-                              : Math.max(1, Math.min(ranges.rangeCount(), (int) Math.ceil(command.limits().count() / resultsPerRange)));
+                              : Math.max(1, Math.min(maxConcurrency, (int) Math.ceil(command.limits().count() / resultsPerRange)));
         logger.trace("Estimated result rows per range: {}; requested rows: {}, ranges.size(): {}; concurrent range requests: {}",
                      resultsPerRange, command.limits().count(), ranges.rangeCount(), concurrencyFactor);
         Tracing.trace("Submitting range requests on {} ranges with a concurrency of {} ({} rows per range expected)", ranges.rangeCount(), concurrencyFactor, resultsPerRange);
@@ -2168,6 +2247,214 @@ public class StorageProxy implements StorageProxyMBean
         return command.limits().filter(command.postReconciliationProcessing(new RangeCommandIterator(ranges, command, concurrencyFactor, keyspace, consistencyLevel)), command.nowInSec());
     }
 
+    /**
+     * Computes how many ranges the next round of a range query should query concurrently, from the density of the
+     * results returned so far and from how long the last round took.
+     *
+     * @param concurrencyFactor the concurrency of the last round.
+     * @param liveReturned the number of live rows returned so far.
+     * @param rangesQueried the number of ranges queried so far.
+     * @param remainingRows the number of rows still needed to reach the query limit.
+     * @param remainingRanges the number of ranges left to query.
+     * @param roundNanos how long the last round took.
+     * @param timeoutNanos the range request timeout.
+     */
+    @VisibleForTesting
+    static int nextConcurrencyFactor(int concurrencyFactor,
+                                     int liveReturned,
+                                     int rangesQueried,
+                                     int remainingRows,
+                                     int remainingRanges,
+                                     long roundNanos,
+                                     long timeoutNanos)
+    {
+        int maxConcurrency = Math.min(remainingRanges, DatabaseDescriptor.getMaxConcurrentRangeRequestsPerQuery());
+
+        int wanted;
+        if (liveReturned == 0)
+        {
+            // we haven't actually gotten any results, so query as many of the remaining ranges as allowed
+            wanted = maxConcurrency;
+        }
+        else
+        {
+            // otherwise, pick a concurrency that should fetch all the remaining rows with the next round, with some
+            // margin so that a slightly sparser remainder doesn't cost a whole additional round
+            double rowsPerRange = (double) liveReturned / rangesQueried;
+            wanted = (int) Math.min(Integer.MAX_VALUE, Math.ceil((remainingRows / rowsPerRange) * (1 + CONCURRENT_SUBREQUESTS_MARGIN)));
+        }
+
+        // a round taking a large share of the timeout means the replicas struggle to serve that many ranges at once,
+        // so back off rather than risk timing out the next round
+        if (roundNanos > timeoutNanos / 2)
+            wanted = Math.min(wanted, concurrencyFactor / 2);
+
+        return Math.max(1, Math.min(maxConcurrency, wanted));
+    }
+
+    /**
+     * Reserves up to {@code wanted} range requests in the budget of this node, returning how many were reserved.
+     * At least one request is always reserved, so that every query makes progress whatever the load.
+     */
+    @VisibleForTesting
+    static int acquireRangeRequests(int wanted)
+    {
+        int max = DatabaseDescriptor.getMaxConcurrentRangeRequests();
+        while (true)
+        {
+            int inFlight = rangeRequestsInFlight.get();
+            int granted = Math.max(1, Math.min(wanted, max - inFlight));
+            if (rangeRequestsInFlight.compareAndSet(inFlight, inFlight + granted))
+                return granted;
+        }
+    }
+
+    @VisibleForTesting
+    static void releaseRangeRequests(int count)
+    {
+        if (count > 0)
+            rangeRequestsInFlight.addAndGet(-count);
+    }
+
+    /**
+     * Computes the partial aggregates of {@code command} for each of the token ranges it queries, each range being
+     * aggregated by a single replica. As a single replica is queried per range, this is only suitable for the
+     * consistency levels that don't require to reconcile the data of several replicas.
+     * <p>
+     * The ranges that a replica fails to aggregate in time are then read by this node through the regular paged
+     * read path, pages of {@code pageSize} rows being aggregated as they come.
+     *
+     * @return the partial aggregates of each range (to be merged with {@link AggregateCommand#merge}), or
+     * {@code null} if one of the replicas to query doesn't know how to compute them.
+     */
+    public static List<List<ByteBuffer>> aggregateRanges(AggregateCommand command,
+                                                         ConsistencyLevel consistencyLevel,
+                                                         ClientState clientState,
+                                                         int pageSize)
+    throws UnavailableException, ReadFailureException, ReadTimeoutException
+    {
+        long start = System.nanoTime();
+        Tracing.trace("Computing ranges to aggregate");
+
+        Keyspace keyspace = Keyspace.open(command.metadata().ksName);
+        assert consistencyLevel.blockFor(keyspace) == 1 : consistencyLevel;
+
+        List<RangeForQuery> ranges = Lists.newArrayList(new RangeMerger(new RangeIterator(command.command, keyspace, consistencyLevel), keyspace, consistencyLevel));
+        for (RangeForQuery range : ranges)
+        {
+            consistencyLevel.assureSufficientLiveNodes(keyspace, range.liveEndpoints);
+            InetAddress endpoint = range.filteredEndpoints.get(0);
+            if (!canDoLocalRequest(endpoint) && MessagingService.instance().getVersion(endpoint) < MessagingService.VERSION_310)
+            {
+                Tracing.trace("Not aggregating on replicas as {} doesn't support it", endpoint);
+                return null;
+            }
+        }
+
+        List<List<ByteBuffer>> partials = new ArrayList<>(ranges.size());
+        List<AggregateCommand> failed = new ArrayList<>();
+        try
+        {
+            int concurrencyFactor = acquireRangeRequests(Math.min(ranges.size(), DatabaseDescriptor.getAggregatePushdownConcurrency()));
+            Tracing.trace("Aggregating {} ranges on replicas with a concurrency of {}", ranges.size(), concurrencyFactor);
+
+            Deque<AggregateCallback> inflight = new ArrayDeque<>(concurrencyFactor);
+            try
+            {
+                for (RangeForQuery range : ranges)
+                {
+                    if (inflight.size() == concurrencyFactor)
+                        await(inflight.poll(), partials, failed);
+                    inflight.add(aggregate(command.forSubRange(range.range), range.filteredEndpoints.get(0)));
+                }
+
+                while (!inflight.isEmpty())
+                    await(inflight.poll(), partials, failed);
+            }
+            finally
+            {
+                releaseRangeRequests(concurrencyFactor);
+            }
+
+            if (!failed.isEmpty())
+                Tracing.trace("Reading {} ranges that couldn't be aggregated on replicas", failed.size());
+            for (AggregateCommand subCommand : failed)
+                partials.add(subCommand.executePaged(consistencyLevel, clientState, pageSize));
+
+            return partials;
+        }
+        finally
+        {
+            long latency = System.nanoTime() - start;
+            rangeMetrics.addNano(latency);
+            Keyspace.openAndGetStore(command.metadata()).metric.coordinatorScanLatency.update(latency, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void await(AggregateCallback callback, List<List<ByteBuffer>> partials, List<AggregateCommand> failed)
+    {
+        List<ByteBuffer> partial = callback.await();
+        if (partial == null)
+            failed.add(callback.command);
+        else
+            partials.add(partial);
+    }
+
+    private static AggregateCallback aggregate(AggregateCommand command, InetAddress endpoint)
+    {
+        AggregateCallback callback = new AggregateCallback(command);
+        if (canDoLocalRequest(endpoint))
+        {
+            StageManager.getStage(Stage.READ).execute(new LocalAggregateRunnable(command, callback));
+        }
+        else
+        {
+            Tracing.trace("Enqueuing aggregate request to {}", endpoint);
+            MessagingService.instance().sendRRWithFailure(command.createMessage(), endpoint, callback);
+        }
+        return callback;
+    }
+
+    private static class LocalAggregateRunnable extends DroppableRunnable
+    {
+        private final AggregateCommand command;
+        private final AggregateCallback callback;
+
+        LocalAggregateRunnable(AggregateCommand command, AggregateCallback callback)
+        {
+            super(MessagingService.Verb.AGGREGATE);
+            this.command = command;
+            this.callback = callback;
+        }
+
+        protected void runMayThrow()
+        {
+            try
+            {
+                command.command.setMonitoringTime(new ConstructionTime(constructionTime), timeout);
+
+                List<ByteBuffer> partial = command.executeLocally();
+                if (command.command.complete())
+                {
+                    callback.response(partial);
+                }
+                else
+                {
+                    MessagingService.instance().incrementDroppedMessages(verb, System.currentTimeMillis() - constructionTime);
+                    callback.onFailure(FBUtilities.getBroadcastAddress());
+                }
+            }
+            catch (Throwable t)
+            {
+                callback.onFailure(FBUtilities.getBroadcastAddress());
+                if (t instanceof TombstoneOverwhelmingException)
+                    logger.error(t.getMessage());
+                else
+                    throw t;
+            }
+        }
+    }
+
     public Map<String, List<String>> getSchemaVersions()
     {
         return describeSchemaVersions();
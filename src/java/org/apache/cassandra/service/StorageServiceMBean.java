@@ -456,6 +456,13 @@ public interface StorageServiceMBean extends NotificationEmitter
 
     public Map<String, String> getViewBuildStatuses(String keyspace, String view);
 
+    /**
+     * @return the progress of the local build of a view on each of its token ranges: the range, the number of
+     * keys built, the throughput in keys per second and the status of the range. This is empty if the view isn't
+     * being built locally.
+     */
+    public List<Map<String, String>> getViewBuildProgress(String keyspace, String view);
+
     /**
      * Change endpointsnitch class and dynamic-ness (and dynamic attributes) at runtime
      * @param epSnitchClassName        the canonical path name for a class implementing IEndpointSnitch
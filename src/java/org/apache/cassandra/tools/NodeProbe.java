@@ -60,6 +60,8 @@ import org.apache.cassandra.db.ColumnFamilyStoreMBean;
 import org.apache.cassandra.db.HintedHandOffManagerMBean;
 import org.apache.cassandra.db.compaction.CompactionManager;
 import org.apache.cassandra.db.compaction.CompactionManagerMBean;
+import org.apache.cassandra.db.monitoring.SlowQueryLog;
+import org.apache.cassandra.db.monitoring.SlowQueryLogMBean;
 import org.apache.cassandra.gms.FailureDetector;
 import org.apache.cassandra.gms.FailureDetectorMBean;
 import org.apache.cassandra.gms.Gossiper;
@@ -121,6 +123,7 @@ public class NodeProbe implements AutoCloseable
     private StorageProxyMBean spProxy;
     private HintedHandOffManagerMBean hhProxy;
     private BatchlogManagerMBean bmProxy;
+    private SlowQueryLogMBean sqlProxy;
     private boolean failed;
 
     /**
@@ -213,6 +216,8 @@ public class NodeProbe implements AutoCloseable
             gossProxy = JMX.newMBeanProxy(mbeanServerConn, name, GossiperMBean.class);
             name = new ObjectName(BatchlogManager.MBEAN_NAME);
             bmProxy = JMX.newMBeanProxy(mbeanServerConn, name, BatchlogManagerMBean.class);
+            name = new ObjectName(SlowQueryLog.MBEAN_NAME);
+            sqlProxy = JMX.newMBeanProxy(mbeanServerConn, name, SlowQueryLogMBean.class);
         }
         catch (MalformedObjectNameException e)
         {
@@ -868,6 +873,11 @@ public class NodeProbe implements AutoCloseable
         return ssProxy.getViewBuildStatuses(keyspace, view);
     }
 
+    public List<Map<String, String>> getViewBuildProgress(String keyspace, String view)
+    {
+        return ssProxy.getViewBuildProgress(keyspace, view);
+    }
+
     public void pauseHintsDelivery()
     {
         hhProxy.pauseHintsDelivery(true);
@@ -1382,6 +1392,26 @@ public class NodeProbe implements AutoCloseable
         return compactionProxy.getCompactionHistory();
     }
 
+    public List<Map<String, String>> getSlowQueries()
+    {
+        return sqlProxy.getSlowQueries();
+    }
+
+    public void clearSlowQueries()
+    {
+        sqlProxy.clear();
+    }
+
+    public void setSlowQueryThreshold(long thresholdInMs)
+    {
+        sqlProxy.setThresholdInMs(thresholdInMs);
+    }
+
+    public void setSlowQuerySampleRate(double sampleRate)
+    {
+        sqlProxy.setSampleRate(sampleRate);
+    }
+
     public void reloadTriggers()
     {
         spProxy.reloadTriggerClasses();
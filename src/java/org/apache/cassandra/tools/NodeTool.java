@@ -140,7 +140,8 @@ public class NodeTool
                 FailureDetectorInfo.class,
                 RefreshSizeEstimates.class,
                 RelocateSSTables.class,
-                ViewBuildStatus.class
+                ViewBuildStatus.class,
+                SlowQueries.class
         );
 
         Cli.CliBuilder<Runnable> builder = Cli.builder("nodetool");
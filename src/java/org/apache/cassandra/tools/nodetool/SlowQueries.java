@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.tools.nodetool;
+
+import java.util.List;
+import java.util.Map;
+
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import org.apache.cassandra.tools.NodeProbe;
+import org.apache.cassandra.tools.NodeTool.NodeToolCmd;
+import org.apache.cassandra.tools.nodetool.formatter.TableBuilder;
+
+@Command(name = "slowqueries", description = "Print the most recent slow queries of the node, kept in memory")
+public class SlowQueries extends NodeToolCmd
+{
+    @Option(title = "threshold", name = {"-t", "--threshold"}, description = "Set the latency in ms from which queries are recorded, 0 to disable")
+    private Long threshold = null;
+
+    @Option(title = "sample_rate", name = {"-s", "--sample-rate"}, description = "Set the fraction, between 0 and 1, of slow queries that are recorded")
+    private Double sampleRate = null;
+
+    @Option(title = "clear", name = {"-c", "--clear"}, description = "Clear the slow queries after printing them")
+    private boolean clear = false;
+
+    @Override
+    public void execute(NodeProbe probe)
+    {
+        if (threshold != null)
+            probe.setSlowQueryThreshold(threshold);
+        if (sampleRate != null)
+            probe.setSlowQuerySampleRate(sampleRate);
+
+        List<Map<String, String>> queries = probe.getSlowQueries();
+        if (queries.isEmpty())
+        {
+            System.out.println("There are no slow queries");
+        }
+        else
+        {
+            TableBuilder table = new TableBuilder();
+            table.add(queries.get(0).keySet().toArray(new String[0]));
+            for (Map<String, String> query : queries)
+                table.add(query.values().toArray(new String[0]));
+            table.printTo(System.out);
+        }
+
+        if (clear)
+            probe.clearSlowQueries();
+    }
+}
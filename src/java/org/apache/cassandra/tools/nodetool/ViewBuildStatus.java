@@ -75,10 +75,40 @@ public class ViewBuildStatus extends NodeTool.NodeToolCmd
             System.out.println(String.format("%s.%s has not finished building; node status is below.", keyspace, view));
             System.out.println();
             builder.printTo(System.out);
+            printLocalProgress(probe.getViewBuildProgress(keyspace, view));
             System.exit(1);
         } else {
             System.out.println(String.format("%s.%s has finished building", keyspace, view));
             System.exit(0);
         }
     }
+
+    private static void printLocalProgress(List<Map<String, String>> progress)
+    {
+        if (progress.isEmpty())
+            return;
+
+        long keysBuilt = 0;
+        double keysPerSecond = 0;
+        int rangesDone = 0;
+        TableBuilder builder = new TableBuilder();
+        builder.add("Range", "Keys built", "Keys/s", "Status");
+        for (Map<String, String> range : progress)
+        {
+            keysBuilt += Long.parseLong(range.get("keys_built"));
+            double rangeKeysPerSecond = Double.parseDouble(range.get("keys_per_second"));
+            // the throughput of the ranges that are no longer building is that of their past build
+            if (range.get("status").equals("BUILDING"))
+                keysPerSecond += rangeKeysPerSecond;
+            if (range.get("status").equals("DONE"))
+                rangesDone++;
+            builder.add(range.get("range"), range.get("keys_built"), String.format("%.1f", rangeKeysPerSecond), range.get("status"));
+        }
+
+        System.out.println();
+        System.out.println(String.format("Local build: %d/%d token ranges done, %d keys built, %.1f keys/s",
+                                         rangesDone, progress.size(), keysBuilt, keysPerSecond));
+        System.out.println();
+        builder.printTo(System.out);
+    }
 }
@@ -107,6 +107,27 @@ public final class TraceKeyspace
                .build();
     }
 
+    /**
+     * Builds a single mutation adding all the given events to the partition of their session.
+     */
+    static Mutation makeEventsMutation(ByteBuffer sessionId, List<TraceStateImpl.Event> events, int ttl)
+    {
+        Mutation mutation = new Mutation(NAME, Events.decorateKey(sessionId));
+        InetAddress source = FBUtilities.getBroadcastAddress();
+        for (TraceStateImpl.Event event : events)
+        {
+            RowUpdateBuilder adder = new RowUpdateBuilder(Events, event.timestamp, ttl, mutation)
+                                     .clustering(event.id);
+            adder.add("activity", event.message);
+            adder.add("source", source);
+            adder.add("thread", event.threadName);
+            if (event.elapsed >= 0)
+                adder.add("source_elapsed", event.elapsed);
+            adder.build();
+        }
+        return mutation;
+    }
+
     static Mutation makeEventMutation(ByteBuffer sessionId, String message, int elapsed, String threadName, int ttl)
     {
         RowUpdateBuilder adder = new RowUpdateBuilder(Events, FBUtilities.timestampMicros(), ttl, sessionId)
@@ -18,7 +18,9 @@
 package org.apache.cassandra.tracing;
 
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -26,7 +28,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,24 +42,56 @@ import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.exceptions.OverloadedException;
 import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.JVMStabilityInspector;
+import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.utils.WrappedRunnable;
 
 /**
  * ThreadLocal state for a tracing session. The presence of an instance of this class as a ThreadLocal denotes that an
  * operation is being traced.
+ *
+ * The events of the query sessions coordinated by this node are buffered, and written in a single mutation when the
+ * buffer fills up or the session completes. Events of repair sessions are written right away, since they are followed
+ * live by nodetool, and so are the events of replica-side and expired sessions, which are not guaranteed to ever be
+ * stopped.
  */
 public class TraceStateImpl extends TraceState
 {
     private static final Logger logger = LoggerFactory.getLogger(TraceStateImpl.class);
     private static final int WAIT_FOR_PENDING_EVENTS_TIMEOUT_SECS =
       Integer.valueOf(System.getProperty("cassandra.wait_for_tracing_events_timeout_secs", "1"));
+    private static final int EVENTS_BUFFER_SIZE = Integer.getInteger("cassandra.tracing_events_buffer_size", 64);
+    // events buffered across all the sessions of the node, beyond which new events are dropped
+    private static final int MAX_BUFFERED_EVENTS = Integer.getInteger("cassandra.max_buffered_tracing_events", 100000);
+
+    private static final AtomicInteger bufferedEvents = new AtomicInteger();
+    private static final AtomicLong droppedEvents = new AtomicLong();
 
     private final Set<Future<?>> pendingFutures = ConcurrentHashMap.newKeySet();
 
+    private final boolean bufferEvents;
+    // not the state itself, which stays locked while waiting for pending events on stop()
+    private final Object eventsLock = new Object();
+    private Event[] events;
+    private int eventsCount;
+    // set once the session is stopped, after which events are written right away
+    private boolean eventsClosed;
+
     public TraceStateImpl(InetAddress coordinator, UUID sessionId, Tracing.TraceType traceType)
+    {
+        this(coordinator, sessionId, traceType, true);
+    }
+
+    /**
+     * @param bufferEvents whether the events of a query session may be buffered, which requires the session to be
+     * stopped through {@link TracingImpl#stopSessionImpl()}
+     */
+    TraceStateImpl(InetAddress coordinator, UUID sessionId, Tracing.TraceType traceType, boolean bufferEvents)
     {
         super(coordinator, sessionId, traceType);
+        this.bufferEvents = bufferEvents && traceType == Tracing.TraceType.QUERY && EVENTS_BUFFER_SIZE > 1;
     }
 
     protected void traceImpl(String message)
@@ -61,16 +99,98 @@ public class TraceStateImpl extends TraceState
         final String threadName = Thread.currentThread().getName();
         final int elapsed = elapsed();
 
-        executeMutation(TraceKeyspace.makeEventMutation(sessionIdBytes, message, elapsed, threadName, ttl));
+        if (!bufferEvents || !bufferEvent(new Event(UUIDGen.getTimeUUID(), FBUtilities.timestampMicros(), message, elapsed, threadName)))
+            executeMutation(TraceKeyspace.makeEventMutation(sessionIdBytes, message, elapsed, threadName, ttl));
         if (logger.isTraceEnabled())
             logger.trace("Adding <{}> to trace events", message);
     }
 
+    /**
+     * @return false if the session is stopped and the event should be written right away
+     */
+    private boolean bufferEvent(Event event)
+    {
+        if (bufferedEvents.incrementAndGet() > MAX_BUFFERED_EVENTS)
+        {
+            bufferedEvents.decrementAndGet();
+            long dropped = droppedEvents.incrementAndGet();
+            NoSpamLogger.log(logger, NoSpamLogger.Level.WARN, 1, TimeUnit.MINUTES,
+                             "Too many tracing events waiting to be written, dropped {} events so far", dropped);
+            return true;
+        }
+
+        List<Event> full = null;
+        synchronized (eventsLock)
+        {
+            if (eventsClosed)
+            {
+                bufferedEvents.decrementAndGet();
+                return false;
+            }
+            if (events == null)
+                events = new Event[EVENTS_BUFFER_SIZE];
+            events[eventsCount++] = event;
+            if (eventsCount == events.length)
+                full = takeEvents();
+        }
+        if (full != null)
+            executeEvents(full, null);
+        return true;
+    }
+
+    private List<Event> takeEvents()
+    {
+        synchronized (eventsLock)
+        {
+            if (eventsCount == 0)
+                return Collections.emptyList();
+
+            List<Event> taken = Arrays.asList(events).subList(0, eventsCount);
+            bufferedEvents.addAndGet(-eventsCount);
+            events = null;
+            eventsCount = 0;
+            return taken;
+        }
+    }
+
+    /**
+     * Writes the buffered events, along with the given mutation of the session if not null.
+     */
+    void flushEvents(Mutation sessionMutation)
+    {
+        List<Event> taken = takeEvents();
+        if (!taken.isEmpty())
+            executeEvents(taken, sessionMutation);
+        else if (sessionMutation != null)
+            executeMutation(sessionMutation);
+    }
+
+    /**
+     * Writes the buffered events along with the stop mutation of the session. Events traced afterwards, e.g. by late
+     * responses still holding a reference to the session, are written right away.
+     */
+    void closeEvents(Mutation stopMutation)
+    {
+        synchronized (eventsLock)
+        {
+            eventsClosed = true;
+        }
+        flushEvents(stopMutation);
+    }
+
+    @VisibleForTesting
+    static int bufferedEvents()
+    {
+        return bufferedEvents.get();
+    }
+
     /**
      * Wait on submitted futures
      */
     protected void waitForPendingEvents()
     {
+        flushEvents(null);
+
         if (WAIT_FOR_PENDING_EVENTS_TIMEOUT_SECS <= 0)
             return;
 
@@ -96,20 +216,34 @@ public class TraceStateImpl extends TraceState
         }
     }
 
-
     void executeMutation(final Mutation mutation)
+    {
+        execute(() -> mutation);
+    }
+
+    private void executeEvents(final List<Event> events, final Mutation sessionMutation)
+    {
+        // the mutation is built on the tracing stage to keep the traced request path cheap
+        execute(() -> {
+            Mutation eventsMutation = TraceKeyspace.makeEventsMutation(sessionIdBytes, events, ttl);
+            return sessionMutation == null ? eventsMutation : Mutation.merge(Arrays.asList(eventsMutation, sessionMutation));
+        });
+    }
+
+    private void execute(final Supplier<Mutation> mutation)
     {
         CompletableFuture<Void> fut = CompletableFuture.runAsync(new WrappedRunnable()
         {
             protected void runMayThrow()
             {
-                mutateWithCatch(mutation);
+                mutateWithCatch(mutation.get());
             }
         }, StageManager.getStage(Stage.TRACING));
 
         boolean ret = pendingFutures.add(fut);
         if (!ret)
             logger.warn("Failed to insert pending future, tracing synchronization may not work");
+        fut.whenComplete((result, error) -> pendingFutures.remove(fut));
     }
 
     static void mutateWithCatch(Mutation mutation)
@@ -124,4 +258,24 @@ public class TraceStateImpl extends TraceState
         }
     }
 
+    /**
+     * A trace event waiting to be written.
+     */
+    static final class Event
+    {
+        final UUID id;
+        final long timestamp;
+        final String message;
+        final int elapsed;
+        final String threadName;
+
+        Event(UUID id, long timestamp, String message, int elapsed, String threadName)
+        {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.message = message;
+            this.elapsed = elapsed;
+            this.threadName = threadName;
+        }
+    }
 }
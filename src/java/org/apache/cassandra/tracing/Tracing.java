@@ -242,11 +242,11 @@ public abstract class Tracing implements ExecutorLocal<TraceState>
         if (message.verb == MessagingService.Verb.REQUEST_RESPONSE)
         {
             // received a message for a session we've already closed out.  see CASSANDRA-5668
-            return new ExpiredTraceState(newTraceState(message.from, sessionId, traceType));
+            return new ExpiredTraceState(newNonLocalTraceState(message.from, sessionId, traceType));
         }
         else
         {
-            ts = newTraceState(message.from, sessionId, traceType);
+            ts = newNonLocalTraceState(message.from, sessionId, traceType);
             sessions.put(sessionId, ts);
             return ts;
         }
@@ -263,6 +263,14 @@ public abstract class Tracing implements ExecutorLocal<TraceState>
 
     protected abstract TraceState newTraceState(InetAddress coordinator, UUID sessionId, Tracing.TraceType traceType);
 
+    /**
+     * Creates the state of a session coordinated by another node, or of a session already closed out locally.
+     */
+    protected TraceState newNonLocalTraceState(InetAddress coordinator, UUID sessionId, Tracing.TraceType traceType)
+    {
+        return newTraceState(coordinator, sessionId, traceType);
+    }
+
     // repair just gets a varargs method since it's so heavyweight anyway
     public static void traceRepair(String format, Object... args)
     {
@@ -44,7 +44,7 @@ class TracingImpl extends Tracing
         ByteBuffer sessionId = state.sessionIdBytes;
         int ttl = state.ttl;
 
-        state.executeMutation(TraceKeyspace.makeStopSessionMutation(sessionId, elapsed, ttl));
+        state.closeEvents(TraceKeyspace.makeStopSessionMutation(sessionId, elapsed, ttl));
     }
 
     public TraceState begin(final String request, final InetAddress client, final Map<String, String> parameters)
@@ -97,6 +97,13 @@ class TracingImpl extends Tracing
         return new TraceStateImpl(coordinator, sessionId, traceType);
     }
 
+    @Override
+    protected TraceState newNonLocalTraceState(InetAddress coordinator, UUID sessionId, TraceType traceType)
+    {
+        // nothing guarantees these states are ever stopped, so their events must not be buffered
+        return new TraceStateImpl(coordinator, sessionId, traceType, false);
+    }
+
     /**
      * Called from {@link org.apache.cassandra.net.OutboundTcpConnection} for non-local traces (traces
      * that are not initiated by local node == coordinator).
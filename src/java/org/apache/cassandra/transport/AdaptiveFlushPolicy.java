@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Decides when the responses written by a {@link Message.Dispatcher} flusher should be flushed.
+ * <p>
+ * Flushing per response costs a syscall each, while holding responses back to batch them adds latency. Which is
+ * preferable depends on the load, so rather than a fixed batch size we track how many responses each run of the
+ * flusher finds queued (the queue depth): with a client sending one request at a time, the depth stays below one and
+ * responses are flushed as soon as they are written; with pipelining clients, responses are batched in proportion to
+ * the depth. In any case no response is held back once nothing more is queued, or for longer than
+ * {@link #MAX_FLUSH_DELAY_NANOS}.
+ * <p>
+ * Not thread-safe: each flusher, which only runs on its event loop, has its own policy.
+ */
+final class AdaptiveFlushPolicy
+{
+    static final long MAX_FLUSH_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("cassandra.native_transport_max_flush_delay_us", 50));
+    static final int MAX_BATCH_SIZE = Integer.getInteger("cassandra.native_transport_max_flush_batch_size", 512);
+
+    // weight of the latest run in the queue depth average
+    private static final double ALPHA = 0.125;
+
+    private double queueDepth;
+
+    /**
+     * Records that a run of the flusher found {@code queued} responses to write.
+     */
+    void onRun(int queued)
+    {
+        queueDepth += (queued - queueDepth) * ALPHA;
+    }
+
+    /**
+     * @param pending the responses written but not yet flushed
+     * @param queued the responses found by the last run, which are included in {@code pending}
+     * @param oldestWaitNanos how long the oldest pending response has been waiting to be flushed
+     */
+    boolean shouldFlush(int pending, int queued, long oldestWaitNanos)
+    {
+        if (pending == 0)
+            return false;
+
+        // nothing new came in since the last run, so waiting longer is unlikely to grow the batch
+        if (queued == 0)
+            return true;
+
+        return oldestWaitNanos >= MAX_FLUSH_DELAY_NANOS || pending >= batchSize();
+    }
+
+    @VisibleForTesting
+    int batchSize()
+    {
+        return (int) Math.max(1, Math.min(MAX_BATCH_SIZE, Math.round(2 * queueDepth)));
+    }
+}
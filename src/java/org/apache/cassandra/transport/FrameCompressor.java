@@ -18,12 +18,14 @@
 package org.apache.cassandra.transport;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import io.netty.buffer.ByteBuf;
 import org.xerial.snappy.Snappy;
 import org.xerial.snappy.SnappyError;
 
 import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
 
 import org.apache.cassandra.utils.JVMStabilityInspector;
 
@@ -32,10 +34,28 @@ public interface FrameCompressor
     public Frame compress(Frame frame) throws IOException;
     public Frame decompress(Frame frame) throws IOException;
 
-    /*
-     * TODO: We can probably do more efficient, like by avoiding copy.
-     * Also, we don't reuse ICompressor because the API doesn't expose enough.
+    /**
+     * Returns the readable bytes of {@code buf} as a single direct buffer: {@code buf} itself if it already is one,
+     * or else a pooled direct copy that the caller must release.
+     */
+    static ByteBuf directInput(ByteBuf buf)
+    {
+        if (buf.isDirect() && buf.nioBufferCount() == 1)
+            return buf;
+
+        ByteBuf copy = CBUtil.allocator.directBuffer(buf.readableBytes());
+        copy.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        return copy;
+    }
+
+    /**
+     * Returns a view of the writable bytes of {@code buf}.
      */
+    static ByteBuffer writableView(ByteBuf buf, int length)
+    {
+        return buf.nioBuffer(buf.writerIndex(), length);
+    }
+
     public static class SnappyCompressor implements FrameCompressor
     {
         public static final SnappyCompressor instance;
@@ -67,12 +87,13 @@ public interface FrameCompressor
 
         public Frame compress(Frame frame) throws IOException
         {
-            byte[] input = CBUtil.readRawBytes(frame.body);
-            ByteBuf output = CBUtil.allocator.heapBuffer(Snappy.maxCompressedLength(input.length));
+            // Snappy's ByteBuffer API only accepts direct buffers
+            ByteBuf input = directInput(frame.body);
+            ByteBuf output = CBUtil.allocator.directBuffer(Snappy.maxCompressedLength(input.readableBytes()));
 
             try
             {
-                int written = Snappy.compress(input, 0, input.length, output.array(), output.arrayOffset());
+                int written = Snappy.compress(input.nioBuffer(), writableView(output, output.capacity()));
                 output.writerIndex(written);
             }
             catch (final Throwable e)
@@ -82,6 +103,8 @@ public interface FrameCompressor
             }
             finally
             {
+                if (input != frame.body)
+                    input.release();
                 //release the old frame
                 frame.release();
             }
@@ -91,25 +114,30 @@ public interface FrameCompressor
 
         public Frame decompress(Frame frame) throws IOException
         {
-            byte[] input = CBUtil.readRawBytes(frame.body);
-
-            if (!Snappy.isValidCompressedBuffer(input, 0, input.length))
-                throw new ProtocolException("Provided frame does not appear to be Snappy compressed");
-
-            ByteBuf output = CBUtil.allocator.heapBuffer(Snappy.uncompressedLength(input));
+            ByteBuf input = directInput(frame.body);
+            ByteBuf output = null;
 
             try
             {
-                int size = Snappy.uncompress(input, 0, input.length, output.array(), output.arrayOffset());
+                ByteBuffer compressed = input.nioBuffer();
+                if (!Snappy.isValidCompressedBuffer(compressed))
+                    throw new ProtocolException("Provided frame does not appear to be Snappy compressed");
+
+                int uncompressedLength = Snappy.uncompressedLength(compressed);
+                output = CBUtil.allocator.directBuffer(uncompressedLength);
+                int size = Snappy.uncompress(compressed, writableView(output, uncompressedLength));
                 output.writerIndex(size);
             }
             catch (final Throwable e)
             {
-                output.release();
+                if (output != null)
+                    output.release();
                 throw e;
             }
             finally
             {
+                if (input != frame.body)
+                    input.release();
                 //release the old frame
                 frame.release();
             }
@@ -125,6 +153,9 @@ public interface FrameCompressor
      * is written in big-endian. The native protocol is entirely big-endian, so
      * it feels like putting little-endian here would be a annoying trap for
      * client writer.
+     *
+     * Both directions work on pooled direct buffers through LZ4's ByteBuffer API,
+     * so frame bodies are never copied to the heap.
      */
     public static class LZ4Compressor implements FrameCompressor
     {
@@ -132,79 +163,110 @@ public interface FrameCompressor
 
         private static final int INTEGER_BYTES = 4;
         private final net.jpountz.lz4.LZ4Compressor compressor;
-        private final net.jpountz.lz4.LZ4Decompressor decompressor;
+        private final LZ4FastDecompressor decompressor;
 
         private LZ4Compressor()
         {
             final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
             compressor = lz4Factory.fastCompressor();
-            decompressor = lz4Factory.decompressor();
+            decompressor = lz4Factory.fastDecompressor();
         }
 
         public Frame compress(Frame frame) throws IOException
         {
-            byte[] input = CBUtil.readRawBytes(frame.body);
-
-            int maxCompressedLength = compressor.maxCompressedLength(input.length);
-            ByteBuf outputBuf = CBUtil.allocator.heapBuffer(INTEGER_BYTES + maxCompressedLength);
+            try
+            {
+                return frame.with(compress(frame.body, frame.body.readableBytes()));
+            }
+            finally
+            {
+                //release the old frame
+                frame.release();
+            }
+        }
 
-            byte[] output = outputBuf.array();
-            int outputOffset = outputBuf.arrayOffset();
+        public Frame decompress(Frame frame) throws IOException
+        {
+            try
+            {
+                return frame.with(decompress(frame.body));
+            }
+            finally
+            {
+                //release the old frame
+                frame.release();
+            }
+        }
 
-            output[outputOffset + 0] = (byte) (input.length >>> 24);
-            output[outputOffset + 1] = (byte) (input.length >>> 16);
-            output[outputOffset + 2] = (byte) (input.length >>>  8);
-            output[outputOffset + 3] = (byte) (input.length);
+        /**
+         * Compresses the first {@code length} readable bytes of {@code input}, prefixed by that length, into a new
+         * pooled direct buffer. The reader index of {@code input} is left unchanged.
+         */
+        ByteBuf compress(ByteBuf input, int length)
+        {
+            ByteBuf directInput = directInput(input);
+            int maxCompressedLength = compressor.maxCompressedLength(length);
+            ByteBuf output = CBUtil.allocator.directBuffer(INTEGER_BYTES + maxCompressedLength);
 
             try
             {
-                int written = compressor.compress(input, 0, input.length, output, outputOffset + INTEGER_BYTES, maxCompressedLength);
-                outputBuf.writerIndex(INTEGER_BYTES + written);
-
-                return frame.with(outputBuf);
+                output.writeInt(length);
+                ByteBuffer source = directInput.nioBuffer();
+                ByteBuffer dest = writableView(output, maxCompressedLength);
+                int written = compressor.compress(source, source.position(), length, dest, dest.position(), maxCompressedLength);
+                output.writerIndex(INTEGER_BYTES + written);
+                return output;
             }
             catch (final Throwable e)
             {
-                outputBuf.release();
+                output.release();
                 throw e;
             }
             finally
             {
-                //release the old frame
-                frame.release();
+                if (directInput != input)
+                    directInput.release();
             }
         }
 
-        public Frame decompress(Frame frame) throws IOException
+        /**
+         * Decompresses the readable bytes of {@code input}, as written by {@link #compress(ByteBuf, int)}, into a
+         * new pooled direct buffer. The reader index of {@code input} is left unchanged.
+         */
+        ByteBuf decompress(ByteBuf input) throws IOException
         {
-            byte[] input = CBUtil.readRawBytes(frame.body);
-
-            int uncompressedLength = ((input[0] & 0xFF) << 24)
-                                   | ((input[1] & 0xFF) << 16)
-                                   | ((input[2] & 0xFF) <<  8)
-                                   | ((input[3] & 0xFF));
-
-            ByteBuf output = CBUtil.allocator.heapBuffer(uncompressedLength);
+            ByteBuf directInput = directInput(input);
+            ByteBuf output = null;
 
             try
             {
-                int read = decompressor.decompress(input, INTEGER_BYTES, output.array(), output.arrayOffset(), uncompressedLength);
-                if (read != input.length - INTEGER_BYTES)
+                if (directInput.readableBytes() < INTEGER_BYTES)
+                    throw new IOException("Compressed input is too short");
+
+                int uncompressedLength = directInput.getInt(directInput.readerIndex());
+                if (uncompressedLength < 0)
+                    throw new IOException("Invalid uncompressed length " + uncompressedLength);
+
+                output = CBUtil.allocator.directBuffer(uncompressedLength);
+                ByteBuffer source = directInput.nioBuffer(directInput.readerIndex() + INTEGER_BYTES, directInput.readableBytes() - INTEGER_BYTES);
+                ByteBuffer dest = writableView(output, uncompressedLength);
+                int read = decompressor.decompress(source, source.position(), dest, dest.position(), uncompressedLength);
+                if (read != source.remaining())
                     throw new IOException("Compressed lengths mismatch");
 
                 output.writerIndex(uncompressedLength);
-
-                return frame.with(output);
+                return output;
             }
             catch (final Throwable e)
             {
-                output.release();
+                if (output != null)
+                    output.release();
                 throw e;
             }
             finally
             {
-                //release the old frame
-                frame.release();
+                if (directInput != input)
+                    directInput.release();
             }
         }
     }
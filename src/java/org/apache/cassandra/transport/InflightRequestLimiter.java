@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.codahale.metrics.Meter;
+import io.netty.channel.Channel;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.metrics.ClientMetrics;
+
+/**
+ * Limits the requests that a native protocol connection, and all the connections from the same client address, may
+ * have in flight (read but not yet responded to), both in number and in frame bytes.
+ * <p>
+ * When a limit is reached we stop reading from the connection (see {@link io.netty.channel.ChannelConfig#setAutoRead})
+ * rather than rejecting requests: the requests already read are served as usual, and TCP flow control pushes back on
+ * the client until enough responses have been sent for reads to resume. As a connection is only paused once a
+ * request has been accounted for, a single request larger than a bytes limit still goes through.
+ * <p>
+ * Accounting for a connection is only done from its event loop; resuming it may be done from the event loop of another
+ * connection of the same client.
+ */
+final class InflightRequestLimiter
+{
+    private static final ConcurrentMap<InetAddress, Client> clients = new ConcurrentHashMap<>();
+
+    private static final LongAdder inflightRequests = new LongAdder();
+    private static final LongAdder inflightBytes = new LongAdder();
+    private static final AtomicInteger pausedConnections = new AtomicInteger();
+    private static final Meter connectionsPaused;
+
+    static
+    {
+        ClientMetrics.instance.addGauge("InflightRequests", inflightRequests::longValue);
+        ClientMetrics.instance.addGauge("InflightRequestBytes", inflightBytes::longValue);
+        ClientMetrics.instance.addCounter("PausedConnections", pausedConnections::get);
+        connectionsPaused = ClientMetrics.instance.addMeter("ConnectionsPaused");
+    }
+
+    private final Channel channel;
+    private final InetAddress address;
+    private final Client client;
+
+    private volatile int requests;
+    private volatile long bytes;
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private boolean closed;
+
+    InflightRequestLimiter(Channel channel)
+    {
+        this(channel, channel.remoteAddress() instanceof InetSocketAddress
+                      ? ((InetSocketAddress) channel.remoteAddress()).getAddress()
+                      : null);
+    }
+
+    @VisibleForTesting
+    InflightRequestLimiter(Channel channel, InetAddress address)
+    {
+        this.channel = channel;
+        this.address = address;
+        this.client = address == null ? null : clients.compute(address, (a, c) -> (c == null ? new Client() : c).register());
+    }
+
+    /**
+     * Accounts for a request read from the connection, pausing reads if that reaches a limit.
+     */
+    void acquire(Frame frame)
+    {
+        int size = sizeOf(frame);
+        requests++;
+        bytes += size;
+        inflightRequests.increment();
+        inflightBytes.add(size);
+        if (client != null)
+            client.acquire(size);
+
+        if (isOverLimit() || (client != null && client.isOverLimit()))
+            pause();
+    }
+
+    /**
+     * Accounts for a request having been responded to, resuming reads on the connections of the client it is now
+     * possible.
+     */
+    void release(Frame frame)
+    {
+        int size = sizeOf(frame);
+        requests--;
+        bytes -= size;
+        inflightRequests.decrement();
+        inflightBytes.add(-size);
+
+        // once closed, what is left in flight has already been released from the client
+        if (closed)
+            return;
+
+        if (client == null)
+        {
+            maybeResume();
+            return;
+        }
+
+        client.release(size);
+        for (InflightRequestLimiter connection : client.paused)
+            connection.maybeResume();
+    }
+
+    void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        if (paused.compareAndSet(true, false))
+            pausedConnections.decrementAndGet();
+
+        if (client != null)
+        {
+            client.paused.remove(this);
+            client.release(requests, bytes);
+            clients.computeIfPresent(address, (a, c) -> c.unregister());
+            for (InflightRequestLimiter connection : client.paused)
+                connection.maybeResume();
+        }
+    }
+
+    @VisibleForTesting
+    boolean isPaused()
+    {
+        return paused.get();
+    }
+
+    private boolean isOverLimit()
+    {
+        return isOverLimit(requests, DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsPerConnection(),
+                           bytes, DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerConnection());
+    }
+
+    private static boolean isOverLimit(long requests, long maxRequests, long bytes, long maxBytes)
+    {
+        return (maxRequests > 0 && requests >= maxRequests) || (maxBytes > 0 && bytes >= maxBytes);
+    }
+
+    private void pause()
+    {
+        if (paused.get())
+            return;
+
+        // disable reads before flagging the connection as paused, so that a concurrent resume can only re-enable them
+        channel.config().setAutoRead(false);
+        if (!paused.compareAndSet(false, true))
+            return;
+
+        pausedConnections.incrementAndGet();
+        connectionsPaused.mark();
+        if (client != null)
+            client.paused.add(this);
+
+        // another connection of the client may have released what it had in flight before we were added above
+        maybeResume();
+    }
+
+    private void maybeResume()
+    {
+        if (!paused.get() || closed || isOverLimit() || (client != null && client.isOverLimit()))
+            return;
+
+        if (!paused.compareAndSet(true, false))
+            return;
+
+        if (client != null)
+            client.paused.remove(this);
+        pausedConnections.decrementAndGet();
+        channel.config().setAutoRead(true);
+    }
+
+    private static int sizeOf(Frame frame)
+    {
+        return Frame.Header.LENGTH + frame.body.writerIndex();
+    }
+
+    private static final class Client
+    {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Set<InflightRequestLimiter> paused = ConcurrentHashMap.newKeySet();
+        // only accessed within clients.compute()
+        private int connections;
+
+        Client register()
+        {
+            connections++;
+            return this;
+        }
+
+        Client unregister()
+        {
+            return --connections == 0 ? null : this;
+        }
+
+        void acquire(int size)
+        {
+            requests.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+
+        void release(int size)
+        {
+            release(1, size);
+        }
+
+        void release(int requests, long size)
+        {
+            this.requests.addAndGet(-requests);
+            bytes.addAndGet(-size);
+        }
+
+        boolean isOverLimit()
+        {
+            return InflightRequestLimiter.isOverLimit(requests.get(), DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsPerIp(),
+                                                      bytes.get(), DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerIp());
+        }
+    }
+}
@@ -31,17 +31,22 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.metrics.ClientMetrics;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.transport.messages.*;
 import org.apache.cassandra.service.QueryState;
@@ -289,6 +294,8 @@ public abstract class Message
                     Request req = (Request)message;
                     Connection connection = ctx.channel().attr(Connection.attributeKey).get();
                     req.attach(connection);
+                    if (connection instanceof ServerConnection)
+                        ((ServerConnection) connection).inflightRequestLimiter().acquire(frame);
                     if (isTracing)
                         req.setTracingRequested();
                 }
@@ -326,12 +333,21 @@ public abstract class Message
                 flags.add(Frame.Header.Flag.USE_BETA);
 
             Codec<Message> codec = (Codec<Message>)message.type.codec;
+            ByteBuf encodedRows = null;
             try
             {
                 int messageSize = codec.encodedSize(message, version);
                 ByteBuf body;
                 if (message instanceof Response)
                 {
+                    // Rows that were serialized as the query was executed (see ResultSet#encodeRows) are appended to
+                    // the body as is rather than copied into it.
+                    if (message instanceof ResultMessage.Rows && ((ResultMessage.Rows)message).result.encodedRowsSize() > 0)
+                    {
+                        encodedRows = ((ResultMessage.Rows)message).result.takeEncodedRows();
+                        messageSize -= encodedRows.readableBytes();
+                    }
+
                     UUID tracingId = ((Response)message).getTracingId();
                     Map<String, ByteBuffer> customPayload = message.getCustomPayload();
                     if (tracingId != null)
@@ -392,6 +408,12 @@ public abstract class Message
                     throw e;
                 }
 
+                if (encodedRows != null)
+                {
+                    body = Unpooled.wrappedBuffer(body, encodedRows);
+                    encodedRows = null;
+                }
+
                 // if the driver attempted to connect with a protocol version lower than the minimum supported
                 // version, respond with a protocol error message with the correct frame header for that version
                 int responseVersion = message.forcedProtocolVersion == null
@@ -401,6 +423,8 @@ public abstract class Message
             }
             catch (Throwable e)
             {
+                if (encodedRows != null)
+                    encodedRows.release();
                 throw ErrorMessage.wrap(e, message.getStreamId());
             }
         }
@@ -413,27 +437,43 @@ public abstract class Message
         {
             final ChannelHandlerContext ctx;
             final Object response;
-            final Frame sourceFrame;
-            private FlushItem(ChannelHandlerContext ctx, Object response, Frame sourceFrame)
+            final Request request;
+            final long queuedAtNanos = System.nanoTime();
+            private FlushItem(ChannelHandlerContext ctx, Object response, Request request)
             {
                 this.ctx = ctx;
-                this.sourceFrame = sourceFrame;
+                this.request = request;
                 this.response = response;
             }
+
+            void release()
+            {
+                Frame sourceFrame = request.getSourceFrame();
+                if (request.connection() instanceof ServerConnection)
+                    ((ServerConnection) request.connection()).inflightRequestLimiter().release(sourceFrame);
+                sourceFrame.release();
+            }
         }
 
         private static final class Flusher implements Runnable
         {
+            private static final AtomicInteger flusherIds = new AtomicInteger();
+
             final EventLoop eventLoop;
             final ConcurrentLinkedQueue<FlushItem> queued = new ConcurrentLinkedQueue<>();
             final AtomicBoolean running = new AtomicBoolean(false);
             final HashSet<ChannelHandlerContext> channels = new HashSet<>();
             final List<FlushItem> flushed = new ArrayList<>();
-            int runsSinceFlush = 0;
+            final AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy();
+            final Histogram batchSizes;
+            final Timer flushDelays;
             int runsWithNoWork = 0;
             private Flusher(EventLoop eventLoop)
             {
                 this.eventLoop = eventLoop;
+                String scope = "EventLoop-" + flusherIds.getAndIncrement();
+                this.batchSizes = ClientMetrics.instance.addHistogram("FlushBatchSize", scope);
+                this.flushDelays = ClientMetrics.instance.addTimer("FlushDelay", scope);
             }
             void start()
             {
@@ -445,31 +485,36 @@ public abstract class Message
             public void run()
             {
 
-                boolean doneWork = false;
+                int dequeued = 0;
                 FlushItem flush;
                 while ( null != (flush = queued.poll()) )
                 {
                     channels.add(flush.ctx);
                     flush.ctx.write(flush.response, flush.ctx.voidPromise());
                     flushed.add(flush);
-                    doneWork = true;
+                    dequeued++;
                 }
 
-                runsSinceFlush++;
+                policy.onRun(dequeued);
 
-                if (!doneWork || runsSinceFlush > 2 || flushed.size() > 50)
+                if (!flushed.isEmpty())
                 {
-                    for (ChannelHandlerContext channel : channels)
-                        channel.flush();
-                    for (FlushItem item : flushed)
-                        item.sourceFrame.release();
-
-                    channels.clear();
-                    flushed.clear();
-                    runsSinceFlush = 0;
+                    long oldestWaitNanos = System.nanoTime() - flushed.get(0).queuedAtNanos;
+                    if (policy.shouldFlush(flushed.size(), dequeued, oldestWaitNanos))
+                    {
+                        for (ChannelHandlerContext channel : channels)
+                            channel.flush();
+                        for (FlushItem item : flushed)
+                            item.release();
+
+                        batchSizes.update(flushed.size());
+                        flushDelays.update(oldestWaitNanos, TimeUnit.NANOSECONDS);
+                        channels.clear();
+                        flushed.clear();
+                    }
                 }
 
-                if (doneWork)
+                if (dequeued > 0)
                 {
                     runsWithNoWork = 0;
                 }
@@ -522,7 +567,7 @@ public abstract class Message
             {
                 JVMStabilityInspector.inspectThrowable(t);
                 UnexpectedChannelExceptionHandler handler = new UnexpectedChannelExceptionHandler(ctx.channel(), true);
-                flush(new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame()));
+                flush(new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request));
                 return;
             }
             finally
@@ -531,7 +576,7 @@ public abstract class Message
             }
 
             logger.trace("Responding: {}, v={}", response, connection.getVersion());
-            flush(new FlushItem(ctx, response, request.getSourceFrame()));
+            flush(new FlushItem(ctx, response, request));
         }
 
         private void flush(FlushItem item)
@@ -539,11 +584,7 @@ public abstract class Message
             EventLoop loop = item.ctx.channel().eventLoop();
             Flusher flusher = flusherLookup.get(loop);
             if (flusher == null)
-            {
-                Flusher alt = flusherLookup.putIfAbsent(loop, flusher = new Flusher(loop));
-                if (alt != null)
-                    flusher = alt;
-            }
+                flusher = flusherLookup.computeIfAbsent(loop, Flusher::new);
 
             flusher.queued.add(item);
             flusher.start();
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+/**
+ * Opt-in compression of the frames of a connection as a stream rather than one by one: everything written to the
+ * connection between two flushes, which with many small responses is usually many frames, is compressed together
+ * as a single LZ4 segment. A segment is laid out as:
+ * <pre>
+ *     [compressed length: int][uncompressed length: int][LZ4 block]
+ * </pre>
+ * where the compressed length counts the bytes that follow it. Uncompressed segments are concatenated to form the
+ * usual stream of (uncompressed) frames, so a frame may span several segments. As with the per-frame
+ * {@link FrameCompressor}s, both directions are compressed from the response to the STARTUP message onwards.
+ */
+public final class MultiFrameCompressor
+{
+    public static final String NAME = "lz4_multiframe";
+
+    /** Once this many bytes are pending, a segment is written without waiting for the next flush. */
+    static final int MAX_SEGMENT_SIZE = 1 << 16;
+
+    private static final int INTEGER_BYTES = 4;
+
+    private MultiFrameCompressor()
+    {
+    }
+
+    /**
+     * Adds segment compression to a connection pipeline. Must be called before the response to the STARTUP message
+     * is written, and before the client may send anything else.
+     */
+    public static void install(ChannelPipeline pipeline)
+    {
+        // inbound bytes must be decompressed before the frame decoder sees them, and outbound bytes compressed after
+        // the frame encoder has produced them: both handlers go ahead of the frame decoder, the first of the two
+        pipeline.addBefore("frameDecoder", "segmentDecoder", new Decoder());
+        pipeline.addBefore("frameDecoder", "segmentEncoder", new Encoder());
+    }
+
+    static class Encoder extends ChannelOutboundHandlerAdapter
+    {
+        private final List<ByteBuf> pending = new ArrayList<>();
+        private final List<ChannelPromise> promises = new ArrayList<>();
+        private int pendingBytes;
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+        {
+            if (!(msg instanceof ByteBuf))
+            {
+                ctx.write(msg, promise);
+                return;
+            }
+
+            ByteBuf buf = (ByteBuf) msg;
+            pending.add(buf);
+            pendingBytes += buf.readableBytes();
+            if (promise != ctx.voidPromise())
+                promises.add(promise);
+
+            if (pendingBytes >= MAX_SEGMENT_SIZE)
+                writeSegment(ctx);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx)
+        {
+            writeSegment(ctx);
+            ctx.flush();
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise)
+        {
+            discardPending(new ClosedChannelException());
+            ctx.close(promise);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx)
+        {
+            discardPending(new ClosedChannelException());
+        }
+
+        private void writeSegment(ChannelHandlerContext ctx)
+        {
+            if (pending.isEmpty())
+                return;
+
+            ByteBuf uncompressed = pending.size() == 1 ? pending.get(0) : Unpooled.wrappedBuffer(pending.toArray(new ByteBuf[pending.size()]));
+            int length = pendingBytes;
+            List<ChannelPromise> segmentPromises = promises.isEmpty() ? null : new ArrayList<>(promises);
+            pending.clear();
+            promises.clear();
+            pendingBytes = 0;
+
+            ByteBuf compressed;
+            try
+            {
+                compressed = FrameCompressor.LZ4Compressor.instance.compress(uncompressed, length);
+            }
+            catch (Throwable t)
+            {
+                if (segmentPromises != null)
+                    segmentPromises.forEach(p -> p.tryFailure(t));
+                throw t;
+            }
+            finally
+            {
+                uncompressed.release();
+            }
+
+            ByteBuf header = CBUtil.allocator.buffer(INTEGER_BYTES);
+            header.writeInt(compressed.readableBytes());
+            ByteBuf segment = Unpooled.wrappedBuffer(header, compressed);
+
+            if (segmentPromises == null)
+            {
+                ctx.write(segment, ctx.voidPromise());
+                return;
+            }
+
+            ctx.write(segment).addListener(future -> {
+                for (ChannelPromise p : segmentPromises)
+                {
+                    if (future.isSuccess())
+                        p.trySuccess();
+                    else
+                        p.tryFailure(future.cause());
+                }
+            });
+        }
+
+        private void discardPending(Throwable cause)
+        {
+            pending.forEach(ByteBuf::release);
+            promises.forEach(p -> p.tryFailure(cause));
+            pending.clear();
+            promises.clear();
+            pendingBytes = 0;
+        }
+    }
+
+    static class Decoder extends ByteToMessageDecoder
+    {
+        private final int maxSegmentSize = DatabaseDescriptor.getNativeTransportMaxFrameSize();
+
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+        {
+            if (in.readableBytes() < INTEGER_BYTES)
+                return;
+
+            int idx = in.readerIndex();
+            int compressedLength = in.getInt(idx);
+            if (compressedLength < INTEGER_BYTES || compressedLength > maxSegmentSize)
+                throw new ProtocolException(String.format("Invalid compressed segment length %d", compressedLength));
+            if (in.readableBytes() < INTEGER_BYTES + compressedLength)
+                return;
+
+            int uncompressedLength = in.getInt(idx + INTEGER_BYTES);
+            if (uncompressedLength < 0 || uncompressedLength > maxSegmentSize)
+                throw new ProtocolException(String.format("Invalid uncompressed segment length %d", uncompressedLength));
+
+            ByteBuf segment = in.slice(idx + INTEGER_BYTES, compressedLength);
+            in.skipBytes(INTEGER_BYTES + compressedLength);
+            out.add(FrameCompressor.LZ4Compressor.instance.decompress(segment));
+        }
+    }
+}
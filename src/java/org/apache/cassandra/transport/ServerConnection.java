@@ -35,12 +35,20 @@ public class ServerConnection extends Connection
     private volatile State state;
 
     private final ConcurrentMap<Integer, QueryState> queryStates = new ConcurrentHashMap<>();
+    private final InflightRequestLimiter inflightRequestLimiter;
 
     public ServerConnection(Channel channel, int version, Connection.Tracker tracker)
     {
         super(channel, version, tracker);
         this.clientState = ClientState.forExternalCalls(channel.remoteAddress());
         this.state = State.UNINITIALIZED;
+        this.inflightRequestLimiter = new InflightRequestLimiter(channel);
+        channel.closeFuture().addListener(future -> inflightRequestLimiter.close());
+    }
+
+    InflightRequestLimiter inflightRequestLimiter()
+    {
+        return inflightRequestLimiter;
     }
 
     private QueryState getQueryState(int streamId)
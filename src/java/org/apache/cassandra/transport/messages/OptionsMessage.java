@@ -24,10 +24,12 @@ import java.util.Map;
 
 import io.netty.buffer.ByteBuf;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.transport.FrameCompressor;
 import org.apache.cassandra.transport.Message;
+import org.apache.cassandra.transport.MultiFrameCompressor;
 
 /**
  * Message to indicate that the server is ready to receive requests.
@@ -66,6 +68,8 @@ public class OptionsMessage extends Message.Request
             compressions.add("snappy");
         // LZ4 is always available since worst case scenario it default to a pure JAVA implem.
         compressions.add("lz4");
+        if (DatabaseDescriptor.isNativeTransportMultiFrameCompressionEnabled())
+            compressions.add(MultiFrameCompressor.NAME);
 
         Map<String, List<String>> supported = new HashMap<String, List<String>>();
         supported.put(StartupMessage.CQL_VERSION, cqlVersions);
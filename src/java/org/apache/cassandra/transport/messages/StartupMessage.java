@@ -91,6 +91,10 @@ public class StartupMessage extends Message.Request
             {
                 connection.setCompressor(FrameCompressor.LZ4Compressor.instance);
             }
+            else if (compression.equals(MultiFrameCompressor.NAME) && DatabaseDescriptor.isNativeTransportMultiFrameCompressionEnabled())
+            {
+                MultiFrameCompressor.install(connection.channel().pipeline());
+            }
             else
             {
                 throw new ProtocolException(String.format("Unknown compression algorithm: %s", compression));
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.WrappedSharedCloseable;
+import org.apache.cassandra.utils.obs.IBitSet;
+
+/**
+ * A cache-line blocked bloom filter: each key is hashed to a single block of {@link #BLOCK_BITS} bits
+ * (one 64-byte cache line) and all of its probes are set within that block, so a lookup costs at most
+ * one cache miss instead of one per hash function.
+ *
+ * The second half of the murmur3 hash selects the block, and the probes within the block are derived by
+ * double hashing from the low bits of the first half and the high bits of the second half. The high bits of
+ * the first half double as the token of the key (see CASSANDRA-8413), so they are never used.
+ *
+ * Blocking increases the false positive rate for a given number of bits per key, so the filter is sized
+ * with {@link BloomCalculations#computeBlockedBloomSpec(double)} rather than the classic calculations.
+ */
+public class BlockedBloomFilter extends WrappedSharedCloseable implements IFilter
+{
+    static final int BLOCK_BITS = 512;
+    private static final int BLOCK_SHIFT = 9;
+    private static final int BLOCK_MASK = BLOCK_BITS - 1;
+
+    private final static FastThreadLocal<long[]> reusableHash = new FastThreadLocal<long[]>()
+    {
+        protected long[] initialValue()
+        {
+            return new long[2];
+        }
+    };
+
+    public final IBitSet bitset;
+    public final int hashCount;
+    private final long blockCount;
+
+    BlockedBloomFilter(int hashCount, IBitSet bitset)
+    {
+        super(bitset);
+        assert hashCount > 0 && hashCount <= BLOCK_BITS;
+        assert bitset.capacity() >= BLOCK_BITS && bitset.capacity() % BLOCK_BITS == 0 : bitset.capacity();
+        this.hashCount = hashCount;
+        this.bitset = bitset;
+        this.blockCount = bitset.capacity() >>> BLOCK_SHIFT;
+    }
+
+    private BlockedBloomFilter(BlockedBloomFilter copy)
+    {
+        super(copy);
+        this.hashCount = copy.hashCount;
+        this.bitset = copy.bitset;
+        this.blockCount = copy.blockCount;
+    }
+
+    public long serializedSize()
+    {
+        return BlockedBloomFilterSerializer.serializedSize(this);
+    }
+
+    public void add(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+
+        long blockStart = FBUtilities.abs(hash[1] % blockCount) << BLOCK_SHIFT;
+        int base = (int) hash[0];
+        int inc = (int) (hash[1] >>> 32) | 1; // odd, so the first BLOCK_BITS probes are all distinct
+        for (int i = 0; i < hashCount; i++)
+        {
+            bitset.set(blockStart + (base & BLOCK_MASK));
+            base += inc;
+        }
+    }
+
+    public final boolean isPresent(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+
+        long blockStart = FBUtilities.abs(hash[1] % blockCount) << BLOCK_SHIFT;
+        int base = (int) hash[0];
+        int inc = (int) (hash[1] >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            if (!bitset.get(blockStart + (base & BLOCK_MASK)))
+                return false;
+            base += inc;
+        }
+        return true;
+    }
+
+    public void clear()
+    {
+        bitset.clear();
+    }
+
+    public IFilter sharedCopy()
+    {
+        return new BlockedBloomFilter(this);
+    }
+
+    @Override
+    public long offHeapSize()
+    {
+        return bitset.offHeapSize();
+    }
+
+    public String toString()
+    {
+        return "BlockedBloomFilter[hashCount=" + hashCount + ";blocks=" + blockCount + ";bitset=" + bitset + ']';
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        super.addTo(identities);
+        bitset.addTo(identities);
+    }
+}
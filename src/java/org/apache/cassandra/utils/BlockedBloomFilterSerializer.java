@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.cassandra.io.sstable.CorruptSSTableException;
+import org.apache.cassandra.io.util.ChannelProxy;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.utils.obs.IBitSet;
+import org.apache.cassandra.utils.obs.MappedBitSet;
+import org.apache.cassandra.utils.obs.OffHeapBitSet;
+
+/**
+ * Serialized form of a {@link BlockedBloomFilter}:
+ * <pre>
+ *     [hash count: int][padding: 56 bytes][word count: int][words: 8 bytes each]
+ * </pre>
+ * The header is padded so that the words start at offset {@link #HEADER_SIZE}, which keeps every block
+ * cache-line aligned once the file is memory-mapped (mappings are page aligned).
+ */
+final class BlockedBloomFilterSerializer
+{
+    static final int HEADER_SIZE = 64;
+    private static final int PADDING = HEADER_SIZE - 8;
+
+    private BlockedBloomFilterSerializer()
+    {
+    }
+
+    public static void serialize(BlockedBloomFilter bf, DataOutputPlus out) throws IOException
+    {
+        out.writeInt(bf.hashCount);
+        for (int i = 0; i < PADDING; i++)
+            out.writeByte(0);
+        bf.bitset.serialize(out);
+    }
+
+    @SuppressWarnings("resource")
+    public static BlockedBloomFilter deserialize(DataInput in) throws IOException
+    {
+        int hashes = in.readInt();
+        in.skipBytes(PADDING);
+        return new BlockedBloomFilter(hashes, OffHeapBitSet.deserialize(in));
+    }
+
+    /**
+     * Memory-maps a serialized filter rather than copying it into freshly allocated memory.
+     */
+    @SuppressWarnings("resource")
+    public static BlockedBloomFilter map(File file)
+    {
+        try (ChannelProxy channel = new ChannelProxy(file))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {}
+            if (header.hasRemaining())
+                throw new CorruptSSTableException(new IOException("Truncated bloom filter header"), file);
+
+            int hashes = header.getInt(0);
+            long words = header.getInt(HEADER_SIZE - 4) & 0xFFFFFFFFL;
+            if (channel.size() != HEADER_SIZE + words * 8)
+                throw new CorruptSSTableException(new IOException(String.format("Bloom filter of %d words does not match file size %d", words, channel.size())), file);
+
+            IBitSet bitset = MappedBitSet.map(channel, HEADER_SIZE, words);
+            return new BlockedBloomFilter(hashes, bitset);
+        }
+    }
+
+    public static long serializedSize(BlockedBloomFilter bf)
+    {
+        return HEADER_SIZE - 4 + bf.bitset.serializedSize();
+    }
+}
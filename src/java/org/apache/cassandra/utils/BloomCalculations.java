@@ -33,6 +33,9 @@ public class BloomCalculations
 
     private static final int EXCESS = 20;
 
+    private static final int maxBlockedBucketsPerElement = 32;
+    private static final int maxBlockedK = 16;
+
     /**
      * In the following keyspaceName, the row 'i' shows false positive rates if i buckets
      * per element are used.  Cell 'j' shows false positive rates if j hash
@@ -167,6 +170,48 @@ public class BloomCalculations
         return new BloomSpecification(K, bucketsPerElement);
     }
 
+    /**
+     * Given a maximum tolerable false positive probability, compute the specification of a
+     * {@link BlockedBloomFilter} with the smallest number of buckets per element, and then the
+     * smallest number of hash functions, that satisfies it.
+     *
+     * Keys are not spread evenly over the blocks, so the false positive rate of a blocked filter is
+     * the Poisson-weighted average of the rates of classic filters of one block with i keys in them.
+     *
+     * @param maxFalsePosProb The maximum tolerable false positive rate.
+     * @return A Bloom Specification which would result in a false positive rate
+     * less than specified by the function call
+     * @throws UnsupportedOperationException if a filter satisfying the parameters cannot be met
+     */
+    public static BloomSpecification computeBlockedBloomSpec(double maxFalsePosProb)
+    {
+        for (int bucketsPerElement = minBuckets; bucketsPerElement <= maxBlockedBucketsPerElement; bucketsPerElement++)
+        {
+            for (int k = minK; k <= maxBlockedK; k++)
+            {
+                if (blockedFalsePositiveRate(bucketsPerElement, k) <= maxFalsePosProb)
+                    return new BloomSpecification(k, bucketsPerElement);
+            }
+        }
+        throw new UnsupportedOperationException(String.format("Unable to satisfy %s with %s buckets per element",
+                                                              maxFalsePosProb, maxBlockedBucketsPerElement));
+    }
+
+    static double blockedFalsePositiveRate(int bucketsPerElement, int k)
+    {
+        double keysPerBlock = (double) BlockedBloomFilter.BLOCK_BITS / bucketsPerElement;
+        double limit = keysPerBlock + 12 * Math.sqrt(keysPerBlock) + 20;
+        double poisson = Math.exp(-keysPerBlock);
+        double rate = 0;
+        for (int i = 0; i <= limit; i++)
+        {
+            double bitSet = 1 - Math.pow(1 - 1.0 / BlockedBloomFilter.BLOCK_BITS, (double) k * i);
+            rate += poisson * Math.pow(bitSet, k);
+            poisson *= keysPerBlock / (i + 1);
+        }
+        return rate;
+    }
+
     /**
      * Calculates the maximum number of buckets per element that this implementation
      * can support.  Crucially, it will lower the bucket count if necessary to meet
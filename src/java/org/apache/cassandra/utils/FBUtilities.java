@@ -105,6 +105,23 @@ public class FBUtilities
         }
     };
 
+    private static final ThreadLocal<MessageDigest> localMurmur3Digest = new ThreadLocal<MessageDigest>()
+    {
+        @Override
+        protected MessageDigest initialValue()
+        {
+            return new Murmur3Digest();
+        }
+
+        @Override
+        public MessageDigest get()
+        {
+            MessageDigest digest = super.get();
+            digest.reset();
+            return digest;
+        }
+    };
+
     public static final int MAX_UNSIGNED_SHORT = 0xFFFF;
 
     public static MessageDigest threadLocalMD5Digest()
@@ -112,6 +129,11 @@ public class FBUtilities
         return localMD5Digest.get();
     }
 
+    public static MessageDigest threadLocalMurmur3Digest()
+    {
+        return localMurmur3Digest.get();
+    }
+
     public static MessageDigest newMessageDigest(String algorithm)
     {
         try
@@ -18,11 +18,13 @@
 package org.apache.cassandra.utils;
 
 import java.io.DataInput;
+import java.io.File;
 import java.io.IOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.io.sstable.format.Version;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.utils.obs.IBitSet;
 import org.apache.cassandra.utils.obs.OffHeapBitSet;
@@ -37,7 +39,10 @@ public class FilterFactory
 
     public static void serialize(IFilter bf, DataOutputPlus output) throws IOException
     {
-        BloomFilterSerializer.serialize((BloomFilter) bf, output);
+        if (bf instanceof BlockedBloomFilter)
+            BlockedBloomFilterSerializer.serialize((BlockedBloomFilter) bf, output);
+        else
+            BloomFilterSerializer.serialize((BloomFilter) bf, output);
     }
 
     public static IFilter deserialize(DataInput input, boolean offheap, boolean oldBfHashOrder) throws IOException
@@ -45,6 +50,25 @@ public class FilterFactory
         return BloomFilterSerializer.deserialize(input, offheap, oldBfHashOrder);
     }
 
+    /**
+     * Deserializes the filter of an sstable of the given version into off-heap memory.
+     */
+    public static IFilter deserialize(DataInput input, Version version) throws IOException
+    {
+        if (version.hasBlockedBloomFilter())
+            return BlockedBloomFilterSerializer.deserialize(input);
+        return BloomFilterSerializer.deserialize(input, true, version.hasOldBfHashOrder());
+    }
+
+    /**
+     * Memory-maps the filter component of an sstable of the given version, which must use blocked bloom filters.
+     */
+    public static IFilter map(File file, Version version)
+    {
+        assert version.hasBlockedBloomFilter() : version;
+        return BlockedBloomFilterSerializer.map(file);
+    }
+
     /**
      * @return A BloomFilter with the lowest practical false positive
      *         probability for the given number of elements.
@@ -78,6 +102,29 @@ public class FilterFactory
         return createFilter(spec.K, numElements, spec.bucketsPerElement, offheap, oldBfHashOrder);
     }
 
+    /**
+     * @return The smallest filter of the kind used by the given sstable version that can provide the
+     *         given false positive probability rate for the given number of elements.
+     */
+    public static IFilter getFilter(long numElements, double maxFalsePosProbability, Version version)
+    {
+        if (!version.hasBlockedBloomFilter())
+            return getFilter(numElements, maxFalsePosProbability, true, version.hasOldBfHashOrder());
+
+        assert maxFalsePosProbability <= 1.0 : "Invalid probability";
+        if (maxFalsePosProbability == 1.0)
+            return new AlwaysPresentFilter();
+        BloomCalculations.BloomSpecification spec = BloomCalculations.computeBlockedBloomSpec(maxFalsePosProbability);
+        return createBlockedFilter(spec.K, numElements, spec.bucketsPerElement);
+    }
+
+    @SuppressWarnings("resource")
+    private static IFilter createBlockedFilter(int hash, long numElements, int bucketsPer)
+    {
+        long numBlocks = Math.max(1, (Math.max(1, numElements) * bucketsPer + BlockedBloomFilter.BLOCK_BITS - 1) / BlockedBloomFilter.BLOCK_BITS);
+        return new BlockedBloomFilter(hash, new OffHeapBitSet(numBlocks * BlockedBloomFilter.BLOCK_BITS));
+    }
+
     @SuppressWarnings("resource")
     private static IFilter createFilter(int hash, long numElements, int bucketsPer, boolean offheap, boolean oldBfHashOrder)
     {
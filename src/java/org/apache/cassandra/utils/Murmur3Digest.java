@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * An incremental, non-cryptographic 128-bit MurmurHash3 (x64 variant) exposed as a {@link MessageDigest}, so it can
+ * be used wherever content is digested today (see {@code UnfilteredRowIterators.digest}).
+ *
+ * Unlike {@link MurmurHash#hash3_x64_128}, which must keep a sign extension bug for the sake of Murmur3Partitioner,
+ * this is the reference algorithm: the digest is the little-endian encoding of h1 followed by h2, as produced by
+ * other standard implementations for the same seed.
+ */
+public class Murmur3Digest extends MessageDigest
+{
+    public static final String ALGORITHM = "Murmur3_128";
+
+    private static final int BLOCK_SIZE = 16;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long seed;
+    private final ByteBuffer tail = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long h1;
+    private long h2;
+    private long length;
+
+    public Murmur3Digest()
+    {
+        this(0);
+    }
+
+    public Murmur3Digest(long seed)
+    {
+        super(ALGORITHM);
+        this.seed = seed;
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength()
+    {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    protected void engineUpdate(byte input)
+    {
+        tail.put(input);
+        length++;
+        if (!tail.hasRemaining())
+            flushTail();
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len)
+    {
+        int end = offset + len;
+        length += len;
+
+        if (tail.position() > 0)
+        {
+            int n = Math.min(tail.remaining(), len);
+            tail.put(input, offset, n);
+            offset += n;
+            if (tail.hasRemaining())
+                return;
+            flushTail();
+        }
+
+        for (; end - offset >= BLOCK_SIZE; offset += BLOCK_SIZE)
+            mix(getLong(input, offset), getLong(input, offset + 8));
+
+        tail.put(input, offset, end - offset);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input)
+    {
+        if (input.hasArray())
+        {
+            engineUpdate(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            return;
+        }
+
+        int position = input.position();
+        int end = input.limit();
+        length += end - position;
+
+        while (tail.position() > 0 && position < end)
+        {
+            tail.put(input.get(position++));
+            if (!tail.hasRemaining())
+                flushTail();
+        }
+
+        ByteBuffer le = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (; end - position >= BLOCK_SIZE; position += BLOCK_SIZE)
+            mix(le.getLong(position), le.getLong(position + 8));
+
+        while (position < end)
+            tail.put(input.get(position++));
+
+        input.position(end);
+    }
+
+    @Override
+    protected byte[] engineDigest()
+    {
+        long k1 = 0;
+        long k2 = 0;
+        int remaining = tail.position();
+        for (int i = remaining - 1; i >= 8; i--)
+            k2 = (k2 << 8) | (tail.get(i) & 0xFF);
+        for (int i = Math.min(remaining, 8) - 1; i >= 0; i--)
+            k1 = (k1 << 8) | (tail.get(i) & 0xFF);
+
+        if (remaining > 8)
+        {
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+        }
+        if (remaining > 0)
+        {
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        }
+
+        h1 ^= length; h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = MurmurHash.fmix(h1);
+        h2 = MurmurHash.fmix(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        byte[] result = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+        engineReset();
+        return result;
+    }
+
+    @Override
+    protected void engineReset()
+    {
+        h1 = seed;
+        h2 = seed;
+        length = 0;
+        tail.clear();
+    }
+
+    private void flushTail()
+    {
+        mix(tail.getLong(0), tail.getLong(8));
+        tail.clear();
+    }
+
+    private void mix(long k1, long k2)
+    {
+        k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+
+        h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+
+        h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long getLong(byte[] bytes, int offset)
+    {
+        return (bytes[offset] & 0xFFL)
+             | (bytes[offset + 1] & 0xFFL) << 8
+             | (bytes[offset + 2] & 0xFFL) << 16
+             | (bytes[offset + 3] & 0xFFL) << 24
+             | (bytes[offset + 4] & 0xFFL) << 32
+             | (bytes[offset + 5] & 0xFFL) << 40
+             | (bytes[offset + 6] & 0xFFL) << 48
+             | (bytes[offset + 7] & 0xFFL) << 56;
+    }
+}
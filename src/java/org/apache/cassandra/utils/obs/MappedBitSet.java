@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.obs;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.io.util.ChannelProxy;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.concurrent.Ref;
+
+/**
+ * A read-only bitset over memory-mapped words, as written by {@link OffHeapBitSet#serialize(DataOutput)}
+ * (the leading word count excluded).
+ *
+ * Words are stored big-endian on disk, so bit {@code i} of word {@code w} lives in byte
+ * {@code w * 8 + 7 - (i >> 3)}. The file is mapped in regions of {@link #REGION_SIZE} bytes; as that is
+ * a multiple of 64, a 64-byte aligned block of bits never spans two regions.
+ */
+public class MappedBitSet implements IBitSet
+{
+    private static final int REGION_SHIFT = 30;
+    static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    private final ByteBuffer[] regions;
+    private final long wordCount;
+
+    private MappedBitSet(ByteBuffer[] regions, long wordCount)
+    {
+        this.regions = regions;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * Maps {@code wordCount} words starting at {@code position} of the given channel.
+     */
+    public static MappedBitSet map(ChannelProxy channel, long position, long wordCount)
+    {
+        long length = wordCount * 8L;
+        ByteBuffer[] regions = new ByteBuffer[(int) ((length + REGION_SIZE - 1) >>> REGION_SHIFT)];
+        try
+        {
+            for (int i = 0; i < regions.length; i++)
+            {
+                long offset = (long) i << REGION_SHIFT;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(REGION_SIZE, length - offset));
+            }
+        }
+        catch (Throwable t)
+        {
+            for (ByteBuffer region : regions)
+                FileUtils.clean(region);
+            throw t;
+        }
+        return new MappedBitSet(regions, wordCount);
+    }
+
+    public long capacity()
+    {
+        return wordCount * 64;
+    }
+
+    public boolean get(long index)
+    {
+        long offset = ((index >>> 6) << 3) + (7 - ((index >>> 3) & 0x7));
+        int bitmask = 0x1 << (index & 0x7);
+        return (regions[(int) (offset >>> REGION_SHIFT)].get((int) (offset & REGION_MASK)) & bitmask) != 0;
+    }
+
+    public void set(long index)
+    {
+        throw new UnsupportedOperationException("MappedBitSet is read-only");
+    }
+
+    public void clear(long index)
+    {
+        throw new UnsupportedOperationException("MappedBitSet is read-only");
+    }
+
+    public void clear()
+    {
+        throw new UnsupportedOperationException("MappedBitSet is read-only");
+    }
+
+    public void serialize(DataOutput out) throws IOException
+    {
+        out.writeInt((int) wordCount);
+        byte[] chunk = new byte[4096];
+        for (ByteBuffer region : regions)
+        {
+            ByteBuffer buffer = region.duplicate();
+            while (buffer.hasRemaining())
+            {
+                int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+    }
+
+    public long serializedSize()
+    {
+        return TypeSizes.sizeof((int) wordCount) + wordCount * 8;
+    }
+
+    /**
+     * Mapped pages belong to the page cache rather than to memory we allocated, so nothing is reported here.
+     */
+    public long offHeapSize()
+    {
+        return 0;
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+    }
+
+    public void close()
+    {
+        for (ByteBuffer region : regions)
+            FileUtils.clean(region);
+    }
+
+    public String toString()
+    {
+        return "[MappedBitSet]";
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.statements.ParsedStatement;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.ReadQuery;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the prepared point-read path, from the execution of a prepared SELECT by
+ * {@code QueryProcessor.processPrepared} to the {@code ReadCommand} it creates, and through the whole local
+ * execution of the read.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PreparedSelectBench extends CQLTester
+{
+    // the restrictions of the prepared SELECT: with no clustering restriction, its clustering index filter is
+    // computed when it is prepared, otherwise it is computed from the bound values on every execution
+    @Param({ "userid = ?", "userid = ? AND picid = ?", "userid = ? AND picid > ?" })
+    private String where;
+
+    private SelectStatement statement;
+    private QueryState queryState;
+    private QueryOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        CQLTester.setUpClass();
+        // makes this node the only replica of every read, without starting the network
+        StorageService.instance.getTokenMetadata().updateNormalToken(DatabaseDescriptor.getPartitioner().getMinimumToken(),
+                                                                     FBUtilities.getBroadcastAddress());
+
+        beforeTest();
+        String table = KEYSPACE + '.' + createTable("CREATE TABLE %s (userid bigint, picid bigint, commentid bigint, PRIMARY KEY (userid, picid))");
+
+        for (long picid = 0; picid < 10; picid++)
+            execute("INSERT INTO " + table + " (userid, picid, commentid) VALUES (?, ?, ?)", 1L, picid, picid);
+
+        queryState = QueryState.forInternalCalls();
+        ResultMessage.Prepared prepared = QueryProcessor.prepare("SELECT * FROM " + table + " WHERE " + where,
+                                                                 queryState.getClientState(),
+                                                                 false);
+        ParsedStatement.Prepared parsed = QueryProcessor.instance.getPrepared(prepared.statementId);
+        statement = (SelectStatement) parsed.statement;
+
+        List<ByteBuffer> values = new ArrayList<>();
+        values.add(ByteBufferUtil.bytes(1L));
+        if (statement.getBoundTerms() > 1)
+            values.add(ByteBufferUtil.bytes(5L));
+        options = QueryOptions.forInternalCalls(ConsistencyLevel.ONE, values);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws InterruptedException
+    {
+        CQLTester.tearDownClass();
+        CommitLog.instance.shutdownBlocking();
+    }
+
+    @Benchmark
+    public ReadQuery getQuery()
+    {
+        return statement.getQuery(options, FBUtilities.nowInSeconds());
+    }
+
+    @Benchmark
+    public ResultMessage processPrepared()
+    {
+        return QueryProcessor.instance.processPrepared(statement, queryState, options);
+    }
+}
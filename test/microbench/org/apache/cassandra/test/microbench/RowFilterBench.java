@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.test.microbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.LivenessInfo;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.filter.RowFilter;
+import org.apache.cassandra.db.partitions.ImmutableBTreePartition;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.db.partitions.SingletonUnfilteredPartitionIterator;
+import org.apache.cassandra.db.partitions.UnfilteredPartitionIterator;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the evaluation of CQL filtering expressions on the rows of an in-memory partition, excluding the cost of
+ * reading the rows.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class RowFilterBench
+{
+    private static final int ROWS = 10000;
+
+    // the column filtered on and the selectivity of the filter
+    @Param({ "l > 10%", "d < 50%", "t = 1%", "l > 10% AND i < 50%" })
+    private String filter;
+
+    private ImmutableBTreePartition partition;
+    private RowFilter rowFilter;
+    private int nowInSec;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        CFMetaData metadata = CFMetaData.compile("CREATE TABLE t (pk int, c int, i int, l bigint, d double, t text, PRIMARY KEY (pk, c))", "ks");
+        DecoratedKey key = metadata.decorateKey(ByteBufferUtil.bytes(0));
+
+        long timestamp = FBUtilities.timestampMicros();
+        PartitionUpdate update = new PartitionUpdate(metadata, key, metadata.partitionColumns(), ROWS);
+        for (int c = 0; c < ROWS; c++)
+        {
+            int v = (c * 7919) % 100;
+            new RowUpdateBuilder(update, timestamp, LivenessInfo.NO_TTL).clustering(c)
+                                                                     .add("i", v)
+                                                                     .add("l", (long) v)
+                                                                     .add("d", (double) v)
+                                                                     .add("t", "value" + v)
+                                                                     .build();
+        }
+        partition = ImmutableBTreePartition.create(update.unfilteredIterator());
+
+        rowFilter = RowFilter.create();
+        for (String expression : filter.split(" AND "))
+        {
+            String column = expression.substring(0, 1);
+            int selectivity = Integer.parseInt(expression.substring(4, expression.length() - 1));
+            switch (column)
+            {
+                case "l":
+                    rowFilter.add(metadata.getColumnDefinition(ByteBufferUtil.bytes("l")), Operator.GT, ByteBufferUtil.bytes(99L - selectivity));
+                    break;
+                case "d":
+                    rowFilter.add(metadata.getColumnDefinition(ByteBufferUtil.bytes("d")), Operator.LT, ByteBufferUtil.bytes((double) selectivity));
+                    break;
+                case "i":
+                    rowFilter.add(metadata.getColumnDefinition(ByteBufferUtil.bytes("i")), Operator.LT, ByteBufferUtil.bytes(selectivity));
+                    break;
+                default:
+                    rowFilter.add(metadata.getColumnDefinition(ByteBufferUtil.bytes("t")), Operator.EQ, ByteBufferUtil.bytes("value42"));
+            }
+        }
+        nowInSec = FBUtilities.nowInSeconds();
+    }
+
+    @Benchmark
+    public int filter()
+    {
+        int count = 0;
+        try (UnfilteredPartitionIterator partitions = rowFilter.filter(new SingletonUnfilteredPartitionIterator(partition.unfilteredIterator(), false), nowInSec))
+        {
+            while (partitions.hasNext())
+            {
+                try (UnfilteredRowIterator rows = partitions.next())
+                {
+                    while (rows.hasNext())
+                        if (rows.next() instanceof Row)
+                            count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.cassandra.batchlog;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -138,6 +139,26 @@ public class BatchlogManagerTest
         testReplay(true);
     }
 
+    @Test
+    public void testSegmentsReplay() throws Exception
+    {
+        BatchlogStore store = BatchlogStore.open(Files.createTempDirectory("batchlog").toFile(), 1024 * 1024);
+        BatchlogManager.instance.setSegmentStore(store);
+        try
+        {
+            testReplay(false);
+
+            // neither the batches nor their removal went to the table
+            assertTrue(executeInternal(String.format("SELECT * FROM %s.%s", SystemKeyspace.NAME, SystemKeyspace.BATCHES)).isEmpty());
+            assertEquals(50, store.countLiveBatches());
+        }
+        finally
+        {
+            BatchlogManager.instance.setSegmentStore(null);
+            store.close();
+        }
+    }
+
     @SuppressWarnings("deprecation")
     private static void testReplay(boolean legacy) throws Exception
     {
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.batchlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchlogStoreTest
+{
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("batchlog").toFile();
+        directory.deleteOnExit();
+    }
+
+    private static Batch batch(long timestamp, int i)
+    {
+        List<ByteBuffer> mutations = Arrays.asList(ByteBufferUtil.bytes("mutation" + i), ByteBufferUtil.bytes(i));
+        return Batch.createRemote(UUIDGen.getTimeUUID(timestamp, i), timestamp * 1000, mutations);
+    }
+
+    private static Set<UUID> ids(Iterable<BatchlogStore.StoredBatch> batches)
+    {
+        Set<UUID> ids = new HashSet<>();
+        for (BatchlogStore.StoredBatch batch : batches)
+            ids.add(batch.id);
+        return ids;
+    }
+
+    private int countFiles()
+    {
+        return directory.listFiles().length;
+    }
+
+    @Test
+    public void testAppendAndReplay()
+    {
+        long now = System.currentTimeMillis();
+        BatchlogStore store = BatchlogStore.open(directory, 1024 * 1024);
+
+        Set<UUID> old = new HashSet<>();
+        for (int i = 0; i < 10; i++)
+        {
+            Batch batch = batch(i < 5 ? now - 10000 : now + 10000, i);
+            store.append(batch, false);
+            if (i < 5)
+                old.add(batch.id);
+        }
+        assertEquals(10, store.countLiveBatches());
+
+        // only the batches created before the given time are replayable, with their mutations as appended
+        Iterable<BatchlogStore.StoredBatch> replayable = store.replayable(now);
+        assertEquals(old, ids(replayable));
+        for (BatchlogStore.StoredBatch batch : replayable)
+        {
+            assertEquals(MessagingService.current_version, batch.version);
+            assertEquals(2, batch.mutations.size());
+            assertEquals(ByteBufferUtil.bytes(batch.mutations.get(1).getInt(0)), batch.mutations.get(1));
+            assertEquals(ByteBufferUtil.bytes("mutation" + batch.mutations.get(1).getInt(0)), batch.mutations.get(0));
+        }
+
+        // removed batches aren't replayable anymore
+        UUID removed = old.iterator().next();
+        assertTrue(store.remove(removed));
+        old.remove(removed);
+        assertEquals(old, ids(store.replayable(now)));
+        assertEquals(9, store.countLiveBatches());
+        store.close();
+    }
+
+    @Test
+    public void testSegmentsDeletedOnceAcknowledged()
+    {
+        long now = System.currentTimeMillis();
+        // small enough for each segment to hold a few batches only
+        BatchlogStore store = BatchlogStore.open(directory, 200);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            Batch batch = batch(now, i);
+            store.append(batch, false);
+            ids.add(batch.id);
+        }
+        assertTrue(store.countSegments() > 2);
+        assertEquals(store.countSegments(), countFiles());
+
+        // segments are deleted as soon as all of their batches are removed, except the current one
+        for (UUID id : ids)
+            assertTrue(store.remove(id));
+        assertEquals(1, store.countSegments());
+        assertEquals(1, countFiles());
+        assertEquals(0, store.countLiveBatches());
+
+        // and that one is once it's replaced by a new one
+        for (int i = 20; i < 30; i++)
+        {
+            Batch batch = batch(now, i);
+            store.append(batch, false);
+            store.remove(batch.id);
+        }
+        assertEquals(1, store.countSegments());
+        assertEquals(1, countFiles());
+        store.close();
+    }
+
+    @Test
+    public void testReload()
+    {
+        long now = System.currentTimeMillis();
+        BatchlogStore store = BatchlogStore.open(directory, 200);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            Batch batch = batch(now, i);
+            store.append(batch, false);
+            ids.add(batch.id);
+        }
+
+        // removing the batches of the first segments deletes them, the others are only removed in memory
+        for (UUID id : ids.subList(0, 10))
+            store.remove(id);
+        store.close();
+
+        BatchlogStore reloaded = BatchlogStore.open(directory, 200);
+        Set<UUID> live = ids(reloaded.replayable(Long.MAX_VALUE));
+        assertTrue(live.containsAll(ids.subList(10, 20)));
+        assertTrue(live.size() < 20);
+        assertEquals(live.size(), reloaded.countLiveBatches());
+
+        // new segments don't overwrite the reloaded ones
+        Batch batch = batch(now, 20);
+        reloaded.append(batch, false);
+        live.add(batch.id);
+        assertEquals(live, ids(reloaded.replayable(Long.MAX_VALUE)));
+        reloaded.close();
+    }
+
+    @Test
+    public void testRemovedBatchesAreNotRead() throws IOException
+    {
+        long now = System.currentTimeMillis();
+        BatchlogStore store = BatchlogStore.open(directory, 1024 * 1024);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            Batch batch = batch(now, i);
+            store.append(batch, false);
+            ids.add(batch.id);
+        }
+        store.remove(ids.get(0));
+
+        // a corrupted size would end the segment if the record of the removed batch was read
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            file.writeInt(-1);
+        }
+
+        assertEquals(new HashSet<>(ids.subList(1, 3)), ids(store.replayable(Long.MAX_VALUE)));
+        store.close();
+    }
+
+    @Test
+    public void testTornRecord() throws IOException
+    {
+        long now = System.currentTimeMillis();
+        BatchlogStore store = BatchlogStore.open(directory, 1024 * 1024);
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            Batch batch = batch(now, i);
+            store.append(batch, false);
+            ids.add(batch.id);
+        }
+        store.close();
+
+        // as if the node crashed while appending the last batch
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            file.setLength(file.length() - 5);
+        }
+
+        BatchlogStore reloaded = BatchlogStore.open(directory, 1024 * 1024);
+        assertEquals(new HashSet<>(ids.subList(0, 2)), ids(reloaded.replayable(Long.MAX_VALUE)));
+        reloaded.close();
+    }
+}
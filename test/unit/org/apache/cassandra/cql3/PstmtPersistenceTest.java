@@ -80,12 +80,12 @@ public class PstmtPersistenceTest extends CQLTester
         // clear prepared statements cache
         QueryProcessor.clearPrepraredStatements();
         Assert.assertEquals(0, QueryProcessor.preparedStatementsCount());
-        for (MD5Digest stmtId : stmtIds)
-            Assert.assertNull(handler.getPrepared(stmtId));
 
-        // load prepared statements and validate that these still execute fine
-        QueryProcessor.preloadPreparedStatement();
+        // prepared statements are loaded again when requested, and still execute fine
+        long loaded = QueryProcessor.metrics.preparedStatementsLoaded.getCount();
         validatePstmts(stmtIds, handler);
+        Assert.assertEquals(loaded + 5, QueryProcessor.metrics.preparedStatementsLoaded.getCount());
+        Assert.assertEquals(5, QueryProcessor.preparedStatementsCount());
 
         // validate that the prepared statements are in the system table
         for (UntypedResultSet.Row row : QueryProcessor.executeOnceInternal(queryAll))
@@ -109,9 +109,81 @@ public class PstmtPersistenceTest extends CQLTester
 
     }
 
+    @Test
+    public void testUnknownOrInvalidPreparedStatements() throws Throwable
+    {
+        MD5Digest unknown = MD5Digest.compute("SELECT * FROM foo.unknown");
+        Assert.assertNull(QueryProcessor.instance.getPrepared(unknown));
+
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, val text)");
+        ClientState clientState = ClientState.forInternalCalls();
+        MD5Digest stmtId = QueryProcessor.prepare("SELECT * FROM " + KEYSPACE + '.' + currentTable() + " WHERE pk = ?", clientState, false).statementId;
+        Assert.assertNotNull(SystemKeyspace.loadPreparedStatement(stmtId));
+
+        // a statement which can't be prepared anymore is removed from the table when requested
+        QueryProcessor.clearPrepraredStatements();
+        SystemKeyspace.writePreparedStatement(KEYSPACE, stmtId, "SELECT * FROM " + KEYSPACE + ".unknown_table WHERE pk = ?",
+                                              Collections.singleton(KEYSPACE + ".unknown_table"), Collections.emptySet());
+        Assert.assertNull(QueryProcessor.instance.getPrepared(stmtId));
+        Assert.assertNull(SystemKeyspace.loadPreparedStatement(stmtId));
+
+        // unknown ids are remembered, so that they don't read the table again
+        SystemKeyspace.writePreparedStatement(null, stmtId, "SELECT * FROM " + KEYSPACE + '.' + currentTable() + " WHERE pk = ?",
+                                              Collections.singleton(KEYSPACE + '.' + currentTable()), Collections.emptySet());
+        Assert.assertNull(QueryProcessor.instance.getPrepared(stmtId));
+        QueryProcessor.clearPrepraredStatements();
+        Assert.assertNotNull(QueryProcessor.instance.getPrepared(stmtId));
+    }
+
+    @Test
+    public void testSchemaChangeRemovesUncachedStatements() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, val text)");
+        String table = KEYSPACE + '.' + currentTable();
+        ClientState clientState = ClientState.forInternalCalls();
+        MD5Digest selectId = QueryProcessor.prepare("SELECT * FROM " + table + " WHERE pk = ?", clientState, false).statementId;
+        MD5Digest batchId = QueryProcessor.prepare("BEGIN BATCH INSERT INTO " + table + " (pk, val) VALUES (?, ?); APPLY BATCH", clientState, false).statementId;
+        MD5Digest otherId = QueryProcessor.prepare("SELECT * FROM " + SystemKeyspace.NAME + '.' + SystemKeyspace.LOCAL, clientState, false).statementId;
+
+        // as after a restart, the statements are only stored
+        QueryProcessor.clearPrepraredStatements();
+        execute("ALTER TABLE %s ADD val2 int");
+
+        // clients must prepare again the statements on the altered table, to get their new result metadata
+        Assert.assertNull(SystemKeyspace.loadPreparedStatement(selectId));
+        Assert.assertNull(SystemKeyspace.loadPreparedStatement(batchId));
+        Assert.assertNull(QueryProcessor.instance.getPrepared(selectId));
+        Assert.assertNotNull(QueryProcessor.instance.getPrepared(otherId));
+
+        // the removed statements aren't referenced anymore
+        String references = "SELECT prepared_id FROM " + SystemKeyspace.NAME + '.' + SystemKeyspace.PREPARED_STATEMENTS_REFERENCES
+                            + " WHERE keyspace_name = ?";
+        Assert.assertEquals(0, QueryProcessor.executeInternal(references, KEYSPACE).size());
+        Assert.assertEquals(1, QueryProcessor.executeInternal(references, SystemKeyspace.NAME).size());
+        SystemKeyspace.removePreparedStatement(otherId);
+        Assert.assertEquals(0, QueryProcessor.executeInternal(references, SystemKeyspace.NAME).size());
+    }
+
+    @Test
+    public void testStatementsWithoutReferencesAreNotLoaded() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, val text)");
+        String query = "SELECT * FROM " + KEYSPACE + '.' + currentTable() + " WHERE pk = ?";
+        MD5Digest stmtId = QueryProcessor.prepare(query, ClientState.forInternalCalls(), false).statementId;
+
+        // as stored by previous versions, which schema changes can't find
+        QueryProcessor.clearPrepraredStatements();
+        SystemKeyspace.removePreparedStatement(stmtId);
+        QueryProcessor.executeInternal("INSERT INTO " + SystemKeyspace.NAME + '.' + SystemKeyspace.PREPARED_STATEMENTS
+                                       + " (prepared_id, query_string) VALUES (?, ?)",
+                                       stmtId.byteBuffer(), query);
+
+        Assert.assertNull(QueryProcessor.instance.getPrepared(stmtId));
+        Assert.assertNull(SystemKeyspace.loadPreparedStatement(stmtId));
+    }
+
     private void validatePstmts(List<MD5Digest> stmtIds, QueryHandler handler)
     {
-        Assert.assertEquals(5, QueryProcessor.preparedStatementsCount());
         QueryOptions optionsStr = QueryOptions.forInternalCalls(Collections.singletonList(UTF8Type.instance.fromString("foobar")));
         QueryOptions optionsInt = QueryOptions.forInternalCalls(Collections.singletonList(Int32Type.instance.decompose(42)));
         validatePstmt(handler, stmtIds.get(0), optionsStr);
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResultSetTest
+{
+    private static final List<ColumnSpecification> columns = Arrays.asList(new ColumnSpecification("ks", "tbl", new ColumnIdentifier("k", true), Int32Type.instance),
+                                                                           new ColumnSpecification("ks", "tbl", new ColumnIdentifier("v", true), UTF8Type.instance));
+
+    private static List<List<ByteBuffer>> rows(int count)
+    {
+        List<List<ByteBuffer>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            // make some rows bigger than a single encoding chunk, and some values null
+            String value = i % 100 == 0 ? new String(new char[100000]).replace('\0', 'x') : "value" + i;
+            rows.add(Arrays.asList(ByteBufferUtil.bytes(i), i % 7 == 0 ? null : ByteBufferUtil.bytes(value)));
+        }
+        return rows;
+    }
+
+    private static ResultSet resultSet(List<List<ByteBuffer>> rows, boolean encoded)
+    {
+        ResultSet rs = new ResultSet(columns);
+        if (encoded)
+            rs.encodeRows();
+        for (List<ByteBuffer> row : rows)
+            rs.addRow(row);
+        return rs;
+    }
+
+    private static ByteBuf encode(ResultSet rs, ByteBuf dest)
+    {
+        ResultSet.codec.encode(rs, dest, Server.CURRENT_VERSION);
+        return dest;
+    }
+
+    @Test
+    public void testEncodedRows()
+    {
+        List<List<ByteBuffer>> rows = rows(1000);
+        ResultSet expected = resultSet(rows, false);
+        ResultSet encoded = resultSet(rows, true);
+
+        assertEquals(expected.size(), encoded.size());
+        int size = ResultSet.codec.encodedSize(expected, Server.CURRENT_VERSION);
+        assertEquals(size, ResultSet.codec.encodedSize(encoded, Server.CURRENT_VERSION));
+
+        ByteBuf expectedBytes = encode(expected, Unpooled.buffer(size));
+        ByteBuf actualBytes = encode(encoded, Unpooled.buffer(size));
+        try
+        {
+            assertEquals(expectedBytes, actualBytes);
+            assertEquals(0, encoded.encodedRowsSize());
+        }
+        finally
+        {
+            expectedBytes.release();
+            actualBytes.release();
+        }
+    }
+
+    @Test
+    public void testTakeEncodedRows()
+    {
+        List<List<ByteBuffer>> rows = rows(500);
+        ResultSet expected = resultSet(rows, false);
+        ResultSet encoded = resultSet(rows, true);
+
+        int size = ResultSet.codec.encodedSize(encoded, Server.CURRENT_VERSION);
+        ByteBuf encodedRows = encoded.takeEncodedRows();
+        assertEquals(0, encoded.encodedRowsSize());
+        assertEquals(500, encoded.size());
+
+        // what is left to encode is everything up to the row count, which the rows are then appended to
+        ByteBuf head = encode(encoded, Unpooled.buffer(size - encodedRows.readableBytes()));
+        ByteBuf actualBytes = Unpooled.wrappedBuffer(head, encodedRows);
+        ByteBuf expectedBytes = encode(expected, Unpooled.buffer(size));
+        try
+        {
+            assertEquals(size, actualBytes.readableBytes());
+            assertEquals(expectedBytes, actualBytes);
+        }
+        finally
+        {
+            expectedBytes.release();
+            actualBytes.release();
+        }
+    }
+
+    @Test
+    public void testDecodeEncodedRows()
+    {
+        List<List<ByteBuffer>> rows = rows(1000);
+        ResultSet encoded = resultSet(rows, true);
+        encoded.trim(900);
+
+        assertEquals(900, encoded.size());
+        assertEquals(0, encoded.encodedRowsSize());
+        assertEquals(rows.subList(0, 900), encoded.rows());
+
+        // the result set behaves as a regular one once decoded
+        encoded.addRow(rows.get(999));
+        assertEquals(901, encoded.size());
+        assertEquals(rows.get(999), encoded.rows().get(900));
+    }
+
+    @Test
+    public void testRowsField()
+    {
+        List<List<ByteBuffer>> rows = rows(100);
+        ResultSet encoded = resultSet(rows, true);
+
+        // counting the rows doesn't decode them
+        assertEquals(100, encoded.rows.size());
+        assertTrue(encoded.encodedRowsSize() > 0);
+
+        assertEquals(rows, encoded.rows);
+        assertEquals(0, encoded.encodedRowsSize());
+        encoded.rows.remove(99);
+        assertEquals(rows.subList(0, 99), encoded.rows());
+    }
+
+    @Test
+    public void testRelease()
+    {
+        ResultSet encoded = resultSet(rows(10), true);
+        encoded.release();
+        assertEquals(0, encoded.encodedRowsSize());
+        encoded.release();
+    }
+}
@@ -30,6 +30,7 @@ import com.datastax.driver.core.TupleType;
 import com.datastax.driver.core.TupleValue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class TraceCqlTest extends CQLTester
 {
@@ -51,6 +52,8 @@ public class TraceCqlTest extends CQLTester
             assertEquals(cql, trace.getParameters().get("query"));
 
             assertEquals("1", trace.getParameters().get("bound_var_0_id"));
+            // the buffered events of the session are written along with its completion
+            assertFalse(trace.getEvents().isEmpty());
 
             String cql2 = "SELECT id, v1, v2 FROM " + KEYSPACE + '.' + currentTable() + " WHERE id IN (?, ?, ?)";
             pstmt = session.prepare(cql2).enableTracing();
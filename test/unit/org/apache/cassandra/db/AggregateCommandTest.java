@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.selection.RawSelector;
+import org.apache.cassandra.cql3.selection.Selectable;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AggregateCommandTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp() throws Throwable
+    {
+        requireNetwork();
+    }
+
+    @After
+    public void enablePushdown()
+    {
+        DatabaseDescriptor.setAggregatePushdownEnabled(true);
+    }
+
+    @Test
+    public void testPushedDownAggregatesMatchCoordinatorAggregates() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, s int static, i int, l bigint, d double, t text, PRIMARY KEY (k, c))");
+
+        for (int k = 0; k < 50; k++)
+        {
+            execute("INSERT INTO %s (k, s) VALUES (?, ?)", k, k * 3);
+            // leave some partitions with only a static row
+            for (int c = 0; c < k % 4; c++)
+                execute("INSERT INTO %s (k, c, i, l, d, t) VALUES (?, ?, ?, ?, ?, ?)",
+                        k, c, k == 7 ? null : k - c, (long) k * c, k / 3.0, "v" + (k * c));
+        }
+        flush();
+
+        for (String query : Arrays.asList("SELECT count(*) FROM %s",
+                                          "SELECT count(*), count(i), sum(i), min(l), max(l) FROM %s",
+                                          "SELECT min(t), max(t), count(t), sum(l) AS total FROM %s",
+                                          "SELECT count(s), max(s) FROM %s",
+                                          "SELECT count(*), max(i) FROM %s WHERE c = 1 ALLOW FILTERING",
+                                          "SELECT sum(i), min(c) FROM %s WHERE i > 10 ALLOW FILTERING",
+                                          "SELECT count(*), min(i) FROM %s WHERE token(k) > 0",
+                                          "SELECT sum(d), avg(i) FROM %s"))
+        {
+            String fullQuery = String.format(query, KEYSPACE + '.' + currentTable());
+            DatabaseDescriptor.setAggregatePushdownEnabled(false);
+            Object[][] expected = getRows(QueryProcessor.process(fullQuery, ConsistencyLevel.ONE));
+            DatabaseDescriptor.setAggregatePushdownEnabled(true);
+            assertRows(QueryProcessor.process(fullQuery, ConsistencyLevel.ONE), expected);
+        }
+    }
+
+    @Test
+    public void testPagedAggregatesMatchLocalAggregates() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, i int, PRIMARY KEY (k, c))");
+        for (int k = 0; k < 20; k++)
+            for (int c = 0; c < k % 5; c++)
+                execute("INSERT INTO %s (k, c, i) VALUES (?, ?, ?)", k, c, k * c);
+
+        PartitionRangeReadCommand read = PartitionRangeReadCommand.allDataRead(currentTableMetadata(), FBUtilities.nowInSeconds());
+        AggregateCommand command = new AggregateCommand(read, aggregates("SELECT count(*), sum(i), max(i) FROM %s"), true, Server.CURRENT_VERSION);
+
+        // pages smaller than the partitions, as used when a replica fails to aggregate its range
+        assertEquals(command.executeLocally(), command.executePaged(ConsistencyLevel.ONE, ClientState.forInternalCalls(), 3));
+    }
+
+    @Test
+    public void testPushedDownAggregatesWithLowConcurrency() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, i int)");
+        for (int k = 0; k < 10; k++)
+            execute("INSERT INTO %s (k, i) VALUES (?, ?)", k, k);
+
+        int concurrency = DatabaseDescriptor.getAggregatePushdownConcurrency();
+        try
+        {
+            DatabaseDescriptor.setAggregatePushdownConcurrency(1);
+            assertRows(QueryProcessor.process(String.format("SELECT count(*), sum(i) FROM %s.%s", KEYSPACE, currentTable()), ConsistencyLevel.ONE),
+                       row(10L, 45));
+        }
+        finally
+        {
+            DatabaseDescriptor.setAggregatePushdownConcurrency(concurrency);
+        }
+    }
+
+    @Test
+    public void testPushableAggregates() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, i int, d double, m map<int, int>)");
+
+        assertNotNull(aggregates("SELECT count(*), count(1), count(i), sum(i), min(d), max(d) FROM %s"));
+        assertNull(aggregates("SELECT avg(i) FROM %s"));
+        assertNull(aggregates("SELECT sum(d) FROM %s"));
+        assertNull(aggregates("SELECT count(m) FROM %s"));
+        assertNull(aggregates("SELECT max(i), k FROM %s"));
+        assertNull(aggregates("SELECT sum(blobAsInt(intAsBlob(i))) FROM %s"));
+    }
+
+    @Test
+    public void testMerge() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, i int)");
+        PartitionRangeReadCommand read = PartitionRangeReadCommand.allDataRead(currentTableMetadata(), FBUtilities.nowInSeconds());
+        AggregateCommand command = new AggregateCommand(read, aggregates("SELECT count(*), count(i), sum(i), min(i), max(i) FROM %s"), true, Server.CURRENT_VERSION);
+
+        List<ByteBuffer> merged = command.merge(Arrays.asList(partial(3L, 2L, 7, 1, 6),
+                                                              partial(0L, 0L, 0, null, null),
+                                                              partial(4L, 4L, -2, -5, 3)));
+        assertEquals(partial(7L, 6L, 5, -5, 6), merged);
+    }
+
+    private static List<ByteBuffer> partial(Long countRows, Long count, Integer sum, Integer min, Integer max)
+    {
+        return Arrays.asList(LongType.instance.decompose(countRows),
+                             LongType.instance.decompose(count),
+                             Int32Type.instance.decompose(sum),
+                             min == null ? null : Int32Type.instance.decompose(min),
+                             max == null ? null : Int32Type.instance.decompose(max));
+    }
+
+    @Test
+    public void testSerialization() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, i int)");
+        CFMetaData metadata = currentTableMetadata();
+
+        PartitionRangeReadCommand read = PartitionRangeReadCommand.allDataRead(metadata, FBUtilities.nowInSeconds());
+        AggregateCommand command = new AggregateCommand(read, aggregates("SELECT count(*), max(i) FROM %s"), true, Server.CURRENT_VERSION);
+
+        int version = MessagingService.current_version;
+        long readCommandSize;
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            ReadCommand.serializer.serialize(read, out, version);
+            readCommandSize = out.getLength();
+        }
+
+        AggregateCommand deserialized;
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            AggregateCommand.serializer.serialize(command, out, version);
+            // only check the size of what is serialized on top of the read command
+            assertEquals(out.getLength() - readCommandSize,
+                         AggregateCommand.serializer.serializedSize(command, version) - ReadCommand.serializer.serializedSize(read, version));
+            try (DataInputBuffer in = new DataInputBuffer(out.buffer(), false))
+            {
+                deserialized = AggregateCommand.serializer.deserialize(in, version);
+            }
+        }
+        assertEquals(command.toString(), deserialized.toString());
+        assertEquals(command.aggregates.get(1).function, deserialized.aggregates.get(1).function);
+
+        List<ByteBuffer> partial = Arrays.asList(LongType.instance.decompose(3L), null, Int32Type.instance.decompose(4));
+        try (DataOutputBuffer out = new DataOutputBuffer())
+        {
+            AggregateCommand.responseSerializer.serialize(partial, out, version);
+            assertEquals(out.getLength(), AggregateCommand.responseSerializer.serializedSize(partial, version));
+            try (DataInputBuffer in = new DataInputBuffer(out.buffer(), false))
+            {
+                assertEquals(partial, AggregateCommand.responseSerializer.deserialize(in, version));
+            }
+        }
+    }
+
+    private List<AggregateCommand.Aggregate> aggregates(String query)
+    {
+        CFMetaData metadata = currentTableMetadata();
+        SelectStatement.RawStatement statement = (SelectStatement.RawStatement) QueryProcessor.parseStatement(String.format(query, KEYSPACE + '.' + currentTable()));
+        List<AggregateCommand.Aggregate> aggregates = new ArrayList<>();
+        for (Selectable selectable : RawSelector.toSelectables(statement.selectClause, metadata))
+        {
+            AggregateCommand.Aggregate aggregate = AggregateCommand.Aggregate.forSelectable(selectable);
+            if (aggregate == null)
+                return null;
+            aggregates.add(aggregate);
+        }
+        return aggregates;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.net.IMessageSink;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessageOut;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+
+public class MutationGroupTest
+{
+    private static final String KEYSPACE = "MutationGroupTest";
+    private static final String CF = "Standard1";
+
+    @BeforeClass
+    public static void defineSchema() throws ConfigurationException
+    {
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE,
+                                    KeyspaceParams.simple(1),
+                                    SchemaLoader.standardCFMD(KEYSPACE, CF));
+    }
+
+    @After
+    public void removeMessageSinks()
+    {
+        MessagingService.instance().clearMessageSinks();
+    }
+
+    private static List<Mutation> mutations(String... keys)
+    {
+        CFMetaData metadata = Keyspace.open(KEYSPACE).getColumnFamilyStore(CF).metadata;
+        List<Mutation> mutations = new ArrayList<>();
+        for (String key : keys)
+            mutations.add(new RowUpdateBuilder(metadata, 0, key).clustering("c").add("val", "v").build());
+        return mutations;
+    }
+
+    @Test
+    public void testSerialization() throws IOException
+    {
+        MutationGroup group = new MutationGroup(mutations("key1", "key2", "key3"));
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        MutationGroup.serializer.serialize(group, out, MessagingService.current_version);
+        assertEquals(MutationGroup.serializer.serializedSize(group, MessagingService.current_version), out.getLength());
+
+        MutationGroup deserialized = MutationGroup.serializer.deserialize(new DataInputBuffer(out.buffer(), false), MessagingService.current_version);
+        assertEquals(group.mutations.size(), deserialized.mutations.size());
+        for (int i = 0; i < group.mutations.size(); i++)
+            assertEquals(group.mutations.get(i).toString(false), deserialized.mutations.get(i).toString(false));
+    }
+
+    @Test
+    public void testVerbHandler() throws Exception
+    {
+        InetAddress coordinator = InetAddress.getByName("127.0.0.2");
+        List<MessageOut> replies = Collections.synchronizedList(new ArrayList<>());
+        MessagingService.instance().addMessageSink(new IMessageSink()
+        {
+            public boolean allowOutgoingMessage(MessageOut message, int id, InetAddress to)
+            {
+                if (to.equals(coordinator))
+                    replies.add(message);
+                return false;
+            }
+
+            public boolean allowIncomingMessage(MessageIn message, int id)
+            {
+                return false;
+            }
+        });
+
+        List<String> keys = Arrays.asList("key4", "key5");
+        MessageIn<MutationGroup> message = MessageIn.create(coordinator,
+                                                            new MutationGroup(mutations(keys.toArray(new String[0]))),
+                                                            Collections.emptyMap(),
+                                                            MessagingService.Verb.MUTATION_GROUP,
+                                                            MessagingService.current_version,
+                                                            MessageIn.createTimestamp());
+        new MutationGroupVerbHandler().doVerb(message, 42);
+
+        // a single response acknowledges the whole group
+        assertEquals(1, replies.size());
+        assertEquals(MessagingService.Verb.REQUEST_RESPONSE, replies.get(0).verb);
+
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(CF);
+        for (String key : keys)
+            Util.getOnlyRow(Util.cmd(cfs, key).build());
+    }
+}
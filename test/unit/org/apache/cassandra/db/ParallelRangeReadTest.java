@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.filter.DataLimits;
+import org.apache.cassandra.db.filter.RowFilter;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRangeReadTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUpClass()
+    {
+        // split the reads of even the small tables of these tests
+        DatabaseDescriptor.setParallelRangeReadMinPartitions(0);
+        DatabaseDescriptor.setParallelRangeReadMaxSplits(4);
+        CQLTester.setUpClass();
+    }
+
+    @Test
+    public void testSplit()
+    {
+        Murmur3Partitioner partitioner = Murmur3Partitioner.instance;
+        AbstractBounds<PartitionPosition> fullRing = new Range<>(partitioner.getMinimumToken().minKeyBound(),
+                                                                 partitioner.getMinimumToken().minKeyBound());
+
+        assertEquals(1, ParallelRangeRead.split(fullRing, 1, partitioner).size());
+        assertContiguous(fullRing, ParallelRangeRead.split(fullRing, 3, partitioner), 2);
+        assertContiguous(fullRing, ParallelRangeRead.split(fullRing, 8, partitioner), 8);
+
+        AbstractBounds<PartitionPosition> bounds = AbstractBounds.bounds(new Murmur3Partitioner.LongToken(-1000).minKeyBound(), true,
+                                                                         new Murmur3Partitioner.LongToken(5000).maxKeyBound(), false);
+        assertContiguous(bounds, ParallelRangeRead.split(bounds, 4, partitioner), 4);
+    }
+
+    private static void assertContiguous(AbstractBounds<PartitionPosition> range, List<AbstractBounds<PartitionPosition>> splits, int expectedSize)
+    {
+        assertEquals(expectedSize, splits.size());
+        assertEquals(range.left, splits.get(0).left);
+        assertEquals(range.inclusiveLeft(), splits.get(0).inclusiveLeft());
+        for (int i = 1; i < splits.size(); i++)
+        {
+            assertEquals(splits.get(i - 1).right, splits.get(i).left);
+            // every key is in exactly one of the sub-ranges
+            assertTrue(splits.get(i - 1).inclusiveRight() != splits.get(i).inclusiveLeft());
+        }
+        assertEquals(range.right, splits.get(splits.size() - 1).right);
+        assertEquals(range.inclusiveRight(), splits.get(splits.size() - 1).inclusiveRight());
+    }
+
+    @Test
+    public void testFilteringReadsMatchSerialReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        for (int k = 0; k < 100; k++)
+            for (int c = 0; c < 5; c++)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", k, c, (k + c) % 7);
+        flush();
+        // shadow some of the flushed rows
+        for (int k = 0; k < 100; k += 3)
+            execute("DELETE FROM %s WHERE k = ? AND c = 1", k);
+
+        CFMetaData metadata = currentTableMetadata();
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        PartitionRangeReadCommand command = PartitionRangeReadCommand.allDataRead(metadata, FBUtilities.nowInSeconds());
+        assertEquals(1, ParallelRangeRead.splits(command, cfs));
+
+        RowFilter filter = RowFilter.create();
+        filter.add(metadata.getColumnDefinition(new ColumnIdentifier("v", false)), Operator.EQ, ByteBufferUtil.bytes(3));
+        PartitionRangeReadCommand filtering = new PartitionRangeReadCommand(metadata,
+                                                                            FBUtilities.nowInSeconds(),
+                                                                            ColumnFilter.all(metadata),
+                                                                            filter,
+                                                                            DataLimits.NONE,
+                                                                            DataRange.allData(metadata.partitioner),
+                                                                            Optional.empty());
+        assertEquals(4, ParallelRangeRead.splits(filtering, cfs));
+
+        // The reads without filtering aren't split, so they give the expected results in token order
+        List<Object[]> expected = new ArrayList<>();
+        for (Object[] row : getRows(execute("SELECT k, c, v FROM %s")))
+            if ((int) row[2] == 3)
+                expected.add(row);
+        assertTrue(expected.size() > 10);
+
+        assertRows(execute("SELECT k, c, v FROM %s WHERE v = 3 ALLOW FILTERING"), expected.toArray(new Object[0][]));
+        assertRows(execute("SELECT k, c, v FROM %s WHERE v = 3 LIMIT 10 ALLOW FILTERING"), expected.subList(0, 10).toArray(new Object[0][]));
+
+        // the rest of the sub-ranges which don't fit in their buffer is read when reached
+        int bufferSize = DatabaseDescriptor.getParallelRangeReadBufferSizeInKb();
+        DatabaseDescriptor.setParallelRangeReadBufferSizeInKb(0);
+        try
+        {
+            assertRows(execute("SELECT k, c, v FROM %s WHERE v = 3 ALLOW FILTERING"), expected.toArray(new Object[0][]));
+            assertRows(execute("SELECT k, c, v FROM %s WHERE v = 3 LIMIT 10 ALLOW FILTERING"), expected.subList(0, 10).toArray(new Object[0][]));
+        }
+        finally
+        {
+            DatabaseDescriptor.setParallelRangeReadBufferSizeInKb(bufferSize);
+        }
+
+        // paged through the native protocol, so that replicas read each page from where the previous one stopped
+        List<Object[]> paged = new ArrayList<>();
+        Statement statement = new SimpleStatement(String.format("SELECT k, c, v FROM %s.%s WHERE v = 3 ALLOW FILTERING", KEYSPACE, currentTable())).setFetchSize(7);
+        for (Row row : sessionNet().execute(statement))
+            paged.add(row(row.getInt(0), row.getInt(1), row.getInt(2)));
+        assertEquals(expected.size(), paged.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), paged.get(i));
+    }
+}
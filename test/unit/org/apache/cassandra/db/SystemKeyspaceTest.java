@@ -33,13 +33,17 @@ import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.dht.ByteOrderedPartitioner.BytesToken;
+import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.CassandraVersion;
+import org.apache.cassandra.utils.Pair;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SystemKeyspaceTest
@@ -93,6 +97,34 @@ public class SystemKeyspaceTest
         assert firstId.equals(secondId) : String.format("%s != %s%n", firstId.toString(), secondId.toString());
     }
 
+    @Test
+    public void testViewBuildStatus()
+    {
+        Token first = new BytesToken(ByteBufferUtil.bytes("a"));
+        Token second = new BytesToken(ByteBufferUtil.bytes("m"));
+        Range<Token> firstRange = new Range<>(first, second);
+        Range<Token> secondRange = new Range<>(second, first);
+
+        assertNull(SystemKeyspace.getViewBuildGeneration("ks", "view"));
+        SystemKeyspace.beginViewBuild("ks", "view", 42, Arrays.asList(firstRange, secondRange));
+        assertEquals(42, (int) SystemKeyspace.getViewBuildGeneration("ks", "view"));
+
+        Token checkpoint = new BytesToken(ByteBufferUtil.bytes("c"));
+        SystemKeyspace.updateViewBuildStatus("ks", "view", firstRange, checkpoint, 10);
+        Map<Range<Token>, Pair<Token, Long>> status = SystemKeyspace.getViewBuildStatus("ks", "view");
+        assertEquals(2, status.size());
+        assertEquals(Pair.create(checkpoint, 10L), status.get(firstRange));
+        assertEquals(Pair.create(null, 0L), status.get(secondRange));
+
+        SystemKeyspace.finishViewBuildStatus("ks", "view");
+        assertTrue(SystemKeyspace.isViewBuilt("ks", "view"));
+        assertNull(SystemKeyspace.getViewBuildGeneration("ks", "view"));
+        assertTrue(SystemKeyspace.getViewBuildStatus("ks", "view").isEmpty());
+
+        SystemKeyspace.setViewRemoved("ks", "view");
+        assertFalse(SystemKeyspace.isViewBuilt("ks", "view"));
+    }
+
     private void assertDeletedOrDeferred(int expectedCount)
     {
         if (FBUtilities.isWindows())
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.monitoring;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlowQueryLogTest
+{
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static SlowQueryLog.SlowQuery query(String name)
+    {
+        return new SlowQueryLog.SlowQuery("read", "ks", "tbl", name, "42", 3, 7, Collections.singletonMap("total", 200000L));
+    }
+
+    @Test
+    public void testThreshold()
+    {
+        SlowQueryLog log = new SlowQueryLog(10, 100, 1.0);
+
+        log.maybeRecord(FAST, () -> query("fast"));
+        log.maybeRecord(SLOW, () -> query("slow"));
+        assertEquals(1, log.recent().size());
+        assertEquals("slow", log.recent().get(0).query);
+
+        log.setThresholdInMs(0);
+        assertFalse(log.isSlow(SLOW));
+        log.maybeRecord(SLOW, () -> query("disabled"));
+        assertEquals(1, log.recent().size());
+    }
+
+    @Test
+    public void testEvictsOldestQueries()
+    {
+        SlowQueryLog log = new SlowQueryLog(3, 100, 1.0);
+        for (int i = 0; i < 5; i++)
+        {
+            final int n = i;
+            log.maybeRecord(SLOW, () -> query("q" + n));
+        }
+
+        List<SlowQueryLog.SlowQuery> recent = log.recent();
+        assertEquals(3, recent.size());
+        assertEquals("q4", recent.get(0).query);
+        assertEquals("q3", recent.get(1).query);
+        assertEquals("q2", recent.get(2).query);
+
+        log.clear();
+        assertTrue(log.recent().isEmpty());
+    }
+
+    @Test
+    public void testSampling()
+    {
+        SlowQueryLog log = new SlowQueryLog(10, 100, 0.0);
+        for (int i = 0; i < 100; i++)
+            log.maybeRecord(SLOW, () -> { throw new AssertionError("query should not be built when not sampled"); });
+        assertTrue(log.recent().isEmpty());
+
+        log.setSampleRate(1.0);
+        log.maybeRecord(SLOW, () -> query("sampled"));
+        assertEquals(1, log.recent().size());
+    }
+
+    @Test
+    public void testToMap()
+    {
+        SlowQueryLog.SlowQuery query = new SlowQueryLog.SlowQuery("read", "ks", "tbl", "SELECT * FROM ks.tbl", "42",
+                                                                  SlowQueryLog.SlowQuery.UNKNOWN, 7,
+                                                                  SlowQueryLog.SlowQuery.phases(new String[]{ "open", "iterate" }, 0, 3000, 10000));
+        Map<String, String> map = query.toMap();
+        assertEquals("ks", map.get("keyspace"));
+        assertEquals("42", map.get("token"));
+        assertEquals("", map.get("sstables"));
+        assertEquals("7", map.get("tombstones"));
+        assertEquals("10", map.get("latency_us"));
+        assertEquals("open=3us, iterate=7us", map.get("phases"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate()
+    {
+        new SlowQueryLog(10, 100, 1.5);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.concurrent.SEPExecutor;
+import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.exceptions.WriteTimeoutException;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ViewUpdatePipelineTest extends CQLTester
+{
+    @BeforeClass
+    public static void startup()
+    {
+        requireNetwork();
+        DatabaseDescriptor.setAsyncViewUpdates(true);
+    }
+
+    @AfterClass
+    public static void disableAsyncViewUpdates()
+    {
+        DatabaseDescriptor.setAsyncViewUpdates(false);
+    }
+
+    private static void waitForViewUpdates() throws InterruptedException
+    {
+        SEPExecutor viewMutationStage = (SEPExecutor) StageManager.getStage(Stage.VIEW_MUTATION);
+        while (ViewUpdatePipeline.instance.pendingMutations() > 0
+               || viewMutationStage.getPendingTasks() > 0
+               || viewMutationStage.getActiveCount() > 0)
+        {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testUpdatesAndDeletions() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        execute("USE " + keyspace());
+        execute("CREATE MATERIALIZED VIEW mv_updates AS SELECT * FROM %s WHERE k IS NOT NULL AND c IS NOT NULL AND v IS NOT NULL PRIMARY KEY (v, k, c)");
+
+        execute("INSERT INTO %s (k, c, v) VALUES (0, 0, 0)");
+        execute("INSERT INTO %s (k, c, v) VALUES (0, 1, 1)");
+        execute("UPDATE %s SET v = 2 WHERE k = 0 AND c = 0");
+        waitForViewUpdates();
+
+        assertRowsIgnoringOrder(execute("SELECT v, k, c FROM mv_updates"),
+                   row(1, 0, 1),
+                   row(2, 0, 0));
+
+        execute("DELETE FROM %s WHERE k = 0 AND c = 1");
+        waitForViewUpdates();
+        assertRows(execute("SELECT v, k, c FROM mv_updates"),
+                   row(2, 0, 0));
+
+        execute("DELETE FROM %s WHERE k = 0");
+        waitForViewUpdates();
+        assertEmpty(execute("SELECT * FROM mv_updates"));
+
+        execute("DROP MATERIALIZED VIEW mv_updates");
+    }
+
+    @Test
+    public void testConcurrentUpdatesOnPartition() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        execute("USE " + keyspace());
+        execute("CREATE MATERIALIZED VIEW mv_concurrent AS SELECT * FROM %s WHERE k IS NOT NULL AND c IS NOT NULL AND v IS NOT NULL PRIMARY KEY (v, k, c)");
+
+        // many concurrent updates of the same rows are batched on the partition, and each one must see the previous
+        // ones as existing for the view to only keep the last value of every row
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            int value = i;
+            futures.add(executor.submit(() -> {
+                try
+                {
+                    execute("INSERT INTO %s (k, c, v) VALUES (0, ?, ?) USING TIMESTAMP ?", value % 4, value, (long) value);
+                }
+                catch (Throwable t)
+                {
+                    throw new RuntimeException(t);
+                }
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        waitForViewUpdates();
+
+        assertRowsIgnoringOrder(execute("SELECT v, k, c FROM mv_concurrent"),
+                   row(996, 0, 0),
+                   row(997, 0, 1),
+                   row(998, 0, 2),
+                   row(999, 0, 3));
+
+        execute("DROP MATERIALIZED VIEW mv_concurrent");
+    }
+
+    @Test
+    public void testTimedOutMutationsAreFailed() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        execute("USE " + keyspace());
+        execute("CREATE MATERIALIZED VIEW mv_timeout AS SELECT * FROM %s WHERE k IS NOT NULL AND c IS NOT NULL AND v IS NOT NULL PRIMARY KEY (v, k, c)");
+
+        Mutation mutation = new RowUpdateBuilder(currentTableMetadata(), 0, 0).clustering(0).add("v", 0).build();
+        Thread.sleep(20);
+
+        // like with the locks, a mutation which can't be applied within the write timeout is failed
+        long timeout = DatabaseDescriptor.getWriteRpcTimeout();
+        DatabaseDescriptor.setWriteRpcTimeout(10L);
+        try
+        {
+            mutation.applyFuture().get();
+            fail("Expected a WriteTimeoutException");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof WriteTimeoutException);
+        }
+        finally
+        {
+            DatabaseDescriptor.setWriteRpcTimeout(timeout);
+        }
+        waitForViewUpdates();
+
+        assertEmpty(execute("SELECT * FROM %s"));
+        assertEmpty(execute("SELECT * FROM mv_timeout"));
+
+        execute("DROP MATERIALIZED VIEW mv_timeout");
+    }
+}
@@ -27,6 +27,8 @@ import java.util.Set;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -56,6 +58,41 @@ public class SplitterTest
         randomSplitTestVNodes(new Murmur3Partitioner());
     }
 
+    @Test
+    public void splitRingTestMurmur3Partitioner()
+    {
+        splitRingTest(new Murmur3Partitioner());
+    }
+
+    @Test
+    public void splitRingTestRandomPartitioner()
+    {
+        splitRingTest(new RandomPartitioner());
+    }
+
+    private void splitRingTest(IPartitioner partitioner)
+    {
+        Splitter splitter = partitioner.splitter().get();
+        Random r = new Random();
+        for (int i = 0; i < 1000; i++)
+        {
+            List<Range<Token>> localRanges = generateLocalRanges(16, r.nextInt(3) + 1, splitter, r, partitioner instanceof RandomPartitioner);
+            int parts = r.nextInt(8) + 1;
+            List<Range<Token>> ranges = splitter.splitRing(parts, localRanges);
+
+            // the ranges are contiguous and cover the whole ring, whatever the local ranges
+            assertTrue(ranges.size() <= parts);
+            assertEquals(partitioner.getMinimumToken(), ranges.get(0).left);
+            assertEquals(partitioner.getMaximumToken(), ranges.get(ranges.size() - 1).right);
+            for (int j = 0; j < ranges.size(); j++)
+            {
+                assertFalse(ranges.get(j).isWrapAround());
+                if (j > 0)
+                    assertEquals(ranges.get(j - 1).right, ranges.get(j).left);
+            }
+        }
+    }
+
     public void randomSplitTestNoVNodes(IPartitioner partitioner)
     {
         Splitter splitter = partitioner.splitter().get();
@@ -18,8 +18,12 @@
 package org.apache.cassandra.hints;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
@@ -30,6 +34,7 @@ import org.apache.cassandra.db.RowUpdateBuilder;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.net.MessageOut;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.schema.KeyspaceParams;
 import org.apache.cassandra.utils.FBUtilities;
@@ -44,12 +49,16 @@ public class HintMessageTest
     private static final String KEYSPACE = "hint_message_test";
     private static final String TABLE = "table";
 
-    @Test
-    public void testSerializer() throws IOException
+    @BeforeClass
+    public static void defineSchema()
     {
         SchemaLoader.prepareServer();
         SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), SchemaLoader.standardCFMD(KEYSPACE, TABLE));
+    }
 
+    @Test
+    public void testSerializer() throws IOException
+    {
         UUID hostId = UUID.randomUUID();
         long now = FBUtilities.timestampMicros();
 
@@ -76,4 +85,53 @@ public class HintMessageTest
         assertEquals(hostId, deserializedMessage.hostId);
         assertHintsEqual(message.hint, deserializedMessage.hint);
     }
+
+    @Test
+    public void testBatchSerializer() throws IOException
+    {
+        UUID hostId = UUID.randomUUID();
+        long now = FBUtilities.timestampMicros();
+        int version = MessagingService.current_version;
+
+        CFMetaData table = Schema.instance.getCFMetaData(KEYSPACE, TABLE);
+        List<HintMessage> hints = new ArrayList<>();
+        List<ByteBuffer> encodedHints = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            Mutation mutation =
+                new RowUpdateBuilder(table, now, bytes("key" + (i % 2)))
+                    .clustering("column" + i)
+                    .add("val", "val" + i)
+                    .build();
+            Hint hint = Hint.create(mutation, now / 1000);
+            hints.add(new HintMessage(hostId, hint));
+
+            DataOutputBuffer hintBuffer = new DataOutputBuffer();
+            Hint.serializer.serialize(hint, hintBuffer, version);
+            encodedHints.add(hintBuffer.buffer());
+        }
+
+        // the encoded batch is serialized the same as the decoded one
+        HintsBatchMessage message = new HintsBatchMessage(hostId, hints);
+        DataOutputBuffer dob = new DataOutputBuffer();
+        HintsBatchMessage.serializer.serialize(message, dob, version);
+        assertEquals(HintsBatchMessage.serializer.serializedSize(message, version), dob.getLength());
+
+        MessageOut<EncodedHintsBatchMessage> encodedMessage = new EncodedHintsBatchMessage(hostId, encodedHints, version).createMessageOut();
+        DataOutputBuffer encodedDob = new DataOutputBuffer();
+        encodedMessage.serializer.serialize(encodedMessage.payload, encodedDob, version);
+        assertEquals(encodedMessage.serializer.serializedSize(encodedMessage.payload, version), encodedDob.getLength());
+        assertEquals(dob.buffer(), encodedDob.buffer());
+
+        // deserialize and compare before/after
+        DataInputPlus di = new DataInputBuffer(encodedDob.buffer(), true);
+        HintsBatchMessage deserializedMessage = HintsBatchMessage.serializer.deserialize(di, version);
+        assertEquals(hostId, deserializedMessage.hostId);
+        assertEquals(hints.size(), deserializedMessage.hints.size());
+        for (int i = 0; i < hints.size(); i++)
+        {
+            assertEquals(hostId, deserializedMessage.hints.get(i).hostId);
+            assertHintsEqual(hints.get(i).hint, deserializedMessage.hints.get(i).hint);
+        }
+    }
 }
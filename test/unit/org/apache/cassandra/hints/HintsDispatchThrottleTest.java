@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.hints;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HintsDispatchThrottleTest
+{
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testInitialRate()
+    {
+        // the throttle is shared by the nodes expected to be delivering hints to the same destination
+        assertEquals(1024 * 1024, HintsDispatchThrottle.create(1024, 2).rate(), DELTA);
+        assertEquals(512 * 1024, HintsDispatchThrottle.create(1024, 3).rate(), DELTA);
+        assertEquals(1024 * 1024, HintsDispatchThrottle.create(1024, 1).rate(), DELTA);
+        assertEquals(Double.MAX_VALUE, HintsDispatchThrottle.create(0, 3).rate(), DELTA);
+    }
+
+    @Test
+    public void testIncreaseUpToMaxRate()
+    {
+        HintsDispatchThrottle throttle = new HintsDispatchThrottle(1000, 2000);
+        throttle.onPageDelivered(100);
+        assertEquals(1100, throttle.rate(), DELTA);
+
+        for (int i = 0; i < 100; i++)
+            throttle.onPageDelivered(100);
+        assertEquals(2000, throttle.rate(), DELTA);
+    }
+
+    @Test
+    public void testDecreaseOnLatency()
+    {
+        HintsDispatchThrottle throttle = new HintsDispatchThrottle(1000, 2000);
+        throttle.onPageDelivered(100);
+        assertEquals(1100, throttle.rate(), DELTA);
+
+        // up to twice the lowest latency seen is fine
+        throttle.onPageDelivered(200);
+        assertEquals(1210, throttle.rate(), DELTA);
+
+        throttle.onPageDelivered(201);
+        assertEquals(907.5, throttle.rate(), DELTA);
+    }
+
+    @Test
+    public void testDecreaseOnFailureDownToMinRate()
+    {
+        HintsDispatchThrottle throttle = new HintsDispatchThrottle(1000, 2000);
+        throttle.onPageFailed();
+        assertEquals(500, throttle.rate(), DELTA);
+
+        for (int i = 0; i < 10; i++)
+            throttle.onPageFailed();
+        assertEquals(125, throttle.rate(), DELTA);
+    }
+
+    @Test
+    public void testUnthrottled()
+    {
+        HintsDispatchThrottle throttle = new HintsDispatchThrottle(0, 0);
+        throttle.onPageFailed();
+        throttle.onPageDelivered(100);
+        throttle.onPageDelivered(1000);
+        assertEquals(Double.MAX_VALUE, throttle.rate(), DELTA);
+    }
+}
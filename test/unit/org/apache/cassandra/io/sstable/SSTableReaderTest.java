@@ -176,6 +176,41 @@ public class SSTableReaderTest
         }
     }
 
+    @Test
+    public void testReducingKeyIteratorFromToken()
+    {
+        Keyspace keyspace = Keyspace.open(KEYSPACE1);
+        ColumnFamilyStore store = keyspace.getColumnFamilyStore(CF_STANDARDLOWINDEXINTERVAL);
+        store.truncateBlocking();
+        partitioner = store.getPartitioner();
+
+        for (int j = 0; j < 1000; j++)
+        {
+            new RowUpdateBuilder(store.metadata, j, String.format("%04d", j))
+            .clustering("0")
+            .add("val", ByteBufferUtil.EMPTY_BYTE_BUFFER)
+            .build()
+            .applyUnsafe();
+        }
+        store.forceBlockingFlush();
+
+        // the keys before the start token are skipped using the index summary, up to its sampling interval
+        Token start = partitioner.getToken(ByteBufferUtil.bytes("0500"));
+        List<DecoratedKey> keys = new ArrayList<>();
+        try (ReducingKeyIterator iter = new ReducingKeyIterator(store.getLiveSSTables(), start))
+        {
+            while (iter.hasNext())
+                keys.add(iter.next());
+            assertTrue(iter.getBytesRead() > 0);
+            assertEquals(iter.getTotalBytes(), iter.getBytesRead());
+        }
+        assertTrue(keys.size() < 600);
+        assertTrue(keys.get(0).getToken().compareTo(start) <= 0);
+        assertEquals(500, keys.stream().filter(key -> key.getToken().compareTo(start) >= 0).count());
+
+        store.truncateBlocking();
+    }
+
     @Test
     public void testPersistentStatistics()
     {
@@ -25,6 +25,8 @@ import java.util.*;
 import org.junit.Test;
 
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.net.CallbackInfo;
+import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.FBUtilities;
 
@@ -88,4 +90,53 @@ public class DynamicEndpointSnitchTest
         order = Arrays.asList(host1, host3, host2);
         assertEquals(order, dsnitch.getSortedListByProximity(self, Arrays.asList(host1, host2, host3)));
     }
+
+    @Test
+    public void testPendingRequests() throws InterruptedException, IOException, ConfigurationException
+    {
+        StorageService.instance.unsafeInitialize();
+        SimpleSnitch ss = new SimpleSnitch();
+        DynamicEndpointSnitch dsnitch = new DynamicEndpointSnitch(ss, String.valueOf(ss.hashCode()));
+        InetAddress self = FBUtilities.getBroadcastAddress();
+        InetAddress host1 = InetAddress.getByName("127.0.0.5");
+        InetAddress host2 = InetAddress.getByName("127.0.0.6");
+        InetAddress host3 = InetAddress.getByName("127.0.0.7");
+        List<InetAddress> hosts = Arrays.asList(host1, host2, host3);
+
+        setScores(dsnitch, 1, hosts, 10, 10, 10);
+        assertEquals(hosts, dsnitch.getSortedListByProximity(self, hosts));
+
+        // requests host1 hasn't answered yet make it worse than the others right away, without waiting for a score update
+        int requests = (int) Math.ceil(dsnitch.getBadnessThreshold() / dsnitch.getPendingRequestWeight()) + 1;
+        for (int id = 0; id < requests; id++)
+            MessagingService.instance().setCallbackForTests(Integer.MAX_VALUE - id, new CallbackInfo(host1, null, null, false));
+        assertEquals(requests, MessagingService.instance().getPendingRequests(host1));
+        assertEquals(Arrays.asList(host2, host3, host1), dsnitch.getSortedListByProximity(self, hosts));
+
+        // and once it has answered, it is back to its latency score
+        for (int id = 0; id < requests; id++)
+            MessagingService.instance().removeRegisteredCallback(Integer.MAX_VALUE - id);
+        assertEquals(0, MessagingService.instance().getPendingRequests(host1));
+        assertEquals(hosts, dsnitch.getSortedListByProximity(self, hosts));
+
+        // a replica over the pending requests limit always sorts last, even if it is the fastest
+        setScores(dsnitch, 20, hosts, 10, 70, 20);
+        for (int id = 0; id < dsnitch.getMaxPendingRequests(); id++)
+            MessagingService.instance().setCallbackForTests(Integer.MAX_VALUE - id, new CallbackInfo(host1, null, null, false));
+        assertEquals(Arrays.asList(host3, host2, host1), dsnitch.getSortedListByProximity(self, hosts));
+        MessagingService.instance().clearCallbacksUnsafe();
+
+        // a replica without any latency score, as it hasn't answered yet, is still penalized by its pending requests
+        InetAddress host4 = InetAddress.getByName("127.0.0.8");
+        setScores(dsnitch, 20, hosts, 10, 10, 10);
+        for (int id = 0; id < requests + (int) Math.ceil(1 / dsnitch.getPendingRequestWeight()); id++)
+            MessagingService.instance().setCallbackForTests(Integer.MAX_VALUE - id, new CallbackInfo(host4, null, null, false));
+        assertEquals(host4, dsnitch.getSortedListByProximity(self, Arrays.asList(host4, host1, host2)).get(2));
+        MessagingService.instance().clearCallbacksUnsafe();
+
+        for (int id = 0; id < dsnitch.getMaxPendingRequests(); id++)
+            MessagingService.instance().setCallbackForTests(Integer.MAX_VALUE - id, new CallbackInfo(host4, null, null, false));
+        assertEquals(host4, dsnitch.getSortedListByProximity(self, Arrays.asList(host4, host1, host2)).get(2));
+        MessagingService.instance().clearCallbacksUnsafe();
+    }
 }
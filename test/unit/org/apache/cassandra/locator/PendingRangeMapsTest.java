@@ -28,6 +28,11 @@ import org.junit.Test;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -95,4 +100,51 @@ public class PendingRangeMapsTest {
         assertTrue(endpoints.contains(InetAddress.getByName("127.0.0.1")));
         assertTrue(endpoints.contains(InetAddress.getByName("127.0.0.7")));
     }
+
+    @Test
+    public void testFullRingRange() throws UnknownHostException
+    {
+        PendingRangeMaps pendingRangeMaps = new PendingRangeMaps();
+
+        pendingRangeMaps.addPendingRange(genRange("5", "15"), InetAddress.getByName("127.0.0.1"));
+        pendingRangeMaps.addPendingRange(genRange("10", "10"), InetAddress.getByName("127.0.0.2"));
+
+        assertEquals(1, pendingRangeMaps.pendingEndpointsFor(new BigIntegerToken("0")).size());
+        assertEquals(1, pendingRangeMaps.pendingEndpointsFor(new BigIntegerToken("5")).size());
+        assertEquals(2, pendingRangeMaps.pendingEndpointsFor(new BigIntegerToken("10")).size());
+        assertEquals(2, pendingRangeMaps.pendingEndpointsFor(new BigIntegerToken("15")).size());
+        assertEquals(1, pendingRangeMaps.pendingEndpointsFor(new BigIntegerToken("20")).size());
+    }
+
+    @Test
+    public void testLookupMatchesRangeScan() throws UnknownHostException
+    {
+        Random random = new Random(42);
+        InetAddress[] addresses = new InetAddress[5];
+        for (int i = 0; i < addresses.length; i++)
+            addresses[i] = InetAddress.getByName("127.0.0." + (i + 1));
+
+        PendingRangeMaps pendingRangeMaps = new PendingRangeMaps();
+        for (int round = 0; round < 5; round++)
+        {
+            // overlapping, nested, duplicated and wrap-around ranges, added between lookups
+            for (int i = 0; i < 50; i++)
+            {
+                Range<Token> range = genRange(Integer.toString(random.nextInt(1000)), Integer.toString(random.nextInt(1000)));
+                pendingRangeMaps.addPendingRange(range, addresses[random.nextInt(addresses.length)]);
+            }
+
+            for (int token = 0; token < 1000; token++)
+            {
+                BigIntegerToken searchToken = new BigIntegerToken(Integer.toString(token));
+                Set<InetAddress> expected = new HashSet<>();
+                for (Map.Entry<Range<Token>, List<InetAddress>> entry : pendingRangeMaps)
+                {
+                    if (entry.getKey().contains(searchToken))
+                        expected.addAll(entry.getValue());
+                }
+                assertEquals("token " + token, expected, new HashSet<>(pendingRangeMaps.pendingEndpointsFor(searchToken)));
+            }
+        }
+    }
 }
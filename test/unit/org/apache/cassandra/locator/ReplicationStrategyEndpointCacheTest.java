@@ -19,21 +19,26 @@ package org.apache.cassandra.locator;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.dht.RandomPartitioner.BigIntegerToken;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.schema.KeyspaceParams;
 
+import static org.junit.Assert.assertEquals;
+
 public class ReplicationStrategyEndpointCacheTest
 {
     private TokenMetadata tmd;
@@ -121,6 +126,57 @@ public class ReplicationStrategyEndpointCacheTest
         assert !endpoints.equals(initial);
     }
 
+    @Test
+    public void testEndpointsComputedInBackgroundOnRingChange() throws Exception
+    {
+        setup(SimpleStrategy.class, null);
+        Map<String, String> options = new HashMap<>();
+        options.put("replication_factor", "3");
+        CountingSimpleStrategy counting = (CountingSimpleStrategy) AbstractReplicationStrategy.createReplicationStrategy(KEYSPACE,
+                                                                                                                       CountingSimpleStrategy.class,
+                                                                                                                       tmd,
+                                                                                                                       strategy.snitch,
+                                                                                                                       options);
+
+        // the endpoints of the first ring are computed on demand, once per token, and match the uncached ones
+        for (int i = 0; i <= 90; i += 5)
+        {
+            Token token = new BigIntegerToken(String.valueOf(i));
+            assertEquals(counting.calculateNaturalEndpoints(token, tmd.cloneOnlyTokenMap()), counting.getNaturalEndpoints(token));
+        }
+        assertEquals(19 + 7, counting.calls.get());
+
+        // once the ring changes, the endpoints of all its tokens get computed, without waiting for them
+        tmd.updateNormalToken(new BigIntegerToken(String.valueOf(50)), InetAddress.getByName("127.0.0.5"));
+        assertEquals(Arrays.asList(InetAddress.getByName("127.0.0.5"), InetAddress.getByName("127.0.0.6"), InetAddress.getByName("127.0.0.7")),
+                     counting.getNaturalEndpoints(new BigIntegerToken(String.valueOf(45))));
+        Util.spinAssertEquals(true, () -> counting.calls.get() >= 19 + 7 + 8, 10);
+
+        // then the lookups don't compute anything
+        Util.spinAssertEquals(0, () -> {
+            int calls = counting.calls.get();
+            for (int i = 0; i <= 90; i += 5)
+                counting.getNaturalEndpoints(new BigIntegerToken(String.valueOf(i)));
+            return counting.calls.get() - calls;
+        }, 10);
+    }
+
+    public static class CountingSimpleStrategy extends SimpleStrategy
+    {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        public CountingSimpleStrategy(String keyspaceName, TokenMetadata tokenMetadata, IEndpointSnitch snitch, Map<String, String> configOptions)
+        {
+            super(keyspaceName, tokenMetadata, snitch, configOptions);
+        }
+
+        public List<InetAddress> calculateNaturalEndpoints(Token token, TokenMetadata metadata)
+        {
+            calls.incrementAndGet();
+            return super.calculateNaturalEndpoints(token, metadata);
+        }
+    }
+
     protected static class FakeSimpleStrategy extends SimpleStrategy
     {
         private boolean called = false;
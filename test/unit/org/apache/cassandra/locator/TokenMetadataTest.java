@@ -20,6 +20,7 @@ package org.apache.cassandra.locator;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
 
 import com.google.common.collect.Iterators;
@@ -31,6 +32,8 @@ import org.junit.runner.RunWith;
 
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import static org.apache.cassandra.Util.token;
 import static org.junit.Assert.assertFalse;
@@ -287,4 +290,41 @@ public class TokenMetadataTest
         assertTrue(racks.get(DATA_CENTER).get(RACK1).contains(first));
         assertTrue(racks.get(DATA_CENTER).get(RACK2).contains(second));
     }
+
+    @Test
+    public void testPendingRangesRecalculatedOnlyOnChange() throws UnknownHostException
+    {
+        TokenMetadata metadata = new TokenMetadata();
+        metadata.updateNormalToken(token("1"), InetAddress.getByName("127.0.0.1"));
+        metadata.updateNormalToken(token("3"), InetAddress.getByName("127.0.0.3"));
+        metadata.updateNormalToken(token("5"), InetAddress.getByName("127.0.0.5"));
+
+        Map<String, String> options = Collections.singletonMap("replication_factor", "1");
+        IEndpointSnitch snitch = new SimpleSnitch();
+        AbstractReplicationStrategy strategy1 = new SimpleStrategy("ks1", metadata, snitch, options);
+        AbstractReplicationStrategy strategy2 = new SimpleStrategy("ks2", metadata, snitch, options);
+        AbstractReplicationStrategy strategy3 = new SimpleStrategy("ks3", metadata, snitch, Collections.singletonMap("replication_factor", "2"));
+
+        InetAddress bootstrapping = InetAddress.getByName("127.0.0.2");
+        metadata.addBootstrapTokens(Collections.singleton(token("2")), bootstrapping);
+        metadata.calculatePendingRanges(strategy1, "ks1");
+        PendingRangeMaps pendingRanges = metadata.getPendingRanges("ks1");
+        assertTrue(metadata.pendingEndpointsFor(token("2"), "ks1").contains(bootstrapping));
+
+        // nothing changed: the pending ranges are kept, and shared with keyspaces replicated the same way
+        metadata.calculatePendingRanges(strategy1, "ks1");
+        assertSame(pendingRanges, metadata.getPendingRanges("ks1"));
+        metadata.calculatePendingRanges(strategy2, "ks2");
+        assertSame(pendingRanges, metadata.getPendingRanges("ks2"));
+        metadata.calculatePendingRanges(strategy3, "ks3");
+        assertNotSame(pendingRanges, metadata.getPendingRanges("ks3"));
+        assertTrue(metadata.pendingEndpointsFor(token("0"), "ks1").isEmpty());
+        assertTrue(metadata.pendingEndpointsFor(token("0"), "ks3").contains(bootstrapping));
+
+        // the ring changed: the pending ranges are recalculated
+        metadata.updateNormalToken(token("2"), bootstrapping);
+        metadata.calculatePendingRanges(strategy1, "ks1");
+        assertNotSame(pendingRanges, metadata.getPendingRanges("ks1"));
+        assertTrue(metadata.pendingEndpointsFor(token("2"), "ks1").isEmpty());
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopPartitionTrackerTest
+{
+    private static final long DECAY_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testFindsHeavyPartitions()
+    {
+        TopPartitionTracker tracker = new TopPartitionTracker(256, 4, DECAY_INTERVAL, () -> 1);
+        for (int round = 0; round < 100; round++)
+        {
+            for (int i = 0; i < 100; i++)
+                tracker.add(ByteBufferUtil.bytes("noise" + i), 1);
+            tracker.add(ByteBufferUtil.bytes("hot"), 50);
+            tracker.add(ByteBufferUtil.bytes("warm"), 20);
+        }
+
+        Map<ByteBuffer, Long> top = tracker.top(2);
+        assertEquals(2, top.size());
+        Map.Entry<ByteBuffer, Long>[] entries = top.entrySet().toArray(new Map.Entry[0]);
+        assertEquals(ByteBufferUtil.bytes("hot"), entries[0].getKey());
+        assertEquals(ByteBufferUtil.bytes("warm"), entries[1].getKey());
+        // count-min sketches never under-estimate
+        assertTrue(entries[0].getValue() >= 5000);
+        assertTrue(entries[1].getValue() >= 2000);
+    }
+
+    @Test
+    public void testKeepsBoundedCandidates()
+    {
+        TopPartitionTracker tracker = new TopPartitionTracker(1024, 8, DECAY_INTERVAL, () -> 1);
+        for (int i = 0; i < 10000; i++)
+            tracker.add(ByteBufferUtil.bytes(i), 1 + i % 7);
+
+        assertTrue(tracker.top(Integer.MAX_VALUE).size() <= 16);
+        assertEquals(8, tracker.top(8).size());
+    }
+
+    @Test
+    public void testDecay()
+    {
+        TopPartitionTracker tracker = new TopPartitionTracker(256, 4, DECAY_INTERVAL, () -> 1);
+        ByteBuffer key = ByteBufferUtil.bytes("key");
+        tracker.add(key, 1000);
+        assertEquals(1000L, (long) tracker.top(1).get(key));
+
+        tracker.maybeDecay(System.currentTimeMillis() + DECAY_INTERVAL);
+        assertEquals(500L, (long) tracker.top(1).get(key));
+
+        // the sketch decays as well, so new weight adds up to the halved estimate
+        tracker.add(key, 100);
+        assertEquals(600L, (long) tracker.top(1).get(key));
+
+        tracker.maybeDecay(System.currentTimeMillis() + 100 * DECAY_INTERVAL);
+        assertTrue(tracker.top(1).isEmpty());
+    }
+
+    @Test
+    public void testSampling()
+    {
+        TopPartitionTracker tracker = new TopPartitionTracker(256, 4, DECAY_INTERVAL, () -> 0.1);
+        ByteBuffer hot = ByteBufferUtil.bytes("hot");
+        for (int i = 0; i < 100000; i++)
+        {
+            tracker.add(ByteBufferUtil.bytes(i % 1000), 1);
+            if (i % 10 == 0)
+                tracker.add(hot, 10);
+        }
+
+        // the sampled weights are scaled, so the estimate is close to the actual weight of 100000
+        Map<ByteBuffer, Long> top = tracker.top(1);
+        assertEquals(hot, top.keySet().iterator().next());
+        long estimate = top.get(hot);
+        assertTrue(String.valueOf(estimate), estimate > 80000 && estimate < 140000);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        TopPartitionTracker tracker = new TopPartitionTracker(256, 0, DECAY_INTERVAL, () -> 1);
+        tracker.add(ByteBufferUtil.bytes("key"), 1000);
+        assertTrue(tracker.top(10).isEmpty());
+
+        tracker = new TopPartitionTracker(256, 4, DECAY_INTERVAL, () -> 0);
+        tracker.add(ByteBufferUtil.bytes("key"), 1000);
+        assertTrue(tracker.top(10).isEmpty());
+    }
+}
@@ -114,4 +114,30 @@ public class MessagingServiceTest
         addDCLatency(sentAt, now);
         assertNull(dcLatency.get("datacenter1"));
     }
+
+    @Test
+    public void testForeignVersions() throws Exception
+    {
+        InetAddress endpoint = InetAddress.getByName("127.0.0.250");
+        try
+        {
+            // versions of other lines of releases (Apache Cassandra 3.0.14/3.11 and 4.0) are spoken as 3.0
+            for (int version : new int[]{ 11, 12 })
+            {
+                messagingService.setVersion(endpoint, version);
+                assertEquals(MessagingService.VERSION_30, messagingService.getVersion(endpoint));
+            }
+
+            messagingService.setVersion(endpoint, MessagingService.VERSION_30);
+            assertEquals(MessagingService.VERSION_30, messagingService.getVersion(endpoint));
+            messagingService.setVersion(endpoint, MessagingService.VERSION_310);
+            assertEquals(MessagingService.VERSION_310, messagingService.getVersion(endpoint));
+            messagingService.setVersion(endpoint, MessagingService.VERSION_310 + 1);
+            assertEquals(MessagingService.current_version, messagingService.getVersion(endpoint));
+        }
+        finally
+        {
+            messagingService.resetVersion(endpoint);
+        }
+    }
 }
@@ -31,6 +31,7 @@ import org.apache.cassandra.SchemaLoader;
 import org.apache.cassandra.Util;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.ColumnIdentifier;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.marshal.ByteType;
@@ -239,6 +240,58 @@ public class DataResolverTest
         assertRepairContainsColumn(msg, "1", "c1", "v1", 0);
     }
 
+    @Test
+    public void testRepairSentInChunks()
+    {
+        int chunkSize = DatabaseDescriptor.getReadRepairChunkSize();
+        DatabaseDescriptor.setReadRepairChunkSizeInKB(0);
+        try
+        {
+            DataResolver resolver = new DataResolver(ks, command, ConsistencyLevel.ALL, 2);
+            InetAddress peer1 = peer();
+            resolver.preprocess(readResponseMessage(peer1, iter(new RowUpdateBuilder(cfm, nowInSec, 0L, dk).clustering("1")
+                                                                                                           .add("c1", "v1")
+                                                                                                           .buildUpdate())));
+            InetAddress peer2 = peer();
+            PartitionUpdate update = new PartitionUpdate(cfm, dk, cfm.partitionColumns(), 3);
+            for (String clustering : new String[]{ "2", "3", "4" })
+                new RowUpdateBuilder(update, 1L, 0).clustering(clustering).add("c2", "v2").build();
+            resolver.preprocess(readResponseMessage(peer2, iter(update)));
+
+            long bytesInFlight = cfs.metric.readRepairBytesInFlight.getCount();
+            try (PartitionIterator data = resolver.resolve();
+                 RowIterator rows = data.next())
+            {
+                // every repair is sent as soon as its row has been merged
+                assertClustering(cfm, rows.next(), "1");
+                assertEquals(1, messageRecorder.sentMessages(peer2).size());
+
+                assertClustering(cfm, rows.next(), "2");
+                assertClustering(cfm, rows.next(), "3");
+                assertClustering(cfm, rows.next(), "4");
+                assertFalse(rows.hasNext());
+            }
+
+            List<MessageOut> repairs = messageRecorder.sentMessages(peer1);
+            assertEquals(3, repairs.size());
+            for (int i = 0; i < repairs.size(); i++)
+            {
+                MessageOut<Mutation> msg = repairs.get(i);
+                assertRepairMetadata(msg);
+                assertRepairContainsNoDeletions(msg);
+                assertRepairContainsColumn(msg, String.valueOf(i + 2), "c2", "v2", 1);
+            }
+            assertRepairContainsColumn(getSentMessage(peer2), "1", "c1", "v1", 0);
+
+            // the repairs stay in flight until they are acknowledged or time out
+            assertTrue(cfs.metric.readRepairBytesInFlight.getCount() > bytesInFlight);
+        }
+        finally
+        {
+            DatabaseDescriptor.setReadRepairChunkSizeInKB(chunkSize / 1024);
+        }
+    }
+
     @Test
     public void testResolveDisjointMultipleRowsWithRangeTombstones()
     {
@@ -853,12 +906,19 @@ public class DataResolverTest
     private static class MessageRecorder implements IMessageSink
     {
         Map<InetAddress, MessageOut> sent = new HashMap<>();
+        Map<InetAddress, List<MessageOut>> allSent = new HashMap<>();
         public boolean allowOutgoingMessage(MessageOut message, int id, InetAddress to)
         {
             sent.put(to, message);
+            allSent.computeIfAbsent(to, k -> new ArrayList<>()).add(message);
             return false;
         }
 
+        List<MessageOut> sentMessages(InetAddress to)
+        {
+            return allSent.getOrDefault(to, Collections.emptyList());
+        }
+
         public boolean allowIncomingMessage(MessageIn message, int id)
         {
             return false;
@@ -20,6 +20,7 @@ package org.apache.cassandra.service;
 
 import java.net.InetAddress;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -235,4 +236,47 @@ public class StorageProxyTest
         testGRRKeys(exBounds(rp(""), rp("")), range(rp(""), endOf("1")), range(endOf("1"), endOf("6")), exBounds(endOf("6"), rp("")));
         testGRRKeys(incExBounds(rp(""), rp("")), bounds(rp(""), endOf("1")), range(endOf("1"), endOf("6")), exBounds(endOf("6"), rp("")));
     }
+
+    @Test
+    public void testNextConcurrencyFactor()
+    {
+        long timeout = TimeUnit.SECONDS.toNanos(10);
+        long fast = TimeUnit.MILLISECONDS.toNanos(10);
+        int maxPerQuery = DatabaseDescriptor.getMaxConcurrentRangeRequestsPerQuery();
+
+        // no result so far: as many ranges as allowed, but no more than what is left
+        assertEquals(maxPerQuery, StorageProxy.nextConcurrencyFactor(1, 0, 1, 100, 10000, fast, timeout));
+        assertEquals(5, StorageProxy.nextConcurrencyFactor(1, 0, 1, 100, 5, fast, timeout));
+
+        // sparse results: 1 row over 4 ranges, 10 more rows needed means 40 ranges, plus the margin
+        assertEquals(44, StorageProxy.nextConcurrencyFactor(4, 1, 4, 10, 1000, fast, timeout));
+
+        // dense results: a single range is enough
+        assertEquals(1, StorageProxy.nextConcurrencyFactor(4, 400, 4, 10, 1000, fast, timeout));
+
+        // a slow round halves the concurrency, whatever the density
+        assertEquals(2, StorageProxy.nextConcurrencyFactor(4, 0, 4, 10, 1000, timeout, timeout));
+        assertEquals(1, StorageProxy.nextConcurrencyFactor(1, 0, 1, 10, 1000, timeout, timeout));
+    }
+
+    @Test
+    public void testRangeRequestsBudget()
+    {
+        int max = DatabaseDescriptor.getMaxConcurrentRangeRequests();
+        try
+        {
+            DatabaseDescriptor.setMaxConcurrentRangeRequests(10);
+            assertEquals(8, StorageProxy.acquireRangeRequests(8));
+            assertEquals(2, StorageProxy.acquireRangeRequests(8));
+            // the budget is exhausted, but a query can always make progress
+            assertEquals(1, StorageProxy.acquireRangeRequests(8));
+            StorageProxy.releaseRangeRequests(11);
+            assertEquals(10, StorageProxy.acquireRangeRequests(20));
+            StorageProxy.releaseRangeRequests(10);
+        }
+        finally
+        {
+            DatabaseDescriptor.setMaxConcurrentRangeRequests(max);
+        }
+    }
 }
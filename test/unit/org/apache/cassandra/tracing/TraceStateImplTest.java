@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.tracing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.monitoring.ConstructionTime;
+import org.apache.cassandra.net.MessageIn;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TraceStateImplTest extends CQLTester
+{
+    @Test
+    public void testCoordinatorSessionEventsAreBuffered()
+    {
+        Tracing.instance.newSession(Tracing.TraceType.QUERY);
+        TraceState state = Tracing.instance.begin("test-request", Collections.<String, String>emptyMap());
+        state.trace("test-1");
+        state.trace("test-2");
+        assertEquals(2, TraceStateImpl.bufferedEvents());
+
+        Tracing.instance.stopSession();
+        assertEquals(0, TraceStateImpl.bufferedEvents());
+
+        // events traced by late users of the stopped session are not buffered anymore
+        state.trace("test-3");
+        assertEquals(0, TraceStateImpl.bufferedEvents());
+    }
+
+    @Test
+    public void testResponsesForClosedSession()
+    {
+        UUID sessionId = UUIDGen.getTimeUUID();
+        for (int i = 0; i < 100; i++)
+        {
+            TraceState state = Tracing.instance.initializeFromMessage(message(sessionId, MessagingService.Verb.REQUEST_RESPONSE));
+            assertTrue(state instanceof ExpiredTraceState);
+            state.trace("late response");
+        }
+        assertNull(Tracing.instance.get(sessionId));
+        assertEquals(0, TraceStateImpl.bufferedEvents());
+    }
+
+    @Test
+    public void testUnreleasedReplicaSession()
+    {
+        UUID sessionId = UUIDGen.getTimeUUID();
+        TraceState state = Tracing.instance.initializeFromMessage(message(sessionId, MessagingService.Verb.READ));
+        state.trace("test-1");
+        state.trace("test-2");
+        assertEquals(0, TraceStateImpl.bufferedEvents());
+
+        Tracing.instance.doneWithNonLocalSession(state);
+        assertNull(Tracing.instance.get(sessionId));
+    }
+
+    private static MessageIn<?> message(UUID sessionId, MessagingService.Verb verb)
+    {
+        Map<String, byte[]> parameters = ImmutableMap.of(Tracing.TRACE_HEADER, UUIDGen.decompose(sessionId),
+                                                         Tracing.TRACE_TYPE, new byte[]{ Tracing.TraceType.serialize(Tracing.TraceType.QUERY) });
+        return MessageIn.create(FBUtilities.getBroadcastAddress(), null, parameters, verb, MessagingService.current_version, new ConstructionTime());
+    }
+}
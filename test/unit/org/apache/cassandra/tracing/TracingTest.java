@@ -28,12 +28,35 @@ import java.util.UUID;
 
 import org.junit.Test;
 
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.partitions.PartitionUpdate;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.utils.progress.ProgressEvent;
 import org.apache.cassandra.utils.progress.ProgressListener;
 
 public final class TracingTest
 {
 
+    @Test
+    public void test_eventsMutation()
+    {
+        ByteBuffer sessionId = ByteBufferUtil.bytes(UUIDGen.getTimeUUID());
+        List<TraceStateImpl.Event> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            events.add(new TraceStateImpl.Event(UUIDGen.getTimeUUID(), FBUtilities.timestampMicros(), "test-" + i, i, "thread"));
+
+        Mutation mutation = TraceKeyspace.makeEventsMutation(sessionId, events, 60);
+
+        assert TraceKeyspace.NAME.equals(mutation.getKeyspaceName());
+        assert sessionId.equals(mutation.key().getKey());
+        assert 1 == mutation.getPartitionUpdates().size();
+        PartitionUpdate update = mutation.getPartitionUpdates().iterator().next();
+        assert TraceKeyspace.EVENTS.equals(update.metadata().cfName);
+        assert 10 == update.rowCount();
+    }
+
     @Test
     public void test()
     {
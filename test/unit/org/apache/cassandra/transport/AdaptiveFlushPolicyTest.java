@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveFlushPolicyTest
+{
+    @Test
+    public void testSingleRequestsFlushImmediately()
+    {
+        AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy();
+        for (int i = 0; i < 100; i++)
+        {
+            policy.onRun(1);
+            policy.onRun(0);
+        }
+        assertEquals(1, policy.batchSize());
+        assertTrue(policy.shouldFlush(1, 1, 0));
+        assertFalse(policy.shouldFlush(0, 0, 0));
+    }
+
+    @Test
+    public void testPipelinedRequestsAreBatched()
+    {
+        AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy();
+        for (int i = 0; i < 100; i++)
+            policy.onRun(32);
+
+        assertEquals(64, policy.batchSize());
+        assertFalse(policy.shouldFlush(32, 32, 0));
+        assertTrue(policy.shouldFlush(64, 32, 0));
+
+        // never wait once nothing more is queued, or for longer than the delay target
+        assertTrue(policy.shouldFlush(32, 0, 0));
+        assertTrue(policy.shouldFlush(32, 32, AdaptiveFlushPolicy.MAX_FLUSH_DELAY_NANOS));
+    }
+
+    @Test
+    public void testBatchSizeIsBounded()
+    {
+        AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy();
+        for (int i = 0; i < 100; i++)
+            policy.onRun(100000);
+        assertEquals(AdaptiveFlushPolicy.MAX_BATCH_SIZE, policy.batchSize());
+    }
+}
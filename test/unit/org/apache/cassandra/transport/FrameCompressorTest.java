@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameCompressorTest
+{
+    private static final Random random = new Random();
+
+    @Test
+    public void testLZ4RoundTrip() throws Exception
+    {
+        testRoundTrip(FrameCompressor.LZ4Compressor.instance);
+    }
+
+    @Test
+    public void testSnappyRoundTrip() throws Exception
+    {
+        if (FrameCompressor.SnappyCompressor.instance != null)
+            testRoundTrip(FrameCompressor.SnappyCompressor.instance);
+    }
+
+    private static void testRoundTrip(FrameCompressor compressor) throws Exception
+    {
+        for (int size : new int[]{ 0, 1, 100, 100000 })
+        {
+            byte[] bytes = bytes(size);
+            ByteBuf direct = CBUtil.allocator.directBuffer(size).writeBytes(bytes);
+            ByteBuf composite = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(bytes, 0, size / 2),
+                                                       Unpooled.wrappedBuffer(bytes, size / 2, size - size / 2));
+            for (ByteBuf body : new ByteBuf[]{ Unpooled.wrappedBuffer(bytes), direct, composite })
+            {
+                Frame compressed = compressor.compress(frame(body));
+                assertTrue(compressed.body.isDirect());
+
+                Frame decompressed = compressor.decompress(compressed);
+                assertEquals(Unpooled.wrappedBuffer(bytes), decompressed.body);
+                decompressed.release();
+            }
+        }
+    }
+
+    @Test
+    public void testMultiFrameRoundTrip()
+    {
+        byte[] first = bytes(100);
+        byte[] second = bytes(200);
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new MultiFrameCompressor.Encoder());
+        encoder.write(Unpooled.wrappedBuffer(first));
+        encoder.write(Unpooled.wrappedBuffer(second));
+        assertNull(encoder.readOutbound());
+        encoder.flush();
+
+        // everything written before the flush goes out as a single segment
+        ByteBuf segment = (ByteBuf) encoder.readOutbound();
+        assertNull(encoder.readOutbound());
+        assertEquals(segment.readableBytes() - 4, segment.getInt(segment.readerIndex()));
+
+        // segments may be received in arbitrary chunks
+        EmbeddedChannel decoder = new EmbeddedChannel(new MultiFrameCompressor.Decoder());
+        int split = segment.readableBytes() / 2;
+        decoder.writeInbound(segment.readSlice(split).retain());
+        assertNull(decoder.readInbound());
+        decoder.writeInbound(segment);
+
+        ByteBuf decompressed = (ByteBuf) decoder.readInbound();
+        assertEquals(Unpooled.wrappedBuffer(first, second), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testMultiFrameSegmentSizeLimit()
+    {
+        EmbeddedChannel encoder = new EmbeddedChannel(new MultiFrameCompressor.Encoder());
+        for (int written = 0; written < MultiFrameCompressor.MAX_SEGMENT_SIZE; written += 1000)
+            encoder.write(Unpooled.wrappedBuffer(bytes(1000)));
+        encoder.write(Unpooled.wrappedBuffer(bytes(10)));
+        encoder.flush();
+
+        // a segment is written once enough is pending, without waiting for the flush
+        ByteBuf segment = (ByteBuf) encoder.readOutbound();
+        assertEquals(MultiFrameCompressor.MAX_SEGMENT_SIZE + 1000 - MultiFrameCompressor.MAX_SEGMENT_SIZE % 1000,
+                     segment.getInt(segment.readerIndex() + 4));
+        segment.release();
+
+        segment = (ByteBuf) encoder.readOutbound();
+        assertEquals(10, segment.getInt(segment.readerIndex() + 4));
+        segment.release();
+    }
+
+    private static Frame frame(ByteBuf body)
+    {
+        return Frame.create(Message.Type.QUERY, 0, Server.CURRENT_VERSION, EnumSet.noneOf(Frame.Header.Flag.class), body);
+    }
+
+    private static byte[] bytes(int size)
+    {
+        // compressible, but not trivially so
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++)
+            bytes[i] = (byte) ('a' + random.nextInt(4));
+        return bytes;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.net.InetAddress;
+import java.util.EnumSet;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InflightRequestLimiterTest
+{
+    private final long requestsPerConnection = DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsPerConnection();
+    private final long requestsPerIp = DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsPerIp();
+    private final long bytesPerConnection = DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerConnection();
+    private final long bytesPerIp = DatabaseDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerIp();
+
+    @After
+    public void resetLimits()
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsPerConnection(requestsPerConnection);
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsPerIp(requestsPerIp);
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(bytesPerConnection);
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerIp(bytesPerIp);
+    }
+
+    @Test
+    public void testRequestsPerConnection() throws Exception
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsPerConnection(2);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        InflightRequestLimiter limiter = new InflightRequestLimiter(channel, InetAddress.getByName("127.0.0.2"));
+
+        Frame first = frame(10);
+        Frame second = frame(10);
+        limiter.acquire(first);
+        assertTrue(channel.config().isAutoRead());
+        limiter.acquire(second);
+        assertTrue(limiter.isPaused());
+        assertFalse(channel.config().isAutoRead());
+
+        limiter.release(first);
+        assertFalse(limiter.isPaused());
+        assertTrue(channel.config().isAutoRead());
+
+        limiter.release(second);
+        limiter.close();
+    }
+
+    @Test
+    public void testBytesPerConnection() throws Exception
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsInBytesPerConnection(100);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        InflightRequestLimiter limiter = new InflightRequestLimiter(channel, InetAddress.getByName("127.0.0.3"));
+
+        Frame small = frame(10);
+        Frame large = frame(200);
+        limiter.acquire(small);
+        assertTrue(channel.config().isAutoRead());
+        // a single request larger than the limit is still accepted, but pauses reads until it is responded to
+        limiter.acquire(large);
+        assertFalse(channel.config().isAutoRead());
+
+        limiter.release(small);
+        assertFalse(channel.config().isAutoRead());
+        limiter.release(large);
+        assertTrue(channel.config().isAutoRead());
+        limiter.close();
+    }
+
+    @Test
+    public void testRequestsPerIp() throws Exception
+    {
+        DatabaseDescriptor.setNativeTransportMaxConcurrentRequestsPerIp(2);
+        InetAddress address = InetAddress.getByName("127.0.0.4");
+        EmbeddedChannel channel1 = new EmbeddedChannel();
+        EmbeddedChannel channel2 = new EmbeddedChannel();
+        EmbeddedChannel other = new EmbeddedChannel();
+        InflightRequestLimiter limiter1 = new InflightRequestLimiter(channel1, address);
+        InflightRequestLimiter limiter2 = new InflightRequestLimiter(channel2, address);
+        InflightRequestLimiter otherLimiter = new InflightRequestLimiter(other, InetAddress.getByName("127.0.0.5"));
+
+        Frame frame1 = frame(10);
+        Frame frame2 = frame(10);
+        limiter1.acquire(frame1);
+        limiter2.acquire(frame2);
+        assertFalse(channel2.config().isAutoRead());
+
+        // other clients are not affected
+        Frame otherFrame = frame(10);
+        otherLimiter.acquire(otherFrame);
+        assertTrue(other.config().isAutoRead());
+
+        // responding on one connection resumes the other connections of the same client
+        limiter1.release(frame1);
+        assertTrue(channel1.config().isAutoRead());
+        assertTrue(channel2.config().isAutoRead());
+
+        limiter1.acquire(frame1 = frame(10));
+        assertFalse(channel1.config().isAutoRead());
+
+        // closing a connection releases what it had in flight
+        limiter2.close();
+        assertTrue(channel1.config().isAutoRead());
+        limiter2.release(frame2);
+
+        limiter1.release(frame1);
+        limiter1.close();
+        otherLimiter.release(otherFrame);
+        otherLimiter.close();
+    }
+
+    private static Frame frame(int bodySize)
+    {
+        return Frame.create(Message.Type.QUERY, 0, Server.CURRENT_VERSION, EnumSet.noneOf(Frame.Header.Flag.class), Unpooled.buffer(bodySize).writerIndex(bodySize));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.io.sstable.format.Version;
+import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.IFilter.FilterKey;
+
+public class BlockedBloomFilterTest
+{
+    private static final Version version = BigFormat.latestVersion;
+
+    private IFilter bf;
+
+    @Before
+    public void setup()
+    {
+        bf = FilterFactory.getFilter(FilterTestHelper.ELEMENTS, FilterTestHelper.MAX_FAILURE_RATE, version);
+    }
+
+    @After
+    public void destroy()
+    {
+        bf.close();
+    }
+
+    @Test
+    public void testLatestVersionIsBlocked()
+    {
+        Assert.assertTrue(version.hasBlockedBloomFilter());
+        Assert.assertTrue(bf instanceof BlockedBloomFilter);
+        Assert.assertFalse(BigFormat.instance.getVersion("mb").hasBlockedBloomFilter());
+        // versions used by Apache Cassandra after "mb" have classic filters
+        Assert.assertFalse(BigFormat.instance.getVersion("mc").hasBlockedBloomFilter());
+        Assert.assertFalse(BigFormat.instance.getVersion("me").hasBlockedBloomFilter());
+    }
+
+    @Test
+    public void testBlockedSpec()
+    {
+        for (double fpChance : new double[]{ 0.1, 0.01, 0.001, BloomCalculations.minSupportedBloomFilterFpChance() })
+        {
+            BloomCalculations.BloomSpecification spec = BloomCalculations.computeBlockedBloomSpec(fpChance);
+            Assert.assertTrue(spec.toString(), BloomCalculations.blockedFalsePositiveRate(spec.bucketsPerElement, spec.K) <= fpChance);
+            for (int k = 1; k <= 16; k++)
+                Assert.assertTrue(spec.toString(), BloomCalculations.blockedFalsePositiveRate(spec.bucketsPerElement - 1, k) > fpChance);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testBlockedSpecLimits()
+    {
+        BloomCalculations.computeBlockedBloomSpec(1e-12);
+    }
+
+    @Test
+    public void testOne()
+    {
+        bf.add(FilterTestHelper.bytes("a"));
+        Assert.assertTrue(bf.isPresent(FilterTestHelper.bytes("a")));
+        Assert.assertFalse(bf.isPresent(FilterTestHelper.bytes("b")));
+    }
+
+    @Test
+    public void testFalsePositivesInt()
+    {
+        FilterTestHelper.testFalsePositives(bf, FilterTestHelper.intKeys(), FilterTestHelper.randomKeys2());
+    }
+
+    @Test
+    public void testFalsePositivesRandom()
+    {
+        FilterTestHelper.testFalsePositives(bf, FilterTestHelper.randomKeys(), FilterTestHelper.randomKeys2());
+    }
+
+    @Test
+    public void testSerialize() throws IOException
+    {
+        bf.add(FilterTestHelper.bytes("a"));
+        DataOutputBuffer out = new DataOutputBuffer();
+        FilterFactory.serialize(bf, out);
+        Assert.assertEquals(bf.serializedSize(), out.getLength());
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.getData(), 0, out.getLength());
+        try (IFilter bf2 = FilterFactory.deserialize(new DataInputStream(in), version))
+        {
+            Assert.assertTrue(bf2.isPresent(FilterTestHelper.bytes("a")));
+            Assert.assertFalse(bf2.isPresent(FilterTestHelper.bytes("b")));
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException
+    {
+        ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+        while (keys.hasNext())
+            bf.add(FilterTestHelper.wrap(keys.next()));
+
+        File file = FileUtils.createTempFile("blockedBloomFilterTest-", ".db");
+        file.deleteOnExit();
+        try (DataOutputStreamPlus out = new BufferedDataOutputStreamPlus(new FileOutputStream(file)))
+        {
+            FilterFactory.serialize(bf, out);
+        }
+        Assert.assertEquals(bf.serializedSize(), file.length());
+
+        try (IFilter mapped = FilterFactory.map(file, version))
+        {
+            Assert.assertEquals(0, mapped.offHeapSize());
+
+            keys.reset();
+            while (keys.hasNext())
+                Assert.assertTrue(mapped.isPresent(FilterTestHelper.wrap(keys.next())));
+
+            ResetableIterator<ByteBuffer> otherKeys = FilterTestHelper.randomKeys2();
+            while (otherKeys.hasNext())
+            {
+                FilterKey key = FilterTestHelper.wrap(otherKeys.next());
+                Assert.assertEquals(bf.isPresent(key), mapped.isPresent(key));
+            }
+
+            // the mapped copy must serialize back to the same bytes
+            DataOutputBuffer expected = new DataOutputBuffer();
+            DataOutputBuffer actual = new DataOutputBuffer();
+            FilterFactory.serialize(bf, expected);
+            FilterFactory.serialize(mapped, actual);
+            Assert.assertEquals(expected.buffer(), actual.buffer());
+        }
+    }
+}
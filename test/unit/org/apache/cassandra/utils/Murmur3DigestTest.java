@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Murmur3DigestTest
+{
+    private static final Random random = new Random();
+
+    @Test
+    public void testMatchesReferenceImplementation()
+    {
+        long seed = random.nextLong();
+        random.setSeed(seed);
+        MessageDigest digest = new Murmur3Digest();
+        for (int length = 0; length < 100; length++)
+        {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            digest.update(bytes);
+            assertArrayEquals("seed " + seed, Hashing.murmur3_128().hashBytes(bytes).asBytes(), digest.digest());
+        }
+        assertEquals(16, digest.getDigestLength());
+    }
+
+    @Test
+    public void testIncrementalUpdates()
+    {
+        long seed = random.nextLong();
+        random.setSeed(seed);
+        MessageDigest digest = new Murmur3Digest(42);
+        for (int i = 0; i < 500; i++)
+        {
+            byte[] bytes = new byte[random.nextInt(200)];
+            random.nextBytes(bytes);
+
+            int offset = 0;
+            while (offset < bytes.length)
+            {
+                int length = Math.min(bytes.length - offset, random.nextInt(20));
+                switch (random.nextInt(4))
+                {
+                    case 0:
+                        for (int j = 0; j < length; j++)
+                            digest.update(bytes[offset + j]);
+                        break;
+                    case 1:
+                        digest.update(bytes, offset, length);
+                        break;
+                    case 2:
+                        digest.update(ByteBuffer.wrap(bytes, offset, length));
+                        break;
+                    case 3:
+                        ByteBuffer direct = ByteBuffer.allocateDirect(length);
+                        direct.put(bytes, offset, length).flip();
+                        digest.update(direct);
+                        assertEquals(0, direct.remaining());
+                        break;
+                }
+                offset += length;
+            }
+            assertArrayEquals("seed " + seed, Hashing.murmur3_128(42).hashBytes(bytes).asBytes(), digest.digest());
+        }
+    }
+
+    @Test
+    public void testReset()
+    {
+        MessageDigest digest = new Murmur3Digest();
+        digest.update(new byte[]{ 1, 2, 3 });
+        digest.reset();
+        digest.update(new byte[]{ 4, 5 });
+        assertArrayEquals(Hashing.murmur3_128().hashBytes(new byte[]{ 4, 5 }).asBytes(), digest.digest());
+    }
+}